@@ -24,10 +24,13 @@ import cn.edu.tsinghua.iginx.monitor.MonitorManager;
 import cn.edu.tsinghua.iginx.mqtt.MQTTService;
 import cn.edu.tsinghua.iginx.rest.RestServer;
 import cn.edu.tsinghua.iginx.thrift.IService;
+import cn.edu.tsinghua.iginx.utils.ThriftUtils;
 import org.apache.thrift.TProcessor;
-import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
@@ -37,6 +40,12 @@ public class Iginx {
 
     private static final Logger logger = LoggerFactory.getLogger(Iginx.class);
 
+    /** 每个连接占用一个线程 */
+    static final String THREAD_POOL = "thread_pool";
+
+    /** 非阻塞服务端，客户端需要使用分帧传输 */
+    static final String THREADED_SELECTOR = "threaded_selector";
+
     private static final Config config = ConfigDescriptor.getInstance().getConfig();
 
     public static void main(String[] args) throws Exception {
@@ -55,17 +64,38 @@ public class Iginx {
 
     private void startServer() throws TTransportException {
         TProcessor processor = new IService.Processor<IService.Iface>(IginxWorker.getInstance());
-        TServerSocket serverTransport =
-                new TServerSocket(ConfigDescriptor.getInstance().getConfig().getPort());
+        TServer server = createServer(processor, config);
+        logger.info("iginx starts successfully!");
+        System.out.print("\n\nIGinX is now in service......\n\n");
+        server.serve();
+    }
+
+    /** 按配置的服务端类型与协议创建 thrift 服务端 */
+    static TServer createServer(TProcessor processor, Config config) throws TTransportException {
+        TProtocolFactory protocolFactory =
+                ThriftUtils.getProtocolFactory(config.getThriftProtocol());
+        if (THREADED_SELECTOR.equalsIgnoreCase(config.getThriftServerType())) {
+            // 连接由 selector 线程管理，只有读取到完整的请求后才占用工作线程，空闲连接不再占用线程
+            TThreadedSelectorServer.Args args =
+                    new TThreadedSelectorServer.Args(new TNonblockingServerSocket(config.getPort()))
+                            .selectorThreads(config.getThriftSelectorThreadNum())
+                            .workerThreads(config.getThriftSelectorWorkerThreadNum())
+                            .processor(processor)
+                            .protocolFactory(protocolFactory);
+            return new TThreadedSelectorServer(args);
+        }
+        if (!THREAD_POOL.equalsIgnoreCase(config.getThriftServerType())) {
+            logger.warn(
+                    "unknown thrift server type {}, use {} instead",
+                    config.getThriftServerType(),
+                    THREAD_POOL);
+        }
         TThreadPoolServer.Args args =
-                new TThreadPoolServer.Args(serverTransport)
+                new TThreadPoolServer.Args(new TServerSocket(config.getPort()))
                         .processor(processor)
                         .minWorkerThreads(config.getMinThriftWorkerThreadNum())
                         .maxWorkerThreads(config.getMaxThriftWrokerThreadNum());
-        args.protocolFactory(new TBinaryProtocol.Factory());
-        TServer server = new TThreadPoolServer(args);
-        logger.info("iginx starts successfully!");
-        System.out.print("\n\nIGinX is now in service......\n\n");
-        server.serve();
+        args.protocolFactory(protocolFactory);
+        return new TThreadPoolServer(args);
     }
 }
@@ -113,6 +113,14 @@ public class Config {
 
     private int mqttMaxMessageSize = 1048576;
 
+    private int mqttBatchSize = 1000;
+
+    private long mqttLingerMs = 100;
+
+    private int mqttBufferCapacity = 100000;
+
+    private String mqttDurabilityMode = "ack_on_receive";
+
     private String clients = "";
 
     private int instancesNumPerClient = 0;
@@ -123,12 +131,21 @@ public class Config {
 
     private String physicalOptimizer = "naive";
 
+    private String physicalOptimizerRules =
+            "remove_redundant_join,push_down_limit,push_down_projection,fuse_unary_operator";
+
     private int memoryTaskThreadPoolSize = 200;
 
     private int physicalTaskThreadPoolSizePerStorage = 100;
 
     private int maxCachedPhysicalTaskPerStorage = 500;
 
+    private int minPhysicalTaskConcurrencyPerStorage = 4;
+
+    private int maxPhysicalTaskConcurrencyPerStorage = 400;
+
+    private long physicalTaskQueueTimeout = 60000;
+
     private double cachedTimeseriesProb = 0.01;
 
     private int retryCount = 10;
@@ -147,6 +164,24 @@ public class Config {
 
     private boolean useStreamExecutor = true;
 
+    private boolean useBatchExecutor = false;
+
+    private int batchExecutorRowNum = 4096;
+
+    private long sortMemoryLimit = 64 * 1024;
+
+    private String spillDir = "";
+
+    private long queryMemoryLimit = 0;
+
+    private long totalQueryMemoryLimit = 0;
+
+    private int spillPartitionNum = 16;
+
+    private boolean enableLastValueCache = false;
+
+    private int lastValueCacheCapacity = 100000;
+
     private boolean enableMemoryControl = true;
 
     private String systemResourceMetrics = "default";
@@ -181,6 +216,14 @@ public class Config {
 
     private int maxThriftWrokerThreadNum = 2147483647;
 
+    private String thriftServerType = "thread_pool";
+
+    private String thriftProtocol = "binary";
+
+    private int thriftSelectorThreadNum = 2;
+
+    private int thriftSelectorWorkerThreadNum = 64;
+
     //////////////
 
     public static final String tagNameAnnotation = TagKVUtils.tagNameAnnotation;
@@ -536,6 +579,38 @@ public class Config {
         this.mqttMaxMessageSize = mqttMaxMessageSize;
     }
 
+    public int getMqttBatchSize() {
+        return mqttBatchSize;
+    }
+
+    public void setMqttBatchSize(int mqttBatchSize) {
+        this.mqttBatchSize = mqttBatchSize;
+    }
+
+    public long getMqttLingerMs() {
+        return mqttLingerMs;
+    }
+
+    public void setMqttLingerMs(long mqttLingerMs) {
+        this.mqttLingerMs = mqttLingerMs;
+    }
+
+    public int getMqttBufferCapacity() {
+        return mqttBufferCapacity;
+    }
+
+    public void setMqttBufferCapacity(int mqttBufferCapacity) {
+        this.mqttBufferCapacity = mqttBufferCapacity;
+    }
+
+    public String getMqttDurabilityMode() {
+        return mqttDurabilityMode;
+    }
+
+    public void setMqttDurabilityMode(String mqttDurabilityMode) {
+        this.mqttDurabilityMode = mqttDurabilityMode;
+    }
+
     public String getClients() {
         return clients;
     }
@@ -576,6 +651,14 @@ public class Config {
         this.physicalOptimizer = physicalOptimizer;
     }
 
+    public String getPhysicalOptimizerRules() {
+        return physicalOptimizerRules;
+    }
+
+    public void setPhysicalOptimizerRules(String physicalOptimizerRules) {
+        this.physicalOptimizerRules = physicalOptimizerRules;
+    }
+
     public int getMemoryTaskThreadPoolSize() {
         return memoryTaskThreadPoolSize;
     }
@@ -600,6 +683,30 @@ public class Config {
         this.maxCachedPhysicalTaskPerStorage = maxCachedPhysicalTaskPerStorage;
     }
 
+    public int getMinPhysicalTaskConcurrencyPerStorage() {
+        return minPhysicalTaskConcurrencyPerStorage;
+    }
+
+    public void setMinPhysicalTaskConcurrencyPerStorage(int minPhysicalTaskConcurrencyPerStorage) {
+        this.minPhysicalTaskConcurrencyPerStorage = minPhysicalTaskConcurrencyPerStorage;
+    }
+
+    public int getMaxPhysicalTaskConcurrencyPerStorage() {
+        return maxPhysicalTaskConcurrencyPerStorage;
+    }
+
+    public void setMaxPhysicalTaskConcurrencyPerStorage(int maxPhysicalTaskConcurrencyPerStorage) {
+        this.maxPhysicalTaskConcurrencyPerStorage = maxPhysicalTaskConcurrencyPerStorage;
+    }
+
+    public long getPhysicalTaskQueueTimeout() {
+        return physicalTaskQueueTimeout;
+    }
+
+    public void setPhysicalTaskQueueTimeout(long physicalTaskQueueTimeout) {
+        this.physicalTaskQueueTimeout = physicalTaskQueueTimeout;
+    }
+
     public double getCachedTimeseriesProb() {
         return cachedTimeseriesProb;
     }
@@ -672,6 +779,78 @@ public class Config {
         this.useStreamExecutor = useStreamExecutor;
     }
 
+    public boolean isUseBatchExecutor() {
+        return useBatchExecutor;
+    }
+
+    public void setUseBatchExecutor(boolean useBatchExecutor) {
+        this.useBatchExecutor = useBatchExecutor;
+    }
+
+    public int getBatchExecutorRowNum() {
+        return batchExecutorRowNum;
+    }
+
+    public void setBatchExecutorRowNum(int batchExecutorRowNum) {
+        this.batchExecutorRowNum = batchExecutorRowNum;
+    }
+
+    public long getSortMemoryLimit() {
+        return sortMemoryLimit;
+    }
+
+    public void setSortMemoryLimit(long sortMemoryLimit) {
+        this.sortMemoryLimit = sortMemoryLimit;
+    }
+
+    public String getSpillDir() {
+        return spillDir;
+    }
+
+    public void setSpillDir(String spillDir) {
+        this.spillDir = spillDir;
+    }
+
+    public long getQueryMemoryLimit() {
+        return queryMemoryLimit;
+    }
+
+    public void setQueryMemoryLimit(long queryMemoryLimit) {
+        this.queryMemoryLimit = queryMemoryLimit;
+    }
+
+    public long getTotalQueryMemoryLimit() {
+        return totalQueryMemoryLimit;
+    }
+
+    public void setTotalQueryMemoryLimit(long totalQueryMemoryLimit) {
+        this.totalQueryMemoryLimit = totalQueryMemoryLimit;
+    }
+
+    public int getSpillPartitionNum() {
+        return spillPartitionNum;
+    }
+
+    public void setSpillPartitionNum(int spillPartitionNum) {
+        this.spillPartitionNum = spillPartitionNum;
+    }
+
+    public boolean isEnableLastValueCache() {
+        return enableLastValueCache;
+    }
+
+    public void setEnableLastValueCache(boolean enableLastValueCache) {
+        this.enableLastValueCache = enableLastValueCache;
+    }
+
+    public int getLastValueCacheCapacity() {
+        return lastValueCacheCapacity;
+    }
+
+    public void setLastValueCacheCapacity(int lastValueCacheCapacity) {
+        this.lastValueCacheCapacity = lastValueCacheCapacity;
+    }
+
     public boolean isEnableMemoryControl() {
         return enableMemoryControl;
     }
@@ -808,6 +987,38 @@ public class Config {
         this.maxThriftWrokerThreadNum = maxThriftWrokerThreadNum;
     }
 
+    public String getThriftServerType() {
+        return thriftServerType;
+    }
+
+    public void setThriftServerType(String thriftServerType) {
+        this.thriftServerType = thriftServerType;
+    }
+
+    public String getThriftProtocol() {
+        return thriftProtocol;
+    }
+
+    public void setThriftProtocol(String thriftProtocol) {
+        this.thriftProtocol = thriftProtocol;
+    }
+
+    public int getThriftSelectorThreadNum() {
+        return thriftSelectorThreadNum;
+    }
+
+    public void setThriftSelectorThreadNum(int thriftSelectorThreadNum) {
+        this.thriftSelectorThreadNum = thriftSelectorThreadNum;
+    }
+
+    public int getThriftSelectorWorkerThreadNum() {
+        return thriftSelectorWorkerThreadNum;
+    }
+
+    public void setThriftSelectorWorkerThreadNum(int thriftSelectorWorkerThreadNum) {
+        this.thriftSelectorWorkerThreadNum = thriftSelectorWorkerThreadNum;
+    }
+
     public boolean isLocalParquetStorage() {
         return isLocalParquetStorage;
     }
@@ -147,6 +147,13 @@ public class ConfigDescriptor {
                             "cn.edu.tsinghua.iginx.mqtt.JsonPayloadFormatter"));
             config.setMqttMaxMessageSize(
                     Integer.parseInt(properties.getProperty("mqtt_max_message_size", "1048576")));
+            config.setMqttBatchSize(
+                    Integer.parseInt(properties.getProperty("mqtt_batch_size", "1000")));
+            config.setMqttLingerMs(Long.parseLong(properties.getProperty("mqtt_linger_ms", "100")));
+            config.setMqttBufferCapacity(
+                    Integer.parseInt(properties.getProperty("mqtt_buffer_capacity", "100000")));
+            config.setMqttDurabilityMode(
+                    properties.getProperty("mqtt_durability_mode", "ack_on_receive"));
 
             config.setClients(properties.getProperty("clients", ""));
             config.setInstancesNumPerClient(
@@ -156,6 +163,10 @@ public class ConfigDescriptor {
             config.setConstraintChecker(properties.getProperty("constraintChecker", "naive"));
 
             config.setPhysicalOptimizer(properties.getProperty("physicalOptimizer", "naive"));
+            config.setPhysicalOptimizerRules(
+                    properties.getProperty(
+                            "physicalOptimizerRules",
+                            "remove_redundant_join,push_down_limit,push_down_projection,fuse_unary_operator"));
             config.setMemoryTaskThreadPoolSize(
                     Integer.parseInt(properties.getProperty("memoryTaskThreadPoolSize", "200")));
             config.setPhysicalTaskThreadPoolSizePerStorage(
@@ -165,6 +176,14 @@ public class ConfigDescriptor {
             config.setMaxCachedPhysicalTaskPerStorage(
                     Integer.parseInt(
                             properties.getProperty("maxCachedPhysicalTaskPerStorage", "500")));
+            config.setMinPhysicalTaskConcurrencyPerStorage(
+                    Integer.parseInt(
+                            properties.getProperty("minPhysicalTaskConcurrencyPerStorage", "4")));
+            config.setMaxPhysicalTaskConcurrencyPerStorage(
+                    Integer.parseInt(
+                            properties.getProperty("maxPhysicalTaskConcurrencyPerStorage", "400")));
+            config.setPhysicalTaskQueueTimeout(
+                    Long.parseLong(properties.getProperty("physicalTaskQueueTimeout", "60000")));
 
             config.setCachedTimeseriesProb(
                     Double.parseDouble(properties.getProperty("cachedTimeseriesProb", "0.01")));
@@ -184,6 +203,23 @@ public class ConfigDescriptor {
                     Boolean.parseBoolean(properties.getProperty("enablePushDown", "true")));
             config.setUseStreamExecutor(
                     Boolean.parseBoolean(properties.getProperty("useStreamExecutor", "true")));
+            config.setUseBatchExecutor(
+                    Boolean.parseBoolean(properties.getProperty("useBatchExecutor", "false")));
+            config.setBatchExecutorRowNum(
+                    Integer.parseInt(properties.getProperty("batchExecutorRowNum", "4096")));
+            config.setSortMemoryLimit(
+                    Long.parseLong(properties.getProperty("sortMemoryLimit", "65536")));
+            config.setSpillDir(properties.getProperty("spillDir", ""));
+            config.setQueryMemoryLimit(
+                    Long.parseLong(properties.getProperty("queryMemoryLimit", "0")));
+            config.setTotalQueryMemoryLimit(
+                    Long.parseLong(properties.getProperty("totalQueryMemoryLimit", "0")));
+            config.setSpillPartitionNum(
+                    Integer.parseInt(properties.getProperty("spillPartitionNum", "16")));
+            config.setEnableLastValueCache(
+                    Boolean.parseBoolean(properties.getProperty("enableLastValueCache", "false")));
+            config.setLastValueCacheCapacity(
+                    Integer.parseInt(properties.getProperty("lastValueCacheCapacity", "100000")));
 
             config.setEnableMemoryControl(
                     Boolean.parseBoolean(properties.getProperty("enable_memory_control", "true")));
@@ -222,6 +258,13 @@ public class ConfigDescriptor {
             config.setMaxThriftWrokerThreadNum(
                     Integer.parseInt(
                             properties.getProperty("maxThriftWorkerThreadNum", "2147483647")));
+            config.setThriftServerType(properties.getProperty("thriftServerType", "thread_pool"));
+            config.setThriftProtocol(properties.getProperty("thriftProtocol", "binary"));
+            config.setThriftSelectorThreadNum(
+                    Integer.parseInt(properties.getProperty("thriftSelectorThreadNum", "2")));
+            config.setThriftSelectorWorkerThreadNum(
+                    Integer.parseInt(
+                            properties.getProperty("thriftSelectorWorkerThreadNum", "64")));
             config.setParallelGroupByRowsThreshold(
                     Integer.parseInt(
                             properties.getProperty("parallelGroupByRowsThreshold", "10000")));
@@ -285,11 +328,28 @@ public class ConfigDescriptor {
                 EnvUtils.loadEnv("mqtt_payload_formatter", config.getMqttPayloadFormatter()));
         config.setMqttMaxMessageSize(
                 EnvUtils.loadEnv("mqtt_max_message_size", config.getMqttMaxMessageSize()));
+        config.setMqttBatchSize(EnvUtils.loadEnv("mqtt_batch_size", config.getMqttBatchSize()));
+        config.setMqttLingerMs(EnvUtils.loadEnv("mqtt_linger_ms", config.getMqttLingerMs()));
+        config.setMqttBufferCapacity(
+                EnvUtils.loadEnv("mqtt_buffer_capacity", config.getMqttBufferCapacity()));
+        config.setMqttDurabilityMode(
+                EnvUtils.loadEnv("mqtt_durability_mode", config.getMqttDurabilityMode()));
         config.setQueryOptimizer(EnvUtils.loadEnv("queryOptimizer", config.getQueryOptimizer()));
         config.setConstraintChecker(
                 EnvUtils.loadEnv("constraintChecker", config.getConstraintChecker()));
         config.setPhysicalOptimizer(
                 EnvUtils.loadEnv("physicalOptimizer", config.getPhysicalOptimizer()));
+        config.setPhysicalOptimizerRules(
+                EnvUtils.loadEnv("physicalOptimizerRules", config.getPhysicalOptimizerRules()));
+        config.setThriftServerType(
+                EnvUtils.loadEnv("thriftServerType", config.getThriftServerType()));
+        config.setThriftProtocol(EnvUtils.loadEnv("thriftProtocol", config.getThriftProtocol()));
+        config.setThriftSelectorThreadNum(
+                EnvUtils.loadEnv("thriftSelectorThreadNum", config.getThriftSelectorThreadNum()));
+        config.setThriftSelectorWorkerThreadNum(
+                EnvUtils.loadEnv(
+                        "thriftSelectorWorkerThreadNum",
+                        config.getThriftSelectorWorkerThreadNum()));
         config.setMemoryTaskThreadPoolSize(
                 EnvUtils.loadEnv("memoryTaskThreadPoolSize", config.getMemoryTaskThreadPoolSize()));
         config.setPhysicalTaskThreadPoolSizePerStorage(
@@ -300,6 +360,16 @@ public class ConfigDescriptor {
                 EnvUtils.loadEnv(
                         "maxCachedPhysicalTaskPerStorage",
                         config.getMaxCachedPhysicalTaskPerStorage()));
+        config.setMinPhysicalTaskConcurrencyPerStorage(
+                EnvUtils.loadEnv(
+                        "minPhysicalTaskConcurrencyPerStorage",
+                        config.getMinPhysicalTaskConcurrencyPerStorage()));
+        config.setMaxPhysicalTaskConcurrencyPerStorage(
+                EnvUtils.loadEnv(
+                        "maxPhysicalTaskConcurrencyPerStorage",
+                        config.getMaxPhysicalTaskConcurrencyPerStorage()));
+        config.setPhysicalTaskQueueTimeout(
+                EnvUtils.loadEnv("physicalTaskQueueTimeout", config.getPhysicalTaskQueueTimeout()));
         config.setCachedTimeseriesProb(
                 EnvUtils.loadEnv("cachedTimeseriesProb", config.getCachedTimeseriesProb()));
         config.setRetryCount(EnvUtils.loadEnv("retryCount", config.getRetryCount()));
@@ -316,6 +386,23 @@ public class ConfigDescriptor {
         config.setEnablePushDown(EnvUtils.loadEnv("enablePushDown", config.isEnablePushDown()));
         config.setUseStreamExecutor(
                 EnvUtils.loadEnv("useStreamExecutor", config.isUseStreamExecutor()));
+        config.setUseBatchExecutor(
+                EnvUtils.loadEnv("useBatchExecutor", config.isUseBatchExecutor()));
+        config.setBatchExecutorRowNum(
+                EnvUtils.loadEnv("batchExecutorRowNum", config.getBatchExecutorRowNum()));
+        config.setSortMemoryLimit(
+                EnvUtils.loadEnv("sortMemoryLimit", config.getSortMemoryLimit()));
+        config.setSpillDir(EnvUtils.loadEnv("spillDir", config.getSpillDir()));
+        config.setQueryMemoryLimit(
+                EnvUtils.loadEnv("queryMemoryLimit", config.getQueryMemoryLimit()));
+        config.setTotalQueryMemoryLimit(
+                EnvUtils.loadEnv("totalQueryMemoryLimit", config.getTotalQueryMemoryLimit()));
+        config.setSpillPartitionNum(
+                EnvUtils.loadEnv("spillPartitionNum", config.getSpillPartitionNum()));
+        config.setEnableLastValueCache(
+                EnvUtils.loadEnv("enableLastValueCache", config.isEnableLastValueCache()));
+        config.setLastValueCacheCapacity(
+                EnvUtils.loadEnv("lastValueCacheCapacity", config.getLastValueCacheCapacity()));
         config.setEnableMemoryControl(
                 EnvUtils.loadEnv("enable_memory_control", config.isEnableMemoryControl()));
         config.setSystemResourceMetrics(
@@ -20,15 +20,23 @@ import cn.edu.tsinghua.iginx.engine.physical.task.TaskType;
 import cn.edu.tsinghua.iginx.engine.physical.task.UnaryMemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
 import cn.edu.tsinghua.iginx.engine.shared.Result;
+import cn.edu.tsinghua.iginx.engine.shared.cache.LastValueCache;
 import cn.edu.tsinghua.iginx.engine.shared.constraint.ConstraintManager;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStreamEncoder;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawData;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Last;
 import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.FilterType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.engine.shared.processor.PostExecuteProcessor;
 import cn.edu.tsinghua.iginx.engine.shared.processor.PostLogicalProcessor;
@@ -45,7 +53,10 @@ import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
 import cn.edu.tsinghua.iginx.exceptions.ExecutionException;
 import cn.edu.tsinghua.iginx.exceptions.SQLParserException;
 import cn.edu.tsinghua.iginx.exceptions.StatusCode;
+import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
+import cn.edu.tsinghua.iginx.resource.QueryResourceManager;
 import cn.edu.tsinghua.iginx.resource.ResourceManager;
+import cn.edu.tsinghua.iginx.sql.expression.FuncExpression;
 import cn.edu.tsinghua.iginx.sql.statement.DataStatement;
 import cn.edu.tsinghua.iginx.sql.statement.DeleteColumnsStatement;
 import cn.edu.tsinghua.iginx.sql.statement.DeleteStatement;
@@ -55,6 +66,8 @@ import cn.edu.tsinghua.iginx.sql.statement.SelectStatement;
 import cn.edu.tsinghua.iginx.sql.statement.Statement;
 import cn.edu.tsinghua.iginx.sql.statement.StatementType;
 import cn.edu.tsinghua.iginx.sql.statement.SystemStatement;
+import cn.edu.tsinghua.iginx.sql.statement.frompart.FromPart;
+import cn.edu.tsinghua.iginx.sql.statement.frompart.FromPartType;
 import cn.edu.tsinghua.iginx.statistics.IStatisticsCollector;
 import cn.edu.tsinghua.iginx.thrift.AggregateType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
@@ -65,9 +78,11 @@ import cn.edu.tsinghua.iginx.utils.DataTypeUtils;
 import cn.edu.tsinghua.iginx.utils.RpcUtils;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -91,6 +106,12 @@ public class StatementExecutor {
 
     private static final ResourceManager resourceManager = ResourceManager.getInstance();
 
+    private static final LastValueCache lastValueCache = LastValueCache.getInstance();
+
+    private static final String LAST_QUERY_PATH = "path";
+
+    private static final String LAST_QUERY_VALUE = "value";
+
     private static final Map<StatementType, List<LogicalGenerator>> generatorMap = new HashMap<>();
 
     private static final List<LogicalGenerator> queryGeneratorList = new ArrayList<>();
@@ -125,6 +146,10 @@ public class StatementExecutor {
         registerGenerator(InsertGenerator.getInstance());
         registerGenerator(ShowTimeSeriesGenerator.getInstance());
 
+        // 新加入的存储引擎可能带有历史数据
+        DefaultMetaManager.getInstance()
+                .registerStorageEngineChangeHook((before, after) -> lastValueCache.clear());
+
         try {
             String statisticsCollectorClassName =
                     ConfigDescriptor.getInstance().getConfig().getStatisticsCollectorClassName();
@@ -239,6 +264,10 @@ public class StatementExecutor {
         } else {
             executeStatement(ctx);
         }
+        // 结果已物化时查询不再占用算子内存；流式结果在 closeStatement 时释放
+        if (ctx.getResult() == null || ctx.getResult().getResultStream() == null) {
+            QueryResourceManager.getInstance().releaseMemoryAccountant(ctx.getId());
+        }
         after(ctx, postExecuteProcessors);
     }
 
@@ -308,6 +337,25 @@ public class StatementExecutor {
 
     private void process(RequestContext ctx) throws ExecutionException, PhysicalException {
         StatementType type = ctx.getStatement().getType();
+        List<String> lastQueryPaths = null;
+        long lastQueryStartKey = Long.MIN_VALUE;
+        if (type == StatementType.SELECT && config.isEnableLastValueCache()) {
+            SelectStatement selectStatement = (SelectStatement) ctx.getStatement();
+            lastQueryPaths = getCacheableLastQueryPaths(selectStatement);
+            if (lastQueryPaths != null) {
+                lastQueryStartKey = getLastQueryStartKey(selectStatement.getFilter());
+                List<List<LastValueCache.LastValue>> lastValues =
+                        lastValueCache.lookup(lastQueryPaths, lastQueryStartKey);
+                if (lastValues != null) {
+                    setResult(ctx, buildLastQueryTable(lastValues));
+                    return;
+                }
+            }
+        }
+        if (type == StatementType.DELETE && config.isEnableLastValueCache()) {
+            invalidateLastValueCache(ctx.getStatement());
+        }
+
         List<LogicalGenerator> generatorList = generatorMap.get(type);
         for (LogicalGenerator generator : generatorList) {
             before(ctx, preLogicalProcessors);
@@ -323,7 +371,18 @@ public class StatementExecutor {
                 }
 
                 before(ctx, prePhysicalProcessors);
-                RowStream stream = engine.execute(ctx, root);
+                LastValueCache.Seed seed =
+                        lastQueryPaths == null ? null : lastValueCache.prepare(lastQueryPaths);
+                RowStream stream;
+                try {
+                    stream = engine.execute(ctx, root);
+                } catch (PhysicalException | RuntimeException e) {
+                    if (config.isEnableLastValueCache()) {
+                        // 部分分片可能已经执行成功
+                        invalidateLastValueCache(ctx.getStatement());
+                    }
+                    throw e;
+                }
                 after(ctx, postPhysicalProcessors);
 
                 if (type == StatementType.SELECT) {
@@ -334,6 +393,17 @@ public class StatementExecutor {
                     }
                 }
 
+                if (seed != null) {
+                    stream = fillLastValueCache(seed, lastQueryStartKey, stream);
+                } else if (config.isEnableLastValueCache()) {
+                    if (type == StatementType.INSERT) {
+                        InsertStatement insertStatement = (InsertStatement) ctx.getStatement();
+                        lastValueCache.update(getInsertedData(insertStatement));
+                    } else {
+                        invalidateLastValueCache(ctx.getStatement());
+                    }
+                }
+
                 setResult(ctx, stream);
                 return;
             }
@@ -341,6 +411,162 @@ public class StatementExecutor {
         throw new ExecutionException("Execute Error: can not construct a legal logical tree.");
     }
 
+    /** 只有不带过滤、分组等修饰且查询区间向后无界的 last 查询可以由最新值缓存回答 */
+    private static List<String> getCacheableLastQueryPaths(SelectStatement statement) {
+        if (statement.getQueryType() != SelectStatement.QueryType.LastFirstQuery
+                || statement.isSubQuery()
+                || statement.hasJoinParts()
+                || statement.hasGroupBy()
+                || statement.hasDownsample()
+                || statement.getTagFilter() != null
+                || statement.getHavingFilter() != null
+                || !statement.getSelectSubQueryParts().isEmpty()
+                || !statement.getWhereSubQueryParts().isEmpty()
+                || !statement.getHavingSubQueryParts().isEmpty()
+                || !statement.getOrderByPaths().isEmpty()
+                || !statement.getLayers().isEmpty()
+                || statement.getGlobalAlias() != null
+                || statement.getLimit() != Integer.MAX_VALUE
+                || statement.getOffset() != 0
+                || statement.isNeedLogicalExplain()
+                || statement.isNeedPhysicalExplain()
+                || statement.getFuncExpressionMap().size() != 1
+                || getLastQueryStartKey(statement.getFilter()) == null) {
+            return null;
+        }
+        for (FromPart fromPart : statement.getFromParts()) {
+            if (fromPart.getType() == FromPartType.SubQueryFromPart) {
+                return null;
+            }
+        }
+        List<FuncExpression> expressions = statement.getFuncExpressionMap().get(Last.LAST);
+        if (expressions == null || expressions.size() != statement.getExpressions().size()) {
+            return null;
+        }
+        List<String> paths = new ArrayList<>();
+        for (FuncExpression expression : expressions) {
+            if (expression.hasAlias() || expression.getParams().size() != 1) {
+                return null;
+            }
+            paths.add(expression.getParams().get(0));
+        }
+        return paths;
+    }
+
+    /** 返回 last 查询的起始 key，过滤条件不是向后无界的 key 区间时返回 null */
+    private static Long getLastQueryStartKey(Filter filter) {
+        if (filter == null) {
+            return Long.MIN_VALUE;
+        }
+        List<Filter> conjuncts =
+                filter.getType() == FilterType.And
+                        ? ((AndFilter) filter).getChildren()
+                        : Collections.singletonList(filter);
+        long startKey = Long.MIN_VALUE;
+        for (Filter conjunct : conjuncts) {
+            if (conjunct.getType() != FilterType.Key) {
+                return null;
+            }
+            KeyFilter keyFilter = (KeyFilter) conjunct;
+            long value = keyFilter.getValue();
+            switch (keyFilter.getOp()) {
+                case GE:
+                    startKey = Math.max(startKey, value);
+                    break;
+                case G:
+                    if (value == Long.MAX_VALUE) {
+                        return null;
+                    }
+                    startKey = Math.max(startKey, value + 1);
+                    break;
+                case L:
+                case LE:
+                    if (value != Long.MAX_VALUE) {
+                        return null;
+                    }
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return startKey;
+    }
+
+    private static Table buildLastQueryTable(List<List<LastValueCache.LastValue>> lastValues) {
+        Header header =
+                new Header(
+                        Field.KEY,
+                        Arrays.asList(
+                                new Field(LAST_QUERY_PATH, DataType.BINARY),
+                                new Field(LAST_QUERY_VALUE, DataType.BINARY)));
+        List<Row> rows = new ArrayList<>();
+        for (List<LastValueCache.LastValue> values : lastValues) {
+            for (LastValueCache.LastValue value : values) {
+                rows.add(
+                        new Row(
+                                header,
+                                value.getKey(),
+                                new Object[] {
+                                    value.getPath().getBytes(StandardCharsets.UTF_8),
+                                    value.getValue()
+                                }));
+            }
+        }
+        // 与多个 last 结果按 key 合并时的顺序一致
+        rows.sort(Comparator.comparingLong(Row::getKey));
+        return new Table(header, rows);
+    }
+
+    private static RowStream fillLastValueCache(
+            LastValueCache.Seed seed, long startKey, RowStream stream) throws PhysicalException {
+        Header header = stream.getHeader();
+        int pathIndex = header.indexOf(LAST_QUERY_PATH);
+        int valueIndex = header.indexOf(LAST_QUERY_VALUE);
+        List<Row> rows = new ArrayList<>();
+        List<LastValueCache.LastValue> values = new ArrayList<>();
+        while (stream.hasNext()) {
+            Row row = stream.next();
+            rows.add(row);
+            if (pathIndex != -1 && valueIndex != -1) {
+                values.add(
+                        new LastValueCache.LastValue(
+                                row.getKey(),
+                                new String(
+                                        (byte[]) row.getValue(pathIndex),
+                                        StandardCharsets.UTF_8),
+                                (byte[]) row.getValue(valueIndex)));
+            }
+        }
+        stream.close();
+        if (pathIndex != -1 && valueIndex != -1) {
+            lastValueCache.fill(seed, startKey, values);
+        }
+        return new Table(header, rows);
+    }
+
+    private static void invalidateLastValueCache(Statement statement) {
+        if (statement.getType() == StatementType.INSERT) {
+            lastValueCache.invalidate(((InsertStatement) statement).getPaths());
+        } else if (statement.getType() == StatementType.DELETE) {
+            lastValueCache.invalidate(((DeleteStatement) statement).getPaths());
+        }
+    }
+
+    private static RawData getInsertedData(InsertStatement statement) {
+        List<Map<String, String>> tagsList = statement.getTagsList();
+        if (statement.hasGlobalTags()) {
+            tagsList = Collections.nCopies(statement.getPaths().size(), statement.getGlobalTags());
+        }
+        return new RawData(
+                statement.getPaths(),
+                tagsList,
+                statement.getKeys(),
+                statement.getValues(),
+                statement.getTypes(),
+                statement.getBitmaps(),
+                statement.getRawDataType());
+    }
+
     private void processExplainLogicalStatement(RequestContext ctx, Operator root)
             throws PhysicalException, ExecutionException {
         List<Field> fields =
@@ -412,7 +638,8 @@ public class StatementExecutor {
                                 new Field("Execute Time", DataType.BINARY),
                                 new Field("Task Type", DataType.BINARY),
                                 new Field("Task Info", DataType.BINARY),
-                                new Field("Affect Rows", DataType.INTEGER)));
+                                new Field("Affect Rows", DataType.INTEGER),
+                                new Field("Applied Rules", DataType.BINARY)));
         Header header = new Header(fields);
 
         List<Object[]> cache = new ArrayList<>();
@@ -434,12 +661,13 @@ public class StatementExecutor {
 
         maxLen[0] = Math.max(maxLen[0], builder.length());
 
-        Object[] values = new Object[5];
+        Object[] values = new Object[6];
         values[0] = builder.toString();
         values[1] = (task.getSpan() + "ms").getBytes();
         values[2] = task.getType().toString().getBytes();
         values[3] = task.getInfo().getBytes();
         values[4] = task.getAffectedRows();
+        values[5] = String.join(",", task.getAppliedRules()).getBytes();
         cache.add(values);
 
         if (task.getType() == TaskType.BinaryMemory) {
@@ -599,24 +827,17 @@ public class StatementExecutor {
         List<ByteBuffer> valuesList = new ArrayList<>();
         List<ByteBuffer> bitmapList = new ArrayList<>();
 
-        boolean hasTimestamp = stream.getHeader().hasKey();
-        while (stream.hasNext()) {
-            Row row = stream.next();
-
-            Object[] rowValues = row.getValues();
-            valuesList.add(ByteUtils.getRowByteBuffer(rowValues, types));
-
-            Bitmap bitmap = new Bitmap(rowValues.length);
-            for (int i = 0; i < rowValues.length; i++) {
-                if (rowValues[i] != null) {
-                    bitmap.mark(i);
+        // 按块编码，每一块的数据共享一块连续的缓冲区
+        RowStreamEncoder encoder = new RowStreamEncoder(stream, false);
+        while (encoder.hasNext()) {
+            RowStreamEncoder.Chunk chunk = encoder.next(RowStreamEncoder.DEFAULT_CHUNK_SIZE);
+            valuesList.addAll(chunk.getValuesList());
+            bitmapList.addAll(chunk.getBitmapList());
+            if (chunk.getKeys() != null) {
+                for (long key : chunk.getKeys()) {
+                    timestampList.add(key);
                 }
             }
-            bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
-
-            if (hasTimestamp) {
-                timestampList.add(row.getKey());
-            }
         }
 
         if (valuesList.isEmpty()) { // empty result
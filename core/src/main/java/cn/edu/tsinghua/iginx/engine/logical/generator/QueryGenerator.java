@@ -15,6 +15,7 @@ import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionUtils;
 import cn.edu.tsinghua.iginx.engine.shared.function.manager.FunctionManager;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.MergePartialAggregate;
 import cn.edu.tsinghua.iginx.engine.shared.operator.AddSchemaPrefix;
 import cn.edu.tsinghua.iginx.engine.shared.operator.CrossJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
@@ -222,7 +223,8 @@ public class QueryGenerator extends AbstractGenerator {
                             functionCallList));
         } else if (selectStatement.getQueryType() == SelectStatement.QueryType.DownSampleQuery) {
             // DownSample Query
-            Operator finalRoot = root;
+            // 所有聚合函数共享同一次扫描
+            List<FunctionCall> functionCallList = new ArrayList<>();
             selectStatement
                     .getFuncExpressionMap()
                     .forEach(
@@ -236,26 +238,27 @@ public class QueryGenerator extends AbstractGenerator {
                                                 FunctionParams params =
                                                         new FunctionParams(
                                                                 expression.getParams(), levels);
-
-                                                Operator copySelect = finalRoot.copy();
-                                                queryList.add(
-                                                        new Downsample(
-                                                                new OperatorSource(copySelect),
-                                                                selectStatement.getPrecision(),
-                                                                selectStatement.getSlideDistance(),
-                                                                new FunctionCall(
-                                                                        functionManager.getFunction(
-                                                                                k),
-                                                                        params),
-                                                                new KeyRange(
-                                                                        selectStatement
-                                                                                .getStartTime(),
-                                                                        selectStatement
-                                                                                .getEndTime())));
+                                                functionCallList.add(
+                                                        new FunctionCall(
+                                                                functionManager.getFunction(k),
+                                                                params));
                                             }));
+            if (!functionCallList.isEmpty()) {
+                queryList.add(
+                        new Downsample(
+                                new OperatorSource(root.copy()),
+                                selectStatement.getPrecision(),
+                                selectStatement.getSlideDistance(),
+                                functionCallList,
+                                new KeyRange(
+                                        selectStatement.getStartTime(),
+                                        selectStatement.getEndTime())));
+            }
         } else if (selectStatement.getQueryType() == SelectStatement.QueryType.AggregateQuery) {
             // Aggregate Query
             Operator finalRoot = root;
+            // 可以合并部分结果的聚合函数共享同一次扫描
+            List<FunctionCall> setMappingCallList = new ArrayList<>();
             selectStatement
                     .getFuncExpressionMap()
                     .forEach(
@@ -270,13 +273,13 @@ public class QueryGenerator extends AbstractGenerator {
                                                         new FunctionParams(
                                                                 expression.getParams(), levels);
 
-                                                Operator copySelect = finalRoot.copy();
                                                 logger.info(
                                                         "function: " + expression.getColumnName());
                                                 if (FunctionUtils.isRowToRowFunction(k)) {
                                                     queryList.add(
                                                             new RowTransform(
-                                                                    new OperatorSource(copySelect),
+                                                                    new OperatorSource(
+                                                                            finalRoot.copy()),
                                                                     new FunctionCall(
                                                                             functionManager
                                                                                     .getFunction(k),
@@ -284,21 +287,34 @@ public class QueryGenerator extends AbstractGenerator {
                                                 } else if (FunctionUtils.isSetToSetFunction(k)) {
                                                     queryList.add(
                                                             new MappingTransform(
-                                                                    new OperatorSource(copySelect),
+                                                                    new OperatorSource(
+                                                                            finalRoot.copy()),
                                                                     new FunctionCall(
                                                                             functionManager
                                                                                     .getFunction(k),
                                                                             params)));
                                                 } else {
-                                                    queryList.add(
-                                                            new SetTransform(
-                                                                    new OperatorSource(copySelect),
-                                                                    new FunctionCall(
-                                                                            functionManager
-                                                                                    .getFunction(k),
-                                                                            params)));
+                                                    FunctionCall functionCall =
+                                                            new FunctionCall(
+                                                                    functionManager.getFunction(k),
+                                                                    params);
+                                                    if (MergePartialAggregate.isMergeable(
+                                                            functionCall)) {
+                                                        setMappingCallList.add(functionCall);
+                                                    } else {
+                                                        // 无法与其他函数在一次遍历中计算，单独扫描
+                                                        queryList.add(
+                                                                new SetTransform(
+                                                                        new OperatorSource(
+                                                                                finalRoot.copy()),
+                                                                        functionCall));
+                                                    }
                                                 }
                                             }));
+            if (!setMappingCallList.isEmpty()) {
+                queryList.add(
+                        new SetTransform(new OperatorSource(root.copy()), setMappingCallList));
+            }
             selectStatement
                     .getBaseExpressionList()
                     .forEach(
@@ -641,45 +657,35 @@ public class QueryGenerator extends AbstractGenerator {
             List<FragmentMeta> dummyFragments,
             List<String> pathList,
             TagFilter tagFilter) {
-        List<Operator> unionList = new ArrayList<>();
-        fragments.forEach(
-                (k, v) -> {
-                    List<Operator> joinList = new ArrayList<>();
-                    v.forEach(
-                            meta ->
-                                    joinList.add(
-                                            new Project(
-                                                    new FragmentSource(meta),
-                                                    pathList,
-                                                    tagFilter)));
-                    unionList.add(OperatorUtils.joinOperatorsByTime(joinList));
+        // dummy 分片放在前面，与普通分片有重复列时以普通分片的值为准
+        List<Operator> mergeList = new ArrayList<>();
+        dummyFragments.forEach(
+                meta -> {
+                    if (meta.isValid()) {
+                        String schemaPrefix = meta.getColumnsRange().getSchemaPrefix();
+                        mergeList.add(
+                                new AddSchemaPrefix(
+                                        new OperatorSource(
+                                                new Project(
+                                                        new FragmentSource(meta),
+                                                        pathMatchPrefix(
+                                                                pathList,
+                                                                meta.getColumnsRange().getColumn(),
+                                                                schemaPrefix),
+                                                        tagFilter)),
+                                        schemaPrefix));
+                    }
                 });
-
-        Operator operator = OperatorUtils.unionOperators(unionList);
-        if (!dummyFragments.isEmpty()) {
-            List<Operator> joinList = new ArrayList<>();
-            dummyFragments.forEach(
-                    meta -> {
-                        if (meta.isValid()) {
-                            String schemaPrefix = meta.getColumnsRange().getSchemaPrefix();
-                            joinList.add(
-                                    new AddSchemaPrefix(
-                                            new OperatorSource(
-                                                    new Project(
-                                                            new FragmentSource(meta),
-                                                            pathMatchPrefix(
-                                                                    pathList,
-                                                                    meta.getColumnsRange()
-                                                                            .getColumn(),
-                                                                    schemaPrefix),
-                                                            tagFilter)),
-                                            schemaPrefix));
-                        }
-                    });
-            joinList.add(operator);
-            operator = OperatorUtils.joinOperatorsByTime(joinList);
-        }
-        return operator;
+        fragments.forEach(
+                (k, v) ->
+                        v.forEach(
+                                meta ->
+                                        mergeList.add(
+                                                new Project(
+                                                        new FragmentSource(meta),
+                                                        pathList,
+                                                        tagFilter))));
+        return OperatorUtils.mergeOperatorsByKey(mergeList);
     }
 
     private Pair<Map<KeyInterval, List<FragmentMeta>>, List<FragmentMeta>> getFragmentsByTSInterval(
@@ -0,0 +1,265 @@
+package cn.edu.tsinghua.iginx.engine.logical.optimizer;
+
+import cn.edu.tsinghua.iginx.engine.logical.utils.OperatorUtils;
+import cn.edu.tsinghua.iginx.engine.shared.Constants;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.MergePartialAggregate;
+import cn.edu.tsinghua.iginx.engine.shared.operator.*;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 将 Downsample / SetTransform 拆分为每个分片上的部分聚合与内存中的合并阶段。部分聚合直接位于分片的 Project 之上，
+ * 物理层会将其与 Project 一起交给存储执行，存储不支持时在读取后立即聚合。
+ */
+public class AggregatePushDownOptimizer implements Optimizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AggregatePushDownOptimizer.class);
+
+    private static AggregatePushDownOptimizer instance;
+
+    private AggregatePushDownOptimizer() {}
+
+    public static AggregatePushDownOptimizer getInstance() {
+        if (instance == null) {
+            synchronized (AggregatePushDownOptimizer.class) {
+                if (instance == null) {
+                    instance = new AggregatePushDownOptimizer();
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public Operator optimize(Operator root) {
+        // only optimize query
+        if (root.getType() == OperatorType.CombineNonQuery
+                || root.getType() == OperatorType.ShowTimeSeries) {
+            return root;
+        }
+        return pushDown(root);
+    }
+
+    private Operator pushDown(Operator operator) {
+        if (OperatorType.isUnaryOperator(operator.getType())) {
+            UnaryOperator unaryOp = (UnaryOperator) operator;
+            if (unaryOp.getSource().getType() == SourceType.Fragment) {
+                return operator;
+            }
+            Operator rewritten = tryRewrite(unaryOp);
+            if (rewritten != null) {
+                return rewritten;
+            }
+            OperatorSource source = (OperatorSource) unaryOp.getSource();
+            unaryOp.setSource(new OperatorSource(pushDown(source.getOperator())));
+        } else if (OperatorType.isBinaryOperator(operator.getType())) {
+            BinaryOperator binaryOp = (BinaryOperator) operator;
+            OperatorSource sourceA = (OperatorSource) binaryOp.getSourceA();
+            OperatorSource sourceB = (OperatorSource) binaryOp.getSourceB();
+            binaryOp.setSourceA(new OperatorSource(pushDown(sourceA.getOperator())));
+            binaryOp.setSourceB(new OperatorSource(pushDown(sourceB.getOperator())));
+        } else {
+            MultipleOperator multipleOp = (MultipleOperator) operator;
+            List<Source> sources = new ArrayList<>();
+            for (Source source : multipleOp.getSources()) {
+                sources.add(new OperatorSource(pushDown(((OperatorSource) source).getOperator())));
+            }
+            multipleOp.setSources(sources);
+        }
+        return operator;
+    }
+
+    /** 尝试改写聚合算子，无法改写时返回 null */
+    private Operator tryRewrite(UnaryOperator operator) {
+        List<FunctionCall> functionCallList;
+        if (operator.getType() == OperatorType.Downsample) {
+            functionCallList = ((Downsample) operator).getFunctionCallList();
+        } else if (operator.getType() == OperatorType.SetTransform) {
+            functionCallList = ((SetTransform) operator).getFunctionCallList();
+        } else {
+            return null;
+        }
+        for (FunctionCall functionCall : functionCallList) {
+            if (functionCall.getFunction().getFunctionType() != FunctionType.System
+                    || functionCall.getFunction() instanceof MergePartialAggregate
+                    || !MergePartialAggregate.isSupported(
+                            functionCall.getFunction().getIdentifier())) {
+                return null;
+            }
+            FunctionParams params = functionCall.getParams();
+            if (params.getLevels() != null || params.getPaths() == null) {
+                return null;
+            }
+        }
+
+        Operator child = ((OperatorSource) operator.getSource()).getOperator();
+        Filter filter = null;
+        if (child.getType() == OperatorType.Select) {
+            // 只有时间过滤条件可以逐分片下推，值过滤需要看到完整的行
+            Select select = (Select) child;
+            if (select.getTagFilter() != null || !isKeyFilter(select.getFilter())) {
+                return null;
+            }
+            if (select.getSource().getType() == SourceType.Fragment) {
+                return null;
+            }
+            filter = select.getFilter();
+            child = ((OperatorSource) select.getSource()).getOperator();
+        }
+
+        List<Project> leaves = new ArrayList<>();
+        if (!collectFragmentLeaves(child, leaves) || leaves.size() < 2) {
+            return null;
+        }
+
+        // 相同的部分聚合只计算一次，例如 avg(a) 与 sum(a) 共用 sum(a)
+        Map<String, FunctionCall> partialCalls = new LinkedHashMap<>();
+        List<FunctionCall> mergeCalls = new ArrayList<>();
+        for (FunctionCall functionCall : functionCallList) {
+            String identifier = functionCall.getFunction().getIdentifier();
+            for (SetMappingFunction partialFunction :
+                    MergePartialAggregate.getPartialFunctions(identifier)) {
+                partialCalls.putIfAbsent(
+                        partialFunction.getIdentifier() + functionCall.getParams().getPaths(),
+                        new FunctionCall(partialFunction, functionCall.copy().getParams()));
+            }
+            mergeCalls.add(
+                    new FunctionCall(
+                            new MergePartialAggregate(identifier),
+                            functionCall.copy().getParams()));
+        }
+
+        List<Operator> partials = new ArrayList<>();
+        for (Project leaf : leaves) {
+            Operator input = leaf.copy();
+            if (filter != null) {
+                KeyInterval keyInterval =
+                        ((FragmentSource) leaf.getSource()).getFragment().getKeyInterval();
+                Filter subFilter =
+                        new AndFilter(
+                                Arrays.asList(
+                                        new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                                        new KeyFilter(Op.L, keyInterval.getEndKey()),
+                                        filter.copy()));
+                input = new Select(new OperatorSource(input), subFilter, null);
+            }
+            List<FunctionCall> calls = new ArrayList<>();
+            for (FunctionCall partialCall : partialCalls.values()) {
+                calls.add(partialCall.copy());
+            }
+            partials.add(createAggregate(operator, new OperatorSource(input), calls, true));
+        }
+        Operator union = OperatorUtils.unionOperators(partials);
+        logger.info(
+                "push down {} aggregate functions into {} fragments as partial aggregate.",
+                functionCallList.size(),
+                leaves.size());
+        return createAggregate(operator, new OperatorSource(union), mergeCalls, false);
+    }
+
+    private Operator createAggregate(
+            UnaryOperator operator,
+            Source source,
+            List<FunctionCall> functionCallList,
+            boolean partial) {
+        if (operator.getType() == OperatorType.Downsample) {
+            Downsample downsample = (Downsample) operator;
+            Downsample aggregate =
+                    new Downsample(
+                            source,
+                            downsample.getPrecision(),
+                            downsample.getSlideDistance(),
+                            functionCallList,
+                            downsample.getKeyRange().copy());
+            aggregate.setPartial(partial);
+            return aggregate;
+        }
+        SetTransform aggregate = new SetTransform(source, functionCallList);
+        aggregate.setPartial(partial);
+        return aggregate;
+    }
+
+    /**
+     * 聚合下方只能是按 key 拼接的列分片与按 key 区间 union 的分片。dummy 分片可能与其他分片有重复的列，
+     * 合并部分结果时会重复计算，因此不做改写。
+     */
+    private boolean collectFragmentLeaves(Operator operator, List<Project> leaves) {
+        switch (operator.getType()) {
+            case Project:
+                Project project = (Project) operator;
+                if (project.getSource().getType() != SourceType.Fragment
+                        || ((FragmentSource) project.getSource()).getFragment().isDummyFragment()) {
+                    return false;
+                }
+                leaves.add(project);
+                return true;
+            case Join:
+                if (!((Join) operator).getJoinBy().equals(Constants.KEY)) {
+                    return false;
+                }
+                // fall through
+            case Union:
+                BinaryOperator binaryOp = (BinaryOperator) operator;
+                return collectFragmentLeaves(
+                                ((OperatorSource) binaryOp.getSourceA()).getOperator(), leaves)
+                        && collectFragmentLeaves(
+                                ((OperatorSource) binaryOp.getSourceB()).getOperator(), leaves);
+            case MergeByKey:
+                for (Source source : ((MultipleOperator) operator).getSources()) {
+                    if (!collectFragmentLeaves(((OperatorSource) source).getOperator(), leaves)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isKeyFilter(Filter filter) {
+        switch (filter.getType()) {
+            case Key:
+            case Bool:
+                return true;
+            case Not:
+                return isKeyFilter(((NotFilter) filter).getChild());
+            case And:
+                for (Filter child : ((AndFilter) filter).getChildren()) {
+                    if (!isKeyFilter(child)) {
+                        return false;
+                    }
+                }
+                return true;
+            case Or:
+                for (Filter child : ((OrFilter) filter).getChildren()) {
+                    if (!isKeyFilter(child)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+}
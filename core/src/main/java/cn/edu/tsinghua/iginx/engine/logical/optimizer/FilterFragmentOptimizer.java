@@ -87,44 +87,31 @@ public class FilterFragmentOptimizer implements Optimizer {
         Filter filter = selectOperator.getFilter();
         List<KeyRange> keyRanges = ExprUtils.getKeyRangesFromFilter(filter);
 
-        List<Operator> unionList = new ArrayList<>();
-        fragments.forEach(
-                (k, v) -> {
-                    List<Operator> joinList = new ArrayList<>();
-                    v.forEach(
-                            meta -> {
-                                if (hasTimeRangeOverlap(meta, keyRanges)) {
-                                    joinList.add(
-                                            new Project(
-                                                    new FragmentSource(meta),
-                                                    pathList,
-                                                    selectOperator.getTagFilter()));
-                                }
-                            });
-                    Operator operator = OperatorUtils.joinOperatorsByTime(joinList);
-                    if (operator != null) {
-                        unionList.add(operator);
+        // dummy 分片放在前面，与普通分片有重复列时以普通分片的值为准
+        List<Operator> mergeList = new ArrayList<>();
+        dummyFragments.forEach(
+                meta -> {
+                    if (meta.isValid() && hasTimeRangeOverlap(meta, keyRanges)) {
+                        mergeList.add(
+                                new Project(
+                                        new FragmentSource(meta),
+                                        pathList,
+                                        selectOperator.getTagFilter()));
                     }
                 });
-
-        Operator root = OperatorUtils.unionOperators(unionList);
-        if (!dummyFragments.isEmpty()) {
-            List<Operator> joinList = new ArrayList<>();
-            dummyFragments.forEach(
-                    meta -> {
-                        if (meta.isValid() && hasTimeRangeOverlap(meta, keyRanges)) {
-                            joinList.add(
-                                    new Project(
-                                            new FragmentSource(meta),
-                                            pathList,
-                                            selectOperator.getTagFilter()));
-                        }
-                    });
-            if (root != null) {
-                joinList.add(root);
-            }
-            root = OperatorUtils.joinOperatorsByTime(joinList);
-        }
+        fragments.forEach(
+                (k, v) ->
+                        v.forEach(
+                                meta -> {
+                                    if (hasTimeRangeOverlap(meta, keyRanges)) {
+                                        mergeList.add(
+                                                new Project(
+                                                        new FragmentSource(meta),
+                                                        pathList,
+                                                        selectOperator.getTagFilter()));
+                                    }
+                                }));
+        Operator root = OperatorUtils.mergeOperatorsByKey(mergeList);
         if (root != null) {
             selectOperator.setSource(new OperatorSource(root));
         }
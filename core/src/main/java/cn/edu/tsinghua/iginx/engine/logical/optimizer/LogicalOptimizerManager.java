@@ -15,6 +15,8 @@ public class LogicalOptimizerManager {
 
     private static final String FILTER_FRAGMENT = "filter_fragment";
 
+    private static final String AGGREGATE_PUSH_DOWN = "aggregate_push_down";
+
     private LogicalOptimizerManager() {}
 
     public static LogicalOptimizerManager getInstance() {
@@ -34,6 +36,8 @@ public class LogicalOptimizerManager {
                 return FilterPushDownOptimizer.getInstance();
             case FILTER_FRAGMENT:
                 return FilterFragmentOptimizer.getInstance();
+            case AGGREGATE_PUSH_DOWN:
+                return AggregatePushDownOptimizer.getInstance();
             default:
                 throw new IllegalArgumentException(
                         String.format("unknown logical optimizer: %s", name));
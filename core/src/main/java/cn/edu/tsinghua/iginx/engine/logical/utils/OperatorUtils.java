@@ -36,6 +36,17 @@ public class OperatorUtils {
         return join;
     }
 
+    /** 用一个 MergeByKey 按 key 合并所有输入，代替逐层嵌套的 Join 与 Union */
+    public static Operator mergeOperatorsByKey(List<Operator> operators) {
+        if (operators == null || operators.isEmpty()) return null;
+        if (operators.size() == 1) return operators.get(0);
+        List<Source> sources = new ArrayList<>();
+        for (Operator operator : operators) {
+            sources.add(new OperatorSource(operator));
+        }
+        return new MergeByKey(sources);
+    }
+
     public static List<String> findPathList(Operator operator) {
         List<Project> projectList = new ArrayList<>();
         findProjectOperators(projectList, operator);
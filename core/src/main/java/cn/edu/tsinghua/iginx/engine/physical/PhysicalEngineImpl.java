@@ -48,6 +48,8 @@ import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
 import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
 import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
 import cn.edu.tsinghua.iginx.metadata.entity.StorageUnitMeta;
+import cn.edu.tsinghua.iginx.resource.QueryMemoryAccountant;
+import cn.edu.tsinghua.iginx.resource.QueryResourceManager;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Bitmap;
 import cn.edu.tsinghua.iginx.utils.ByteUtils;
@@ -192,6 +194,8 @@ public class PhysicalEngineImpl implements PhysicalEngine {
         }
         PhysicalTask task = optimizer.optimize(root);
         ctx.setPhysicalTree(task);
+        setMemoryAccountant(
+                task, QueryResourceManager.getInstance().getMemoryAccountant(ctx.getId()));
         List<StoragePhysicalTask> storageTasks = new ArrayList<>();
         getStorageTasks(storageTasks, task);
         storageTaskExecutor.commit(storageTasks);
@@ -256,6 +260,27 @@ public class PhysicalEngineImpl implements PhysicalEngine {
         }
     }
 
+    private void setMemoryAccountant(PhysicalTask root, QueryMemoryAccountant accountant) {
+        if (root == null) {
+            return;
+        }
+        if (root instanceof MemoryPhysicalTask) {
+            ((MemoryPhysicalTask) root).setMemoryAccountant(accountant);
+        }
+        if (root.getType() == TaskType.BinaryMemory) {
+            BinaryMemoryPhysicalTask task = (BinaryMemoryPhysicalTask) root;
+            setMemoryAccountant(task.getParentTaskA(), accountant);
+            setMemoryAccountant(task.getParentTaskB(), accountant);
+        } else if (root.getType() == TaskType.UnaryMemory) {
+            setMemoryAccountant(((UnaryMemoryPhysicalTask) root).getParentTask(), accountant);
+        } else if (root.getType() == TaskType.MultipleMemory) {
+            MultipleMemoryPhysicalTask task = (MultipleMemoryPhysicalTask) root;
+            for (PhysicalTask parentTask : task.getParentTasks()) {
+                setMemoryAccountant(parentTask, accountant);
+            }
+        }
+    }
+
     @Override
     public ConstraintManager getConstraintManager() {
         return optimizer.getConstraintManager();
@@ -24,6 +24,7 @@ import cn.edu.tsinghua.iginx.engine.physical.memory.queue.MemoryPhysicalTaskQueu
 import cn.edu.tsinghua.iginx.engine.physical.memory.queue.MemoryPhysicalTaskQueueImpl;
 import cn.edu.tsinghua.iginx.engine.physical.task.MemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
+import cn.edu.tsinghua.iginx.resource.QueryMemoryAccountant;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.slf4j.Logger;
@@ -70,6 +71,9 @@ public class MemoryPhysicalTaskDispatcher {
                                         while (currentTask != null) {
                                             TaskExecuteResult result;
                                             long startTime = System.currentTimeMillis();
+                                            // 任务中创建的算子从线程上取得所属查询的内存 accountant
+                                            QueryMemoryAccountant.bind(
+                                                    currentTask.getMemoryAccountant());
                                             try {
                                                 result = currentTask.execute();
                                             } catch (Exception e) {
@@ -77,6 +81,8 @@ public class MemoryPhysicalTaskDispatcher {
                                                 result =
                                                         new TaskExecuteResult(
                                                                 new PhysicalException(e));
+                                            } finally {
+                                                QueryMemoryAccountant.unbind();
                                             }
                                             long span = System.currentTimeMillis() - startTime;
                                             currentTask.setSpan(span);
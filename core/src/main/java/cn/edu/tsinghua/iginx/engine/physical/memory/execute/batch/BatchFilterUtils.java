@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.ColumnVector;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowBatch;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.NotFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
+
+/**
+ * 对 RowBatch 整批计算过滤条件，结果与 {@link FilterUtils#validate} 逐行计算的结果一致。
+ * 无法向量化的条件（如 PathFilter、LIKE 以及通配符路径）会退化为逐行计算。
+ */
+public class BatchFilterUtils {
+
+    public static boolean[] validate(Filter filter, RowBatch batch) throws PhysicalException {
+        int size = batch.getSize();
+        boolean[] result = new boolean[size];
+        switch (filter.getType()) {
+            case Bool:
+                Arrays.fill(result, ((BoolFilter) filter).isTrue());
+                return result;
+            case And:
+                Arrays.fill(result, true);
+                for (Filter child : ((AndFilter) filter).getChildren()) {
+                    boolean[] childResult = validate(child, batch);
+                    for (int i = 0; i < size; i++) {
+                        result[i] &= childResult[i];
+                    }
+                }
+                return result;
+            case Or:
+                for (Filter child : ((OrFilter) filter).getChildren()) {
+                    boolean[] childResult = validate(child, batch);
+                    for (int i = 0; i < size; i++) {
+                        result[i] |= childResult[i];
+                    }
+                }
+                return result;
+            case Not:
+                boolean[] childResult = validate(((NotFilter) filter).getChild(), batch);
+                for (int i = 0; i < size; i++) {
+                    result[i] = !childResult[i];
+                }
+                return result;
+            case Key:
+                if (batch.getKeys() != null) {
+                    validateKeyFilter((KeyFilter) filter, batch.getKeys(), size, result);
+                }
+                return result;
+            case Value:
+                if (validateValueFilter((ValueFilter) filter, batch, result)) {
+                    return result;
+                }
+                break;
+            default:
+                break;
+        }
+        // 逐行计算
+        for (int i = 0; i < size; i++) {
+            result[i] = FilterUtils.validate(filter, batch.getRow(i));
+        }
+        return result;
+    }
+
+    private static void validateKeyFilter(
+            KeyFilter keyFilter, long[] keys, int size, boolean[] result) {
+        long value = keyFilter.getValue();
+        Op op = keyFilter.getOp();
+        if (op == Op.LIKE) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            result[i] =
+                    keys[i] != Row.NON_EXISTED_KEY && check(op, Long.compare(keys[i], value));
+        }
+    }
+
+    /** 成功完成向量化计算时返回 true，否则返回 false，由调用方退化为逐行计算。 */
+    private static boolean validateValueFilter(
+            ValueFilter valueFilter, RowBatch batch, boolean[] result) {
+        String path = valueFilter.getPath();
+        Value target = valueFilter.getValue();
+        Op op = valueFilter.getOp();
+        if (path.contains("*") || op == Op.LIKE) {
+            return false;
+        }
+        if (target.isNull()) { // targetValue是空值，则认为不可比较
+            return true;
+        }
+        int index = batch.getHeader().indexOf(path);
+        if (index == -1) {
+            return true;
+        }
+        ColumnVector column = batch.getColumn(index);
+        DataType type = column.getType();
+        if (!ValueUtils.isNumericType(type) || !ValueUtils.isNumericType(target)) {
+            return false;
+        }
+        int size = batch.getSize();
+        if (type != target.getDataType()) {
+            double value = ValueUtils.transformToDouble(target).getDoubleV();
+            for (int i = 0; i < size; i++) {
+                result[i] =
+                        !column.isNull(i)
+                                && check(op, Double.compare(column.getAsDouble(i), value));
+            }
+            return true;
+        }
+        switch (type) {
+            case INTEGER:
+                int intValue = target.getIntV();
+                for (int i = 0; i < size; i++) {
+                    result[i] =
+                            !column.isNull(i)
+                                    && check(op, Integer.compare(column.getInt(i), intValue));
+                }
+                break;
+            case LONG:
+                long longValue = target.getLongV();
+                for (int i = 0; i < size; i++) {
+                    result[i] =
+                            !column.isNull(i)
+                                    && check(op, Long.compare(column.getLong(i), longValue));
+                }
+                break;
+            case FLOAT:
+                float floatValue = target.getFloatV();
+                for (int i = 0; i < size; i++) {
+                    result[i] =
+                            !column.isNull(i)
+                                    && check(op, Float.compare(column.getFloat(i), floatValue));
+                }
+                break;
+            default:
+                double doubleValue = target.getDoubleV();
+                for (int i = 0; i < size; i++) {
+                    result[i] =
+                            !column.isNull(i)
+                                    && check(op, Double.compare(column.getDouble(i), doubleValue));
+                }
+                break;
+        }
+        return true;
+    }
+
+    private static boolean check(Op op, int cmp) {
+        switch (op) {
+            case E:
+                return cmp == 0;
+            case G:
+                return cmp > 0;
+            case L:
+                return cmp < 0;
+            case GE:
+                return cmp >= 0;
+            case LE:
+                return cmp <= 0;
+            case NE:
+                return cmp != 0;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.SortLazyStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.StreamOperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.BatchStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import java.util.List;
+
+/**
+ * 列式批量执行器：Project、Select、Limit 以及常见聚合函数的 Downsample 在 RowBatch 上执行，
+ * 其余算子回退到 StreamOperatorMemoryExecutor 逐行执行。
+ */
+public class BatchOperatorMemoryExecutor implements OperatorMemoryExecutor {
+
+    private final int batchSize;
+
+    private BatchOperatorMemoryExecutor() {
+        this.batchSize = ConfigDescriptor.getInstance().getConfig().getBatchExecutorRowNum();
+    }
+
+    public static BatchOperatorMemoryExecutor getInstance() {
+        return BatchOperatorMemoryExecutorHolder.INSTANCE;
+    }
+
+    @Override
+    public RowStream executeUnaryOperator(UnaryOperator operator, RowStream stream)
+            throws PhysicalException {
+        switch (operator.getType()) {
+            case Project:
+                return new BatchToRowStreamWrapper(
+                        new ProjectBatchStream(
+                                (Project) operator, toBatchStream(stream), batchSize));
+            case Select:
+                return new BatchToRowStreamWrapper(
+                        new SelectBatchStream((Select) operator, toBatchStream(stream), batchSize));
+            case Limit:
+                if (stream instanceof SortLazyStream) {
+                    // 交给流式执行器，以便使用排序的 top-N 路径
+                    return StreamOperatorMemoryExecutor.getInstance()
+                            .executeUnaryOperator(operator, stream);
+                }
+                return new BatchToRowStreamWrapper(
+                        new LimitBatchStream((Limit) operator, toBatchStream(stream), batchSize));
+            case Downsample:
+                return executeDownsample((Downsample) operator, stream);
+            default:
+                return StreamOperatorMemoryExecutor.getInstance()
+                        .executeUnaryOperator(operator, stream);
+        }
+    }
+
+    @Override
+    public RowStream executeBinaryOperator(
+            BinaryOperator operator, RowStream streamA, RowStream streamB)
+            throws PhysicalException {
+        return StreamOperatorMemoryExecutor.getInstance()
+                .executeBinaryOperator(operator, streamA, streamB);
+    }
+
+    @Override
+    public RowStream executeMultipleOperator(MultipleOperator operator, List<RowStream> streams)
+            throws PhysicalException {
+        return StreamOperatorMemoryExecutor.getInstance()
+                .executeMultipleOperator(operator, streams);
+    }
+
+    private RowStream executeDownsample(Downsample downsample, RowStream stream)
+            throws PhysicalException {
+        if (!stream.getHeader().hasKey()) {
+            throw new InvalidOperatorParameterException(
+                    "downsample operator is not support for row stream without timestamps.");
+        }
+        if (!DownsampleBatchStream.isSupported(downsample, stream.getHeader())) {
+            return StreamOperatorMemoryExecutor.getInstance()
+                    .executeUnaryOperator(downsample, stream);
+        }
+        return new BatchToRowStreamWrapper(
+                new DownsampleBatchStream(downsample, toBatchStream(stream), batchSize));
+    }
+
+    private BatchStream toBatchStream(RowStream stream) {
+        if (stream instanceof BatchToRowStreamWrapper) {
+            BatchStream batchStream = ((BatchToRowStreamWrapper) stream).unwrap();
+            if (batchStream != null) {
+                return batchStream;
+            }
+        }
+        return new RowToBatchStreamWrapper(stream, batchSize);
+    }
+
+    private static class BatchOperatorMemoryExecutorHolder {
+
+        private static final BatchOperatorMemoryExecutor INSTANCE =
+                new BatchOperatorMemoryExecutor();
+
+        private BatchOperatorMemoryExecutorHolder() {}
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.BatchStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowBatch;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+
+/** 将 BatchStream 暴露为 RowStream，供按行执行的算子以及结果集构造使用。 */
+public class BatchToRowStreamWrapper implements RowStream {
+
+    private final BatchStream stream;
+
+    private RowBatch batch;
+
+    private int index;
+
+    public BatchToRowStreamWrapper(BatchStream stream) {
+        this.stream = stream;
+    }
+
+    /** 若尚未按行消费过任何数据，则返回底层的 BatchStream，否则返回 null。 */
+    public BatchStream unwrap() {
+        return batch == null ? stream : null;
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+        return stream.getHeader();
+    }
+
+    @Override
+    public void close() throws PhysicalException {
+        stream.close();
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+        while (batch == null || index >= batch.getSize()) {
+            if (!stream.hasNext()) {
+                return false;
+            }
+            batch = stream.next();
+            index = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("row stream doesn't have more data!");
+        }
+        return batch.getRow(index++);
+    }
+}
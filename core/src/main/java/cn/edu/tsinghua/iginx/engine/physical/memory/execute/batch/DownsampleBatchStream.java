@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.BatchStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.ColumnVector;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowBatch;
+import cn.edu.tsinghua.iginx.engine.shared.function.Function;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.DataTypeUtils;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 列式的降采样实现，直接在基本类型数组上累加 avg/sum/count/max/min，输出结果与 DownsampleLazyStream
+ * 相同。其余函数以及按 level 聚合的查询仍由 DownsampleLazyStream 执行。
+ */
+public class DownsampleBatchStream extends UnaryBatchStream {
+
+    private final Downsample downsample;
+
+    private final String identifier;
+
+    private final long bias;
+
+    private final long precision;
+
+    private Header header;
+
+    private int[] indices;
+
+    private DataType[] inputTypes;
+
+    private DataType[] outputTypes;
+
+    private long[] counts;
+
+    private long[] longValues;
+
+    private double[] doubleValues;
+
+    private boolean windowOpened = false;
+
+    private long windowStart;
+
+    private RowBatch input;
+
+    private int position;
+
+    public DownsampleBatchStream(Downsample downsample, BatchStream stream, int batchSize) {
+        super(stream, batchSize);
+        this.downsample = downsample;
+        this.identifier = downsample.getFunctionCallList().get(0).getFunction().getIdentifier();
+        this.bias = downsample.getKeyRange().getActualBeginKey();
+        this.precision = downsample.getPrecision();
+    }
+
+    public static boolean isSupported(Downsample downsample, Header header) {
+        if (downsample.getFunctionCallList().size() != 1) {
+            return false;
+        }
+        Function function = downsample.getFunctionCallList().get(0).getFunction();
+        FunctionParams params = downsample.getFunctionCallList().get(0).getParams();
+        if (params.getLevels() != null
+                || params.getPaths() == null
+                || params.getPaths().size() != 1) {
+            return false;
+        }
+        if (function != Avg.getInstance()
+                && function != Sum.getInstance()
+                && function != Count.getInstance()
+                && function != Max.getInstance()
+                && function != Min.getInstance()) {
+            return false;
+        }
+        if (function == Count.getInstance()) {
+            return true;
+        }
+        // 非数值列交由原有实现处理（报错或按对象比较）
+        Pattern pattern = getPattern(params);
+        for (Field field : header.getFields()) {
+            if (pattern.matcher(field.getFullName()).matches()
+                    && !DataTypeUtils.isNumber(field.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Pattern getPattern(FunctionParams params) {
+        return Pattern.compile(StringUtils.reformatPath(params.getPaths().get(0)) + ".*");
+    }
+
+    private void initialize() throws PhysicalException {
+        if (header != null) {
+            return;
+        }
+        if (!stream.hasNext()) {
+            header = Header.EMPTY_HEADER;
+            indices = new int[0];
+            return;
+        }
+        Header inputHeader = stream.getHeader();
+        Pattern pattern = getPattern(downsample.getFunctionCallList().get(0).getParams());
+        List<Field> targetFields = new ArrayList<>();
+        List<Integer> targetIndices = new ArrayList<>();
+        for (int i = 0; i < inputHeader.getFieldSize(); i++) {
+            Field field = inputHeader.getField(i);
+            if (pattern.matcher(field.getFullName()).matches()) {
+                String name = identifier + "(" + field.getName() + ")";
+                String fullName = identifier + "(" + field.getFullName() + ")";
+                targetFields.add(new Field(name, fullName, getOutputType(field.getType())));
+                targetIndices.add(i);
+            }
+        }
+        int size = targetFields.size();
+        indices = new int[size];
+        inputTypes = new DataType[size];
+        outputTypes = new DataType[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = targetIndices.get(i);
+            inputTypes[i] = inputHeader.getField(indices[i]).getType();
+            outputTypes[i] = targetFields.get(i).getType();
+        }
+        counts = new long[size];
+        longValues = new long[size];
+        doubleValues = new double[size];
+        header = new Header(Field.KEY, targetFields);
+    }
+
+    private DataType getOutputType(DataType type) {
+        switch (identifier) {
+            case Avg.AVG:
+                return DataType.DOUBLE;
+            case Count.COUNT:
+                return DataType.LONG;
+            case Sum.SUM:
+                return DataTypeUtils.isWholeNumber(type) ? DataType.LONG : DataType.DOUBLE;
+            default:
+                return type;
+        }
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+        initialize();
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+        initialize();
+        return windowOpened || (input != null && position < input.getSize()) || stream.hasNext();
+    }
+
+    @Override
+    public RowBatch next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("batch stream doesn't have more data!");
+        }
+        RowBatch result = new RowBatch(header, batchSize);
+        while (!result.isFull()) {
+            if (input == null || position >= input.getSize()) {
+                if (!stream.hasNext()) {
+                    if (windowOpened) {
+                        emit(result);
+                    }
+                    break;
+                }
+                input = stream.next();
+                position = 0;
+            }
+            long[] keys = input.getKeys();
+            int size = input.getSize();
+            while (position < size) {
+                long key = keys[position];
+                if (windowOpened && key >= windowStart + precision) {
+                    emit(result);
+                    if (result.isFull()) {
+                        break;
+                    }
+                }
+                if (!windowOpened) {
+                    windowStart = key - (key - bias) % precision;
+                    windowOpened = true;
+                }
+                accumulate(input, position);
+                position++;
+            }
+        }
+        return result;
+    }
+
+    private void accumulate(RowBatch batch, int row) {
+        for (int i = 0; i < indices.length; i++) {
+            ColumnVector column = batch.getColumn(indices[i]);
+            if (column.isNull(row)) {
+                continue;
+            }
+            switch (identifier) {
+                case Count.COUNT:
+                    break;
+                case Avg.AVG:
+                    doubleValues[i] += column.getAsDouble(row);
+                    break;
+                case Sum.SUM:
+                    if (outputTypes[i] == DataType.LONG) {
+                        longValues[i] += getAsLong(column, row);
+                    } else {
+                        doubleValues[i] += column.getAsDouble(row);
+                    }
+                    break;
+                case Max.MAX:
+                    if (DataTypeUtils.isWholeNumber(inputTypes[i])) {
+                        long value = getAsLong(column, row);
+                        if (counts[i] == 0 || Long.compare(longValues[i], value) < 0) {
+                            longValues[i] = value;
+                        }
+                    } else {
+                        double value = column.getAsDouble(row);
+                        if (counts[i] == 0 || Double.compare(doubleValues[i], value) < 0) {
+                            doubleValues[i] = value;
+                        }
+                    }
+                    break;
+                default:
+                    if (DataTypeUtils.isWholeNumber(inputTypes[i])) {
+                        long value = getAsLong(column, row);
+                        if (counts[i] == 0 || Long.compare(longValues[i], value) > 0) {
+                            longValues[i] = value;
+                        }
+                    } else {
+                        double value = column.getAsDouble(row);
+                        if (counts[i] == 0 || Double.compare(doubleValues[i], value) > 0) {
+                            doubleValues[i] = value;
+                        }
+                    }
+                    break;
+            }
+            counts[i]++;
+        }
+    }
+
+    private static long getAsLong(ColumnVector column, int row) {
+        return column.getType() == DataType.INTEGER ? column.getInt(row) : column.getLong(row);
+    }
+
+    private void emit(RowBatch result) {
+        result.appendKey(windowStart);
+        for (int i = 0; i < indices.length; i++) {
+            ColumnVector column = result.getColumn(i);
+            switch (identifier) {
+                case Count.COUNT:
+                    column.appendLong(counts[i]);
+                    break;
+                case Avg.AVG:
+                    column.appendDouble(doubleValues[i] / counts[i]);
+                    break;
+                case Sum.SUM:
+                    if (outputTypes[i] == DataType.LONG) {
+                        column.appendLong(longValues[i]);
+                    } else {
+                        column.appendDouble(doubleValues[i]);
+                    }
+                    break;
+                default:
+                    if (counts[i] == 0) {
+                        column.appendNull();
+                        break;
+                    }
+                    switch (outputTypes[i]) {
+                        case INTEGER:
+                            column.appendInt((int) longValues[i]);
+                            break;
+                        case LONG:
+                            column.appendLong(longValues[i]);
+                            break;
+                        case FLOAT:
+                            column.appendFloat((float) doubleValues[i]);
+                            break;
+                        default:
+                            column.appendDouble(doubleValues[i]);
+                            break;
+                    }
+                    break;
+            }
+            counts[i] = 0;
+            longValues[i] = 0L;
+            doubleValues[i] = 0.0D;
+        }
+        windowOpened = false;
+    }
+}
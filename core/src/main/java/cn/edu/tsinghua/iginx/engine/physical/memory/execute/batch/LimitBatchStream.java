@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.BatchStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowBatch;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+
+public class LimitBatchStream extends UnaryBatchStream {
+
+    private final Limit limit;
+
+    private long index = 0;
+
+    private RowBatch nextBatch = null;
+
+    public LimitBatchStream(Limit limit, BatchStream stream, int batchSize) {
+        super(stream, batchSize);
+        this.limit = limit;
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+        return stream.getHeader();
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+        if (nextBatch == null) {
+            nextBatch = calculateNext();
+        }
+        return nextBatch != null;
+    }
+
+    private RowBatch calculateNext() throws PhysicalException {
+        long end = (long) limit.getOffset() + limit.getLimit();
+        while (index < end && stream.hasNext()) {
+            RowBatch batch = stream.next();
+            int size = batch.getSize();
+            long begin = index;
+            index += size;
+            // 整批位于 offset 之前，直接跳过
+            if (index <= limit.getOffset()) {
+                continue;
+            }
+            int from = (int) Math.max(0, limit.getOffset() - begin);
+            int to = (int) Math.min(size, end - begin);
+            if (from == 0 && to == size) {
+                return batch;
+            }
+            RowBatch result = new RowBatch(batch.getHeader(), to - from);
+            for (int i = from; i < to; i++) {
+                result.appendRow(batch, i);
+            }
+            return result;
+        }
+        return null;
+    }
+
+    @Override
+    public RowBatch next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("batch stream doesn't have more data!");
+        }
+        RowBatch batch = nextBatch;
+        nextBatch = null;
+        return batch;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.BatchStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.ColumnVector;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowBatch;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class ProjectBatchStream extends UnaryBatchStream {
+
+    private final Project project;
+
+    private Header header;
+
+    private int[] indices;
+
+    private RowBatch nextBatch = null;
+
+    public ProjectBatchStream(Project project, BatchStream stream, int batchSize) {
+        super(stream, batchSize);
+        this.project = project;
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+        if (header == null) {
+            List<String> patterns = project.getPatterns();
+            Header header = stream.getHeader();
+            List<Field> targetFields = new ArrayList<>();
+
+            for (Field field : header.getFields()) {
+                for (String pattern : patterns) {
+                    if (!StringUtils.isPattern(pattern)) {
+                        if (pattern.equals(field.getFullName())) {
+                            targetFields.add(field);
+                        }
+                    } else {
+                        if (Pattern.matches(
+                                StringUtils.reformatPath(pattern), field.getFullName())) {
+                            targetFields.add(field);
+                        }
+                    }
+                }
+            }
+            this.indices = new int[targetFields.size()];
+            for (int i = 0; i < targetFields.size(); i++) {
+                this.indices[i] = header.indexOf(targetFields.get(i));
+            }
+            this.header = new Header(header.getKey(), targetFields);
+        }
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+        if (nextBatch == null) {
+            nextBatch = calculateNext();
+        }
+        return nextBatch != null;
+    }
+
+    private RowBatch calculateNext() throws PhysicalException {
+        Header header = getHeader();
+        while (stream.hasNext()) {
+            RowBatch batch = stream.next();
+            int size = batch.getSize();
+            // 投影后所有列均为空的行需要被丢弃
+            boolean[] nonEmpty = new boolean[size];
+            int count = 0;
+            for (int index : indices) {
+                ColumnVector column = batch.getColumn(index);
+                for (int i = 0; i < size; i++) {
+                    if (!nonEmpty[i] && !column.isNull(i)) {
+                        nonEmpty[i] = true;
+                        count++;
+                    }
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            RowBatch result = new RowBatch(header, count);
+            for (int i = 0; i < size; i++) {
+                if (nonEmpty[i]) {
+                    result.appendRow(batch, i, indices);
+                }
+            }
+            return result;
+        }
+        return null;
+    }
+
+    @Override
+    public RowBatch next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("batch stream doesn't have more data!");
+        }
+        RowBatch batch = nextBatch;
+        nextBatch = null;
+        return batch;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.batch;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.BatchStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowBatch;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+
+public class SelectBatchStream extends UnaryBatchStream {
+
+    private final Select select;
+
+    private RowBatch nextBatch = null;
+
+    public SelectBatchStream(Select select, BatchStream stream, int batchSize) {
+        super(stream, batchSize);
+        this.select = select;
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+        return stream.getHeader();
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+        if (nextBatch == null) {
+            nextBatch = calculateNext();
+        }
+        return nextBatch != null;
+    }
+
+    private RowBatch calculateNext() throws PhysicalException {
+        while (stream.hasNext()) {
+            RowBatch batch = stream.next();
+            boolean[] selected = BatchFilterUtils.validate(select.getFilter(), batch);
+            int count = 0;
+            for (boolean b : selected) {
+                if (b) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            if (count == batch.getSize()) {
+                return batch;
+            }
+            RowBatch result = new RowBatch(batch.getHeader(), count);
+            for (int i = 0; i < selected.length; i++) {
+                if (selected[i]) {
+                    result.appendRow(batch, i);
+                }
+            }
+            return result;
+        }
+        return null;
+    }
+
+    @Override
+    public RowBatch next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("batch stream doesn't have more data!");
+        }
+        RowBatch batch = nextBatch;
+        nextBatch = null;
+        return batch;
+    }
+}
@@ -28,6 +28,7 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailur
 import cn.edu.tsinghua.iginx.engine.physical.exception.UnexpectedOperatorException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.MergeByKeyLazyStream;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.Constants;
@@ -39,7 +40,6 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
 import cn.edu.tsinghua.iginx.engine.shared.function.MappingFunction;
 import cn.edu.tsinghua.iginx.engine.shared.function.RowMappingFunction;
-import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.AddSchemaPrefix;
 import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
@@ -51,6 +51,8 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Join;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
 import cn.edu.tsinghua.iginx.engine.shared.operator.MappingTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.MarkJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MergeByKey;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Rename;
@@ -66,6 +68,7 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.FilterType;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Bitmap;
@@ -161,6 +164,19 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
         }
     }
 
+    @Override
+    public RowStream executeMultipleOperator(MultipleOperator operator, List<RowStream> streams)
+            throws PhysicalException {
+        if (operator.getType() == OperatorType.MergeByKey) {
+            List<Table> tables = new ArrayList<>();
+            for (RowStream stream : streams) {
+                tables.add(transformToTable(stream));
+            }
+            return executeMergeByKey((MergeByKey) operator, tables);
+        }
+        throw new UnexpectedOperatorException("unknown multiple operator: " + operator.getType());
+    }
+
     private Table transformToTable(RowStream stream) throws PhysicalException {
         if (stream instanceof Table) {
             return (Table) stream;
@@ -256,9 +272,6 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
         // startTime + (n - 1) * slideDistance + precision - 1 >= endTime
         int n = (int) (Math.ceil((double) (endTime - bias - precision + 1) / slideDistance) + 1);
         TreeMap<Long, List<Row>> groups = new TreeMap<>();
-        SetMappingFunction function =
-                (SetMappingFunction) downsample.getFunctionCall().getFunction();
-        FunctionParams params = downsample.getFunctionCall().getParams();
         if (precision == slideDistance) {
             for (Row row : rows) {
                 long timestamp = row.getKey() - (row.getKey() - bias) % precision;
@@ -281,21 +294,15 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
             }
         }
         List<Pair<Long, Row>> transformedRawRows = new ArrayList<>();
-        try {
-            for (Map.Entry<Long, List<Row>> entry : groups.entrySet()) {
-                long time = entry.getKey();
-                List<Row> group = entry.getValue();
-                Row row = function.transform(new Table(header, group), params);
-                if (row != null) {
-                    transformedRawRows.add(new Pair<>(time, row));
-                }
+        for (Map.Entry<Long, List<Row>> entry : groups.entrySet()) {
+            long time = entry.getKey();
+            List<Row> group = entry.getValue();
+            Row row =
+                    RowUtils.calculateSetMappingFunctions(
+                            new Table(header, group), downsample.getFunctionCallList());
+            if (row != null) {
+                transformedRawRows.add(new Pair<>(time, row));
             }
-        } catch (Exception e) {
-            throw new PhysicalTaskExecuteFailureException(
-                    "encounter error when execute set mapping function "
-                            + function.getIdentifier()
-                            + ".",
-                    e);
         }
         if (transformedRawRows.size() == 0) {
             return Table.EMPTY_TABLE;
@@ -362,23 +369,12 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
 
     private RowStream executeSetTransform(SetTransform setTransform, Table table)
             throws PhysicalException {
-        SetMappingFunction function =
-                (SetMappingFunction) setTransform.getFunctionCall().getFunction();
-        FunctionParams params = setTransform.getFunctionCall().getParams();
-        try {
-            Row row = function.transform(table, params);
-            if (row == null) {
-                return Table.EMPTY_TABLE;
-            }
-            Header header = row.getHeader();
-            return new Table(header, Collections.singletonList(row));
-        } catch (Exception e) {
-            throw new PhysicalTaskExecuteFailureException(
-                    "encounter error when execute set mapping function "
-                            + function.getIdentifier()
-                            + ".",
-                    e);
+        Row row = RowUtils.calculateSetMappingFunctions(table, setTransform.getFunctionCallList());
+        if (row == null) {
+            return Table.EMPTY_TABLE;
         }
+        Header header = row.getHeader();
+        return new Table(header, Collections.singletonList(row));
     }
 
     private RowStream executeMappingTransform(MappingTransform mappingTransform, Table table)
@@ -2277,11 +2273,14 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
         // 检查时间是否一致
         Header headerA = tableA.getHeader();
         Header headerB = tableB.getHeader();
-        if (headerA.hasKey() ^ headerB.hasKey()) {
+        // 空表头（例如没有数据时降采样的结果）可以与任意表头合并
+        if ((headerA.hasKey() ^ headerB.hasKey())
+                && !headerA.isEmpty()
+                && !headerB.isEmpty()) {
             throw new InvalidOperatorParameterException(
                     "row stream to be union must have same fields");
         }
-        boolean hasTimestamp = headerA.hasKey();
+        boolean hasTimestamp = headerA.hasKey() || headerB.hasKey();
         Set<Field> targetFieldSet = new HashSet<>();
         targetFieldSet.addAll(headerA.getFields());
         targetFieldSet.addAll(headerB.getFields());
@@ -2320,6 +2319,11 @@ public class NaiveOperatorMemoryExecutor implements OperatorMemoryExecutor {
         return new Table(targetHeader, rows);
     }
 
+    private RowStream executeMergeByKey(MergeByKey mergeByKey, List<Table> tables)
+            throws PhysicalException {
+        return transformToTable(new MergeByKeyLazyStream(mergeByKey, new ArrayList<>(tables)));
+    }
+
     private static class NaiveOperatorMemoryExecutorHolder {
 
         private static final NaiveOperatorMemoryExecutor INSTANCE =
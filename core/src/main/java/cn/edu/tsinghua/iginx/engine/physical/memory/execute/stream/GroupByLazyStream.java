@@ -7,11 +7,15 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailur
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.GroupByKey;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.SpillFile;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.SpillPartitions;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
+import cn.edu.tsinghua.iginx.resource.MemoryReservation;
+import cn.edu.tsinghua.iginx.resource.QueryMemoryAccountant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -20,6 +24,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,13 +43,29 @@ public class GroupByLazyStream extends UnaryLazyStream {
 
     private static final int BATCH_SIZE = 2000;
 
+    private static final int MAX_SPILL_DEPTH = 3;
+
     private final GroupBy groupBy;
 
+    private final int depth;
+
+    private final QueryMemoryAccountant accountant;
+
+    private final MemoryReservation reservation;
+
     private Table resultTable;
 
     public GroupByLazyStream(GroupBy groupBy, RowStream stream) {
+        this(groupBy, stream, 0, QueryMemoryAccountant.current());
+    }
+
+    private GroupByLazyStream(
+            GroupBy groupBy, RowStream stream, int depth, QueryMemoryAccountant accountant) {
         super(stream);
         this.groupBy = groupBy;
+        this.depth = depth;
+        this.accountant = accountant;
+        this.reservation = accountant.newReservation();
     }
 
     @Override
@@ -70,17 +91,26 @@ public class GroupByLazyStream extends UnaryLazyStream {
 
     private void cacheResult() throws PhysicalException {
         List<Row> rows = new ArrayList<>();
+        boolean overBudget = false;
         while (stream.hasNext() && rows.size() < config.getParallelGroupByRowsThreshold()) {
-            rows.add(stream.next());
+            Row row = stream.next();
+            rows.add(row);
+            if (!reservation.grow(SpillFile.estimateSize(row))) {
+                overBudget = true;
+                break;
+            }
         }
 
         List<Row> cache;
-        if (stream.hasNext()) {
+        if (overBudget && depth < MAX_SPILL_DEPTH) {
+            cache = spillCache(rows);
+        } else if (stream.hasNext()) {
             // more than threshold, use parallel cache.
             cache = parallelCache(rows);
         } else {
             cache = RowUtils.cacheGroupByResult(groupBy, new Table(stream.getHeader(), rows));
         }
+        reservation.close();
 
         Header newHeader;
         if (cache.isEmpty()) {
@@ -94,18 +124,9 @@ public class GroupByLazyStream extends UnaryLazyStream {
     private List<Row> parallelCache(List<Row> firstPartialRows) throws PhysicalException {
         // search the required fields
         Header header = stream.getHeader();
-        List<String> cols = groupBy.getGroupByCols();
-        int[] colIndex = new int[cols.size()];
+        int[] colIndex = getGroupByColIndex(header);
         List<Field> fields = new ArrayList<>();
-
-        int cur = 0;
-        for (String col : cols) {
-            int index = header.indexOf(col);
-            if (index == -1) {
-                throw new PhysicalTaskExecuteFailureException(
-                        String.format("Group by col [%s] not exist.", col));
-            }
-            colIndex[cur++] = index;
+        for (int index : colIndex) {
             fields.add(header.getField(index));
         }
 
@@ -120,6 +141,7 @@ public class GroupByLazyStream extends UnaryLazyStream {
 
         Map<GroupByKey, List<Row>> groups = new ConcurrentHashMap<>();
         CountDownLatch latch = new CountDownLatch(WORKER_NUM);
+        AtomicBoolean overBudget = new AtomicBoolean(false);
 
         for (int i = 0; i < WORKER_NUM; i++) {
             int workerIndex = i;
@@ -132,10 +154,19 @@ public class GroupByLazyStream extends UnaryLazyStream {
                                 // parallel get batch rows and then calculate hash value.
                                 lock.lock();
                                 int getRowCnt = 0;
-                                while (getRowCnt < BATCH_SIZE && stream.hasNext()) {
-                                    list.add(stream.next());
+                                long batchSize = 0;
+                                while (!overBudget.get()
+                                        && getRowCnt < BATCH_SIZE
+                                        && stream.hasNext()) {
+                                    Row row = stream.next();
+                                    list.add(row);
+                                    batchSize += SpillFile.estimateSize(row);
                                     getRowCnt++;
                                 }
+                                // 超出预算后不再读取，已读取的行在溢写时处理
+                                if (depth < MAX_SPILL_DEPTH && !reservation.grow(batchSize)) {
+                                    overBudget.set(true);
+                                }
                                 lock.unlock();
 
                                 if (list.isEmpty()) { // no more lines
@@ -182,10 +213,87 @@ public class GroupByLazyStream extends UnaryLazyStream {
                     "encounter error when wait for parallel build: ", e);
         }
 
+        if (overBudget.get()) {
+            List<Row> buffered = new ArrayList<>();
+            groups.values().forEach(buffered::addAll);
+            groups.clear();
+            return spillCache(buffered);
+        }
+
         try {
             return RowUtils.applyFunc(groupBy, fields, header, groups);
         } catch (PhysicalTaskExecuteFailureException e) {
             throw new PhysicalTaskExecuteFailureException("encounter error when apply func: ", e);
         }
     }
+
+    private int[] getGroupByColIndex(Header header) throws PhysicalException {
+        List<String> cols = groupBy.getGroupByCols();
+        int[] colIndex = new int[cols.size()];
+        int cur = 0;
+        for (String col : cols) {
+            int index = header.indexOf(col);
+            if (index == -1) {
+                throw new PhysicalTaskExecuteFailureException(
+                        String.format("Group by col [%s] not exist.", col));
+            }
+            colIndex[cur++] = index;
+        }
+        return colIndex;
+    }
+
+    /** 超出内存预算时按分组列的哈希值把输入分区溢写，逐个分区分组后拼接结果 */
+    private List<Row> spillCache(List<Row> bufferedRows) throws PhysicalException {
+        Header header = stream.getHeader();
+        int[] colIndex = getGroupByColIndex(header);
+        int partitionNum = config.getSpillPartitionNum();
+        logger.info("spill group by into {} partitions at depth {}", partitionNum, depth);
+        try (SpillPartitions partitions =
+                new SpillPartitions(header, partitionNum, (depth + 1) * 0x5BD1E995)) {
+            for (Row row : bufferedRows) {
+                partitions.add(hashOf(row, colIndex), row);
+            }
+            bufferedRows.clear();
+            reservation.close();
+            while (stream.hasNext()) {
+                Row row = stream.next();
+                partitions.add(hashOf(row, colIndex), row);
+            }
+            partitions.finishWrite();
+
+            List<Row> result = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                GroupByLazyStream partition =
+                        new GroupByLazyStream(groupBy, partitions.get(i), depth + 1, accountant);
+                while (partition.hasNext()) {
+                    result.add(partition.next());
+                }
+                partition.close();
+            }
+            return result;
+        }
+    }
+
+    private static int hashOf(Row row, int[] colIndex) {
+        Object[] values = row.getValues();
+        List<Object> hashValues = new ArrayList<>(colIndex.length);
+        for (int index : colIndex) {
+            if (values[index] instanceof byte[]) {
+                hashValues.add(new String((byte[]) values[index]));
+            } else if (values[index] instanceof Number
+                    && ((Number) values[index]).doubleValue() == 0.0) {
+                // 与 RowHashTable 一致，0.0 与 -0.0 落入同一分区
+                hashValues.add(0);
+            } else {
+                hashValues.add(values[index]);
+            }
+        }
+        return hashValues.hashCode();
+    }
+
+    @Override
+    public void close() throws PhysicalException {
+        reservation.close();
+        super.close();
+    }
 }
@@ -3,12 +3,11 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowHashTable;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
-import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.FilterType;
@@ -16,10 +15,8 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -27,7 +24,7 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
 
     private final InnerJoin innerJoin;
 
-    private final HashMap<Integer, List<Row>> streamBHashMap;
+    private RowHashTable streamBHashTable;
 
     private final Deque<Row> cache;
 
@@ -35,18 +32,17 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
 
     private int index;
 
+    private int indexA;
+
     private boolean hasInitialized = false;
 
     private String joinColumnA;
 
     private String joinColumnB;
 
-    private boolean needTypeCast = false;
-
     public HashInnerJoinLazyStream(InnerJoin innerJoin, RowStream streamA, RowStream streamB) {
         super(streamA, streamB);
         this.innerJoin = innerJoin;
-        this.streamBHashMap = new HashMap<>();
         this.cache = new LinkedList<>();
     }
 
@@ -100,31 +96,14 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
         }
         this.index = headerB.indexOf(innerJoin.getPrefixB() + '.' + joinColumnB);
 
-        int indexA = headerA.indexOf(innerJoin.getPrefixA() + '.' + joinColumnA);
+        this.indexA = headerA.indexOf(innerJoin.getPrefixA() + '.' + joinColumnA);
         DataType dataTypeA = headerA.getField(indexA).getType();
         DataType dataTypeB = headerB.getField(index).getType();
-        if (ValueUtils.isNumericType(dataTypeA) && ValueUtils.isNumericType(dataTypeB)) {
-            this.needTypeCast = true;
-        }
 
+        this.streamBHashTable = new RowHashTable(dataTypeB, dataTypeA);
         while (streamB.hasNext()) {
             Row rowB = streamB.next();
-            Value value = rowB.getAsValue(innerJoin.getPrefixB() + '.' + joinColumnB);
-            if (value == null) {
-                continue;
-            }
-            if (needTypeCast) {
-                value = ValueUtils.transformToDouble(value);
-            }
-            int hash;
-            if (value.getDataType() == DataType.BINARY) {
-                hash = Arrays.hashCode(value.getBinaryV());
-            } else {
-                hash = value.getValue().hashCode();
-            }
-            List<Row> rows = streamBHashMap.getOrDefault(hash, new ArrayList<>());
-            rows.add(rowB);
-            streamBHashMap.putIfAbsent(hash, rows);
+            streamBHashTable.put(rowB, rowB.getValue(index));
         }
 
         if (filter != null) { // Join condition: on
@@ -168,23 +147,12 @@ public class HashInnerJoinLazyStream extends BinaryLazyStream {
     private void tryMatch() throws PhysicalException {
         Row rowA = streamA.next();
 
-        Value value = rowA.getAsValue(innerJoin.getPrefixA() + '.' + joinColumnA);
-        if (value == null) {
-            return;
-        }
-        if (needTypeCast) {
-            value = ValueUtils.transformToDouble(value);
-        }
-        int hash;
-        if (value.getDataType() == DataType.BINARY) {
-            hash = Arrays.hashCode(value.getBinaryV());
-        } else {
-            hash = value.getValue().hashCode();
-        }
-
-        if (streamBHashMap.containsKey(hash)) {
-            List<Row> rowsB = streamBHashMap.get(hash);
-            for (Row rowB : rowsB) {
+        int keyId = streamBHashTable.get(rowA.getValue(indexA));
+        if (keyId != -1) {
+            for (int rowId = streamBHashTable.getRowStart(keyId);
+                    rowId < streamBHashTable.getRowEnd(keyId);
+                    rowId++) {
+                Row rowB = streamBHashTable.getRow(rowId);
                 if (innerJoin.getFilter() != null) {
                     Row row = RowUtils.constructNewRow(header, rowA, rowB);
                     if (FilterUtils.validate(innerJoin.getFilter(), row)) {
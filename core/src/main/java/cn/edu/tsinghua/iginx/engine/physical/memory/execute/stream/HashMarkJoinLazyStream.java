@@ -4,36 +4,29 @@ import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterU
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils.constructNewHead;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowHashTable;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
-import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.MarkJoin;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
 
 public class HashMarkJoinLazyStream extends BinaryLazyStream {
 
     private final MarkJoin markJoin;
-    private final HashMap<Integer, List<Row>> streamBHashMap;
+    private RowHashTable streamBHashTable;
     private final Deque<Row> cache;
     private Header header;
     private boolean hasInitialized = false;
-    private String joinPathA;
-    private boolean needTypeCast = false;
+    private int joinIndexA;
 
     public HashMarkJoinLazyStream(MarkJoin markJoin, RowStream streamA, RowStream streamB) {
         super(streamA, streamB);
         this.markJoin = markJoin;
-        this.streamBHashMap = new HashMap<>();
         this.cache = new LinkedList<>();
     }
 
@@ -42,35 +35,16 @@ public class HashMarkJoinLazyStream extends BinaryLazyStream {
         Pair<String, String> joinPath =
                 getJoinPathFromFilter(
                         markJoin.getFilter(), streamA.getHeader(), streamB.getHeader());
-        this.joinPathA = joinPath.k;
-        String joinPathB = joinPath.v;
+        this.joinIndexA = streamA.getHeader().indexOf(joinPath.k);
+        int joinIndexB = streamB.getHeader().indexOf(joinPath.v);
 
-        DataType dataType1 =
-                streamA.getHeader().getField(streamA.getHeader().indexOf(joinPathA)).getType();
-        DataType dataType2 =
-                streamB.getHeader().getField(streamB.getHeader().indexOf(joinPathB)).getType();
-        if (ValueUtils.isNumericType(dataType1) && ValueUtils.isNumericType(dataType2)) {
-            this.needTypeCast = true;
-        }
+        DataType dataTypeA = streamA.getHeader().getField(joinIndexA).getType();
+        DataType dataTypeB = streamB.getHeader().getField(joinIndexB).getType();
 
+        this.streamBHashTable = new RowHashTable(dataTypeB, dataTypeA);
         while (streamB.hasNext()) {
             Row rowB = streamB.next();
-            Value value = rowB.getAsValue(joinPathB);
-            if (value == null) {
-                continue;
-            }
-            if (needTypeCast) {
-                value = ValueUtils.transformToDouble(value);
-            }
-            int hash;
-            if (value.getDataType() == DataType.BINARY) {
-                hash = Arrays.hashCode(value.getBinaryV());
-            } else {
-                hash = value.getValue().hashCode();
-            }
-            List<Row> rows = streamBHashMap.getOrDefault(hash, new ArrayList<>());
-            rows.add(rowB);
-            streamBHashMap.putIfAbsent(hash, rows);
+            streamBHashTable.put(rowB, rowB.getValue(joinIndexB));
         }
         this.hasInitialized = true;
     }
@@ -97,21 +71,8 @@ public class HashMarkJoinLazyStream extends BinaryLazyStream {
     private void tryMatch() throws PhysicalException {
         Row rowA = streamA.next();
 
-        Value value = rowA.getAsValue(joinPathA);
-        if (value == null) {
-            return;
-        }
-        if (needTypeCast) {
-            value = ValueUtils.transformToDouble(value);
-        }
-        int hash;
-        if (value.getDataType() == DataType.BINARY) {
-            hash = Arrays.hashCode(value.getBinaryV());
-        } else {
-            hash = value.getValue().hashCode();
-        }
-
-        if (streamBHashMap.containsKey(hash)) {
+        int keyId = streamBHashTable.get(rowA.getValue(joinIndexA));
+        if (keyId != -1) {
             Row returnRow = RowUtils.constructNewRowWithMark(header, rowA, !markJoin.isAntiJoin());
             cache.add(returnRow);
         } else {
@@ -3,12 +3,11 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowHashTable;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
-import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.FilterType;
@@ -17,26 +16,23 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 public class HashOuterJoinLazyStream extends BinaryLazyStream {
 
     private final OuterJoin outerJoin;
 
-    private final HashMap<Integer, List<Row>> streamBHashMap;
-
-    private final List<Integer> streamBHashPutOrder;
+    private RowHashTable streamBHashTable;
 
     private final List<Row> unmatchedStreamARows; // 未被匹配过的StreamA的行
 
-    private final Set<Integer> matchedStreamBRowHashSet; // 已被匹配过的StreamB的行
+    private final List<Row> nullKeyStreamBRows; // join 列为空、不会被匹配的StreamB的行
+
+    private final BitSet matchedStreamBKeys; // 已被匹配过的StreamB的key id
 
     private final Deque<Row> cache;
 
@@ -44,6 +40,8 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
 
     private int index;
 
+    private int joinIndexA;
+
     private boolean hasInitialized = false;
 
     private boolean lastPartHasInitialized = false; // 外连接未匹配部分是否被初始化
@@ -52,15 +50,12 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
 
     private String joinColumnB;
 
-    private boolean needTypeCast = false;
-
     public HashOuterJoinLazyStream(OuterJoin outerJoin, RowStream streamA, RowStream streamB) {
         super(streamA, streamB);
         this.outerJoin = outerJoin;
-        this.streamBHashMap = new HashMap<>();
-        this.streamBHashPutOrder = new LinkedList<>();
         this.unmatchedStreamARows = new ArrayList<>();
-        this.matchedStreamBRowHashSet = new HashSet<>();
+        this.nullKeyStreamBRows = new ArrayList<>();
+        this.matchedStreamBKeys = new BitSet();
         this.cache = new LinkedList<>();
     }
 
@@ -114,41 +109,22 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
             }
         }
 
-        int indexAnother;
+        this.joinIndexA = headerA.indexOf(outerJoin.getPrefixA() + '.' + joinColumnA);
+        int joinIndexB = headerB.indexOf(outerJoin.getPrefixB() + '.' + joinColumnB);
         if (outerJoinType == OuterJoinType.RIGHT) {
-            this.index = headerA.indexOf(outerJoin.getPrefixA() + '.' + joinColumnA);
-            indexAnother = headerB.indexOf(outerJoin.getPrefixB() + '.' + joinColumnB);
+            this.index = joinIndexA;
         } else {
-            this.index = headerB.indexOf(outerJoin.getPrefixB() + '.' + joinColumnB);
-            indexAnother = headerA.indexOf(outerJoin.getPrefixA() + '.' + joinColumnA);
+            this.index = joinIndexB;
         }
 
-        DataType dataType1 = headerA.getField(indexAnother).getType();
-        DataType dataType2 = headerB.getField(index).getType();
-        if (ValueUtils.isNumericType(dataType1) && ValueUtils.isNumericType(dataType2)) {
-            this.needTypeCast = true;
-        }
+        DataType dataTypeA = headerA.getField(joinIndexA).getType();
+        DataType dataTypeB = headerB.getField(joinIndexB).getType();
 
+        this.streamBHashTable = new RowHashTable(dataTypeB, dataTypeA);
         while (streamB.hasNext()) {
             Row rowB = streamB.next();
-            Value value = rowB.getAsValue(outerJoin.getPrefixB() + '.' + joinColumnB);
-            if (value == null) {
-                continue;
-            }
-            if (needTypeCast) {
-                value = ValueUtils.transformToDouble(value);
-            }
-            int hash;
-            if (value.getDataType() == DataType.BINARY) {
-                hash = Arrays.hashCode(value.getBinaryV());
-            } else {
-                hash = value.getValue().hashCode();
-            }
-            List<Row> rows = streamBHashMap.getOrDefault(hash, new ArrayList<>());
-            rows.add(rowB);
-            streamBHashMap.putIfAbsent(hash, rows);
-            if (rows.size() == 1) {
-                streamBHashPutOrder.add(hash);
+            if (streamBHashTable.put(rowB, rowB.getValue(joinIndexB)) == -1) {
+                nullKeyStreamBRows.add(rowB);
             }
         }
 
@@ -210,17 +186,24 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
             if (outerJoin.getFilter() == null) {
                 anotherRowSize -= 1;
             }
-            for (int hash : streamBHashPutOrder) {
-                if (!matchedStreamBRowHashSet.contains(hash)) {
-                    List<Row> unmatchedRows = streamBHashMap.get(hash);
-                    for (Row halfRow : unmatchedRows) {
-                        Row unmatchedRow =
-                                RowUtils.constructUnmatchedRow(
-                                        header, halfRow, anotherRowSize, false);
-                        cache.add(unmatchedRow);
-                    }
+            for (int keyId = 0; keyId < streamBHashTable.getKeyCount(); keyId++) {
+                if (matchedStreamBKeys.get(keyId)) {
+                    continue;
+                }
+                for (int rowId = streamBHashTable.getRowStart(keyId);
+                        rowId < streamBHashTable.getRowEnd(keyId);
+                        rowId++) {
+                    Row unmatchedRow =
+                            RowUtils.constructUnmatchedRow(
+                                    header, streamBHashTable.getRow(rowId), anotherRowSize, false);
+                    cache.add(unmatchedRow);
                 }
             }
+            for (Row halfRow : nullKeyStreamBRows) {
+                Row unmatchedRow =
+                        RowUtils.constructUnmatchedRow(header, halfRow, anotherRowSize, false);
+                cache.add(unmatchedRow);
+            }
         }
         this.lastPartHasInitialized = true;
     }
@@ -250,23 +233,12 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
     private void tryMatch() throws PhysicalException {
         Row rowA = streamA.next();
 
-        Value value = rowA.getAsValue(outerJoin.getPrefixA() + '.' + joinColumnA);
-        if (value == null) {
-            return;
-        }
-        if (needTypeCast) {
-            value = ValueUtils.transformToDouble(value);
-        }
-        int hash;
-        if (value.getDataType() == DataType.BINARY) {
-            hash = Arrays.hashCode(value.getBinaryV());
-        } else {
-            hash = value.getValue().hashCode();
-        }
-
-        if (streamBHashMap.containsKey(hash)) {
-            List<Row> rowsB = streamBHashMap.get(hash);
-            for (Row rowB : rowsB) {
+        int keyId = streamBHashTable.get(rowA.getValue(joinIndexA));
+        if (keyId != -1) {
+            for (int rowId = streamBHashTable.getRowStart(keyId);
+                    rowId < streamBHashTable.getRowEnd(keyId);
+                    rowId++) {
+                Row rowB = streamBHashTable.getRow(rowId);
                 if (outerJoin.getFilter() != null) {
                     Row row = RowUtils.constructNewRow(header, rowA, rowB);
                     if (FilterUtils.validate(outerJoin.getFilter(), row)) {
@@ -284,7 +256,7 @@ public class HashOuterJoinLazyStream extends BinaryLazyStream {
                     cache.addLast(row);
                 }
             }
-            matchedStreamBRowHashSet.add(hash);
+            matchedStreamBKeys.set(keyId);
         } else {
             unmatchedStreamARows.add(rowA);
         }
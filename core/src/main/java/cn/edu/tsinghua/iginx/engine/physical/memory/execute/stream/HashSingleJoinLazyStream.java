@@ -3,36 +3,29 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils.getJoinPathFromFilter;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowHashTable;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
-import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
-import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
 
 public class HashSingleJoinLazyStream extends BinaryLazyStream {
 
     private final SingleJoin singleJoin;
-    private final HashMap<Integer, List<Row>> streamBHashMap;
+    private RowHashTable streamBHashTable;
     private final Deque<Row> cache;
     private Header header;
     private boolean hasInitialized = false;
-    private String joinPathA;
-    private boolean needTypeCast = false;
+    private int joinIndexA;
 
     public HashSingleJoinLazyStream(SingleJoin singleJoin, RowStream streamA, RowStream streamB) {
         super(streamA, streamB);
         this.singleJoin = singleJoin;
-        this.streamBHashMap = new HashMap<>();
         this.cache = new LinkedList<>();
     }
 
@@ -41,35 +34,16 @@ public class HashSingleJoinLazyStream extends BinaryLazyStream {
         Pair<String, String> joinPath =
                 getJoinPathFromFilter(
                         singleJoin.getFilter(), streamA.getHeader(), streamB.getHeader());
-        this.joinPathA = joinPath.k;
-        String joinPathB = joinPath.v;
+        this.joinIndexA = streamA.getHeader().indexOf(joinPath.k);
+        int joinIndexB = streamB.getHeader().indexOf(joinPath.v);
 
-        DataType dataType1 =
-                streamA.getHeader().getField(streamA.getHeader().indexOf(joinPathA)).getType();
-        DataType dataType2 =
-                streamB.getHeader().getField(streamB.getHeader().indexOf(joinPathB)).getType();
-        if (ValueUtils.isNumericType(dataType1) && ValueUtils.isNumericType(dataType2)) {
-            this.needTypeCast = true;
-        }
+        DataType dataTypeA = streamA.getHeader().getField(joinIndexA).getType();
+        DataType dataTypeB = streamB.getHeader().getField(joinIndexB).getType();
 
+        this.streamBHashTable = new RowHashTable(dataTypeB, dataTypeA);
         while (streamB.hasNext()) {
             Row rowB = streamB.next();
-            Value value = rowB.getAsValue(joinPathB);
-            if (value == null) {
-                continue;
-            }
-            if (needTypeCast) {
-                value = ValueUtils.transformToDouble(value);
-            }
-            int hash;
-            if (value.getDataType() == DataType.BINARY) {
-                hash = Arrays.hashCode(value.getBinaryV());
-            } else {
-                hash = value.getValue().hashCode();
-            }
-            List<Row> rows = streamBHashMap.getOrDefault(hash, new ArrayList<>());
-            rows.add(rowB);
-            streamBHashMap.putIfAbsent(hash, rows);
+            streamBHashTable.put(rowB, rowB.getValue(joinIndexB));
         }
 
         this.hasInitialized = true;
@@ -97,24 +71,12 @@ public class HashSingleJoinLazyStream extends BinaryLazyStream {
     private void tryMatch() throws PhysicalException {
         Row rowA = streamA.next();
 
-        Value value = rowA.getAsValue(joinPathA);
-        if (value == null) {
-            return;
-        }
-        if (needTypeCast) {
-            value = ValueUtils.transformToDouble(value);
-        }
-        int hash;
-        if (value.getDataType() == DataType.BINARY) {
-            hash = Arrays.hashCode(value.getBinaryV());
-        } else {
-            hash = value.getValue().hashCode();
-        }
-
-        if (streamBHashMap.containsKey(hash)) {
-            List<Row> hashRowsB = streamBHashMap.get(hash);
-            if (hashRowsB.size() == 1) {
-                Row joinedRow = RowUtils.constructNewRow(header, rowA, hashRowsB.get(0), true);
+        int keyId = streamBHashTable.get(rowA.getValue(joinIndexA));
+        if (keyId != -1) {
+            int rowId = streamBHashTable.getRowStart(keyId);
+            if (streamBHashTable.getRowEnd(keyId) - rowId == 1) {
+                Row rowB = streamBHashTable.getRow(rowId);
+                Row joinedRow = RowUtils.constructNewRow(header, rowA, rowB, true);
                 cache.add(joinedRow);
             } else {
                 throw new PhysicalException("the return value of sub-query has more than one rows");
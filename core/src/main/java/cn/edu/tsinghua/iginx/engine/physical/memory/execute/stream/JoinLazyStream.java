@@ -41,8 +41,6 @@ public class JoinLazyStream extends BinaryLazyStream {
 
     private boolean hasInitialized = false;
 
-    private boolean hasIntersect = false;
-
     private Map<Field, Integer> fieldIndices;
 
     private Header header;
@@ -77,31 +75,22 @@ public class JoinLazyStream extends BinaryLazyStream {
         }
         Header headerA = streamA.getHeader();
         Header headerB = streamB.getHeader();
+        // 无论两侧 field 是否有交集，buildRow 都依赖 fieldIndices 定位输出列
+        List<Field> newFields = new ArrayList<>();
+        fieldIndices = new HashMap<>();
         for (Field field : headerA.getFields()) {
-            if (headerB.indexOf(field) != -1) { // 二者的 field 存在交集
-                hasIntersect = true;
+            if (fieldIndices.containsKey(field)) {
+                continue;
             }
+            fieldIndices.put(field, newFields.size());
+            newFields.add(field);
         }
-        List<Field> newFields = new ArrayList<>();
-        if (hasIntersect) {
-            fieldIndices = new HashMap<>();
-            for (Field field : headerA.getFields()) {
-                if (fieldIndices.containsKey(field)) {
-                    continue;
-                }
-                fieldIndices.put(field, newFields.size());
-                newFields.add(field);
-            }
-            for (Field field : headerB.getFields()) {
-                if (fieldIndices.containsKey(field)) {
-                    continue;
-                }
-                fieldIndices.put(field, newFields.size());
-                newFields.add(field);
+        for (Field field : headerB.getFields()) {
+            if (fieldIndices.containsKey(field)) {
+                continue;
             }
-        } else {
-            newFields.addAll(headerA.getFields());
-            newFields.addAll(headerB.getFields());
+            fieldIndices.put(field, newFields.size());
+            newFields.add(field);
         }
 
         if (joinByTime) {
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.InvalidOperatorParameterException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MergeByKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/** 用小顶堆对多个按 key 有序的输入做一次多路归并，每个输入的列到输出列的映射在初始化时算好 */
+public class MergeByKeyLazyStream extends MultipleLazyStream {
+
+    private final MergeByKey mergeByKey;
+
+    private boolean hasInitialized = false;
+
+    private Header header;
+
+    // indexMappings[i][j] 为第 i 个输入的第 j 列在输出中的位置
+    private int[][] indexMappings;
+
+    // 每个输入当前未消费的行
+    private Row[] heads;
+
+    // 按 (key, 输入序号) 排序，相同 key 时靠前的输入先写入，靠后的输入覆盖
+    private PriorityQueue<Integer> queue;
+
+    public MergeByKeyLazyStream(MergeByKey mergeByKey, List<RowStream> streams) {
+        super(streams);
+        this.mergeByKey = mergeByKey;
+    }
+
+    private void initialize() throws PhysicalException {
+        if (hasInitialized) {
+            return;
+        }
+        Map<Field, Integer> fieldIndices = new HashMap<>();
+        List<Field> newFields = new ArrayList<>();
+        indexMappings = new int[streams.size()][];
+        boolean hasKey = false;
+        for (int i = 0; i < streams.size(); i++) {
+            Header streamHeader = streams.get(i).getHeader();
+            // 空表头（例如没有数据时降采样的结果）可以与任意表头合并
+            if (!streamHeader.hasKey() && !streamHeader.isEmpty()) {
+                throw new InvalidOperatorParameterException(
+                        "row streams for merge by key should have key.");
+            }
+            hasKey |= streamHeader.hasKey();
+            List<Field> fields = streamHeader.getFields();
+            int[] indexMapping = new int[fields.size()];
+            for (int j = 0; j < fields.size(); j++) {
+                Integer index = fieldIndices.get(fields.get(j));
+                if (index == null) {
+                    index = newFields.size();
+                    fieldIndices.put(fields.get(j), index);
+                    newFields.add(fields.get(j));
+                }
+                indexMapping[j] = index;
+            }
+            indexMappings[i] = indexMapping;
+        }
+        header = hasKey ? new Header(Field.KEY, newFields) : new Header(newFields);
+
+        heads = new Row[streams.size()];
+        queue =
+                new PriorityQueue<>(
+                        Math.max(1, streams.size()),
+                        (o1, o2) -> {
+                            int cmp = Long.compare(heads[o1].getKey(), heads[o2].getKey());
+                            return cmp != 0 ? cmp : Integer.compare(o1, o2);
+                        });
+        for (int i = 0; i < streams.size(); i++) {
+            advance(i);
+        }
+        hasInitialized = true;
+    }
+
+    private void advance(int index) throws PhysicalException {
+        RowStream stream = streams.get(index);
+        if (stream.hasNext()) {
+            heads[index] = stream.next();
+            queue.add(index);
+        } else {
+            heads[index] = null;
+        }
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+        if (!hasInitialized) {
+            initialize();
+        }
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+        if (!hasInitialized) {
+            initialize();
+        }
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("row stream doesn't have more data!");
+        }
+        int index = queue.poll();
+        long key = heads[index].getKey();
+        Object[] values = new Object[header.getFieldSize()];
+        writeToNewRow(values, index);
+        while (!queue.isEmpty() && heads[queue.peek()].getKey() == key) {
+            writeToNewRow(values, queue.poll());
+        }
+        return new Row(header, key, values);
+    }
+
+    // 写入第 index 个输入的当前行，并推进该输入
+    private void writeToNewRow(Object[] values, int index) throws PhysicalException {
+        Object[] rowValues = heads[index].getValues();
+        int[] indexMapping = indexMappings[index];
+        for (int i = 0; i < rowValues.length; i++) {
+            if (rowValues[i] != null) {
+                values[indexMapping[i]] = rowValues[i];
+            }
+        }
+        advance(index);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import java.util.List;
+
+public abstract class MultipleLazyStream implements RowStream {
+
+    protected final List<RowStream> streams;
+
+    public MultipleLazyStream(List<RowStream> streams) {
+        this.streams = streams;
+    }
+
+    @Override
+    public void close() throws PhysicalException {
+        PhysicalException pe = null;
+        for (RowStream stream : streams) {
+            try {
+                stream.close();
+            } catch (PhysicalException e) {
+                pe = e;
+            }
+        }
+        if (pe != null) {
+            throw pe;
+        }
+    }
+}
@@ -20,20 +20,22 @@ package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
 import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.MergePartialAggregate;
 import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import java.util.List;
 
 public class SetTransformLazyStream extends UnaryLazyStream {
 
     private final SetTransform setTransform;
 
-    private final SetMappingFunction function;
-
-    private final FunctionParams params;
+    private final List<FunctionCall> functionCallList;
 
     private Row nextRow;
 
@@ -42,8 +44,7 @@ public class SetTransformLazyStream extends UnaryLazyStream {
     public SetTransformLazyStream(SetTransform setTransform, RowStream stream) {
         super(stream);
         this.setTransform = setTransform;
-        this.function = (SetMappingFunction) setTransform.getFunctionCall().getFunction();
-        this.params = setTransform.getFunctionCall().getParams();
+        this.functionCallList = setTransform.getFunctionCallList();
     }
 
     @Override
@@ -65,6 +66,20 @@ public class SetTransformLazyStream extends UnaryLazyStream {
     }
 
     private Row calculate() throws PhysicalException {
+        if (functionCallList.size() > 1) {
+            // 多个函数在一次遍历中计算，不能合并部分结果的函数由生成器拆分到各自的算子中
+            for (FunctionCall functionCall : functionCallList) {
+                if (!MergePartialAggregate.isMergeable(functionCall)) {
+                    throw new PhysicalTaskExecuteFailureException(
+                            "set mapping function "
+                                    + functionCall.getFunction().getIdentifier()
+                                    + " can't share a scan with other functions.");
+                }
+            }
+            return RowUtils.calculateSetMappingFunctionsInOnePass(stream, functionCallList);
+        }
+        SetMappingFunction function = (SetMappingFunction) functionCallList.get(0).getFunction();
+        FunctionParams params = functionCallList.get(0).getParams();
         try {
             return function.transform(stream, params);
         } catch (Exception e) {
@@ -18,32 +18,87 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
 
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.SpillFile;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.resource.MemoryReservation;
+import cn.edu.tsinghua.iginx.resource.QueryMemoryAccountant;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
+/**
+ * 外部归并排序：输入按内存预算切成若干有序段，超出预算的段溢写到临时文件，最后对所有段做多路归并。若 Limit 直接位于其上，只用大小为 limit +
+ * offset 的堆保留前 N 行。两种方式都保持相等行的输入顺序，与 {@link RowUtils#sortRows} 的结果一致。
+ */
 public class SortLazyStream extends UnaryLazyStream {
 
+    // N 较大时堆本身就接近全量物化，此时仍走外部排序
+    private static final long MAX_TOP_N = 100_000;
+
+    private static final int MIN_RUN_SIZE = 1024;
+
     private final Sort sort;
 
     private final boolean asc;
 
-    private final List<Row> rows;
+    private final long memoryLimit;
+
+    private final File spillDir;
+
+    private final List<SpillFile> spillFiles = new ArrayList<>();
+
+    private final MemoryReservation reservation;
+
+    private long topN = -1;
 
     private boolean hasSorted = false;
 
+    private List<Row> rows;
+
     private int cur = 0;
 
+    private Comparator<Row> comparator;
+
+    private PriorityQueue<Integer> mergeQueue;
+
+    private Row[] heads;
+
     public SortLazyStream(Sort sort, RowStream stream) {
+        this(sort, stream, getConfiguredMemoryLimit(), SpillFile.getDefaultSpillDir());
+    }
+
+    public SortLazyStream(Sort sort, RowStream stream, long memoryLimit, File spillDir) {
         super(stream);
         this.sort = sort;
         this.asc = sort.getSortType() == Sort.SortType.ASC;
-        this.rows = new ArrayList<>();
+        this.memoryLimit = memoryLimit;
+        this.spillDir = spillDir;
+        this.reservation = QueryMemoryAccountant.current().newReservation();
+    }
+
+    private static long getConfiguredMemoryLimit() {
+        return ConfigDescriptor.getInstance().getConfig().getSortMemoryLimit() * 1024;
+    }
+
+    /**
+     * 只需要输出前 n 行时调用，须在开始读取之前调用
+     *
+     * @return 是否生效
+     */
+    public boolean setTopN(long n) {
+        if (hasSorted || n < 0) {
+            return false;
+        }
+        topN = topN < 0 ? n : Math.min(topN, n);
+        return true;
     }
 
     @Override
@@ -54,20 +109,149 @@ public class SortLazyStream extends UnaryLazyStream {
     @Override
     public boolean hasNext() throws PhysicalException {
         if (!hasSorted) {
-            while (stream.hasNext()) {
-                rows.add(stream.next());
-            }
-            RowUtils.sortRows(rows, asc, sort.getSortByCols());
             hasSorted = true;
+            comparator = RowUtils.buildRowComparator(stream.getHeader(), asc, sort.getSortByCols());
+            if (topN >= 0 && topN <= MAX_TOP_N) {
+                sortTopN();
+            } else {
+                sortExternal();
+            }
+        }
+        if (mergeQueue != null) {
+            return !mergeQueue.isEmpty();
         }
         return cur < rows.size();
     }
 
+    private void sortTopN() throws PhysicalException {
+        // 堆顶为当前保留的最大行；相等的行以先到者为小，从而保持输入顺序
+        long seq = 0;
+        Comparator<SeqRow> order =
+                (a, b) -> {
+                    int cmp = comparator.compare(a.row, b.row);
+                    return cmp != 0 ? cmp : Long.compare(a.seq, b.seq);
+                };
+        PriorityQueue<SeqRow> heap = new PriorityQueue<>(order.reversed());
+        while (stream.hasNext()) {
+            SeqRow row = new SeqRow(stream.next(), seq++);
+            if (heap.size() < topN) {
+                heap.add(row);
+            } else if (!heap.isEmpty() && order.compare(row, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(row);
+            }
+        }
+        List<SeqRow> retained = new ArrayList<>(heap);
+        retained.sort(order);
+        rows = new ArrayList<>(retained.size());
+        for (SeqRow row : retained) {
+            rows.add(row.row);
+        }
+    }
+
+    private void sortExternal() throws PhysicalException {
+        Header header = stream.getHeader();
+        rows = new ArrayList<>();
+        long memorySize = 0;
+        while (stream.hasNext()) {
+            Row row = stream.next();
+            rows.add(row);
+            long rowSize = SpillFile.estimateSize(row);
+            memorySize += rowSize;
+            // 超出排序自身的上限或查询的内存预算时溢写当前段，段过短时先不溢写以免产生过多文件
+            boolean overBudget = !reservation.grow(rowSize) && rows.size() >= MIN_RUN_SIZE;
+            if (memorySize >= memoryLimit || overBudget) {
+                spill(header);
+                memorySize = 0;
+            }
+        }
+        rows.sort(comparator);
+        if (spillFiles.isEmpty()) {
+            return;
+        }
+        // 内存中剩余的有序段作为最后一段参与归并，段号小者优先以保持输入顺序
+        int runNum = spillFiles.size() + 1;
+        heads = new Row[runNum];
+        mergeQueue =
+                new PriorityQueue<>(
+                        runNum,
+                        (a, b) -> {
+                            int cmp = comparator.compare(heads[a], heads[b]);
+                            return cmp != 0 ? cmp : Integer.compare(a, b);
+                        });
+        for (int i = 0; i < runNum; i++) {
+            advance(i);
+        }
+    }
+
+    private void spill(Header header) throws PhysicalException {
+        rows.sort(comparator);
+        SpillFile spillFile = new SpillFile(spillDir, header);
+        spillFiles.add(spillFile);
+        for (Row row : rows) {
+            spillFile.write(row);
+        }
+        spillFile.finishWrite();
+        rows.clear();
+        reservation.close();
+    }
+
+    private void advance(int run) throws PhysicalException {
+        if (run < spillFiles.size()) {
+            SpillFile spillFile = spillFiles.get(run);
+            if (spillFile.hasNext()) {
+                heads[run] = spillFile.next();
+                mergeQueue.add(run);
+            } else {
+                spillFile.close();
+            }
+        } else if (cur < rows.size()) {
+            heads[run] = rows.get(cur++);
+            mergeQueue.add(run);
+        }
+    }
+
     @Override
     public Row next() throws PhysicalException {
         if (!hasNext()) {
             throw new IllegalStateException("row stream doesn't have more data!");
         }
+        if (mergeQueue != null) {
+            int run = mergeQueue.poll();
+            Row row = heads[run];
+            advance(run);
+            return row;
+        }
         return rows.get(cur++);
     }
+
+    @Override
+    public void close() throws PhysicalException {
+        PhysicalException exception = null;
+        for (SpillFile spillFile : spillFiles) {
+            try {
+                spillFile.close();
+            } catch (PhysicalException e) {
+                exception = e;
+            }
+        }
+        spillFiles.clear();
+        reservation.close();
+        super.close();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static class SeqRow {
+
+        private final Row row;
+
+        private final long seq;
+
+        SeqRow(Row row, long seq) {
+            this.row = row;
+            this.seq = seq;
+        }
+    }
 }
@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.SpillFile;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.SpillPartitions;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MarkJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SingleJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.FilterType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.resource.MemoryReservation;
+import cn.edu.tsinghua.iginx.resource.QueryMemoryAccountant;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Pair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 为哈希连接的构建侧（streamB）记账。构建侧能放进查询的内存预算时直接交给具体的哈希连接；否则按连接列的哈希值把两侧都分区溢写到磁盘（grace hash
+ * join），再逐个分区做连接。等值连接的结果只与同一分区内的行有关，因此各分区结果拼接后与不分区时相同，只是行的顺序不同。过大的分区以新的分区方式递归处理。
+ */
+public class SpillableHashJoinLazyStream extends BinaryLazyStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillableHashJoinLazyStream.class);
+
+    private static final int MAX_SPILL_DEPTH = 3;
+
+    /** 由连接的两侧输入创建具体的哈希连接 */
+    @FunctionalInterface
+    public interface JoinStreamFactory {
+        RowStream create(RowStream streamA, RowStream streamB) throws PhysicalException;
+    }
+
+    private final BinaryOperator join;
+
+    private final JoinStreamFactory factory;
+
+    private final int depth;
+
+    private final QueryMemoryAccountant accountant;
+
+    private final MemoryReservation reservation;
+
+    private boolean hasInitialized = false;
+
+    private RowStream current;
+
+    private SpillPartitions partitionsA;
+
+    private SpillPartitions partitionsB;
+
+    private int partitionIndex = 0;
+
+    private Header header;
+
+    public SpillableHashJoinLazyStream(
+            BinaryOperator join,
+            RowStream streamA,
+            RowStream streamB,
+            JoinStreamFactory factory) {
+        this(join, streamA, streamB, factory, 0, QueryMemoryAccountant.current());
+    }
+
+    private SpillableHashJoinLazyStream(
+            BinaryOperator join,
+            RowStream streamA,
+            RowStream streamB,
+            JoinStreamFactory factory,
+            int depth,
+            QueryMemoryAccountant accountant) {
+        super(streamA, streamB);
+        this.join = join;
+        this.factory = factory;
+        this.depth = depth;
+        this.accountant = accountant;
+        this.reservation = accountant.newReservation();
+    }
+
+    private void initialize() throws PhysicalException {
+        if (hasInitialized) {
+            return;
+        }
+        hasInitialized = true;
+        Header headerB = streamB.getHeader();
+        List<Row> rowsB = new ArrayList<>();
+        boolean overBudget = false;
+        while (streamB.hasNext()) {
+            Row row = streamB.next();
+            rowsB.add(row);
+            if (!reservation.grow(SpillFile.estimateSize(row))) {
+                overBudget = true;
+                break;
+            }
+        }
+        Pair<String, String> joinPaths = null;
+        if (overBudget) {
+            joinPaths = resolveJoinPaths(streamA.getHeader(), headerB);
+            if (joinPaths == null || depth >= MAX_SPILL_DEPTH) {
+                logger.warn(
+                        "build side of {} exceeds memory budget but cannot be spilled, depth = {}",
+                        join.getType(),
+                        depth);
+                while (streamB.hasNext()) {
+                    Row row = streamB.next();
+                    rowsB.add(row);
+                    reservation.forceGrow(SpillFile.estimateSize(row));
+                }
+                overBudget = false;
+            }
+        }
+        if (!overBudget) {
+            streamB.close();
+            current = factory.create(streamA, new Table(headerB, rowsB));
+            header = current.getHeader();
+            return;
+        }
+
+        // 构建侧超出预算，两侧都按连接列分区溢写
+        Header headerA = streamA.getHeader();
+        boolean needTypeCast = isNumericJoin(headerA, headerB, joinPaths);
+        int partitionNum = ConfigDescriptor.getInstance().getConfig().getSpillPartitionNum();
+        int seed = (depth + 1) * 0x5BD1E995;
+        partitionsB = new SpillPartitions(headerB, partitionNum, seed);
+        for (Row row : rowsB) {
+            partitionsB.add(hashOf(row, joinPaths.v, needTypeCast), row);
+        }
+        rowsB.clear();
+        reservation.close();
+        while (streamB.hasNext()) {
+            Row row = streamB.next();
+            partitionsB.add(hashOf(row, joinPaths.v, needTypeCast), row);
+        }
+        partitionsA = new SpillPartitions(headerA, partitionNum, seed);
+        while (streamA.hasNext()) {
+            Row row = streamA.next();
+            partitionsA.add(hashOf(row, joinPaths.k, needTypeCast), row);
+        }
+        partitionsA.finishWrite();
+        partitionsB.finishWrite();
+        streamA.close();
+        streamB.close();
+        logger.info(
+                "spill {} into {} partitions at depth {} for memory budget",
+                join.getType(),
+                partitionNum,
+                depth);
+        current = nextPartition();
+        header = current.getHeader();
+    }
+
+    private RowStream nextPartition() {
+        int index = partitionIndex++;
+        return new SpillableHashJoinLazyStream(
+                join,
+                partitionsA.get(index),
+                partitionsB.get(index),
+                factory,
+                depth + 1,
+                accountant);
+    }
+
+    private Pair<String, String> resolveJoinPaths(Header headerA, Header headerB) {
+        try {
+            switch (join.getType()) {
+                case InnerJoin:
+                    InnerJoin innerJoin = (InnerJoin) join;
+                    return resolveJoinPaths(
+                            innerJoin.getFilter(),
+                            innerJoin.getJoinColumns(),
+                            innerJoin.isNaturalJoin(),
+                            innerJoin.getPrefixA(),
+                            innerJoin.getPrefixB(),
+                            headerA,
+                            headerB);
+                case OuterJoin:
+                    OuterJoin outerJoin = (OuterJoin) join;
+                    return resolveJoinPaths(
+                            outerJoin.getFilter(),
+                            outerJoin.getJoinColumns(),
+                            outerJoin.isNaturalJoin(),
+                            outerJoin.getPrefixA(),
+                            outerJoin.getPrefixB(),
+                            headerA,
+                            headerB);
+                case MarkJoin:
+                    return FilterUtils.getJoinPathFromFilter(
+                            ((MarkJoin) join).getFilter(), headerA, headerB);
+                case SingleJoin:
+                    return FilterUtils.getJoinPathFromFilter(
+                            ((SingleJoin) join).getFilter(), headerA, headerB);
+                default:
+                    return null;
+            }
+        } catch (PhysicalException e) {
+            // 参数不合法时交给具体的连接报错
+            return null;
+        }
+    }
+
+    private static Pair<String, String> resolveJoinPaths(
+            Filter filter,
+            List<String> joinColumns,
+            boolean isNaturalJoin,
+            String prefixA,
+            String prefixB,
+            Header headerA,
+            Header headerB)
+            throws PhysicalException {
+        List<String> columns = new ArrayList<>(joinColumns);
+        if (isNaturalJoin) {
+            RowUtils.fillNaturalJoinColumns(columns, headerA, headerB, prefixA, prefixB);
+        }
+        if (filter != null) {
+            if (!columns.isEmpty() || !filter.getType().equals(FilterType.Path)) {
+                return null;
+            }
+            Pair<String, String> p = FilterUtils.getJoinColumnFromPathFilter((PathFilter) filter);
+            if (p == null) {
+                return null;
+            }
+            if (headerA.indexOf(p.k) != -1 && headerB.indexOf(p.v) != -1) {
+                return p;
+            }
+            if (headerA.indexOf(p.v) != -1 && headerB.indexOf(p.k) != -1) {
+                return new Pair<>(p.v, p.k);
+            }
+            return null;
+        }
+        if (columns.size() != 1) {
+            return null;
+        }
+        String pathA = prefixA + '.' + columns.get(0);
+        String pathB = prefixB + '.' + columns.get(0);
+        if (headerA.indexOf(pathA) == -1 || headerB.indexOf(pathB) == -1) {
+            return null;
+        }
+        return new Pair<>(pathA, pathB);
+    }
+
+    private static boolean isNumericJoin(
+            Header headerA, Header headerB, Pair<String, String> joinPaths) {
+        DataType dataTypeA = headerA.getField(headerA.indexOf(joinPaths.k)).getType();
+        DataType dataTypeB = headerB.getField(headerB.indexOf(joinPaths.v)).getType();
+        return ValueUtils.isNumericType(dataTypeA) && ValueUtils.isNumericType(dataTypeB);
+    }
+
+    /** 与具体的哈希连接相同的取值方式，保证能连接上的行落在同一分区 */
+    private static int hashOf(Row row, String path, boolean needTypeCast) {
+        Value value = row.getAsValue(path);
+        if (value == null || value.getValue() == null) {
+            return 0;
+        }
+        if (needTypeCast) {
+            value = ValueUtils.transformToDouble(value);
+        }
+        if (value.getDataType() == DataType.BINARY) {
+            return Arrays.hashCode(value.getBinaryV());
+        }
+        if (value.getDataType() == DataType.DOUBLE && value.getDoubleV() == 0.0) {
+            // 与 RowHashTable 一致，0.0 与 -0.0 视为相同的 key
+            return 0;
+        }
+        return value.getValue().hashCode();
+    }
+
+    @Override
+    public Header getHeader() throws PhysicalException {
+        initialize();
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() throws PhysicalException {
+        initialize();
+        while (!current.hasNext()) {
+            if (partitionsA == null || partitionIndex >= partitionsA.size()) {
+                reservation.close();
+                return false;
+            }
+            current.close();
+            current = nextPartition();
+        }
+        return true;
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("row stream doesn't have more data!");
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() throws PhysicalException {
+        reservation.close();
+        if (current != null) {
+            current.close();
+        }
+        if (partitionsA != null) {
+            partitionsA.close();
+            partitionsB.close();
+        } else if (current == null) {
+            super.close();
+        }
+    }
+}
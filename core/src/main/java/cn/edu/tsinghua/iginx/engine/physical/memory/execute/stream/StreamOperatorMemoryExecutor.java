@@ -25,6 +25,8 @@ import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecut
 import cn.edu.tsinghua.iginx.engine.shared.Constants;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import java.util.List;
 
 public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
 
@@ -93,6 +95,15 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
         }
     }
 
+    @Override
+    public RowStream executeMultipleOperator(MultipleOperator operator, List<RowStream> streams)
+            throws PhysicalException {
+        if (operator.getType() == OperatorType.MergeByKey) {
+            return executeMergeByKey((MergeByKey) operator, streams);
+        }
+        throw new UnexpectedOperatorException("unknown multiple operator: " + operator.getType());
+    }
+
     private RowStream executeProject(Project project, RowStream stream) {
         return new ProjectLazyStream(project, stream);
     }
@@ -106,6 +117,10 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
     }
 
     private RowStream executeLimit(Limit limit, RowStream stream) {
+        if (stream instanceof SortLazyStream) {
+            // order by ... limit n 只需保留前 limit + offset 行
+            ((SortLazyStream) stream).setTopN((long) limit.getLimit() + limit.getOffset());
+        }
         return new LimitLazyStream(limit, stream);
     }
 
@@ -188,7 +203,11 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
 
     private RowStream executeHashInnerJoin(
             InnerJoin innerJoin, RowStream streamA, RowStream streamB) throws PhysicalException {
-        return new HashInnerJoinLazyStream(innerJoin, streamA, streamB);
+        return new SpillableHashJoinLazyStream(
+                innerJoin,
+                streamA,
+                streamB,
+                (a, b) -> new HashInnerJoinLazyStream(innerJoin, a, b));
     }
 
     private RowStream executeSortedMergeInnerJoin(
@@ -218,7 +237,11 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
 
     private RowStream executeHashOuterJoin(
             OuterJoin outerJoin, RowStream streamA, RowStream streamB) throws PhysicalException {
-        return new HashOuterJoinLazyStream(outerJoin, streamA, streamB);
+        return new SpillableHashJoinLazyStream(
+                outerJoin,
+                streamA,
+                streamB,
+                (a, b) -> new HashOuterJoinLazyStream(outerJoin, a, b));
     }
 
     private RowStream executeSortedMergeOuterJoin(
@@ -246,7 +269,11 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
 
     private RowStream executeHashMarkJoin(
             SingleJoin singleJoin, RowStream streamA, RowStream streamB) {
-        return new HashSingleJoinLazyStream(singleJoin, streamA, streamB);
+        return new SpillableHashJoinLazyStream(
+                singleJoin,
+                streamA,
+                streamB,
+                (a, b) -> new HashSingleJoinLazyStream(singleJoin, a, b));
     }
 
     private RowStream executeMarkJoin(MarkJoin markJoin, RowStream streamA, RowStream streamB)
@@ -268,13 +295,18 @@ public class StreamOperatorMemoryExecutor implements OperatorMemoryExecutor {
     }
 
     private RowStream executeHashMarkJoin(MarkJoin markJoin, RowStream streamA, RowStream streamB) {
-        return new HashMarkJoinLazyStream(markJoin, streamA, streamB);
+        return new SpillableHashJoinLazyStream(
+                markJoin, streamA, streamB, (a, b) -> new HashMarkJoinLazyStream(markJoin, a, b));
     }
 
     private RowStream executeUnion(Union union, RowStream streamA, RowStream streamB) {
         return new UnionLazyStream(union, streamA, streamB);
     }
 
+    private RowStream executeMergeByKey(MergeByKey mergeByKey, List<RowStream> streams) {
+        return new MergeByKeyLazyStream(mergeByKey, streams);
+    }
+
     private static class StreamOperatorMemoryExecutorHolder {
 
         private static final StreamOperatorMemoryExecutor INSTANCE =
@@ -54,11 +54,14 @@ public class UnionLazyStream extends BinaryLazyStream {
         }
         Header headerA = streamA.getHeader();
         Header headerB = streamB.getHeader();
-        if (headerA.hasKey() ^ headerB.hasKey()) {
+        // 空表头（例如没有数据时降采样的结果）可以与任意表头合并
+        if ((headerA.hasKey() ^ headerB.hasKey())
+                && !headerA.isEmpty()
+                && !headerB.isEmpty()) {
             throw new InvalidOperatorParameterException(
                     "row stream to be union must have same fields");
         }
-        boolean hasTimestamp = headerA.hasKey();
+        boolean hasTimestamp = headerA.hasKey() || headerB.hasKey();
         Set<Field> targetFieldSet = new HashSet<>();
         targetFieldSet.addAll(headerA.getFields());
         targetFieldSet.addAll(headerB.getFields());
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import java.util.Arrays;
+
+/** 以 byte[] 为键的开放寻址哈希表（线性探测），缓存每个键的哈希值以减少探测时的数组比较 */
+public class BinaryHashTable {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private byte[][] keys;
+
+    private int[] hashes;
+
+    // 0 表示空槽，否则为 id + 1
+    private int[] ids;
+
+    private int mask;
+
+    private int size;
+
+    public BinaryHashTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BinaryHashTable(int expectedSize) {
+        int capacity = HashTableUtils.capacityFor(expectedSize);
+        this.keys = new byte[capacity][];
+        this.hashes = new int[capacity];
+        this.ids = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /** 返回 key 对应的 id，不存在时为其分配新的 id */
+    public int putIfAbsent(byte[] key) {
+        int hash = hash(key);
+        int pos = hash & mask;
+        while (true) {
+            int id = ids[pos];
+            if (id == 0) {
+                keys[pos] = key;
+                hashes[pos] = hash;
+                ids[pos] = ++size;
+                if (size > (mask >> 1)) {
+                    rehash();
+                }
+                return size - 1;
+            }
+            if (hashes[pos] == hash && Arrays.equals(keys[pos], key)) {
+                return id - 1;
+            }
+            pos = (pos + 1) & mask;
+        }
+    }
+
+    /** 返回 key 对应的 id，不存在时返回 -1 */
+    public int get(byte[] key) {
+        int hash = hash(key);
+        int pos = hash & mask;
+        while (true) {
+            int id = ids[pos];
+            if (id == 0) {
+                return -1;
+            }
+            if (hashes[pos] == hash && Arrays.equals(keys[pos], key)) {
+                return id - 1;
+            }
+            pos = (pos + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        byte[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldIds = ids;
+        int capacity = oldIds.length << 1;
+        keys = new byte[capacity][];
+        hashes = new int[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == 0) {
+                continue;
+            }
+            int pos = oldHashes[i] & mask;
+            while (ids[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = oldKeys[i];
+            hashes[pos] = oldHashes[i];
+            ids[pos] = oldIds[i];
+        }
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+/** 以 long 为键的开放寻址哈希表（线性探测），将每个不同的键映射为按插入顺序从 0 开始编号的 id */
+public class LongHashTable {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+
+    // 0 表示空槽，否则为 id + 1
+    private int[] ids;
+
+    private int mask;
+
+    private int size;
+
+    public LongHashTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashTable(int expectedSize) {
+        int capacity = HashTableUtils.capacityFor(expectedSize);
+        this.keys = new long[capacity];
+        this.ids = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /** 返回 key 对应的 id，不存在时为其分配新的 id */
+    public int putIfAbsent(long key) {
+        int pos = hash(key) & mask;
+        while (true) {
+            int id = ids[pos];
+            if (id == 0) {
+                keys[pos] = key;
+                ids[pos] = ++size;
+                if (size > (mask >> 1)) {
+                    rehash();
+                }
+                return size - 1;
+            }
+            if (keys[pos] == key) {
+                return id - 1;
+            }
+            pos = (pos + 1) & mask;
+        }
+    }
+
+    /** 返回 key 对应的 id，不存在时返回 -1 */
+    public int get(long key) {
+        int pos = hash(key) & mask;
+        while (true) {
+            int id = ids[pos];
+            if (id == 0) {
+                return -1;
+            }
+            if (keys[pos] == key) {
+                return id - 1;
+            }
+            pos = (pos + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldIds = ids;
+        int capacity = oldIds.length << 1;
+        keys = new long[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == 0) {
+                continue;
+            }
+            int pos = hash(oldKeys[i]) & mask;
+            while (ids[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = oldKeys[i];
+            ids[pos] = oldIds[i];
+        }
+    }
+
+    private static int hash(long key) {
+        // double 的位模式低位多为 0，先折叠高 32 位再取乘积的高位
+        long h = (key ^ (key >>> 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按某一列的值对行建立哈希索引，供 hash join 的 build 端与 group by 使用。
+ *
+ * <p>整数与布尔值以 long、浮点数以 double 的位模式存入 {@link LongHashTable}，BINARY 存入 {@link
+ * BinaryHashTable}，不再为每个值构造 {@code Value}。每个不同的值对应一个从 0 开始的 key id。
+ *
+ * <p>建表结束后第一次读取时按 key id 把行重排到一个连续数组中，key id 为 k 的行位于 [getRowStart(k),
+ * getRowEnd(k))，同一 key 内保持插入顺序。
+ */
+public class RowHashTable {
+
+    private enum KeyType {
+        LONG,
+        DOUBLE,
+        BINARY,
+        NONE
+    }
+
+    private final KeyType keyType;
+
+    private final LongHashTable longTable;
+
+    private final BinaryHashTable binaryTable;
+
+    private final List<Row> rows = new ArrayList<>();
+
+    // 每一行的 key id，与 rows 一一对应
+    private int[] rowKeyIds = new int[16];
+
+    // 按 key id 分组后的行及每组的起始下标，在 put 之后第一次读取时构建
+    private Row[] groupedRows;
+
+    private int[] offsets;
+
+    /**
+     * @param buildType 建表的列的类型
+     * @param probeType 用于查找的列的类型，两者不可比较时任何值都查不到
+     */
+    public RowHashTable(DataType buildType, DataType probeType) {
+        this.keyType = keyTypeOf(buildType, probeType);
+        this.longTable =
+                keyType == KeyType.LONG || keyType == KeyType.DOUBLE ? new LongHashTable() : null;
+        this.binaryTable = keyType == KeyType.BINARY ? new BinaryHashTable() : null;
+    }
+
+    public static boolean isSupported(DataType buildType, DataType probeType) {
+        return keyTypeOf(buildType, probeType) != KeyType.NONE;
+    }
+
+    private static KeyType keyTypeOf(DataType buildType, DataType probeType) {
+        if (buildType == null || probeType == null) {
+            return KeyType.NONE;
+        }
+        if (isIntegral(buildType) && isIntegral(probeType)) {
+            return KeyType.LONG;
+        }
+        if (ValueUtils.isNumericType(buildType) && ValueUtils.isNumericType(probeType)) {
+            return KeyType.DOUBLE;
+        }
+        if (buildType != probeType) {
+            return KeyType.NONE;
+        }
+        switch (buildType) {
+            case BOOLEAN:
+                return KeyType.LONG;
+            case BINARY:
+                return KeyType.BINARY;
+            default:
+                return KeyType.NONE;
+        }
+    }
+
+    private static boolean isIntegral(DataType dataType) {
+        return dataType == DataType.INTEGER || dataType == DataType.LONG;
+    }
+
+    /**
+     * 以 value 为键加入一行
+     *
+     * @return 该行对应的 key id；value 为 null 或无法比较时不加入并返回 -1
+     */
+    public int put(Row row, Object value) {
+        if (value == null || keyType == KeyType.NONE) {
+            return -1;
+        }
+        int keyId;
+        if (keyType == KeyType.BINARY) {
+            keyId = binaryTable.putIfAbsent(toBinary(value));
+        } else {
+            keyId = longTable.putIfAbsent(toLong(value));
+        }
+
+        int rowId = rows.size();
+        rows.add(row);
+        if (rowId == rowKeyIds.length) {
+            rowKeyIds = Arrays.copyOf(rowKeyIds, rowId << 1);
+        }
+        rowKeyIds[rowId] = keyId;
+        groupedRows = null;
+        return keyId;
+    }
+
+    /** 返回 value 对应的 key id，不存在时返回 -1 */
+    public int get(Object value) {
+        if (value == null || keyType == KeyType.NONE) {
+            return -1;
+        }
+        if (keyType == KeyType.BINARY) {
+            return binaryTable.get(toBinary(value));
+        }
+        return longTable.get(toLong(value));
+    }
+
+    public int getKeyCount() {
+        if (keyType == KeyType.NONE) {
+            return 0;
+        }
+        return keyType == KeyType.BINARY ? binaryTable.size() : longTable.size();
+    }
+
+    /** key id 为 keyId 的第一行在 {@link #getRow(int)} 中的下标 */
+    public int getRowStart(int keyId) {
+        group();
+        return offsets[keyId];
+    }
+
+    public int getRowEnd(int keyId) {
+        group();
+        return offsets[keyId + 1];
+    }
+
+    /** 按 key id 分组后的第 index 行 */
+    public Row getRow(int index) {
+        group();
+        return groupedRows[index];
+    }
+
+    /** 返回 key id 为 keyId 的所有行，结果是内部数组的只读视图 */
+    public List<Row> getRows(int keyId) {
+        group();
+        return Collections.unmodifiableList(
+                Arrays.asList(groupedRows).subList(offsets[keyId], offsets[keyId + 1]));
+    }
+
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    private void group() {
+        if (groupedRows != null) {
+            return;
+        }
+        int keyCount = getKeyCount();
+        int rowCount = rows.size();
+        offsets = new int[keyCount + 1];
+        for (int i = 0; i < rowCount; i++) {
+            offsets[rowKeyIds[i] + 1]++;
+        }
+        for (int k = 0; k < keyCount; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+        int[] positions = Arrays.copyOf(offsets, keyCount);
+        groupedRows = new Row[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            groupedRows[positions[rowKeyIds[i]]++] = rows.get(i);
+        }
+    }
+
+    private long toLong(Object value) {
+        if (keyType == KeyType.DOUBLE) {
+            double d = ((Number) value).doubleValue();
+            // 使 0.0 与 -0.0 相等，NaN 由 doubleToLongBits 归一
+            return d == 0.0 ? 0L : Double.doubleToLongBits(d);
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        }
+        return ((Number) value).longValue();
+    }
+
+    private static byte[] toBinary(Object value) {
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        return value.toString().getBytes();
+    }
+}
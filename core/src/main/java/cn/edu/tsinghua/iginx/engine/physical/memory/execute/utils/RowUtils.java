@@ -31,9 +31,11 @@ import cn.edu.tsinghua.iginx.engine.shared.Constants;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
 import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.MergePartialAggregate;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
 import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
 import cn.edu.tsinghua.iginx.thrift.DataType;
@@ -41,10 +43,14 @@ import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -63,6 +69,8 @@ public class RowUtils {
 
     private static final BlockingQueue<ForkJoinPool> poolQueue = new LinkedBlockingQueue<>();
 
+    private static final int ONE_PASS_BATCH_SIZE = 4096;
+
     static {
         for (int i = 0; i < config.getParallelGroupByPoolNum(); i++) {
             poolQueue.add(new ForkJoinPool(config.getParallelGroupByPoolSize()));
@@ -425,6 +433,133 @@ public class RowUtils {
         }
     }
 
+    /** 在同一份输入上依次计算多个聚合函数，结果拼接为一行，同名列只保留第一次出现的 */
+    public static Row calculateSetMappingFunctions(Table table, List<FunctionCall> functionCallList)
+            throws PhysicalException {
+        List<Field> fields = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        Set<String> fullNames = new HashSet<>();
+        for (FunctionCall functionCall : functionCallList) {
+            SetMappingFunction function = (SetMappingFunction) functionCall.getFunction();
+            Row row;
+            try {
+                table.reset();
+                row = function.transform(table, functionCall.getParams());
+            } catch (Exception e) {
+                throw new PhysicalTaskExecuteFailureException(
+                        "encounter error when execute set mapping function "
+                                + function.getIdentifier()
+                                + ".",
+                        e);
+            }
+            if (row == null) {
+                continue;
+            }
+            for (int i = 0; i < row.getHeader().getFieldSize(); i++) {
+                Field field = row.getHeader().getField(i);
+                if (fullNames.add(field.getFullName())) {
+                    fields.add(field);
+                    values.add(row.getValue(i));
+                }
+            }
+        }
+        if (fields.isEmpty()) {
+            return null;
+        }
+        return new Row(new Header(fields), values.toArray());
+    }
+
+    /**
+     * 在一次遍历中计算多个函数，要求每个函数都满足 {@link MergePartialAggregate#isMergeable(FunctionCall)}。输入按块读取，
+     * 每块上计算部分结果后立即合并，内存占用与输入大小无关。结果与依次调用 {@link #calculateSetMappingFunctions} 相同。
+     */
+    public static Row calculateSetMappingFunctionsInOnePass(
+            RowStream stream, List<FunctionCall> functionCallList) throws PhysicalException {
+        Header header = stream.getHeader();
+        // 在空表上计算一次，得到结果列及其顺序，同时提前检查参数与数据类型
+        Row emptyResult =
+                calculateSetMappingFunctions(
+                        new Table(header, Collections.emptyList()), functionCallList);
+
+        // 相同的部分聚合只计算一次，例如 avg(a) 与 sum(a) 共用 sum(a)
+        Map<String, FunctionCall> partialCalls = new LinkedHashMap<>();
+        for (FunctionCall functionCall : functionCallList) {
+            if (functionCall.getFunction() instanceof MergePartialAggregate) {
+                continue;
+            }
+            for (SetMappingFunction partialFunction :
+                    MergePartialAggregate.getPartialFunctions(
+                            functionCall.getFunction().getIdentifier())) {
+                partialCalls.putIfAbsent(
+                        partialFunction.getIdentifier() + functionCall.getParams().getPaths(),
+                        new FunctionCall(partialFunction, functionCall.copy().getParams()));
+            }
+        }
+        List<FunctionCall> partialCallList = new ArrayList<>(partialCalls.values());
+        Row emptyPartial =
+                calculateSetMappingFunctions(
+                        new Table(header, Collections.emptyList()), partialCallList);
+        Header partialHeader =
+                emptyPartial == null ? Header.EMPTY_HEADER : emptyPartial.getHeader();
+
+        // 已经是合并函数的直接合并输入行，其余函数合并每块上的部分结果
+        List<MergePartialAggregate.Merger> rowMergers = new ArrayList<>();
+        List<MergePartialAggregate.Merger> partialMergers = new ArrayList<>();
+        for (FunctionCall functionCall : functionCallList) {
+            if (functionCall.getFunction() instanceof MergePartialAggregate) {
+                rowMergers.add(
+                        ((MergePartialAggregate) functionCall.getFunction())
+                                .createMerger(header, functionCall.getParams()));
+            } else {
+                partialMergers.add(
+                        new MergePartialAggregate(functionCall.getFunction().getIdentifier())
+                                .createMerger(partialHeader, functionCall.getParams()));
+            }
+        }
+
+        boolean isEmpty = true;
+        List<Row> batch = new ArrayList<>();
+        while (stream.hasNext()) {
+            isEmpty = false;
+            Row row = stream.next();
+            rowMergers.forEach(merger -> merger.add(row));
+            batch.add(row);
+            if (batch.size() == ONE_PASS_BATCH_SIZE || !stream.hasNext()) {
+                if (!partialMergers.isEmpty()) {
+                    Row partial =
+                            calculateSetMappingFunctions(new Table(header, batch), partialCallList);
+                    if (partial != null) {
+                        partialMergers.forEach(merger -> merger.add(partial));
+                    }
+                }
+                batch = new ArrayList<>();
+            }
+        }
+        if (isEmpty || emptyResult == null) {
+            return emptyResult;
+        }
+
+        Map<String, Object> values = new HashMap<>();
+        for (MergePartialAggregate.Merger merger : rowMergers) {
+            putValues(values, merger.getResult());
+        }
+        for (MergePartialAggregate.Merger merger : partialMergers) {
+            putValues(values, merger.getResult());
+        }
+        Header targetHeader = emptyResult.getHeader();
+        Object[] targetValues = new Object[targetHeader.getFieldSize()];
+        for (int i = 0; i < targetValues.length; i++) {
+            targetValues[i] = values.get(targetHeader.getField(i).getFullName());
+        }
+        return new Row(targetHeader, targetValues);
+    }
+
+    private static void putValues(Map<String, Object> values, Row row) {
+        for (int i = 0; i < row.getHeader().getFieldSize(); i++) {
+            values.putIfAbsent(row.getHeader().getField(i).getFullName(), row.getValue(i));
+        }
+    }
+
     public static List<Row> cacheGroupByResult(GroupBy groupBy, Table table)
             throws PhysicalException {
         List<String> cols = groupBy.getGroupByCols();
@@ -444,7 +579,10 @@ public class RowUtils {
         }
 
         Map<GroupByKey, List<Row>> groups;
-        if (table.getRowSize() > config.getParallelGroupByRowsThreshold()) {
+        DataType firstType = fields.get(0).getType();
+        if (colIndex.length == 1 && RowHashTable.isSupported(firstType, firstType)) {
+            groups = hashTableBuild(table, colIndex[0], firstType);
+        } else if (table.getRowSize() > config.getParallelGroupByRowsThreshold()) {
             groups = parallelBuild(table, colIndex);
         } else {
             groups = seqBuild(table, colIndex);
@@ -595,6 +733,41 @@ public class RowUtils {
         return groups;
     }
 
+    /** 单列 group by 时用 {@link RowHashTable} 分组，每个分组只构造一次 GroupByKey */
+    private static Map<GroupByKey, List<Row>> hashTableBuild(
+            Table table, int index, DataType dataType) {
+        RowHashTable hashTable = new RowHashTable(dataType, dataType);
+        List<Row> nullRows = new ArrayList<>();
+        while (table.hasNext()) {
+            Row row = table.next();
+            if (hashTable.put(row, row.getValue(index)) == -1) {
+                nullRows.add(row);
+            }
+        }
+
+        Map<GroupByKey, List<Row>> groups = new LinkedHashMap<>();
+        for (int keyId = 0; keyId < hashTable.getKeyCount(); keyId++) {
+            List<Row> group = hashTable.getRows(keyId);
+            Object value = group.get(0).getValue(index);
+            if (value instanceof byte[]) {
+                value = new String((byte[]) value);
+            }
+            // 不同的 byte[] 可能解码为相同的字符串，此时与原实现一样合并为一组
+            groups.merge(
+                    new GroupByKey(Collections.singletonList(value)),
+                    group,
+                    (oldGroup, newGroup) -> {
+                        List<Row> merged = new ArrayList<>(oldGroup);
+                        merged.addAll(newGroup);
+                        return merged;
+                    });
+        }
+        if (!nullRows.isEmpty()) {
+            groups.put(new GroupByKey(Collections.singletonList(null)), nullRows);
+        }
+        return groups;
+    }
+
     private static Map<GroupByKey, List<Row>> parallelBuild(Table table, int[] colIndex)
             throws PhysicalException {
         List<Row> rows = table.getRows();
@@ -651,8 +824,13 @@ public class RowUtils {
         if (sortByCols == null || sortByCols.isEmpty()) {
             return;
         }
-        Header header = rows.get(0).getHeader();
+        rows.sort(buildRowComparator(rows.get(0).getHeader(), asc, sortByCols));
+    }
 
+    /** 构造按 sortByCols 比较行的比较器，表头需与待比较的行一致 */
+    public static Comparator<Row> buildRowComparator(
+            Header header, boolean asc, List<String> sortByCols)
+            throws PhysicalTaskExecuteFailureException {
         List<Integer> indexList = new ArrayList<>();
         List<DataType> typeList = new ArrayList<>();
         boolean hasKey = false;
@@ -671,33 +849,32 @@ public class RowUtils {
         }
 
         boolean finalHasKey = hasKey;
-        rows.sort(
-                (a, b) -> {
-                    if (finalHasKey) {
-                        int cmp =
-                                asc
-                                        ? Long.compare(a.getKey(), b.getKey())
-                                        : Long.compare(b.getKey(), a.getKey());
-                        if (cmp != 0) {
-                            return cmp;
-                        }
-                    }
-                    for (int i = 0; i < indexList.size(); i++) {
-                        int cmp =
-                                asc
-                                        ? ValueUtils.compare(
-                                                a.getValue(indexList.get(i)),
-                                                b.getValue(indexList.get(i)),
-                                                typeList.get(i))
-                                        : ValueUtils.compare(
-                                                b.getValue(indexList.get(i)),
-                                                a.getValue(indexList.get(i)),
-                                                typeList.get(i));
-                        if (cmp != 0) {
-                            return cmp;
-                        }
-                    }
-                    return 0;
-                });
+        return (a, b) -> {
+            if (finalHasKey) {
+                int cmp =
+                        asc
+                                ? Long.compare(a.getKey(), b.getKey())
+                                : Long.compare(b.getKey(), a.getKey());
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            for (int i = 0; i < indexList.size(); i++) {
+                int cmp =
+                        asc
+                                ? ValueUtils.compare(
+                                        a.getValue(indexList.get(i)),
+                                        b.getValue(indexList.get(i)),
+                                        typeList.get(i))
+                                : ValueUtils.compare(
+                                        b.getValue(indexList.get(i)),
+                                        a.getValue(indexList.get(i)),
+                                        typeList.get(i));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        };
     }
 }
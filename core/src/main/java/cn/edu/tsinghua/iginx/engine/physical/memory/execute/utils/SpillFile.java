@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * 溢写到本地临时文件的一组行，所有行共享同一个表头。每行依次写入 key（表头有 key 时）、空值位图以及各个非空值，BINARY 值以长度加字节的形式写入。
+ * 文件先整体写入，再作为 {@link RowStream} 从头顺序读出，关闭后删除。
+ */
+public class SpillFile implements RowStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final Header header;
+
+    private final DataType[] types;
+
+    private DataOutputStream out;
+
+    private DataInputStream in;
+
+    private long rowCount = 0;
+
+    private long readCount = 0;
+
+    private boolean writeFinished = false;
+
+    public SpillFile(File dir, Header header) throws PhysicalException {
+        this.header = header;
+        List<Field> fields = header.getFields();
+        this.types = new DataType[fields.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = fields.get(i).getType();
+        }
+        try {
+            if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+                throw new IOException("cannot create spill dir " + dir);
+            }
+            this.file = File.createTempFile("iginx-spill-", ".tmp", dir);
+            this.out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(
+                                    Files.newOutputStream(file.toPath()), BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new PhysicalException("failed to create spill file in " + dir, e);
+        }
+    }
+
+    public void write(Row row) throws PhysicalException {
+        if (out == null) {
+            throw new IllegalStateException("spill file " + file + " is not writable");
+        }
+        try {
+            if (header.hasKey()) {
+                out.writeLong(row.getKey());
+            }
+            Object[] values = row.getValues();
+            byte[] bitmap = new byte[(types.length + 7) / 8];
+            for (int i = 0; i < types.length; i++) {
+                if (values[i] != null) {
+                    bitmap[i / 8] |= (byte) (1 << (i % 8));
+                }
+            }
+            out.write(bitmap);
+            for (int i = 0; i < types.length; i++) {
+                if (values[i] != null) {
+                    writeValue(types[i], values[i]);
+                }
+            }
+            rowCount++;
+        } catch (IOException e) {
+            throw new PhysicalException("failed to write spill file " + file, e);
+        }
+    }
+
+    private void writeValue(DataType type, Object value) throws IOException {
+        switch (type) {
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case INTEGER:
+                out.writeInt((Integer) value);
+                break;
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case BINARY:
+                byte[] bytes = (byte[]) value;
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                break;
+            default:
+                throw new IOException("unsupported data type: " + type);
+        }
+    }
+
+    /** 在配置的目录中创建溢写文件，未配置时使用系统临时目录 */
+    public static SpillFile create(Header header) throws PhysicalException {
+        return new SpillFile(getDefaultSpillDir(), header);
+    }
+
+    public static File getDefaultSpillDir() {
+        String dir = ConfigDescriptor.getInstance().getConfig().getSpillDir();
+        if (dir == null || dir.isEmpty()) {
+            dir = System.getProperty("java.io.tmpdir");
+        }
+        return new File(dir);
+    }
+
+    /** 结束写入，此后只能从头顺序读取 */
+    public void finishWrite() throws PhysicalException {
+        if (writeFinished) {
+            return;
+        }
+        try {
+            out.close();
+            out = null;
+            writeFinished = true;
+        } catch (IOException e) {
+            throw new PhysicalException("failed to finish spill file " + file, e);
+        }
+    }
+
+    @Override
+    public Header getHeader() {
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return writeFinished && readCount < rowCount;
+    }
+
+    @Override
+    public Row next() throws PhysicalException {
+        if (!hasNext()) {
+            throw new IllegalStateException("spill file doesn't have more data!");
+        }
+        try {
+            if (in == null) {
+                in =
+                        new DataInputStream(
+                                new BufferedInputStream(
+                                        Files.newInputStream(file.toPath()), BUFFER_SIZE));
+            }
+            long key = header.hasKey() ? in.readLong() : Row.NON_EXISTED_KEY;
+            byte[] bitmap = new byte[(types.length + 7) / 8];
+            in.readFully(bitmap);
+            Object[] values = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                if ((bitmap[i / 8] & (1 << (i % 8))) != 0) {
+                    values[i] = readValue(types[i]);
+                }
+            }
+            readCount++;
+            if (readCount == rowCount) {
+                in.close();
+                in = null;
+            }
+            return header.hasKey() ? new Row(header, key, values) : new Row(header, values);
+        } catch (IOException e) {
+            throw new PhysicalException("failed to read spill file " + file, e);
+        }
+    }
+
+    private Object readValue(DataType type) throws IOException {
+        switch (type) {
+            case BOOLEAN:
+                return in.readBoolean();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BINARY:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            default:
+                throw new IOException("unsupported data type: " + type);
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /** 估算行在堆上占用的字节数，用于决定何时溢写 */
+    public static long estimateSize(Row row) {
+        long size = 48;
+        for (Object value : row.getValues()) {
+            size += 8;
+            if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value != null) {
+                size += 16;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws PhysicalException {
+        // 关闭后不再可读
+        readCount = rowCount;
+        IOException exception = null;
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        } catch (IOException e) {
+            exception = e;
+        }
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            exception = e;
+        }
+        if (exception != null) {
+            throw new PhysicalException("failed to close spill file " + file, exception);
+        }
+    }
+}
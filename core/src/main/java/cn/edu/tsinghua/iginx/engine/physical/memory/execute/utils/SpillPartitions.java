@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import java.util.ArrayList;
+import java.util.List;
+
+/** 按哈希值把行分散写入若干溢写文件，哈希值相同的行落在同一分区。不同的 seed 对应不同的分区方式，用于对过大的分区再次分区。 */
+public class SpillPartitions implements AutoCloseable {
+
+    private final List<SpillFile> partitions;
+
+    private final int seed;
+
+    public SpillPartitions(Header header, int partitionNum, int seed) throws PhysicalException {
+        this.partitions = new ArrayList<>(partitionNum);
+        this.seed = seed;
+        try {
+            for (int i = 0; i < partitionNum; i++) {
+                partitions.add(SpillFile.create(header));
+            }
+        } catch (PhysicalException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public void add(int hash, Row row) throws PhysicalException {
+        partitions.get(partitionOf(hash)).write(row);
+    }
+
+    private int partitionOf(int hash) {
+        int h = (hash ^ seed) * 0x9E3779B9;
+        h ^= h >>> 16;
+        return Math.floorMod(h, partitions.size());
+    }
+
+    public void finishWrite() throws PhysicalException {
+        for (SpillFile partition : partitions) {
+            partition.finishWrite();
+        }
+    }
+
+    public int size() {
+        return partitions.size();
+    }
+
+    public SpillFile get(int index) {
+        return partitions.get(index);
+    }
+
+    @Override
+    public void close() throws PhysicalException {
+        PhysicalException exception = null;
+        for (SpillFile partition : partitions) {
+            try {
+                partition.close();
+            } catch (PhysicalException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
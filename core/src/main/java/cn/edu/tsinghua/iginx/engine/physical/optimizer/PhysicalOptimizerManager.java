@@ -18,10 +18,16 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.optimizer;
 
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.naive.NaivePhysicalOptimizer;
+import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.FuseUnaryOperatorRule;
+import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.PushDownLimitRule;
+import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.PushDownProjectionRule;
+import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.RemoveRedundantJoinRule;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.Rule;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,7 +64,36 @@ public class PhysicalOptimizerManager {
     }
 
     private Collection<Rule> getRules() {
-        // TODO: get rule from conf
-        return Collections.emptyList();
+        List<Rule> rules = new ArrayList<>();
+        String ruleNames = ConfigDescriptor.getInstance().getConfig().getPhysicalOptimizerRules();
+        for (String name : ruleNames.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            Rule rule = getRule(name);
+            if (rule == null) {
+                logger.error("unknown physical optimizer rule {}, ignore it.", name);
+                continue;
+            }
+            logger.info("use physical optimizer rule {}.", name);
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    private Rule getRule(String name) {
+        switch (name) {
+            case FuseUnaryOperatorRule.NAME:
+                return new FuseUnaryOperatorRule();
+            case PushDownLimitRule.NAME:
+                return new PushDownLimitRule();
+            case PushDownProjectionRule.NAME:
+                return new PushDownProjectionRule();
+            case RemoveRedundantJoinRule.NAME:
+                return new RemoveRedundantJoinRule();
+            default:
+                return null;
+        }
     }
 }
@@ -21,20 +21,39 @@ package cn.edu.tsinghua.iginx.engine.physical.optimizer.naive;
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.PhysicalOptimizer;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.ReplicaDispatcher;
+import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.FusionRule;
+import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.RewriteRule;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.rule.Rule;
+import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
+import cn.edu.tsinghua.iginx.engine.physical.storage.execute.StoragePhysicalTaskExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.storage.execute.StorageTaskScheduler;
 import cn.edu.tsinghua.iginx.engine.physical.task.*;
 import cn.edu.tsinghua.iginx.engine.shared.constraint.ConstraintManager;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
 import cn.edu.tsinghua.iginx.engine.shared.source.Source;
 import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.StorageUnitMeta;
+import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class NaivePhysicalOptimizer implements PhysicalOptimizer {
 
+    private volatile List<RewriteRule> rewriteRules = new ArrayList<>();
+
+    private volatile List<FusionRule> fusionRules = new ArrayList<>();
+
     public static NaivePhysicalOptimizer getInstance() {
         return NaivePhysicalOptimizerHolder.INSTANCE;
     }
@@ -44,7 +63,10 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
         if (root == null) {
             return null;
         }
-        return constructTask(root);
+        // 记录每个算子上生效的改写规则，构建任务时转移到算子所在的任务上
+        Map<Operator, Set<String>> appliedRules = new IdentityHashMap<>();
+        root = rewrite(root, appliedRules);
+        return constructTask(root, appliedRules);
     }
 
     @Override
@@ -58,24 +80,87 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
     }
 
     @Override
-    public void setRules(Collection<Rule> rules) {}
+    public void setRules(Collection<Rule> rules) {
+        List<RewriteRule> rewriteRules = new ArrayList<>();
+        List<FusionRule> fusionRules = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule instanceof RewriteRule) {
+                rewriteRules.add((RewriteRule) rule);
+            }
+            if (rule instanceof FusionRule) {
+                fusionRules.add((FusionRule) rule);
+            }
+        }
+        this.rewriteRules = rewriteRules;
+        this.fusionRules = fusionRules;
+    }
+
+    /** 自底向上改写算子树，直到没有规则可以应用 */
+    private Operator rewrite(Operator operator, Map<Operator, Set<String>> appliedRules) {
+        rewriteSources(operator, appliedRules);
+        for (RewriteRule rule : rewriteRules) {
+            Operator result = rule.apply(operator);
+            if (result == null) {
+                continue;
+            }
+            Set<String> ruleNames = new LinkedHashSet<>();
+            if (appliedRules.containsKey(operator)) {
+                ruleNames.addAll(appliedRules.remove(operator));
+            }
+            ruleNames.add(rule.getName());
+            result = rewrite(result, appliedRules);
+            appliedRules.computeIfAbsent(result, k -> new LinkedHashSet<>()).addAll(ruleNames);
+            return result;
+        }
+        return operator;
+    }
+
+    private void rewriteSources(Operator operator, Map<Operator, Set<String>> appliedRules) {
+        if (OperatorType.isUnaryOperator(operator.getType())) {
+            UnaryOperator unaryOperator = (UnaryOperator) operator;
+            unaryOperator.setSource(rewriteSource(unaryOperator.getSource(), appliedRules));
+        } else if (OperatorType.isBinaryOperator(operator.getType())) {
+            BinaryOperator binaryOperator = (BinaryOperator) operator;
+            binaryOperator.setSourceA(rewriteSource(binaryOperator.getSourceA(), appliedRules));
+            binaryOperator.setSourceB(rewriteSource(binaryOperator.getSourceB(), appliedRules));
+        } else if (OperatorType.isMultipleOperator(operator.getType())) {
+            MultipleOperator multipleOperator = (MultipleOperator) operator;
+            List<Source> sources = new ArrayList<>();
+            for (Source source : multipleOperator.getSources()) {
+                sources.add(rewriteSource(source, appliedRules));
+            }
+            multipleOperator.setSources(sources);
+        }
+    }
+
+    private Source rewriteSource(Source source, Map<Operator, Set<String>> appliedRules) {
+        if (source.getType() != SourceType.Operator) {
+            return source;
+        }
+        Operator operator = ((OperatorSource) source).getOperator();
+        Operator result = rewrite(operator, appliedRules);
+        return result == operator ? source : new OperatorSource(result);
+    }
 
-    private PhysicalTask constructTask(Operator operator) {
+    private PhysicalTask constructTask(Operator operator, Map<Operator, Set<String>> appliedRules) {
         if (OperatorType.isUnaryOperator(operator.getType())) {
             UnaryOperator unaryOperator = (UnaryOperator) operator;
             Source source = unaryOperator.getSource();
             if (source.getType() == SourceType.Fragment) { // 构建物理计划
                 List<Operator> operators = new ArrayList<>();
                 operators.add(operator);
+                PhysicalTask task;
                 if (OperatorType.isNeedBroadcasting(operator.getType())) {
-                    return new StoragePhysicalTask(operators, true, true);
+                    task = new StoragePhysicalTask(operators, true, true);
                 } else {
-                    return new StoragePhysicalTask(operators);
+                    task = new StoragePhysicalTask(operators);
                 }
+                addAppliedRules(task, operator, appliedRules);
+                return task;
             } else { // 构建内存中的计划
                 OperatorSource operatorSource = (OperatorSource) source;
                 Operator sourceOperator = operatorSource.getOperator();
-                PhysicalTask sourceTask = constructTask(operatorSource.getOperator());
+                PhysicalTask sourceTask = constructTask(operatorSource.getOperator(), appliedRules);
                 if (ConfigDescriptor.getInstance().getConfig().isEnablePushDown()
                         && sourceTask instanceof StoragePhysicalTask
                         && sourceOperator.getType() == OperatorType.Project
@@ -85,11 +170,31 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
                         && operator.getType() == OperatorType.Select
                         && ((Select) operator).getTagFilter() == null) {
                     sourceTask.getOperators().add(operator);
+                    addAppliedRules(sourceTask, operator, appliedRules);
+                    return sourceTask;
+                }
+                if (ConfigDescriptor.getInstance().getConfig().isEnablePushDown()
+                        && sourceTask instanceof StoragePhysicalTask
+                        && isAggregateOperator(operator)
+                        && isProjectWithSelect(sourceTask.getOperators())
+                        && isSupportedByStorage((StoragePhysicalTask) sourceTask, operator)) {
+                    // 聚合与查询一起交给存储，存储执行失败时在读取后立即聚合
+                    sourceTask.getOperators().add(operator);
+                    addAppliedRules(sourceTask, operator, appliedRules);
                     return sourceTask;
                 }
+                for (FusionRule rule : fusionRules) {
+                    if (rule.canFuse(sourceTask, operator)) {
+                        sourceTask.getOperators().add(operator);
+                        sourceTask.addAppliedRule(rule.getName());
+                        addAppliedRules(sourceTask, operator, appliedRules);
+                        return sourceTask;
+                    }
+                }
                 List<Operator> operators = new ArrayList<>();
                 operators.add(operator);
                 PhysicalTask task = new UnaryMemoryPhysicalTask(operators, sourceTask);
+                addAppliedRules(task, operator, appliedRules);
                 sourceTask.setFollowerTask(task);
                 return task;
             }
@@ -97,11 +202,12 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
             BinaryOperator binaryOperator = (BinaryOperator) operator;
             OperatorSource sourceA = (OperatorSource) binaryOperator.getSourceA();
             OperatorSource sourceB = (OperatorSource) binaryOperator.getSourceB();
-            PhysicalTask sourceTaskA = constructTask(sourceA.getOperator());
-            PhysicalTask sourceTaskB = constructTask(sourceB.getOperator());
+            PhysicalTask sourceTaskA = constructTask(sourceA.getOperator(), appliedRules);
+            PhysicalTask sourceTaskB = constructTask(sourceB.getOperator(), appliedRules);
             List<Operator> operators = new ArrayList<>();
             operators.add(operator);
             PhysicalTask task = new BinaryMemoryPhysicalTask(operators, sourceTaskA, sourceTaskB);
+            addAppliedRules(task, operator, appliedRules);
             sourceTaskA.setFollowerTask(task);
             sourceTaskB.setFollowerTask(task);
             return task;
@@ -111,12 +217,13 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
             List<PhysicalTask> parentTasks = new ArrayList<>();
             for (Source source : sources) {
                 OperatorSource operatorSource = (OperatorSource) source;
-                PhysicalTask parentTask = constructTask(operatorSource.getOperator());
+                PhysicalTask parentTask = constructTask(operatorSource.getOperator(), appliedRules);
                 parentTasks.add(parentTask);
             }
             List<Operator> operators = new ArrayList<>();
             operators.add(operator);
             PhysicalTask task = new MultipleMemoryPhysicalTask(operators, parentTasks);
+            addAppliedRules(task, operator, appliedRules);
             for (PhysicalTask parentTask : parentTasks) {
                 parentTask.setFollowerTask(task);
             }
@@ -124,6 +231,62 @@ public class NaivePhysicalOptimizer implements PhysicalOptimizer {
         }
     }
 
+    private void addAppliedRules(
+            PhysicalTask task, Operator operator, Map<Operator, Set<String>> appliedRules) {
+        Set<String> ruleNames = appliedRules.get(operator);
+        if (ruleNames != null) {
+            ruleNames.forEach(task::addAppliedRule);
+        }
+    }
+
+    private boolean isAggregateOperator(Operator operator) {
+        List<FunctionCall> functionCallList;
+        if (operator.getType() == OperatorType.Downsample) {
+            functionCallList = ((Downsample) operator).getFunctionCallList();
+        } else if (operator.getType() == OperatorType.SetTransform) {
+            functionCallList = ((SetTransform) operator).getFunctionCallList();
+        } else {
+            return false;
+        }
+        return functionCallList.stream()
+                .allMatch(
+                        functionCall ->
+                                functionCall.getFunction().getFunctionType()
+                                        == FunctionType.System);
+    }
+
+    /** 存储无法直接计算的聚合不放入存储任务，而是作为每个分片各自的内存任务，由内存任务线程池并行执行 */
+    private boolean isSupportedByStorage(StoragePhysicalTask task, Operator operator) {
+        FragmentMeta fragment = task.getTargetFragment();
+        if (fragment.isDummyFragment()) {
+            return false;
+        }
+        StorageUnitMeta storageUnit =
+                DefaultMetaManager.getInstance().getStorageUnit(fragment.getMasterStorageUnitId());
+        if (storageUnit == null) {
+            return false;
+        }
+        Pair<IStorage, StorageTaskScheduler> pair =
+                StoragePhysicalTaskExecutor.getInstance()
+                        .getStorageManager()
+                        .getStorage(storageUnit.getStorageEngineId());
+        return pair != null && pair.k.isSupportProjectWithAggregate(operator);
+    }
+
+    private boolean isProjectWithSelect(List<Operator> operators) {
+        Operator project = operators.get(0);
+        if (project.getType() != OperatorType.Project
+                || ((Project) project).getTagFilter() != null) {
+            return false;
+        }
+        if (operators.size() == 1) {
+            return true;
+        }
+        return operators.size() == 2
+                && operators.get(1).getType() == OperatorType.Select
+                && ((Select) operators.get(1)).getTagFilter() == null;
+    }
+
     private static class NaivePhysicalOptimizerHolder {
 
         private static final NaivePhysicalOptimizer INSTANCE = new NaivePhysicalOptimizer();
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.optimizer.rule;
+
+import cn.edu.tsinghua.iginx.engine.physical.task.PhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.TaskType;
+import cn.edu.tsinghua.iginx.engine.physical.task.UnaryMemoryPhysicalTask;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+
+/** 将连续的一元算子合并到同一个内存任务中依次执行 */
+public class FuseUnaryOperatorRule implements FusionRule {
+
+    public static final String NAME = "fuse_unary_operator";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canFuse(PhysicalTask task, Operator operator) {
+        if (!OperatorType.isUnaryOperator(operator.getType())) {
+            return false;
+        }
+        if (task.getType() == TaskType.BinaryMemory) {
+            return true;
+        }
+        if (task.getType() != TaskType.UnaryMemory) {
+            return false;
+        }
+        // 需要立即算出的部分聚合在分片各自的任务中执行，不能再追加算子
+        return !((UnaryMemoryPhysicalTask) task).isEagerPartialAggregate();
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.optimizer.rule;
+
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.KEY;
+
+import cn.edu.tsinghua.iginx.engine.physical.task.PhysicalTask;
+import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Join;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MergeByKey;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Rename;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Reorder;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 将 Limit 尽量下推到存储任务中。Limit 可以越过不改变行数的列重排和重命名；位于按 key 合并的 MergeByKey 或 Join 之上时，每个输入只需要前
+ * limit + offset 行，因此为每个输入增加一个 Limit。Limit 之下是按 key 逆序的排序时，每个输入只需要最后 limit + offset 行。
+ * 最终紧邻查询的 Limit 与按 key 的排序追加到存储任务中，由支持的存储直接返回所需的行。
+ */
+public class PushDownLimitRule implements RewriteRule, FusionRule {
+
+    public static final String NAME = "push_down_limit";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Operator apply(Operator operator) {
+        if (operator.getType() != OperatorType.Limit) {
+            return null;
+        }
+        Limit limit = (Limit) operator;
+        Operator child = getChild(limit);
+        if (child == null) {
+            return null;
+        }
+        switch (child.getType()) {
+            case Reorder:
+                Reorder reorder = (Reorder) child;
+                return new Reorder(
+                        new OperatorSource(copyLimit(limit, reorder.getSource())),
+                        reorder.getPatterns());
+            case Rename:
+                Rename rename = (Rename) child;
+                return new Rename(
+                        new OperatorSource(copyLimit(limit, rename.getSource())),
+                        rename.getAliasMap());
+            default:
+                return pushDownToScans(limit, child) ? limit : null;
+        }
+    }
+
+    /** 为 Limit 之下的分片查询增加 Limit，Limit 与分片查询之间可以有按 key 的排序以及不改变行的算子 */
+    private boolean pushDownToScans(Limit limit, Operator child) {
+        long required = (long) limit.getLimit() + limit.getOffset();
+        // 只有 offset 没有 limit 时每个输入都需要全部数据
+        if (limit.getLimit() == Integer.MAX_VALUE || required > Integer.MAX_VALUE) {
+            return false;
+        }
+        boolean ascending = true;
+        UnaryOperator holder = limit;
+        Operator target = child;
+        if (target.getType() == OperatorType.Sort && ((Sort) target).isSortByKey()) {
+            ascending = ((Sort) target).getSortType() == Sort.SortType.ASC;
+            holder = (Sort) target;
+            target = getChild(holder);
+        }
+        boolean direct = true;
+        while (target != null && isRowPreserving(target)) {
+            holder = (UnaryOperator) target;
+            target = getChild(holder);
+            direct = false;
+        }
+        if (target == null) {
+            return false;
+        }
+        Operator pushed = null;
+        if (isMergeByKey(target)) {
+            pushed = pushDownToInputs(target, (int) required, ascending);
+        } else if (!direct && isScan(target)) {
+            // 紧邻 Limit 或排序的查询在构建任务时直接追加，不需要改写
+            pushed = limit(target, (int) required, ascending);
+        }
+        if (pushed == null) {
+            return false;
+        }
+        holder.setSource(new OperatorSource(pushed));
+        return true;
+    }
+
+    private Operator pushDownToInputs(Operator merge, int required, boolean ascending) {
+        List<Source> sources = new ArrayList<>();
+        if (merge.getType() == OperatorType.MergeByKey) {
+            sources.addAll(((MultipleOperator) merge).getSources());
+        } else {
+            sources.add(((BinaryOperator) merge).getSourceA());
+            sources.add(((BinaryOperator) merge).getSourceB());
+        }
+        boolean changed = false;
+        for (int i = 0; i < sources.size(); i++) {
+            Operator input = ((OperatorSource) sources.get(i)).getOperator();
+            if (!isLimited(input, required, ascending)) {
+                sources.set(i, new OperatorSource(limit(input, required, ascending)));
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return null;
+        }
+        if (merge.getType() == OperatorType.MergeByKey) {
+            return new MergeByKey(sources);
+        }
+        return new Join(sources.get(0), sources.get(1), KEY);
+    }
+
+    /** 取 input 按 key 排序的前（或最后）limit 行，结果仍按 key 升序排列，以便按 key 合并 */
+    private static Operator limit(Operator input, int limit, boolean ascending) {
+        if (ascending) {
+            return new Limit(new OperatorSource(input), limit, 0);
+        }
+        Sort descending =
+                new Sort(
+                        new OperatorSource(input),
+                        Collections.singletonList(KEY),
+                        Sort.SortType.DESC);
+        return new Sort(
+                new OperatorSource(new Limit(new OperatorSource(descending), limit, 0)),
+                Collections.singletonList(KEY),
+                Sort.SortType.ASC);
+    }
+
+    private static boolean isLimited(Operator input, int limit, boolean ascending) {
+        if (!ascending) {
+            if (!isSortByKey(input, Sort.SortType.ASC)) {
+                return false;
+            }
+            input = getChild((UnaryOperator) input);
+        }
+        if (input == null
+                || input.getType() != OperatorType.Limit
+                || ((Limit) input).getOffset() != 0
+                || ((Limit) input).getLimit() > limit) {
+            return false;
+        }
+        return ascending || isSortByKey(getChild((Limit) input), Sort.SortType.DESC);
+    }
+
+    private static boolean isSortByKey(Operator operator, Sort.SortType sortType) {
+        return operator != null
+                && operator.getType() == OperatorType.Sort
+                && ((Sort) operator).isSortByKey()
+                && ((Sort) operator).getSortType() == sortType;
+    }
+
+    private static boolean isMergeByKey(Operator operator) {
+        return operator.getType() == OperatorType.MergeByKey
+                || (operator.getType() == OperatorType.Join
+                        && ((Join) operator).getJoinBy().equals(KEY));
+    }
+
+    /** 分片上的查询，Select 在构建任务时会与查询一起交给存储 */
+    private static boolean isScan(Operator operator) {
+        if (operator.getType() == OperatorType.Select) {
+            operator = getChild((UnaryOperator) operator);
+        }
+        return operator != null
+                && operator.getType() == OperatorType.Project
+                && ((Project) operator).getSource().getType() == SourceType.Fragment;
+    }
+
+    /**
+     * 判断算子是否保留输入的每一行。内存中的 Project 会丢弃所选列全为空的行，只有它保留了所有查询到的列时才不改变行
+     */
+    private static boolean isRowPreserving(Operator operator) {
+        switch (operator.getType()) {
+            case Reorder:
+            case Rename:
+                return true;
+            case Project:
+                Operator child = getChild((Project) operator);
+                if (child == null) {
+                    return false;
+                }
+                Set<String> scanPatterns = new HashSet<>();
+                return collectScanPatterns(child, scanPatterns)
+                        && ((Project) operator).getPatterns().containsAll(scanPatterns);
+            default:
+                return false;
+        }
+    }
+
+    /** 收集子树中所有分片查询的列，子树中有改变列的算子时返回 false */
+    private static boolean collectScanPatterns(Operator operator, Set<String> patterns) {
+        switch (operator.getType()) {
+            case Project:
+                Project project = (Project) operator;
+                if (project.getSource().getType() != SourceType.Fragment) {
+                    return false;
+                }
+                patterns.addAll(project.getPatterns());
+                return true;
+            case Select:
+            case Limit:
+            case Sort:
+                Operator child = getChild((UnaryOperator) operator);
+                return child != null && collectScanPatterns(child, patterns);
+            case MergeByKey:
+            case Join:
+                if (!isMergeByKey(operator)) {
+                    return false;
+                }
+                List<Source> sources = new ArrayList<>();
+                if (operator.getType() == OperatorType.MergeByKey) {
+                    sources.addAll(((MultipleOperator) operator).getSources());
+                } else {
+                    sources.add(((BinaryOperator) operator).getSourceA());
+                    sources.add(((BinaryOperator) operator).getSourceB());
+                }
+                for (Source source : sources) {
+                    if (!collectScanPatterns(((OperatorSource) source).getOperator(), patterns)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Operator getChild(UnaryOperator operator) {
+        Source source = operator.getSource();
+        return source.getType() == SourceType.Operator
+                ? ((OperatorSource) source).getOperator()
+                : null;
+    }
+
+    private static Limit copyLimit(Limit limit, Source source) {
+        return new Limit(source, limit.getLimit(), limit.getOffset());
+    }
+
+    @Override
+    public boolean canFuse(PhysicalTask task, Operator operator) {
+        if (operator.getType() == OperatorType.Sort) {
+            return ((Sort) operator).isSortByKey() && PushDownProjectionRule.isQueryTask(task);
+        }
+        return operator.getType() == OperatorType.Limit
+                && PushDownProjectionRule.isQueryTask(task);
+    }
+}
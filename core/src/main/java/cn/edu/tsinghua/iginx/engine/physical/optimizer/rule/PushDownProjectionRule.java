@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.optimizer.rule;
+
+import cn.edu.tsinghua.iginx.engine.physical.task.PhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.TaskType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+
+/** 将查询结果上的列重排和重命名追加到存储任务中，在读取数据的线程中直接完成 */
+public class PushDownProjectionRule implements FusionRule {
+
+    public static final String NAME = "push_down_projection";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canFuse(PhysicalTask task, Operator operator) {
+        return (operator.getType() == OperatorType.Reorder
+                        || operator.getType() == OperatorType.Rename)
+                && isQueryTask(task);
+    }
+
+    static boolean isQueryTask(PhysicalTask task) {
+        return task.getType() == TaskType.Storage
+                && task.getOperators().get(0).getType() == OperatorType.Project;
+    }
+}
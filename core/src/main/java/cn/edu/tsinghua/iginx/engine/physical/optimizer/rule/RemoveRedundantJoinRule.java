@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.optimizer.rule;
+
+import static cn.edu.tsinghua.iginx.engine.shared.Constants.KEY;
+
+import cn.edu.tsinghua.iginx.engine.shared.operator.BinaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Join;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 消除对同一份数据的重复扫描。查询中的每个列都会复制一份查询子树，再通过 Join 拼接，如 Join(Project(X, [a]), Project(X,
+ * [b]))。当按 key 拼接的多个输入是同一子树上互不相交的 Project 时，将它们合并为一个 Project，去掉多余的 Join。
+ */
+public class RemoveRedundantJoinRule implements RewriteRule {
+
+    public static final String NAME = "remove_redundant_join";
+
+    /** 判断子树是否相同时只比较这些算子，其余算子的 getInfo 不能完整描述算子 */
+    private static final Set<OperatorType> COMPARABLE_TYPES = new HashSet<>();
+
+    static {
+        COMPARABLE_TYPES.add(OperatorType.Project);
+        COMPARABLE_TYPES.add(OperatorType.Select);
+        COMPARABLE_TYPES.add(OperatorType.Join);
+        COMPARABLE_TYPES.add(OperatorType.MergeByKey);
+        COMPARABLE_TYPES.add(OperatorType.Union);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Operator apply(Operator operator) {
+        if (operator.getType() != OperatorType.Join) {
+            return null;
+        }
+        // 各执行器的 Project 对全空行的处理不同，只有按 key 拼接时合并前后的结果在所有执行器上都一致
+        if (!((Join) operator).getJoinBy().equals(KEY)) {
+            return null;
+        }
+        List<Operator> inputs = new ArrayList<>();
+        collectInputs(operator, inputs);
+
+        List<Operator> merged = new ArrayList<>();
+        boolean changed = false;
+        for (Operator input : inputs) {
+            boolean absorbed = false;
+            for (int i = 0; i < merged.size(); i++) {
+                Operator project = mergeProject(merged.get(i), input);
+                if (project != null) {
+                    merged.set(i, project);
+                    absorbed = true;
+                    break;
+                }
+            }
+            if (!absorbed) {
+                merged.add(input);
+            }
+            changed |= absorbed;
+        }
+        if (!changed) {
+            return null;
+        }
+        Operator root = merged.get(0);
+        for (int i = 1; i < merged.size(); i++) {
+            root = new Join(new OperatorSource(root), new OperatorSource(merged.get(i)));
+        }
+        return root;
+    }
+
+    private void collectInputs(Operator operator, List<Operator> inputs) {
+        if (operator.getType() == OperatorType.Join && ((Join) operator).getJoinBy().equals(KEY)) {
+            Join join = (Join) operator;
+            collectInputs(((OperatorSource) join.getSourceA()).getOperator(), inputs);
+            collectInputs(((OperatorSource) join.getSourceB()).getOperator(), inputs);
+        } else {
+            inputs.add(operator);
+        }
+    }
+
+    private Operator mergeProject(Operator first, Operator second) {
+        if (first.getType() != OperatorType.Project || second.getType() != OperatorType.Project) {
+            return null;
+        }
+        Project projectA = (Project) first;
+        Project projectB = (Project) second;
+        if (!Objects.equals(
+                Objects.toString(projectA.getTagFilter(), null),
+                Objects.toString(projectB.getTagFilter(), null))) {
+            return null;
+        }
+        Source sourceA = projectA.getSource();
+        if (!isSameSource(sourceA, projectB.getSource())) {
+            return null;
+        }
+        Set<String> patterns = new HashSet<>();
+        List<String> mergedPatterns = new ArrayList<>();
+        for (String pattern : projectA.getPatterns()) {
+            if (pattern.contains("*") || !patterns.add(pattern)) {
+                return null;
+            }
+            mergedPatterns.add(pattern);
+        }
+        for (String pattern : projectB.getPatterns()) {
+            if (pattern.contains("*") || !patterns.add(pattern)) {
+                return null;
+            }
+            mergedPatterns.add(pattern);
+        }
+        return new Project(sourceA, mergedPatterns, projectA.getTagFilter());
+    }
+
+    private static boolean isSameSource(Source sourceA, Source sourceB) {
+        if (sourceA.getType() != sourceB.getType()) {
+            return false;
+        }
+        if (sourceA.getType() == SourceType.Fragment) {
+            return ((FragmentSource) sourceA)
+                    .getFragment()
+                    .equals(((FragmentSource) sourceB).getFragment());
+        }
+        if (sourceA.getType() != SourceType.Operator) {
+            return false;
+        }
+        return isSameOperator(
+                ((OperatorSource) sourceA).getOperator(), ((OperatorSource) sourceB).getOperator());
+    }
+
+    private static boolean isSameOperator(Operator operatorA, Operator operatorB) {
+        if (operatorA == operatorB) {
+            return true;
+        }
+        if (operatorA.getType() != operatorB.getType()
+                || !COMPARABLE_TYPES.contains(operatorA.getType())
+                || !operatorA.getInfo().equals(operatorB.getInfo())) {
+            return false;
+        }
+        if (OperatorType.isUnaryOperator(operatorA.getType())) {
+            return isSameSource(
+                    ((UnaryOperator) operatorA).getSource(),
+                    ((UnaryOperator) operatorB).getSource());
+        }
+        if (OperatorType.isBinaryOperator(operatorA.getType())) {
+            return isSameSource(
+                            ((BinaryOperator) operatorA).getSourceA(),
+                            ((BinaryOperator) operatorB).getSourceA())
+                    && isSameSource(
+                            ((BinaryOperator) operatorA).getSourceB(),
+                            ((BinaryOperator) operatorB).getSourceB());
+        }
+        List<Source> sourcesA = ((MultipleOperator) operatorA).getSources();
+        List<Source> sourcesB = ((MultipleOperator) operatorB).getSources();
+        if (sourcesA.size() != sourcesB.size()) {
+            return false;
+        }
+        for (int i = 0; i < sourcesA.size(); i++) {
+            if (!isSameSource(sourcesA.get(i), sourcesB.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
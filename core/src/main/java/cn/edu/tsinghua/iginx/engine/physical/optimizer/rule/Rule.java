@@ -18,8 +18,9 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.optimizer.rule;
 
+/** 物理优化规则，具体的规则实现 {@link RewriteRule} 或 {@link FusionRule} */
 public interface Rule {
 
-    // TODO: how to define rule
-
+    /** 规则名，用于在配置中启用规则，并在 explain physical 中展示生效的规则 */
+    String getName();
 }
@@ -18,12 +18,14 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.storage;
 
+import cn.edu.tsinghua.iginx.engine.physical.exception.NonExecutablePhysicalTaskException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsRange;
@@ -48,6 +50,36 @@ public interface IStorage {
     TaskExecuteResult executeProjectDummyWithSelect(
             Project project, Select select, DataArea dataArea);
 
+    /** 询问底层是否支持将聚合算子（Downsample 或 SetTransform）与查询一起下推 */
+    default boolean isSupportProjectWithAggregate(Operator aggregate) {
+        return false;
+    }
+
+    /**
+     * 对非叠加分片带聚合下推的查询，select 可以为 null。返回结果需要与在查询结果上直接执行 aggregate 相同。
+     */
+    default TaskExecuteResult executeProjectWithAggregate(
+            Project project, Select select, Operator aggregate, DataArea dataArea) {
+        return new TaskExecuteResult(
+                new NonExecutablePhysicalTaskException(
+                        "unsupported project with aggregate: " + aggregate.getType()));
+    }
+
+    /** 询问底层是否支持将 limit 与查询（以及 select，可以为 null）一起下推 */
+    default boolean isSupportProjectWithLimit(Select select) {
+        return false;
+    }
+
+    /**
+     * 对非叠加分片带 limit 下推的查询，select 可以为 null。只需返回过滤后按 key 排序的前 limit 行（ascending 为 false
+     * 时为最后 limit 行），返回的行仍按 key 升序排列。
+     */
+    default TaskExecuteResult executeProjectWithLimit(
+            Project project, Select select, int limit, boolean ascending, DataArea dataArea) {
+        return new TaskExecuteResult(
+                new NonExecutablePhysicalTaskException("unsupported project with limit"));
+    }
+
     /** 对非叠加分片删除数据 */
     TaskExecuteResult executeDelete(Delete delete, DataArea dataArea);
 
@@ -60,6 +92,15 @@ public interface IStorage {
     /** 获取指定前缀的数据边界 */
     Pair<ColumnsRange, KeyInterval> getBoundaryOfStorage(String prefix) throws PhysicalException;
 
+    /**
+     * 在已知 key 边界的基础上获取指定前缀的数据边界，实现可以只探测 knownKeyInterval 之外的数据以避免重复扫描，
+     * 返回的仍是完整的边界。knownKeyInterval 为 null 时等价于 getBoundaryOfStorage(prefix)。
+     */
+    default Pair<ColumnsRange, KeyInterval> getBoundaryOfStorage(
+            String prefix, KeyInterval knownKeyInterval) throws PhysicalException {
+        return getBoundaryOfStorage(prefix);
+    }
+
     /** 获取数据边界 */
     default Pair<ColumnsRange, KeyInterval> getBoundaryOfStorage() throws PhysicalException {
         return getBoundaryOfStorage(null);
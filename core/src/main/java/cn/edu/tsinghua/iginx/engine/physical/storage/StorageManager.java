@@ -19,6 +19,7 @@
 package cn.edu.tsinghua.iginx.engine.physical.storage;
 
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.storage.execute.StorageTaskScheduler;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsRange;
 import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
@@ -28,9 +29,6 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,7 +42,11 @@ public class StorageManager {
 
     private static final Map<String, String> drivers = new ConcurrentHashMap<>();
 
-    private static final Map<Long, Pair<IStorage, ThreadPoolExecutor>> storageMap =
+    private static final Map<Long, Pair<IStorage, StorageTaskScheduler>> storageMap =
+            new ConcurrentHashMap<>();
+
+    // 已探测过的数据边界，key 为存储地址与数据前缀，再次添加同一存储时只需增量探测
+    private static final Map<String, Pair<ColumnsRange, KeyInterval>> boundaryCache =
             new ConcurrentHashMap<>();
 
     public StorageManager(List<StorageEngineMeta> metaList) {
@@ -68,6 +70,8 @@ public class StorageManager {
         long id = meta.getId();
         boolean needRelease = false;
         IStorage storage = null;
+        String cacheKey = engine + "://" + meta.getIp() + ":" + meta.getPort() + "/" + dataPrefix;
+        Pair<ColumnsRange, KeyInterval> cached = boundaryCache.get(cacheKey);
         try {
             if (storageMap.containsKey(id)) {
                 storage = storageMap.get(id).k;
@@ -80,7 +84,12 @@ public class StorageManager {
                                         .newInstance(meta);
                 needRelease = true;
             }
-            return storage.getBoundaryOfStorage(dataPrefix);
+            Pair<ColumnsRange, KeyInterval> boundary =
+                    storage.getBoundaryOfStorage(dataPrefix, cached == null ? null : cached.v);
+            if (boundary != null) {
+                boundaryCache.put(cacheKey, boundary);
+            }
+            return boundary;
         } catch (ClassNotFoundException e) {
             logger.error("load class {} for engine {} failure: {}", driver, engine, e);
         } catch (Exception e) {
@@ -109,17 +118,9 @@ public class StorageManager {
                                 loader.loadClass(driver)
                                         .getConstructor(StorageEngineMeta.class)
                                         .newInstance(meta);
-                // 启动一个派发线程池
-                ThreadPoolExecutor dispatcher =
-                        new ThreadPoolExecutor(
-                                ConfigDescriptor.getInstance()
-                                        .getConfig()
-                                        .getPhysicalTaskThreadPoolSizePerStorage(),
-                                Integer.MAX_VALUE,
-                                60L,
-                                TimeUnit.SECONDS,
-                                new SynchronousQueue<>());
-                storageMap.put(meta.getId(), new Pair<>(storage, dispatcher));
+                // 为存储创建一个带准入控制的任务调度器
+                StorageTaskScheduler scheduler = new StorageTaskScheduler(id);
+                storageMap.put(meta.getId(), new Pair<>(storage, scheduler));
             }
         } catch (ClassNotFoundException e) {
             logger.error("load class {} for engine {} failure: {}", driver, engine, e);
@@ -157,11 +158,11 @@ public class StorageManager {
         hasInitLoaders = true;
     }
 
-    public Map<Long, Pair<IStorage, ThreadPoolExecutor>> getStorageMap() {
+    public Map<Long, Pair<IStorage, StorageTaskScheduler>> getStorageMap() {
         return storageMap;
     }
 
-    public Pair<IStorage, ThreadPoolExecutor> getStorage(long id) {
+    public Pair<IStorage, StorageTaskScheduler> getStorage(long id) {
         return storageMap.get(id);
     }
 
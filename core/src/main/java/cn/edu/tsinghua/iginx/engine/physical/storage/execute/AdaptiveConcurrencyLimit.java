@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.execute;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 基于延迟的 AIMD 并发上限：最近任务延迟的中位数不超过基准延迟的 {@link #LATENCY_TOLERANCE} 倍且并发接近上限时，每完成 limit
+ * 个任务上限加一；延迟超标或任务失败时上限乘以 {@link #BACKOFF_RATIO}。
+ *
+ * <p>查询与写入的耗时差别很大，因此每类任务各自统计延迟。同一类任务中也混有单点查询与全分片扫描这样耗时差别很大的任务，
+ * 因此基准取上一个窗口内延迟的 {@link #BASELINE_PERCENTILE} 分位数，与最近 {@link #RECENT_WINDOW} 个任务延迟的中位数比较，
+ * 零星的慢任务不会触发下降。窗口结束后重新统计基准，以便后端长期变慢时基准随之上升。
+ */
+public class AdaptiveConcurrencyLimit {
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    static final double LATENCY_TOLERANCE = 2.0;
+
+    static final int RECENT_WINDOW = 32;
+
+    static final double BASELINE_PERCENTILE = 0.9;
+
+    private static final int BASELINE_WINDOW = 512;
+
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private double limit;
+
+    private final Map<StorageTaskScheduler.Lane, LatencyStats> latencyStats =
+            new EnumMap<>(StorageTaskScheduler.Lane.class);
+
+    private double smoothedRtt = 0;
+
+    private long lastBackoffTime = 0;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        for (StorageTaskScheduler.Lane lane : StorageTaskScheduler.Lane.values()) {
+            latencyStats.put(lane, new LatencyStats());
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * 记录一次任务执行结果
+     *
+     * @param lane 任务的类型
+     * @param startTime 任务开始时间（纳秒）
+     * @param rtt 任务耗时（纳秒）
+     * @param inFlight 任务结束时仍在执行的任务数
+     * @param failed 任务是否失败
+     */
+    public synchronized void onSample(
+            StorageTaskScheduler.Lane lane,
+            long startTime,
+            long rtt,
+            int inFlight,
+            boolean failed) {
+        LatencyStats stats = latencyStats.get(lane);
+        if (!failed) {
+            stats.add(rtt);
+            smoothedRtt = smoothedRtt == 0 ? rtt : smoothedRtt * (1 - SMOOTHING) + rtt * SMOOTHING;
+        }
+        if (failed || stats.isOverloaded()) {
+            // 在上一次下降之后才开始的任务的反馈才会再次触发下降，避免一批慢任务把上限打到最低
+            if (startTime >= lastBackoffTime) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastBackoffTime = startTime + rtt;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    public synchronized double getSmoothedRtt() {
+        return smoothedRtt;
+    }
+
+    private static long percentile(long[] values, int size, double percentile) {
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        return sorted[Math.min(size - 1, (int) (size * percentile))];
+    }
+
+    /** 一类任务的延迟统计 */
+    private static class LatencyStats {
+
+        private final long[] recent = new long[RECENT_WINDOW];
+
+        private int recentIndex = 0;
+
+        private int recentSize = 0;
+
+        private final long[] window = new long[BASELINE_WINDOW];
+
+        private int windowSize = 0;
+
+        private long baseline = -1;
+
+        private void add(long rtt) {
+            recent[recentIndex] = rtt;
+            recentIndex = (recentIndex + 1) % RECENT_WINDOW;
+            recentSize = Math.min(RECENT_WINDOW, recentSize + 1);
+            window[windowSize++] = rtt;
+            if (windowSize == BASELINE_WINDOW) {
+                baseline = percentile(window, windowSize, BASELINE_PERCENTILE);
+                windowSize = 0;
+            } else if (baseline < 0 && windowSize % RECENT_WINDOW == 0) {
+                // 第一个窗口结束之前，先用已有的样本作为基准
+                baseline = percentile(window, windowSize, BASELINE_PERCENTILE);
+            }
+        }
+
+        private boolean isOverloaded() {
+            return baseline >= 0
+                    && recentSize == RECENT_WINDOW
+                    && percentile(recent, recentSize, 0.5) > baseline * LATENCY_TOLERANCE;
+        }
+    }
+}
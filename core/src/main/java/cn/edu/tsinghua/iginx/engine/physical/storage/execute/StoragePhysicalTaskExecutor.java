@@ -18,12 +18,13 @@
  */
 package cn.edu.tsinghua.iginx.engine.physical.storage.execute;
 
-import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.physical.exception.NonExecutablePhysicalTaskException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.TooManyPhysicalTasksException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.UnexpectedOperatorException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.MemoryPhysicalTaskDispatcher;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutorFactory;
 import cn.edu.tsinghua.iginx.engine.physical.optimizer.ReplicaDispatcher;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.StorageManager;
@@ -35,12 +36,16 @@ import cn.edu.tsinghua.iginx.engine.physical.task.GlobalPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.MemoryPhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
 import cn.edu.tsinghua.iginx.engine.shared.operator.ShowTimeSeries;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.metadata.DefaultMetaManager;
@@ -58,7 +63,6 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -84,9 +88,6 @@ public class StoragePhysicalTaskExecutor {
 
     private MemoryPhysicalTaskDispatcher memoryTaskExecutor;
 
-    private final int maxCachedPhysicalTaskPerStorage =
-            ConfigDescriptor.getInstance().getConfig().getMaxCachedPhysicalTaskPerStorage();
-
     private StoragePhysicalTaskExecutor() {
         StorageUnitHook storageUnitHook =
                 (before, after) -> {
@@ -107,7 +108,7 @@ public class StoragePhysicalTaskExecutor {
                                     try {
                                         StoragePhysicalTaskQueue taskQueue =
                                                 storageTaskQueues.get(id);
-                                        Pair<IStorage, ThreadPoolExecutor> p =
+                                        Pair<IStorage, StorageTaskScheduler> p =
                                                 storageManager.getStorage(storageId);
                                         while (p == null) {
                                             p = storageManager.getStorage(storageId);
@@ -118,20 +119,13 @@ public class StoragePhysicalTaskExecutor {
                                                 logger.error("encounter error when spinning: ", e);
                                             }
                                         }
-                                        Pair<IStorage, ThreadPoolExecutor> pair = p;
+                                        Pair<IStorage, StorageTaskScheduler> pair = p;
                                         while (true) {
                                             StoragePhysicalTask task = taskQueue.getTask();
                                             task.setStorageUnit(id);
                                             task.setDummyStorageUnit(isDummy);
-                                            if (pair.v.getQueue().size()
-                                                    > maxCachedPhysicalTaskPerStorage) {
-                                                task.setResult(
-                                                        new TaskExecuteResult(
-                                                                new TooManyPhysicalTasksException(
-                                                                        storageId)));
-                                                continue;
-                                            }
                                             pair.v.submit(
+                                                    getLane(task),
                                                     () -> {
                                                         TaskExecuteResult result = null;
                                                         long taskId = System.nanoTime();
@@ -162,59 +156,12 @@ public class StoragePhysicalTaskExecutor {
 
                                                             switch (op.getType()) {
                                                                 case Project:
-                                                                    boolean needSelectPushDown =
-                                                                            pair.k
-                                                                                            .isSupportProjectWithSelect()
-                                                                                    && operators
-                                                                                                    .size()
-                                                                                            == 2
-                                                                                    && operators
-                                                                                                    .get(
-                                                                                                            1)
-                                                                                                    .getType()
-                                                                                            == OperatorType
-                                                                                                    .Select;
-                                                                    if (isDummyStorageUnit) {
-                                                                        if (needSelectPushDown) {
-                                                                            result =
-                                                                                    pair.k
-                                                                                            .executeProjectDummyWithSelect(
-                                                                                                    (Project)
-                                                                                                            op,
-                                                                                                    (Select)
-                                                                                                            operators
-                                                                                                                    .get(
-                                                                                                                            1),
-                                                                                                    dataArea);
-                                                                        } else {
-                                                                            result =
-                                                                                    pair.k
-                                                                                            .executeProjectDummy(
-                                                                                                    (Project)
-                                                                                                            op,
-                                                                                                    dataArea);
-                                                                        }
-                                                                    } else {
-                                                                        if (needSelectPushDown) {
-                                                                            result =
-                                                                                    pair.k
-                                                                                            .executeProjectWithSelect(
-                                                                                                    (Project)
-                                                                                                            op,
-                                                                                                    (Select)
-                                                                                                            operators
-                                                                                                                    .get(
-                                                                                                                            1),
-                                                                                                    dataArea);
-                                                                        } else {
-                                                                            result =
-                                                                                    pair.k
-                                                                                            .executeProject(
-                                                                                                    (Project)
-                                                                                                            op,
-                                                                                                    dataArea);
-                                                                        }
-                                                                    }
+                                                                    result =
+                                                                            executeQueryTask(
+                                                                                    pair.k,
+                                                                                    operators,
+                                                                                    dataArea,
+                                                                                    isDummyStorageUnit);
                                                                     break;
                                                                 case Insert:
                                                                     result =
@@ -332,7 +279,8 @@ public class StoragePhysicalTaskExecutor {
                                                                 }
                                                             }
                                                         }
-                                                    });
+                                                    },
+                                                    () -> rejectTask(task, storageId));
                                         }
                                     } catch (Exception e) {
                                         logger.error(
@@ -361,6 +309,173 @@ public class StoragePhysicalTaskExecutor {
         }
     }
 
+    /** 被拒绝的任务同样需要通知后续的内存任务，否则等待查询结果的线程会一直阻塞 */
+    private void rejectTask(StoragePhysicalTask task, long storageId) {
+        task.setResult(new TaskExecuteResult(new TooManyPhysicalTasksException(storageId)));
+        if (task.getFollowerTask() != null && task.isSync()) {
+            MemoryPhysicalTask followerTask = (MemoryPhysicalTask) task.getFollowerTask();
+            if (followerTask.notifyParentReady()) {
+                memoryTaskExecutor.addMemoryTask(followerTask);
+            }
+        }
+    }
+
+    private StorageTaskScheduler.Lane getLane(StoragePhysicalTask task) {
+        List<Operator> operators = task.getOperators();
+        if (!operators.isEmpty()) {
+            OperatorType type = operators.get(0).getType();
+            if (type == OperatorType.Insert || type == OperatorType.Delete) {
+                return StorageTaskScheduler.Lane.WRITE;
+            }
+        }
+        return StorageTaskScheduler.Lane.QUERY;
+    }
+
+    private boolean isAggregateOperator(Operator operator) {
+        OperatorType type = operator.getType();
+        return type == OperatorType.Downsample || type == OperatorType.SetTransform;
+    }
+
+    /**
+     * 执行查询任务，任务由 Project、可选的 Select 和聚合，以及优化器追加的其余一元算子组成。存储执行查询后，其余算子在内存中依次执行
+     */
+    private TaskExecuteResult executeQueryTask(
+            IStorage storage, List<Operator> operators, DataArea dataArea, boolean isDummy)
+            throws PhysicalException {
+        Project project = (Project) operators.get(0);
+        int index = 1;
+        Select select = null;
+        if (index < operators.size() && operators.get(index).getType() == OperatorType.Select) {
+            select = (Select) operators.get(index++);
+        }
+        UnaryOperator aggregate = null;
+        if (index < operators.size() && isAggregateOperator(operators.get(index))) {
+            aggregate = (UnaryOperator) operators.get(index++);
+        }
+        TaskExecuteResult result = null;
+        if (aggregate == null && !isDummy) {
+            result = executeProjectWithLimit(storage, project, select, operators, index, dataArea);
+        }
+        if (result == null) {
+            result =
+                    aggregate == null
+                            ? executeProject(storage, project, select, dataArea, isDummy)
+                            : executeAggregateTask(
+                                    storage, project, select, aggregate, dataArea, isDummy);
+        }
+        if (result.getException() != null || index == operators.size()) {
+            return result;
+        }
+        OperatorMemoryExecutor executor =
+                OperatorMemoryExecutorFactory.getInstance().getMemoryExecutor();
+        RowStream stream = result.getRowStream();
+        for (Operator operator : operators.subList(index, operators.size())) {
+            stream = executor.executeUnaryOperator((UnaryOperator) operator, stream);
+        }
+        return new TaskExecuteResult(stream);
+    }
+
+    /**
+     * 查询之后是 Limit（之前可以有按 key 的排序）时，让存储只返回所需的行。Limit 与排序仍会在内存中执行，存储不支持或执行失败时返回 null
+     */
+    private TaskExecuteResult executeProjectWithLimit(
+            IStorage storage,
+            Project project,
+            Select select,
+            List<Operator> operators,
+            int index,
+            DataArea dataArea) {
+        // 存储按标签过滤序列后可能产生空行，此时存储返回的行数不足
+        if (project.getTagFilter() != null
+                || (select != null && !storage.isSupportProjectWithSelect())
+                || !storage.isSupportProjectWithLimit(select)) {
+            return null;
+        }
+        boolean ascending = true;
+        if (index < operators.size() && operators.get(index).getType() == OperatorType.Sort) {
+            Sort sort = (Sort) operators.get(index++);
+            if (!sort.isSortByKey()) {
+                return null;
+            }
+            ascending = sort.getSortType() == Sort.SortType.ASC;
+        }
+        if (index == operators.size() || operators.get(index).getType() != OperatorType.Limit) {
+            return null;
+        }
+        Limit limit = (Limit) operators.get(index);
+        long required = (long) limit.getLimit() + limit.getOffset();
+        if (limit.getLimit() == Integer.MAX_VALUE || required > Integer.MAX_VALUE) {
+            return null;
+        }
+        TaskExecuteResult result =
+                storage.executeProjectWithLimit(
+                        project, select, (int) required, ascending, dataArea);
+        if (result.getException() != null) {
+            logger.warn(
+                    "execute project with limit failure, fall back to full query: ",
+                    result.getException());
+            return null;
+        }
+        return result;
+    }
+
+    /** 执行带聚合的查询任务，存储不支持聚合下推时读取数据后在内存中聚合 */
+    private TaskExecuteResult executeAggregateTask(
+            IStorage storage,
+            Project project,
+            Select select,
+            UnaryOperator aggregate,
+            DataArea dataArea,
+            boolean isDummy)
+            throws PhysicalException {
+        if (!isDummy
+                && (select == null || storage.isSupportProjectWithSelect())
+                && storage.isSupportProjectWithAggregate(aggregate)) {
+            TaskExecuteResult result =
+                    storage.executeProjectWithAggregate(project, select, aggregate, dataArea);
+            if (result.getException() == null) {
+                return result;
+            }
+            logger.warn(
+                    "execute project with aggregate failure, fall back to aggregate in memory: ",
+                    result.getException());
+        }
+
+        TaskExecuteResult result = executeProject(storage, project, select, dataArea, isDummy);
+        if (result.getException() != null) {
+            return result;
+        }
+        OperatorMemoryExecutor executor =
+                OperatorMemoryExecutorFactory.getInstance().getMemoryExecutor();
+        return new TaskExecuteResult(
+                executor.executeUnaryOperator(aggregate, result.getRowStream()));
+    }
+
+    /** 执行查询与过滤，存储不支持过滤下推时读取数据后在内存中过滤 */
+    private TaskExecuteResult executeProject(
+            IStorage storage, Project project, Select select, DataArea dataArea, boolean isDummy)
+            throws PhysicalException {
+        boolean needSelectPushDown = select != null && storage.isSupportProjectWithSelect();
+        TaskExecuteResult result;
+        if (isDummy) {
+            result =
+                    needSelectPushDown
+                            ? storage.executeProjectDummyWithSelect(project, select, dataArea)
+                            : storage.executeProjectDummy(project, dataArea);
+        } else {
+            result =
+                    needSelectPushDown
+                            ? storage.executeProjectWithSelect(project, select, dataArea)
+                            : storage.executeProject(project, dataArea);
+        }
+        if (result.getException() != null || select == null || needSelectPushDown) {
+            return result;
+        }
+        OperatorMemoryExecutor executor =
+                OperatorMemoryExecutorFactory.getInstance().getMemoryExecutor();
+        return new TaskExecuteResult(executor.executeUnaryOperator(select, result.getRowStream()));
+    }
+
     public static StoragePhysicalTaskExecutor getInstance() {
         return INSTANCE;
     }
@@ -380,7 +495,7 @@ public class StoragePhysicalTaskExecutor {
                 Set<Column> columnSet = new HashSet<>();
                 for (StorageEngineMeta storage : storageList) {
                     long id = storage.getId();
-                    Pair<IStorage, ThreadPoolExecutor> pair = storageManager.getStorage(id);
+                    Pair<IStorage, StorageTaskScheduler> pair = storageManager.getStorage(id);
                     if (pair == null) {
                         continue;
                     }
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.execute;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 单个存储引擎的任务准入控制。同时执行的任务数不超过 {@link AdaptiveConcurrencyLimit} 给出的上限，其余任务按查询与写入进入各自的有界队列，
+ * 两个队列轮流出队，避免写入饿死查询或者相反。队列已满或等待超时的任务会被拒绝。
+ */
+public class StorageTaskScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageTaskScheduler.class);
+
+    private static final Config config = ConfigDescriptor.getInstance().getConfig();
+
+    private static final long EXPIRE_CHECK_INTERVAL = 1000L;
+
+    private static final ScheduledExecutorService expireChecker =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> {
+                        Thread thread = new Thread(r, "storage-task-expire-checker");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    public enum Lane {
+        QUERY,
+        WRITE
+    }
+
+    private static class PendingTask {
+
+        private final Lane lane;
+
+        private final Runnable task;
+
+        private final Runnable onReject;
+
+        private final long deadline;
+
+        private PendingTask(Lane lane, Runnable task, Runnable onReject, long deadline) {
+            this.lane = lane;
+            this.task = task;
+            this.onReject = onReject;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long storageId;
+
+    private final AdaptiveConcurrencyLimit limit;
+
+    private final ThreadPoolExecutor workers;
+
+    private final List<Deque<PendingTask>> queues = new ArrayList<>();
+
+    private final int queueCapacity;
+
+    private final long queueTimeout;
+
+    private int inFlight = 0;
+
+    private int nextLane = 0;
+
+    private final AtomicLong completedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    public StorageTaskScheduler(long storageId) {
+        this(
+                storageId,
+                new AdaptiveConcurrencyLimit(
+                        config.getPhysicalTaskThreadPoolSizePerStorage(),
+                        config.getMinPhysicalTaskConcurrencyPerStorage(),
+                        config.getMaxPhysicalTaskConcurrencyPerStorage()),
+                config.getMaxCachedPhysicalTaskPerStorage(),
+                config.getPhysicalTaskQueueTimeout());
+    }
+
+    public StorageTaskScheduler(
+            long storageId, AdaptiveConcurrencyLimit limit, int queueCapacity, long queueTimeout) {
+        this.storageId = storageId;
+        this.limit = limit;
+        this.queueCapacity = queueCapacity;
+        this.queueTimeout = queueTimeout;
+        for (int i = 0; i < Lane.values().length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+        // 并发数由 limit 控制，线程池本身不会拒绝任务
+        int maxThreads = limit.getMaxLimit();
+        this.workers =
+                new ThreadPoolExecutor(
+                        maxThreads, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.workers.allowCoreThreadTimeOut(true);
+        expireChecker.scheduleWithFixedDelay(
+                this::expire, EXPIRE_CHECK_INTERVAL, EXPIRE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交一个任务。队列已满时立即调用 onReject；任务在队列中等待超过 queueTimeout 时同样调用 onReject
+     *
+     * @return 任务是否进入了队列
+     */
+    public boolean submit(Lane lane, Runnable task, Runnable onReject) {
+        boolean accepted;
+        synchronized (this) {
+            Deque<PendingTask> queue = queues.get(lane.ordinal());
+            accepted = queue.size() < queueCapacity;
+            if (accepted) {
+                long deadline = System.currentTimeMillis() + queueTimeout;
+                queue.addLast(new PendingTask(lane, task, onReject, deadline));
+            }
+        }
+        if (!accepted) {
+            rejectedCount.incrementAndGet();
+            onReject.run();
+            return false;
+        }
+        dispatch();
+        return true;
+    }
+
+    private void dispatch() {
+        List<PendingTask> expired = new ArrayList<>();
+        List<PendingTask> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            while (inFlight < limit.getLimit()) {
+                PendingTask pending = poll(now, expired);
+                if (pending == null) {
+                    break;
+                }
+                inFlight++;
+                ready.add(pending);
+            }
+        }
+        reject(expired);
+        for (PendingTask pending : ready) {
+            workers.execute(() -> run(pending.lane, pending.task));
+        }
+    }
+
+    /** 从下一个轮到的队列开始依次取任务，跳过已经超时的任务 */
+    private PendingTask poll(long now, List<PendingTask> expired) {
+        for (int i = 0; i < queues.size(); i++) {
+            int lane = (nextLane + i) % queues.size();
+            Deque<PendingTask> queue = queues.get(lane);
+            PendingTask pending;
+            while ((pending = queue.pollFirst()) != null) {
+                if (pending.deadline < now) {
+                    expired.add(pending);
+                    continue;
+                }
+                nextLane = (lane + 1) % queues.size();
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    private void run(Lane lane, Runnable task) {
+        long startTime = System.nanoTime();
+        boolean failed = false;
+        try {
+            task.run();
+        } catch (Throwable e) {
+            failed = true;
+            logger.error("execute task for storage {} failure: ", storageId, e);
+        }
+        long rtt = System.nanoTime() - startTime;
+        int current;
+        synchronized (this) {
+            current = inFlight--;
+        }
+        completedCount.incrementAndGet();
+        limit.onSample(lane, startTime, rtt, current, failed);
+        dispatch();
+    }
+
+    private void expire() {
+        List<PendingTask> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Deque<PendingTask> queue : queues) {
+                queue.removeIf(
+                        pending -> {
+                            if (pending.deadline < now) {
+                                expired.add(pending);
+                                return true;
+                            }
+                            return false;
+                        });
+            }
+        }
+        reject(expired);
+    }
+
+    private void reject(List<PendingTask> expired) {
+        for (PendingTask pending : expired) {
+            timeoutCount.incrementAndGet();
+            try {
+                pending.onReject.run();
+            } catch (Exception e) {
+                logger.error("reject task for storage {} failure: ", storageId, e);
+            }
+        }
+    }
+
+    public long getStorageId() {
+        return storageId;
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueSize(Lane lane) {
+        return queues.get(lane.ordinal()).size();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public double getSmoothedRtt() {
+        return limit.getSmoothedRtt();
+    }
+}
@@ -0,0 +1,190 @@
+package cn.edu.tsinghua.iginx.engine.physical.storage.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.DataTypeUtils;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public class AggregateUtils {
+
+    /** 判断聚合算子中的函数是否都是存储可以计算的系统函数，且不带 group by level */
+    public static boolean isSupportedAggregate(Operator aggregate, Collection<String> functions) {
+        List<FunctionCall> functionCallList;
+        if (aggregate.getType() == OperatorType.SetTransform) {
+            functionCallList = ((SetTransform) aggregate).getFunctionCallList();
+        } else if (aggregate.getType() == OperatorType.Downsample) {
+            functionCallList = ((Downsample) aggregate).getFunctionCallList();
+        } else {
+            return false;
+        }
+        for (FunctionCall functionCall : functionCallList) {
+            if (functionCall.getFunction().getFunctionType() != FunctionType.System
+                    || functionCall.getParams().getLevels() != null
+                    || !functions.contains(functionCall.getFunction().getIdentifier())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 与内存中执行 Downsample 相同，返回 key 所在窗口的起点 */
+    public static long getWindowKey(long key, Downsample downsample) {
+        long bias = downsample.getKeyRange().getActualBeginKey();
+        return key - (key - bias) % downsample.getPrecision();
+    }
+
+    /**
+     * 将存储按列聚合得到的单行结果（列名为原始序列名）转换为与内存中执行 SetTransform 相同的结果，
+     * 即对每个函数只保留与其参数匹配的列，并将列名改写为 func(path) 的形式。columnFunctions
+     * 给出结果中每一列是由哪个函数计算得到的。
+     */
+    public static RowStream toSetTransformResult(
+            RowStream stream, List<String> columnFunctions, SetTransform setTransform)
+            throws PhysicalException {
+        Header header = stream.getHeader();
+        Row row = stream.hasNext() ? stream.next() : null;
+        stream.close();
+
+        List<Integer> indices = new ArrayList<>();
+        Header targetHeader =
+                getTargetHeader(
+                        header, columnFunctions, setTransform.getFunctionCallList(), indices);
+        Object[] targetValues = getTargetValues(row, targetHeader, columnFunctions, indices);
+        return new Table(
+                targetHeader, Collections.singletonList(new Row(targetHeader, targetValues)));
+    }
+
+    /**
+     * 将存储按窗口聚合得到的结果转换为与内存中执行 Downsample 相同的结果。stream 中每行的 key 为窗口的起点（见 {@link
+     * #getWindowKey}），只包含有数据的窗口，列的含义与 {@link #toSetTransformResult} 相同。
+     */
+    public static RowStream toDownsampleResult(
+            RowStream stream, List<String> columnFunctions, Downsample downsample)
+            throws PhysicalException {
+        Header header = stream.getHeader();
+        List<Integer> indices = new ArrayList<>();
+        Header targetHeader =
+                getTargetHeader(header, columnFunctions, downsample.getFunctionCallList(), indices);
+        targetHeader = new Header(Field.KEY, targetHeader.getFields());
+
+        List<Row> rows = new ArrayList<>();
+        while (stream.hasNext()) {
+            Row row = stream.next();
+            rows.add(
+                    new Row(
+                            targetHeader,
+                            row.getKey(),
+                            getTargetValues(row, targetHeader, columnFunctions, indices)));
+        }
+        stream.close();
+        if (rows.isEmpty()) {
+            return new Table(Header.EMPTY_HEADER, rows);
+        }
+        return new Table(targetHeader, rows);
+    }
+
+    /** 按函数的顺序找出每个函数匹配的列，indices 中记录每个结果列对应的原始列 */
+    private static Header getTargetHeader(
+            Header header,
+            List<String> columnFunctions,
+            List<FunctionCall> functionCallList,
+            List<Integer> indices) {
+        List<Field> targetFields = new ArrayList<>();
+        Set<String> fullNames = new HashSet<>();
+        for (FunctionCall functionCall : functionCallList) {
+            String identifier = functionCall.getFunction().getIdentifier();
+            String target = functionCall.getParams().getPaths().get(0);
+            Pattern pattern = Pattern.compile(StringUtils.reformatPath(target) + ".*");
+            for (int i = 0; i < header.getFieldSize(); i++) {
+                Field field = header.getField(i);
+                if (!identifier.equals(columnFunctions.get(i))
+                        || !pattern.matcher(field.getFullName()).matches()) {
+                    continue;
+                }
+                String name = identifier + "(" + field.getName() + ")";
+                String fullName = identifier + "(" + field.getFullName() + ")";
+                if (!fullNames.add(fullName)) {
+                    continue;
+                }
+                targetFields.add(new Field(name, fullName, getTargetType(identifier, field)));
+                indices.add(i);
+            }
+        }
+        return new Header(targetFields);
+    }
+
+    private static DataType getTargetType(String identifier, Field field) {
+        switch (identifier) {
+            case Count.COUNT:
+                return DataType.LONG;
+            case Sum.SUM:
+                return DataTypeUtils.isWholeNumber(field.getType())
+                        ? DataType.LONG
+                        : DataType.DOUBLE;
+            default:
+                return field.getType();
+        }
+    }
+
+    /** 空窗口中 count 与 sum 的结果为 0，存储返回的数值统一转换为内存中计算得到的类型 */
+    private static Object[] getTargetValues(
+            Row row, Header targetHeader, List<String> columnFunctions, List<Integer> indices) {
+        Object[] targetValues = new Object[indices.size()];
+        for (int i = 0; i < indices.size(); i++) {
+            int index = indices.get(i);
+            Object value = row == null ? null : row.getValue(index);
+            DataType type = targetHeader.getField(i).getType();
+            String identifier = columnFunctions.get(index);
+            if (value == null) {
+                if (identifier.equals(Count.COUNT) || identifier.equals(Sum.SUM)) {
+                    targetValues[i] = type == DataType.LONG ? (Object) 0L : (Object) 0.0D;
+                }
+                continue;
+            }
+            targetValues[i] = castValue(value, type);
+        }
+        return targetValues;
+    }
+
+    private static Object castValue(Object value, DataType type) {
+        if (type == DataType.BINARY && value instanceof String) {
+            return ((String) value).getBytes();
+        }
+        if (!(value instanceof Number)) {
+            return value;
+        }
+        Number number = (Number) value;
+        switch (type) {
+            case INTEGER:
+                return number.intValue();
+            case LONG:
+                return number.longValue();
+            case FLOAT:
+                return number.floatValue();
+            case DOUBLE:
+                return number.doubleValue();
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package cn.edu.tsinghua.iginx.engine.physical.storage.utils;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class LimitUtils {
+
+    /** 将存储按 key 逆序返回的最后若干行读出，并恢复为按 key 升序排列 */
+    public static RowStream reverse(RowStream stream) throws PhysicalException {
+        Header header = stream.getHeader();
+        List<Row> rows = new ArrayList<>();
+        while (stream.hasNext()) {
+            rows.add(stream.next());
+        }
+        stream.close();
+        Collections.reverse(rows);
+        return new Table(header, rows);
+    }
+
+    /** 判断过滤条件是否只由 key 条件组成，这样的条件可以在存储中被完整地执行 */
+    public static boolean isKeyFilter(Filter filter) {
+        switch (filter.getType()) {
+            case And:
+                return ((AndFilter) filter)
+                        .getChildren()
+                        .stream()
+                        .allMatch(LimitUtils::isKeyFilter);
+            case Or:
+                return ((OrFilter) filter)
+                        .getChildren()
+                        .stream()
+                        .allMatch(LimitUtils::isKeyFilter);
+            case Key:
+            case Bool:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
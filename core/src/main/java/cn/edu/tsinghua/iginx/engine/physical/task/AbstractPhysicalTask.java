@@ -19,6 +19,7 @@
 package cn.edu.tsinghua.iginx.engine.physical.task;
 
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
@@ -40,6 +41,8 @@ public abstract class AbstractPhysicalTask implements PhysicalTask {
 
     private long span = 0;
 
+    private final List<String> appliedRules = new ArrayList<>();
+
     public AbstractPhysicalTask(TaskType type, List<Operator> operators) {
         this.type = type;
         this.operators = operators;
@@ -97,6 +100,18 @@ public abstract class AbstractPhysicalTask implements PhysicalTask {
         return affectRows;
     }
 
+    @Override
+    public List<String> getAppliedRules() {
+        return appliedRules;
+    }
+
+    @Override
+    public void addAppliedRule(String rule) {
+        if (!appliedRules.contains(rule)) {
+            appliedRules.add(rule);
+        }
+    }
+
     @Override
     public String getInfo() {
         List<String> info =
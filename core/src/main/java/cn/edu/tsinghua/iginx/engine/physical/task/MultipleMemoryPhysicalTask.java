@@ -2,6 +2,10 @@ package cn.edu.tsinghua.iginx.engine.physical.task;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutorFactory;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MultipleOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import java.util.ArrayList;
@@ -9,9 +13,8 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** 目前专门用于 CombineNonQuery 操作符 */
+/** 用于 CombineNonQuery 与 MergeByKey 等多输入的操作符 */
 public class MultipleMemoryPhysicalTask extends MemoryPhysicalTask {
-    @SuppressWarnings("unused")
     private static final Logger logger = LoggerFactory.getLogger(MultipleMemoryPhysicalTask.class);
 
     private final List<PhysicalTask> parentTasks;
@@ -33,6 +36,9 @@ public class MultipleMemoryPhysicalTask extends MemoryPhysicalTask {
                     new PhysicalException("unexpected multiple memory physical task"));
         }
         Operator operator = operators.get(0);
+        if (operator.getType() == OperatorType.MergeByKey) {
+            return executeMultipleOperator((MultipleOperator) operator);
+        }
         if (operator.getType() != OperatorType.CombineNonQuery) {
             return new TaskExecuteResult(
                     new PhysicalException("unexpected multiple memory physical task"));
@@ -60,6 +66,30 @@ public class MultipleMemoryPhysicalTask extends MemoryPhysicalTask {
         return new TaskExecuteResult();
     }
 
+    private TaskExecuteResult executeMultipleOperator(MultipleOperator operator) {
+        List<RowStream> streams = new ArrayList<>();
+        for (PhysicalTask parentTask : parentTasks) {
+            TaskExecuteResult parentResult = parentTask.getResult();
+            if (parentResult == null) {
+                return new TaskExecuteResult(
+                        new PhysicalException(
+                                "unexpected parent task execute result for " + this + ": null"));
+            }
+            if (parentResult.getException() != null) {
+                return parentResult;
+            }
+            streams.add(parentResult.getRowStream());
+        }
+        OperatorMemoryExecutor executor =
+                OperatorMemoryExecutorFactory.getInstance().getMemoryExecutor();
+        try {
+            return new TaskExecuteResult(executor.executeMultipleOperator(operator, streams));
+        } catch (PhysicalException e) {
+            logger.error("encounter error when execute operator in memory: ", e);
+            return new TaskExecuteResult(e);
+        }
+    }
+
     @Override
     public boolean notifyParentReady() {
         return parentReadyCount.incrementAndGet() == parentTasks.size();
@@ -36,4 +36,9 @@ public interface PhysicalTask extends Measurable {
     void setFollowerTask(PhysicalTask task);
 
     String getInfo();
+
+    /** 构建该任务时生效的物理优化规则 */
+    List<String> getAppliedRules();
+
+    void addAppliedRule(String rule);
 }
@@ -4,10 +4,15 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.UnexpectedOperatorException;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutor;
 import cn.edu.tsinghua.iginx.engine.physical.memory.execute.OperatorMemoryExecutorFactory;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.UnaryOperator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +55,9 @@ public class UnaryMemoryPhysicalTask extends MemoryPhysicalTask {
                 }
                 stream = executor.executeUnaryOperator((UnaryOperator) op, stream);
             }
+            if (isEagerPartialAggregate()) {
+                stream = materialize(stream);
+            }
         } catch (PhysicalException e) {
             logger.error("encounter error when execute operator in memory: ", e);
             return new TaskExecuteResult(e);
@@ -57,6 +65,29 @@ public class UnaryMemoryPhysicalTask extends MemoryPhysicalTask {
         return new TaskExecuteResult(stream);
     }
 
+    /**
+     * 是否为直接位于存储任务之上、由聚合下推生成的分片上的 SetTransform 部分聚合。其结果只有一行，在当前线程中立即算出，
+     * 使各分片的聚合并行执行。Downsample 部分聚合每个窗口一行，细粒度分组时结果与原始数据相当，与其他算子一样惰性计算。
+     */
+    public boolean isEagerPartialAggregate() {
+        if (!(parentTask instanceof StoragePhysicalTask)) {
+            return false;
+        }
+        Operator operator = getOperators().get(getOperators().size() - 1);
+        return operator.getType() == OperatorType.SetTransform
+                && ((SetTransform) operator).isPartial();
+    }
+
+    private RowStream materialize(RowStream stream) throws PhysicalException {
+        Header header = stream.getHeader();
+        List<Row> rows = new ArrayList<>();
+        while (stream.hasNext()) {
+            rows.add(stream.next());
+        }
+        stream.close();
+        return new Table(header, rows);
+    }
+
     @Override
     public boolean notifyParentReady() {
         return parentReadyCount.incrementAndGet() == 1;
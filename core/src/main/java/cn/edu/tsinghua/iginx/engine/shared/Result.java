@@ -3,10 +3,9 @@ package cn.edu.tsinghua.iginx.engine.shared;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
-import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStreamEncoder;
 import cn.edu.tsinghua.iginx.thrift.*;
-import cn.edu.tsinghua.iginx.utils.Bitmap;
 import cn.edu.tsinghua.iginx.utils.ByteUtils;
 import cn.edu.tsinghua.iginx.utils.RpcUtils;
 import java.nio.ByteBuffer;
@@ -45,6 +44,7 @@ public class Result {
     private long queryId;
     private JobState jobState;
     private RowStream resultStream;
+    private RowStreamEncoder resultEncoder;
 
     private long jobId;
     private List<Long> jobIdList;
@@ -192,36 +192,12 @@ public class Result {
                                 }
                             });
 
-            List<ByteBuffer> valuesList = new ArrayList<>();
-            List<ByteBuffer> bitmapList = new ArrayList<>();
-
-            int cnt = 0;
-            boolean hasTimestamp = resultStream.getHeader().hasKey();
-            while (resultStream.hasNext() && cnt < fetchSize) {
-                Row row = resultStream.next();
-
-                Object[] rawValues = row.getValues();
-                Object[] rowValues = rawValues;
-                if (hasTimestamp) {
-                    rowValues = new Object[rawValues.length + 1];
-                    rowValues[0] = row.getKey();
-                    System.arraycopy(rawValues, 0, rowValues, 1, rawValues.length);
-                }
-                valuesList.add(ByteUtils.getRowByteBuffer(rowValues, types));
-
-                Bitmap bitmap = new Bitmap(rowValues.length);
-                for (int i = 0; i < rowValues.length; i++) {
-                    if (rowValues[i] != null) {
-                        bitmap.mark(i);
-                    }
-                }
-                bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
-                cnt++;
-            }
+            RowStreamEncoder.Chunk chunk = getResultEncoder().next(fetchSize);
             resp.setColumns(paths);
             resp.setTagsList(tagsList);
             resp.setDataTypeList(types);
-            resp.setQueryDataSet(new QueryDataSetV2(valuesList, bitmapList));
+            resp.setQueryDataSet(
+                    new QueryDataSetV2(chunk.getValuesList(), chunk.getBitmapList()));
         } catch (PhysicalException e) {
             logger.error("unexpected error when load row stream: ", e);
             resp.setStatus(RpcUtils.FAILURE);
@@ -236,48 +212,22 @@ public class Result {
             return resp;
         }
         try {
-            List<DataType> types = new ArrayList<>();
-
-            Header header = resultStream.getHeader();
-
-            if (header.hasKey()) {
-                types.add(Field.KEY.getType());
-            }
-
-            resultStream.getHeader().getFields().forEach(field -> types.add(field.getType()));
-
-            List<ByteBuffer> valuesList = new ArrayList<>();
-            List<ByteBuffer> bitmapList = new ArrayList<>();
-
-            int cnt = 0;
-            boolean hasTimestamp = resultStream.getHeader().hasKey();
-            while (resultStream.hasNext() && cnt < fetchSize) {
-                Row row = resultStream.next();
-
-                Object[] rawValues = row.getValues();
-                Object[] rowValues = rawValues;
-                if (hasTimestamp) {
-                    rowValues = new Object[rawValues.length + 1];
-                    rowValues[0] = row.getKey();
-                    System.arraycopy(rawValues, 0, rowValues, 1, rawValues.length);
-                }
-                valuesList.add(ByteUtils.getRowByteBuffer(rowValues, types));
-
-                Bitmap bitmap = new Bitmap(rowValues.length);
-                for (int i = 0; i < rowValues.length; i++) {
-                    if (rowValues[i] != null) {
-                        bitmap.mark(i);
-                    }
-                }
-                bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
-                cnt++;
-            }
+            RowStreamEncoder.Chunk chunk = getResultEncoder().next(fetchSize);
             resp.setHasMoreResults(resultStream.hasNext());
-            resp.setQueryDataSet(new QueryDataSetV2(valuesList, bitmapList));
+            resp.setQueryDataSet(
+                    new QueryDataSetV2(chunk.getValuesList(), chunk.getBitmapList()));
         } catch (PhysicalException e) {
             logger.error("unexpected error when load row stream: ", e);
             resp.setStatus(RpcUtils.FAILURE);
         }
         return resp;
     }
+
+    /** 游标方式分批返回结果时使用的编码器，key 作为第一列返回 */
+    private RowStreamEncoder getResultEncoder() throws PhysicalException {
+        if (resultEncoder == null) {
+            resultEncoder = new RowStreamEncoder(resultStream, true);
+        }
+        return resultEncoder;
+    }
 }
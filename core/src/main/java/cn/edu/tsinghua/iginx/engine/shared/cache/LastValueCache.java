@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.cache;
+
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawData;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 序列最新值的缓存，用于直接回答 last 查询。缓存以查询中的路径为单位，每一项保存该路径匹配到的所有序列的最新值。
+ *
+ * <p>缓存项由一次完整的查询建立，此后由写入更新、由删除失效。缓存项建立前先登记，查询期间完成的写入会同时更新登记的缓存项，
+ * 因此不会遗漏与查询并发的写入。缓存中的序列总数超过容量时，按 LRU 顺序淘汰缓存项。
+ */
+public class LastValueCache {
+
+    private final int capacity;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Set<String> patternPaths = new HashSet<>();
+
+    private int size = 0;
+
+    LastValueCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public static LastValueCache getInstance() {
+        return LastValueCacheHolder.INSTANCE;
+    }
+
+    /** 查找 paths 在 [startKey, +∞) 上的最新值，任意一个路径未命中时返回 null */
+    public synchronized List<List<LastValue>> lookup(List<String> paths, long startKey) {
+        List<List<LastValue>> results = new ArrayList<>();
+        for (String path : paths) {
+            Entry entry = entries.get(path);
+            if (entry == null || !entry.ready || entry.startKey > startKey) {
+                return null;
+            }
+            List<LastValue> values = new ArrayList<>();
+            for (LastValue value : entry.values.values()) {
+                if (value.key >= startKey) {
+                    values.add(value);
+                }
+            }
+            values.sort(
+                    Comparator.comparingLong(LastValue::getKey).thenComparing(LastValue::getPath));
+            results.add(values);
+        }
+        return results;
+    }
+
+    /** 在执行查询前登记 paths 对应的缓存项，返回的 Seed 用于在查询结束后填充缓存 */
+    public synchronized Seed prepare(List<String> paths) {
+        Map<String, Entry> prepared = new HashMap<>();
+        for (String path : paths) {
+            Entry entry = entries.get(path);
+            if (entry == null) {
+                entry = new Entry(path);
+                entries.put(path, entry);
+                if (entry.pattern != null) {
+                    patternPaths.add(path);
+                }
+                size++;
+            }
+            prepared.put(path, entry);
+        }
+        evict();
+        return new Seed(prepared);
+    }
+
+    /**
+     * 用查询结果填充缓存项
+     *
+     * @param startKey 查询的起始 key，查询结果包含所有在 [startKey, +∞) 上有数据的序列
+     * @param values 查询结果中每个序列的最新值
+     */
+    public synchronized void fill(Seed seed, long startKey, List<LastValue> values) {
+        for (Map.Entry<String, Entry> prepared : seed.entries.entrySet()) {
+            Entry entry = prepared.getValue();
+            // 缓存项在查询期间被删除或淘汰，查询结果可能已经过期
+            if (entries.get(prepared.getKey()) != entry) {
+                continue;
+            }
+            for (LastValue value : values) {
+                if (entry.matches(value.getName())) {
+                    // 相同 key 上以查询期间的写入为准
+                    LastValue old = entry.values.get(value.path);
+                    if (old == null || value.key > old.key) {
+                        put(entry, value);
+                    }
+                }
+            }
+            entry.startKey = entry.ready ? Math.min(entry.startKey, startKey) : startKey;
+            entry.ready = true;
+        }
+        evict();
+    }
+
+    /** 用写入成功的数据更新缓存 */
+    public void update(RawData data) {
+        List<String> paths = data.getPaths();
+        boolean[] matched = new boolean[paths.size()];
+        boolean anyMatched = false;
+        synchronized (this) {
+            if (entries.isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                matched[i] = !getEntries(paths.get(i)).isEmpty();
+                anyMatched |= matched[i];
+            }
+        }
+        if (!anyMatched) {
+            return;
+        }
+
+        // 写入数据已经提交，之后登记的缓存项都能从查询中看到这些数据，因此这里只需处理已登记的缓存项
+        long[] lastKeys = new long[paths.size()];
+        Object[] lastValues = new Object[paths.size()];
+        Arrays.fill(lastKeys, Long.MIN_VALUE);
+        List<Long> keys = data.getKeys();
+        // 数据可能是紧凑存储的，也可能包含空值占位
+        Object[] valuesList = data.getValuesList();
+        if (data.isColumnData()) {
+            for (int i = 0; i < paths.size(); i++) {
+                if (!matched[i]) {
+                    continue;
+                }
+                Bitmap bitmap = data.getBitmaps().get(i);
+                Object[] values = (Object[]) valuesList[i];
+                int index = 0;
+                for (int j = 0; j < keys.size(); j++) {
+                    if (bitmap.get(j)) {
+                        if (keys.get(j) >= lastKeys[i]) {
+                            lastKeys[i] = keys.get(j);
+                            lastValues[i] =
+                                    values.length == keys.size() ? values[j] : values[index];
+                        }
+                        index++;
+                    }
+                }
+            }
+        } else {
+            for (int j = 0; j < keys.size(); j++) {
+                Bitmap bitmap = data.getBitmaps().get(j);
+                Object[] values = (Object[]) valuesList[j];
+                int index = 0;
+                for (int i = 0; i < paths.size(); i++) {
+                    if (bitmap.get(i)) {
+                        if (matched[i] && keys.get(j) >= lastKeys[i]) {
+                            lastKeys[i] = keys.get(j);
+                            lastValues[i] =
+                                    values.length == paths.size() ? values[i] : values[index];
+                        }
+                        index++;
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < paths.size(); i++) {
+                if (!matched[i]
+                        || lastValues[i] == null
+                        || data.getDataTypeList().get(i) == null) {
+                    continue;
+                }
+                Map<String, String> tags =
+                        data.getTagsList() == null || data.getTagsList().size() <= i
+                                ? null
+                                : data.getTagsList().get(i);
+                String fullName =
+                        new Field(paths.get(i), data.getDataTypeList().get(i), tags)
+                                .getFullName();
+                byte[] value =
+                        ValueUtils.toString(lastValues[i], data.getDataTypeList().get(i))
+                                .getBytes(StandardCharsets.UTF_8);
+                LastValue lastValue = new LastValue(lastKeys[i], fullName, value);
+                for (Entry entry : getEntries(paths.get(i))) {
+                    LastValue old = entry.values.get(fullName);
+                    if (old == null || lastValue.key >= old.key) {
+                        put(entry, lastValue);
+                    }
+                }
+            }
+            evict();
+        }
+    }
+
+    /** 使与 paths 相关的缓存项失效，用于删除以及写入失败后 */
+    public synchronized void invalidate(List<String> paths) {
+        for (String path : paths) {
+            if (path.contains("*")) {
+                Pattern pattern = Pattern.compile(StringUtils.reformatPath(path));
+                // 两个模式是否相交难以判断，保守地移除所有模式缓存项
+                entries.keySet()
+                        .removeIf(key -> key.contains("*") || pattern.matcher(key).matches());
+            } else {
+                entries.values().removeIf(entry -> entry.matches(path));
+            }
+        }
+        recount();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        recount();
+    }
+
+    private List<Entry> getEntries(String path) {
+        List<Entry> result = new ArrayList<>();
+        Entry entry = entries.get(path);
+        if (entry != null && entry.pattern == null) {
+            result.add(entry);
+        }
+        for (String patternPath : patternPaths) {
+            Entry patternEntry = entries.get(patternPath);
+            if (patternEntry.matches(path)) {
+                result.add(patternEntry);
+            }
+        }
+        return result;
+    }
+
+    private void put(Entry entry, LastValue value) {
+        if (entry.values.put(value.path, value) == null) {
+            size++;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > capacity && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            patternPaths.remove(entry.path);
+            size -= entry.size();
+        }
+    }
+
+    private void recount() {
+        patternPaths.retainAll(entries.keySet());
+        size = 0;
+        for (Entry entry : entries.values()) {
+            size += entry.size();
+        }
+    }
+
+    public static class LastValue {
+
+        private final long key;
+
+        private final String path;
+
+        private final byte[] value;
+
+        public LastValue(long key, String path, byte[] value) {
+            this.key = key;
+            this.path = path;
+            this.value = value;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        /** 带有标签的完整序列名 */
+        public String getPath() {
+            return path;
+        }
+
+        public byte[] getValue() {
+            return value;
+        }
+
+        private String getName() {
+            int index = path.indexOf('{');
+            return index == -1 ? path : path.substring(0, index);
+        }
+    }
+
+    public static class Seed {
+
+        private final Map<String, Entry> entries;
+
+        private Seed(Map<String, Entry> entries) {
+            this.entries = entries;
+        }
+    }
+
+    private static class Entry {
+
+        private final String path;
+
+        private final Pattern pattern;
+
+        private final Map<String, LastValue> values = new HashMap<>();
+
+        private boolean ready = false;
+
+        private long startKey = Long.MAX_VALUE;
+
+        private Entry(String path) {
+            this.path = path;
+            this.pattern =
+                    path.contains("*") ? Pattern.compile(StringUtils.reformatPath(path)) : null;
+        }
+
+        /** 与存储层对查询路径的匹配方式一致，按不带标签的序列名匹配 */
+        private boolean matches(String name) {
+            return pattern == null ? path.equals(name) : pattern.matcher(name).matches();
+        }
+
+        private int size() {
+            return values.size() + 1;
+        }
+    }
+
+    private static class LastValueCacheHolder {
+
+        private static final LastValueCache INSTANCE =
+                new LastValueCache(
+                        ConfigDescriptor.getInstance().getConfig().getLastValueCacheCapacity());
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+
+/** 定长的列式向量，数值类型直接存储在基本类型数组中，bitmap 中被标记的位置表示非空。 */
+public final class ColumnVector {
+
+    private final DataType type;
+
+    private final int capacity;
+
+    private final Bitmap bitmap;
+
+    private boolean[] booleans;
+
+    private int[] ints;
+
+    private long[] longs;
+
+    private float[] floats;
+
+    private double[] doubles;
+
+    private byte[][] binaries;
+
+    private int size;
+
+    public ColumnVector(DataType type, int capacity) {
+        this.type = type;
+        this.capacity = capacity;
+        this.bitmap = new Bitmap(capacity);
+        switch (type) {
+            case BOOLEAN:
+                this.booleans = new boolean[capacity];
+                break;
+            case INTEGER:
+                this.ints = new int[capacity];
+                break;
+            case LONG:
+                this.longs = new long[capacity];
+                break;
+            case FLOAT:
+                this.floats = new float[capacity];
+                break;
+            case DOUBLE:
+                this.doubles = new double[capacity];
+                break;
+            case BINARY:
+                this.binaries = new byte[capacity][];
+                break;
+            default:
+                throw new IllegalArgumentException("unknown data type: " + type);
+        }
+    }
+
+    public DataType getType() {
+        return type;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    public boolean isNull(int i) {
+        return !bitmap.get(i);
+    }
+
+    public boolean getBoolean(int i) {
+        return booleans[i];
+    }
+
+    public int getInt(int i) {
+        return ints[i];
+    }
+
+    public long getLong(int i) {
+        return longs[i];
+    }
+
+    public float getFloat(int i) {
+        return floats[i];
+    }
+
+    public double getDouble(int i) {
+        return doubles[i];
+    }
+
+    public byte[] getBinary(int i) {
+        return binaries[i];
+    }
+
+    /** 按 double 读取数值列中的第 i 个值，调用方需保证该位置非空。 */
+    public double getAsDouble(int i) {
+        switch (type) {
+            case INTEGER:
+                return ints[i];
+            case LONG:
+                return longs[i];
+            case FLOAT:
+                return floats[i];
+            case DOUBLE:
+                return doubles[i];
+            default:
+                throw new IllegalStateException("column of type " + type + " is not numeric");
+        }
+    }
+
+    /** 以装箱对象的形式读取第 i 个值，仅在需要回退到 Row 的场景下使用。 */
+    public Object getObject(int i) {
+        if (isNull(i)) {
+            return null;
+        }
+        switch (type) {
+            case BOOLEAN:
+                return booleans[i];
+            case INTEGER:
+                return ints[i];
+            case LONG:
+                return longs[i];
+            case FLOAT:
+                return floats[i];
+            case DOUBLE:
+                return doubles[i];
+            default:
+                return binaries[i];
+        }
+    }
+
+    public void appendNull() {
+        size++;
+    }
+
+    public void appendBoolean(boolean value) {
+        booleans[size] = value;
+        bitmap.mark(size++);
+    }
+
+    public void appendInt(int value) {
+        ints[size] = value;
+        bitmap.mark(size++);
+    }
+
+    public void appendLong(long value) {
+        longs[size] = value;
+        bitmap.mark(size++);
+    }
+
+    public void appendFloat(float value) {
+        floats[size] = value;
+        bitmap.mark(size++);
+    }
+
+    public void appendDouble(double value) {
+        doubles[size] = value;
+        bitmap.mark(size++);
+    }
+
+    public void appendBinary(byte[] value) {
+        binaries[size] = value;
+        bitmap.mark(size++);
+    }
+
+    public void appendObject(Object value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        switch (type) {
+            case BOOLEAN:
+                appendBoolean((boolean) value);
+                break;
+            case INTEGER:
+                appendInt((int) value);
+                break;
+            case LONG:
+                appendLong((long) value);
+                break;
+            case FLOAT:
+                appendFloat((float) value);
+                break;
+            case DOUBLE:
+                appendDouble((double) value);
+                break;
+            default:
+                appendBinary((byte[]) value);
+                break;
+        }
+    }
+
+    /** 将另一个同类型向量的第 i 个值追加到当前向量末尾，不产生装箱。 */
+    public void appendFrom(ColumnVector other, int i) {
+        if (other.isNull(i)) {
+            appendNull();
+            return;
+        }
+        switch (type) {
+            case BOOLEAN:
+                appendBoolean(other.booleans[i]);
+                break;
+            case INTEGER:
+                appendInt(other.ints[i]);
+                break;
+            case LONG:
+                appendLong(other.longs[i]);
+                break;
+            case FLOAT:
+                appendFloat(other.floats[i]);
+                break;
+            case DOUBLE:
+                appendDouble(other.doubles[i]);
+                break;
+            default:
+                appendBinary(other.binaries[i]);
+                break;
+        }
+    }
+}
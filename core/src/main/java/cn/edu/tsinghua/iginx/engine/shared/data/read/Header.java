@@ -68,6 +68,11 @@ public final class Header {
         return key != null;
     }
 
+    /** 既没有 key 也没有任何列，例如没有数据时降采样的结果 */
+    public boolean isEmpty() {
+        return key == null && fields.isEmpty();
+    }
+
     public int indexOf(Field field) {
         String name = field.getFullName();
         int index = indexMap.getOrDefault(name, -1);
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import java.util.List;
+
+/** 一批按列组织的行，key 单独存放在 long 数组中。 */
+public final class RowBatch {
+
+    private final Header header;
+
+    private final long[] keys;
+
+    private final ColumnVector[] columns;
+
+    private final int capacity;
+
+    private int size;
+
+    public RowBatch(Header header, int capacity) {
+        this.header = header;
+        this.capacity = capacity;
+        this.keys = header.hasKey() ? new long[capacity] : null;
+        List<Field> fields = header.getFields();
+        this.columns = new ColumnVector[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            this.columns[i] = new ColumnVector(fields.get(i).getType(), capacity);
+        }
+    }
+
+    public Header getHeader() {
+        return header;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    public long[] getKeys() {
+        return keys;
+    }
+
+    public long getKey(int i) {
+        return keys == null ? Row.NON_EXISTED_KEY : keys[i];
+    }
+
+    public ColumnVector getColumn(int i) {
+        return columns[i];
+    }
+
+    public int getColumnSize() {
+        return columns.length;
+    }
+
+    public void appendRow(Row row) {
+        if (keys != null) {
+            keys[size] = row.getKey();
+        }
+        Object[] values = row.getValues();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].appendObject(values[i]);
+        }
+        size++;
+    }
+
+    /** 将 batch 中的第 i 行追加到当前 batch，要求两者列类型一一对应。 */
+    public void appendRow(RowBatch batch, int i) {
+        if (keys != null) {
+            keys[size] = batch.getKey(i);
+        }
+        for (int j = 0; j < columns.length; j++) {
+            columns[j].appendFrom(batch.columns[j], i);
+        }
+        size++;
+    }
+
+    /** 将 batch 中的第 i 行按照 indices 指定的列追加到当前 batch。 */
+    public void appendRow(RowBatch batch, int i, int[] indices) {
+        if (keys != null) {
+            keys[size] = batch.getKey(i);
+        }
+        for (int j = 0; j < columns.length; j++) {
+            columns[j].appendFrom(batch.columns[indices[j]], i);
+        }
+        size++;
+    }
+
+    /** 追加一行，key 与各列的值由调用方随后通过 getColumn 写入。 */
+    public void appendKey(long key) {
+        if (keys != null) {
+            keys[size] = key;
+        }
+        size++;
+    }
+
+    public Row getRow(int i) {
+        Object[] values = new Object[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            values[j] = columns[j].getObject(i);
+        }
+        if (keys != null) {
+            return new Row(header, keys[i], values);
+        }
+        return new Row(header, values);
+    }
+}
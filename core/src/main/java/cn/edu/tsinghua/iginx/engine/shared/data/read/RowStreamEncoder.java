@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.ByteUtils;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 将 RowStream 按块编码为返回给客户端的 valuesList / bitmapList。每一块先按列收集数据，再按列写入一块连续的缓冲区，
+ * 每一行的 ByteBuffer 只是这块缓冲区上的切片，避免为每一行单独分配缓冲区与 Bitmap。
+ */
+public class RowStreamEncoder {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final RowStream stream;
+
+    private final boolean keyAsColumn;
+
+    private final boolean hasKey;
+
+    private final List<DataType> dataTypes = new ArrayList<>();
+
+    /** @param keyAsColumn 为 true 时 key 作为第一列编码进每一行，否则 key 单独返回 */
+    public RowStreamEncoder(RowStream stream, boolean keyAsColumn) throws PhysicalException {
+        this.stream = stream;
+        this.keyAsColumn = keyAsColumn;
+        Header header = stream.getHeader();
+        this.hasKey = header.hasKey();
+        if (keyAsColumn && hasKey) {
+            dataTypes.add(Field.KEY.getType());
+        }
+        header.getFields().forEach(field -> dataTypes.add(field.getType()));
+    }
+
+    public List<DataType> getDataTypes() {
+        return dataTypes;
+    }
+
+    public boolean hasNext() throws PhysicalException {
+        return stream.hasNext();
+    }
+
+    /** 读取并编码至多 maxRows 行 */
+    public Chunk next(int maxRows) throws PhysicalException {
+        int columnCount = dataTypes.size();
+        int offset = keyAsColumn && hasKey ? 1 : 0;
+        int capacity = Math.min(maxRows, DEFAULT_CHUNK_SIZE);
+        Object[][] columns = new Object[columnCount][capacity];
+        long[] keys = hasKey ? new long[capacity] : null;
+        int size = 0;
+        while (size < maxRows && stream.hasNext()) {
+            Row row = stream.next();
+            if (size == capacity) {
+                capacity = Math.min(maxRows, capacity * 2);
+                for (int i = 0; i < columnCount; i++) {
+                    columns[i] = Arrays.copyOf(columns[i], capacity);
+                }
+                if (keys != null) {
+                    keys = Arrays.copyOf(keys, capacity);
+                }
+            }
+            if (hasKey) {
+                keys[size] = row.getKey();
+                if (offset == 1) {
+                    columns[0][size] = row.getKey();
+                }
+            }
+            Object[] values = row.getValues();
+            for (int i = 0; i < values.length; i++) {
+                columns[i + offset][size] = values[i];
+            }
+            size++;
+        }
+        return encode(columns, keys, size);
+    }
+
+    private Chunk encode(Object[][] columns, long[] keys, int size) {
+        int columnCount = dataTypes.size();
+
+        // 按列计算每一行编码后的长度
+        int[] rowOffsets = new int[size + 1];
+        for (int i = 0; i < columnCount; i++) {
+            Object[] column = columns[i];
+            int width = getWidth(dataTypes.get(i));
+            for (int j = 0; j < size; j++) {
+                if (column[j] == null) {
+                    continue;
+                }
+                rowOffsets[j + 1] += width == -1 ? 4 + ((byte[]) column[j]).length : width;
+            }
+        }
+        for (int j = 0; j < size; j++) {
+            rowOffsets[j + 1] += rowOffsets[j];
+        }
+
+        // 按列写入连续的缓冲区，positions 记录每一行当前的写入位置
+        byte[] valuesArray = new byte[rowOffsets[size]];
+        ByteBuffer values = ByteBuffer.wrap(valuesArray);
+        int bitmapWidth = (columnCount + 7) / 8;
+        byte[] bitmapArray = new byte[bitmapWidth * size];
+        int[] positions = Arrays.copyOf(rowOffsets, size);
+        for (int i = 0; i < columnCount; i++) {
+            Object[] column = columns[i];
+            DataType type = dataTypes.get(i);
+            int byteIndex = i / 8;
+            byte mask = (byte) (1 << (i % 8));
+            for (int j = 0; j < size; j++) {
+                Object value = column[j];
+                if (value == null) {
+                    continue;
+                }
+                bitmapArray[j * bitmapWidth + byteIndex] |= mask;
+                int position = positions[j];
+                switch (type) {
+                    case BOOLEAN:
+                        valuesArray[position] = ByteUtils.booleanToByte((boolean) value);
+                        positions[j] += 1;
+                        break;
+                    case INTEGER:
+                        values.putInt(position, (int) value);
+                        positions[j] += 4;
+                        break;
+                    case LONG:
+                        values.putLong(position, (long) value);
+                        positions[j] += 8;
+                        break;
+                    case FLOAT:
+                        values.putFloat(position, (float) value);
+                        positions[j] += 4;
+                        break;
+                    case DOUBLE:
+                        values.putDouble(position, (double) value);
+                        positions[j] += 8;
+                        break;
+                    case BINARY:
+                        byte[] bytes = (byte[]) value;
+                        values.putInt(position, bytes.length);
+                        System.arraycopy(bytes, 0, valuesArray, position + 4, bytes.length);
+                        positions[j] += 4 + bytes.length;
+                        break;
+                    default:
+                        throw new UnsupportedOperationException(type.toString());
+                }
+            }
+        }
+
+        List<ByteBuffer> valuesList = new ArrayList<>(size);
+        List<ByteBuffer> bitmapList = new ArrayList<>(size);
+        for (int j = 0; j < size; j++) {
+            valuesList.add(
+                    ByteBuffer.wrap(valuesArray, rowOffsets[j], rowOffsets[j + 1] - rowOffsets[j])
+                            .slice());
+            bitmapList.add(ByteBuffer.wrap(bitmapArray, j * bitmapWidth, bitmapWidth).slice());
+        }
+        return new Chunk(
+                valuesList, bitmapList, keys == null ? null : Arrays.copyOf(keys, size), size);
+    }
+
+    /** 定长类型的编码长度，变长类型返回 -1 */
+    private static int getWidth(DataType type) {
+        switch (type) {
+            case BOOLEAN:
+                return 1;
+            case INTEGER:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            case BINARY:
+                return -1;
+            default:
+                throw new UnsupportedOperationException(type.toString());
+        }
+    }
+
+    public static class Chunk {
+
+        private final List<ByteBuffer> valuesList;
+
+        private final List<ByteBuffer> bitmapList;
+
+        private final long[] keys;
+
+        private final int size;
+
+        Chunk(List<ByteBuffer> valuesList, List<ByteBuffer> bitmapList, long[] keys, int size) {
+            this.valuesList = valuesList;
+            this.bitmapList = bitmapList;
+            this.keys = keys;
+            this.size = size;
+        }
+
+        public List<ByteBuffer> getValuesList() {
+            return valuesList;
+        }
+
+        public List<ByteBuffer> getBitmapList() {
+            return bitmapList;
+        }
+
+        /** 每一行的 key，结果不带 key 时为 null */
+        public long[] getKeys() {
+            return keys;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.function.system;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.MappingType;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/** first_value 的部分聚合状态，即每列第一个非空值所在的 key，用于在合并时选出最早的值 */
+public class FirstKey implements SetMappingFunction {
+
+    public static final String FIRST_KEY = "first_key";
+
+    private static final FirstKey INSTANCE = new FirstKey();
+
+    private FirstKey() {}
+
+    public static FirstKey getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public FunctionType getFunctionType() {
+        return FunctionType.System;
+    }
+
+    @Override
+    public MappingType getMappingType() {
+        return MappingType.SetMapping;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return FIRST_KEY;
+    }
+
+    @Override
+    public Row transform(RowStream rows, FunctionParams params) throws Exception {
+        List<String> pathParams = params.getPaths();
+        if (pathParams == null || pathParams.size() != 1) {
+            throw new IllegalArgumentException("unexpected param type for first_key.");
+        }
+
+        String target = pathParams.get(0);
+        List<Field> fields = rows.getHeader().getFields();
+        Pattern pattern = Pattern.compile(StringUtils.reformatPath(target) + ".*");
+        List<Field> targetFields = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (pattern.matcher(field.getFullName()).matches()) {
+                String name = getIdentifier() + "(" + field.getName() + ")";
+                String fullName = getIdentifier() + "(" + field.getFullName() + ")";
+                targetFields.add(new Field(name, fullName, DataType.LONG));
+                indices.add(i);
+            }
+        }
+        Object[] targetValues = new Object[targetFields.size()];
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            for (int i = 0; i < indices.size(); i++) {
+                if (targetValues[i] != null) { // 找到第一个非空值之后，后续不再找了
+                    continue;
+                }
+                if (row.getValue(indices.get(i)) != null) {
+                    targetValues[i] = row.getKey();
+                }
+            }
+        }
+        return new Row(new Header(targetFields), targetValues);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.function.system;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.MappingType;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/** last_value 的部分聚合状态，即每列最后一个非空值所在的 key，用于在合并时选出最晚的值 */
+public class LastKey implements SetMappingFunction {
+
+    public static final String LAST_KEY = "last_key";
+
+    private static final LastKey INSTANCE = new LastKey();
+
+    private LastKey() {}
+
+    public static LastKey getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public FunctionType getFunctionType() {
+        return FunctionType.System;
+    }
+
+    @Override
+    public MappingType getMappingType() {
+        return MappingType.SetMapping;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return LAST_KEY;
+    }
+
+    @Override
+    public Row transform(RowStream rows, FunctionParams params) throws Exception {
+        List<String> pathParams = params.getPaths();
+        if (pathParams == null || pathParams.size() != 1) {
+            throw new IllegalArgumentException("unexpected param type for last_key.");
+        }
+
+        String target = pathParams.get(0);
+        List<Field> fields = rows.getHeader().getFields();
+        Pattern pattern = Pattern.compile(StringUtils.reformatPath(target) + ".*");
+        List<Field> targetFields = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (pattern.matcher(field.getFullName()).matches()) {
+                String name = getIdentifier() + "(" + field.getName() + ")";
+                String fullName = getIdentifier() + "(" + field.getFullName() + ")";
+                targetFields.add(new Field(name, fullName, DataType.LONG));
+                indices.add(i);
+            }
+        }
+        Object[] targetValues = new Object[targetFields.size()];
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            for (int i = 0; i < indices.size(); i++) {
+                if (row.getValue(indices.get(i)) != null) {
+                    targetValues[i] = row.getKey();
+                }
+            }
+        }
+        return new Row(new Header(targetFields), targetValues);
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.function.system;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.MappingType;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 合并各个分片上的部分聚合结果。输入为各分片部分聚合结果（列名形如 sum(a.s1)、count(a.s1)）union 后的行，
+ * 输出与直接在原始数据上执行对应聚合函数的结果相同。
+ */
+public class MergePartialAggregate implements SetMappingFunction {
+
+    public static final String MERGE = "merge_";
+
+    private final String function;
+
+    public MergePartialAggregate(String function) {
+        if (!isMergeable(function)) {
+            throw new IllegalArgumentException(
+                    "unsupported partial aggregate function " + function);
+        }
+        this.function = function;
+    }
+
+    public static boolean isSupported(String function) {
+        switch (function) {
+            case Avg.AVG:
+            case Count.COUNT:
+            case Sum.SUM:
+            case Max.MAX:
+            case Min.MIN:
+            case FirstValue.FIRST_VALUE:
+            case LastValue.LAST_VALUE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** 部分结果能否合并，除可下推的函数外还包括部分聚合中使用的 first_key / last_key */
+    public static boolean isMergeable(String function) {
+        return isSupported(function)
+                || function.equals(FirstKey.FIRST_KEY)
+                || function.equals(LastKey.LAST_KEY);
+    }
+
+    /** 函数的结果能否由输入分块上的部分结果合并得到，这样的多个函数可以在一次遍历中计算 */
+    public static boolean isMergeable(FunctionCall functionCall) {
+        FunctionParams params = functionCall.getParams();
+        if (functionCall.getFunction().getFunctionType() != FunctionType.System
+                || params.getLevels() != null
+                || params.getPaths() == null
+                || params.getPaths().size() != 1) {
+            return false;
+        }
+        return functionCall.getFunction() instanceof MergePartialAggregate
+                || isMergeable(functionCall.getFunction().getIdentifier());
+    }
+
+    /**
+     * 每个分片上需要计算的部分聚合函数，avg 拆分为 sum 与 count，first_value / last_value 还需要值所在的 key。
+     * 这些函数需要放在同一个聚合算子中计算，使状态列与辅助列位于同一行。
+     */
+    public static List<SetMappingFunction> getPartialFunctions(String function) {
+        switch (function) {
+            case Avg.AVG:
+                return Arrays.asList(Sum.getInstance(), Count.getInstance());
+            case Count.COUNT:
+                return Collections.singletonList(Count.getInstance());
+            case Sum.SUM:
+                return Collections.singletonList(Sum.getInstance());
+            case Max.MAX:
+                return Collections.singletonList(Max.getInstance());
+            case Min.MIN:
+                return Collections.singletonList(Min.getInstance());
+            case FirstValue.FIRST_VALUE:
+                return Arrays.asList(FirstValue.getInstance(), FirstKey.getInstance());
+            case LastValue.LAST_VALUE:
+                return Arrays.asList(LastValue.getInstance(), LastKey.getInstance());
+            case FirstKey.FIRST_KEY:
+                return Collections.singletonList(FirstKey.getInstance());
+            case LastKey.LAST_KEY:
+                return Collections.singletonList(LastKey.getInstance());
+            default:
+                throw new IllegalArgumentException(
+                        "unsupported partial aggregate function " + function);
+        }
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    @Override
+    public FunctionType getFunctionType() {
+        return FunctionType.System;
+    }
+
+    @Override
+    public MappingType getMappingType() {
+        return MappingType.SetMapping;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return MERGE + function;
+    }
+
+    @Override
+    public Row transform(RowStream rows, FunctionParams params) throws Exception {
+        Merger merger = new Merger(rows.getHeader(), params);
+        while (rows.hasNext()) {
+            merger.add(rows.next());
+        }
+        return merger.getResult();
+    }
+
+    /** 增量合并部分聚合结果，header 为部分结果的表头 */
+    public Merger createMerger(Header header, FunctionParams params) {
+        return new Merger(header, params);
+    }
+
+    public class Merger {
+
+        private final List<Field> targetFields = new ArrayList<>();
+
+        private final String[] stateNames;
+
+        private final String[] auxNames;
+
+        private final long[] counts;
+
+        private final long[] longSums;
+
+        private final double[] doubleSums;
+
+        private final Object[] extremes;
+
+        private final long[] keys;
+
+        // 不带 key 的 union 不会改写行的表头，因此按每一行自身的表头来定位列
+        private final Map<Header, int[][]> indicesCache = new IdentityHashMap<>();
+
+        private Merger(Header header, FunctionParams params) {
+            // avg 的部分结果以 sum 列为准，再去找同名的 count 列；first_value / last_value 的辅助列为值所在的 key
+            String stateFunction = function.equals(Avg.AVG) ? Sum.SUM : function;
+            String statePrefix = stateFunction + "(";
+            String auxFunction = getAuxFunction();
+            // 多个函数共享同一组部分结果时，只合并与本函数参数匹配的列
+            Pattern pattern =
+                    Pattern.compile(StringUtils.reformatPath(params.getPaths().get(0)) + ".*");
+
+            Map<String, Field> stateFields = new HashMap<>();
+            for (Field field : header.getFields()) {
+                String fullName = field.getFullName();
+                if (!fullName.startsWith(statePrefix) || !fullName.endsWith(")")) {
+                    continue;
+                }
+                String innerFullName =
+                        fullName.substring(statePrefix.length(), fullName.length() - 1);
+                if (!pattern.matcher(innerFullName).matches()) {
+                    continue;
+                }
+                String targetFullName = function + "(" + innerFullName + ")";
+                if (stateFields.containsKey(targetFullName)) {
+                    continue;
+                }
+                String name = field.getName();
+                String innerName = name.substring(statePrefix.length(), name.length() - 1);
+                DataType type;
+                switch (function) {
+                    case Avg.AVG:
+                        type = DataType.DOUBLE;
+                        break;
+                    case Count.COUNT:
+                        type = DataType.LONG;
+                        break;
+                    default:
+                        type = field.getType();
+                }
+                stateFields.put(targetFullName, field);
+                targetFields.add(
+                        new Field(function + "(" + innerName + ")", targetFullName, type));
+            }
+            targetFields.sort(Comparator.comparing(Field::getFullName));
+
+            int size = targetFields.size();
+            stateNames = new String[size];
+            auxNames = new String[size];
+            for (int i = 0; i < size; i++) {
+                String innerFullName = getInnerName(targetFields.get(i).getFullName());
+                stateNames[i] = statePrefix + innerFullName + ")";
+                auxNames[i] = auxFunction == null ? null : auxFunction + "(" + innerFullName + ")";
+            }
+            counts = new long[size];
+            longSums = new long[size];
+            doubleSums = new double[size];
+            extremes = new Object[size];
+            keys = new long[size];
+        }
+
+        public void add(Row row) {
+            int[][] indices =
+                    indicesCache.computeIfAbsent(
+                            row.getHeader(), header -> locate(header, stateNames, auxNames));
+            for (int i = 0; i < targetFields.size(); i++) {
+                if (function.equals(Avg.AVG) && indices[1][i] != -1) {
+                    Object count = row.getValue(indices[1][i]);
+                    if (count != null) {
+                        counts[i] += ((Number) count).longValue();
+                    }
+                }
+                int index = indices[0][i];
+                if (index == -1) {
+                    continue;
+                }
+                Object value = row.getValue(index);
+                if (value == null) {
+                    continue;
+                }
+                Object key = indices[1][i] == -1 ? null : row.getValue(indices[1][i]);
+                switch (function) {
+                    case Avg.AVG:
+                        doubleSums[i] += ((Number) value).doubleValue();
+                        break;
+                    case Count.COUNT:
+                        counts[i] += ((Number) value).longValue();
+                        break;
+                    case Sum.SUM:
+                        if (targetFields.get(i).getType() == DataType.LONG) {
+                            longSums[i] += ((Number) value).longValue();
+                        } else {
+                            doubleSums[i] += ((Number) value).doubleValue();
+                        }
+                        break;
+                    case Max.MAX:
+                        if (extremes[i] == null
+                                || ValueUtils.compare(
+                                                extremes[i], value, targetFields.get(i).getType())
+                                        < 0) {
+                            extremes[i] = value;
+                        }
+                        break;
+                    case Min.MIN:
+                        if (extremes[i] == null
+                                || ValueUtils.compare(
+                                                extremes[i], value, targetFields.get(i).getType())
+                                        > 0) {
+                            extremes[i] = value;
+                        }
+                        break;
+                    case FirstValue.FIRST_VALUE:
+                        if (key != null && (extremes[i] == null || (Long) key < keys[i])) {
+                            extremes[i] = value;
+                            keys[i] = (Long) key;
+                        }
+                        break;
+                    case LastValue.LAST_VALUE:
+                        if (key != null && (extremes[i] == null || (Long) key > keys[i])) {
+                            extremes[i] = value;
+                            keys[i] = (Long) key;
+                        }
+                        break;
+                    case FirstKey.FIRST_KEY:
+                        if (extremes[i] == null || (Long) value < (Long) extremes[i]) {
+                            extremes[i] = value;
+                        }
+                        break;
+                    case LastKey.LAST_KEY:
+                        if (extremes[i] == null || (Long) value > (Long) extremes[i]) {
+                            extremes[i] = value;
+                        }
+                        break;
+                }
+            }
+        }
+
+        public Row getResult() {
+            Object[] targetValues = new Object[targetFields.size()];
+            for (int i = 0; i < targetValues.length; i++) {
+                switch (function) {
+                    case Avg.AVG:
+                        targetValues[i] = doubleSums[i] / counts[i];
+                        break;
+                    case Count.COUNT:
+                        targetValues[i] = counts[i];
+                        break;
+                    case Sum.SUM:
+                        if (targetFields.get(i).getType() == DataType.LONG) {
+                            targetValues[i] = longSums[i];
+                        } else {
+                            targetValues[i] = doubleSums[i];
+                        }
+                        break;
+                    default:
+                        targetValues[i] = extremes[i];
+                }
+            }
+            return new Row(new Header(targetFields), targetValues);
+        }
+    }
+
+    private String getAuxFunction() {
+        switch (function) {
+            case Avg.AVG:
+                return Count.COUNT;
+            case FirstValue.FIRST_VALUE:
+                return FirstKey.FIRST_KEY;
+            case LastValue.LAST_VALUE:
+                return LastKey.LAST_KEY;
+            default:
+                return null;
+        }
+    }
+
+    private String getInnerName(String targetFullName) {
+        return targetFullName.substring(function.length() + 1, targetFullName.length() - 1);
+    }
+
+    private static int[][] locate(Header header, String[] stateNames, String[] auxNames) {
+        Map<String, Integer> fullNameIndices = new HashMap<>();
+        for (int i = 0; i < header.getFieldSize(); i++) {
+            fullNameIndices.putIfAbsent(header.getField(i).getFullName(), i);
+        }
+        int[][] indices = new int[2][stateNames.length];
+        for (int i = 0; i < stateNames.length; i++) {
+            indices[0][i] = fullNameIndices.getOrDefault(stateNames[i], -1);
+            indices[1][i] =
+                    auxNames[i] == null ? -1 : fullNameIndices.getOrDefault(auxNames[i], -1);
+        }
+        return indices;
+    }
+}
@@ -23,6 +23,10 @@ import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.MappingType;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class Downsample extends AbstractUnaryOperator {
 
@@ -30,16 +34,29 @@ public class Downsample extends AbstractUnaryOperator {
 
     private final long slideDistance;
 
-    private final FunctionCall functionCall;
+    private final List<FunctionCall> functionCallList;
 
     private final KeyRange keyRange;
 
+    /** 是否为聚合下推在单个分片上生成的部分聚合 */
+    private boolean partial = false;
+
     public Downsample(
             Source source,
             long precision,
             long slideDistance,
             FunctionCall functionCall,
             KeyRange keyRange) {
+        this(source, precision, slideDistance, Collections.singletonList(functionCall), keyRange);
+    }
+
+    /** 多个聚合函数共享同一次扫描，结果按函数顺序拼接 */
+    public Downsample(
+            Source source,
+            long precision,
+            long slideDistance,
+            List<FunctionCall> functionCallList,
+            KeyRange keyRange) {
         super(OperatorType.Downsample, source);
         if (precision <= 0) {
             throw new IllegalArgumentException("precision should be greater than zero");
@@ -47,18 +64,23 @@ public class Downsample extends AbstractUnaryOperator {
         if (slideDistance <= 0) {
             throw new IllegalArgumentException("slide distance should be greater than zero");
         }
-        if (functionCall == null || functionCall.getFunction() == null) {
+        if (functionCallList == null || functionCallList.isEmpty()) {
             throw new IllegalArgumentException("function shouldn't be null");
         }
-        if (functionCall.getFunction().getMappingType() != MappingType.SetMapping) {
-            throw new IllegalArgumentException("function should be set mapping function");
+        for (FunctionCall functionCall : functionCallList) {
+            if (functionCall == null || functionCall.getFunction() == null) {
+                throw new IllegalArgumentException("function shouldn't be null");
+            }
+            if (functionCall.getFunction().getMappingType() != MappingType.SetMapping) {
+                throw new IllegalArgumentException("function should be set mapping function");
+            }
         }
         if (keyRange == null) {
             throw new IllegalArgumentException("timeRange shouldn't be null");
         }
         this.precision = precision;
         this.slideDistance = slideDistance;
-        this.functionCall = functionCall;
+        this.functionCallList = functionCallList;
         this.keyRange = keyRange;
     }
 
@@ -70,18 +92,37 @@ public class Downsample extends AbstractUnaryOperator {
         return slideDistance;
     }
 
-    public FunctionCall getFunctionCall() {
-        return functionCall;
+    public List<FunctionCall> getFunctionCallList() {
+        return functionCallList;
     }
 
     public KeyRange getKeyRange() {
         return keyRange;
     }
 
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
     @Override
     public Operator copy() {
-        return new Downsample(
-                getSource().copy(), precision, slideDistance, functionCall.copy(), keyRange.copy());
+        List<FunctionCall> newFunctionCallList = new ArrayList<>();
+        for (FunctionCall functionCall : functionCallList) {
+            newFunctionCallList.add(functionCall.copy());
+        }
+        Downsample copy =
+                new Downsample(
+                        getSource().copy(),
+                        precision,
+                        slideDistance,
+                        newFunctionCallList,
+                        keyRange.copy());
+        copy.setPartial(partial);
+        return copy;
     }
 
     @Override
@@ -93,6 +134,9 @@ public class Downsample extends AbstractUnaryOperator {
                 + ", TimeRange: "
                 + keyRange.toString()
                 + ", Func: "
-                + functionCall.toString();
+                + functionCallList.stream()
+                        .map(FunctionCall::toString)
+                        .collect(Collectors.joining(","))
+                + (partial ? ", Partial: true" : "");
     }
 }
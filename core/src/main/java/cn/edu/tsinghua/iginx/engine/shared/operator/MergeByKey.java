@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.operator;
+
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 key 合并多个有序输入，相同 key 的行拼接为一行，等价于对各输入依次做按 key 的 Join。
+ * 列重复时以靠后输入的非空值为准，输入间 key 不相交时也等价于 Union。
+ */
+public class MergeByKey extends AbstractMultipleOperator {
+
+    public MergeByKey(List<Source> sources) {
+        super(OperatorType.MergeByKey, sources);
+    }
+
+    @Override
+    public Operator copy() {
+        List<Source> sources = new ArrayList<>();
+        for (Source source : getSources()) {
+            sources.add(source.copy());
+        }
+        return new MergeByKey(sources);
+    }
+
+    @Override
+    public String getInfo() {
+        return "Sources: " + getSources().size();
+    }
+}
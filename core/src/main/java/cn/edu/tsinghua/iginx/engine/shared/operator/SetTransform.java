@@ -22,33 +22,68 @@ import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.MappingType;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class SetTransform extends AbstractUnaryOperator {
 
-    private final FunctionCall functionCall;
+    private final List<FunctionCall> functionCallList;
+
+    /** 是否为聚合下推在单个分片上生成的部分聚合 */
+    private boolean partial = false;
 
     public SetTransform(Source source, FunctionCall functionCall) {
+        this(source, Collections.singletonList(functionCall));
+    }
+
+    /** 多个聚合函数共享同一次扫描，结果按函数顺序拼接 */
+    public SetTransform(Source source, List<FunctionCall> functionCallList) {
         super(OperatorType.SetTransform, source);
-        if (functionCall == null || functionCall.getFunction() == null) {
+        if (functionCallList == null || functionCallList.isEmpty()) {
             throw new IllegalArgumentException("function shouldn't be null");
         }
-        if (functionCall.getFunction().getMappingType() != MappingType.SetMapping) {
-            throw new IllegalArgumentException("function should be set mapping function");
+        for (FunctionCall functionCall : functionCallList) {
+            if (functionCall == null || functionCall.getFunction() == null) {
+                throw new IllegalArgumentException("function shouldn't be null");
+            }
+            if (functionCall.getFunction().getMappingType() != MappingType.SetMapping) {
+                throw new IllegalArgumentException("function should be set mapping function");
+            }
         }
-        this.functionCall = functionCall;
+        this.functionCallList = functionCallList;
+    }
+
+    public List<FunctionCall> getFunctionCallList() {
+        return functionCallList;
+    }
+
+    public boolean isPartial() {
+        return partial;
     }
 
-    public FunctionCall getFunctionCall() {
-        return functionCall;
+    public void setPartial(boolean partial) {
+        this.partial = partial;
     }
 
     @Override
     public Operator copy() {
-        return new SetTransform(getSource().copy(), functionCall.copy());
+        List<FunctionCall> newFunctionCallList = new ArrayList<>();
+        for (FunctionCall functionCall : functionCallList) {
+            newFunctionCallList.add(functionCall.copy());
+        }
+        SetTransform copy = new SetTransform(getSource().copy(), newFunctionCallList);
+        copy.setPartial(partial);
+        return copy;
     }
 
     @Override
     public String getInfo() {
-        return "Func: " + functionCall.toString();
+        return "Func: "
+                + functionCallList.stream()
+                        .map(FunctionCall::toString)
+                        .collect(Collectors.joining(","))
+                + (partial ? ", Partial: true" : "");
     }
 }
@@ -18,6 +18,7 @@
  */
 package cn.edu.tsinghua.iginx.engine.shared.operator;
 
+import cn.edu.tsinghua.iginx.engine.shared.Constants;
 import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.engine.shared.source.Source;
 import java.util.ArrayList;
@@ -49,6 +50,11 @@ public class Sort extends AbstractUnaryOperator {
         return sortType;
     }
 
+    /** 是否只按 key 排序 */
+    public boolean isSortByKey() {
+        return sortByCols.size() == 1 && sortByCols.get(0).equals(Constants.KEY);
+    }
+
     @Override
     public Operator copy() {
         return new Sort(getSource().copy(), new ArrayList<>(sortByCols), sortType);
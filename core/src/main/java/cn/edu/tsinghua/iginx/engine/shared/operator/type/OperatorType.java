@@ -25,6 +25,7 @@ public enum OperatorType {
 
     // MultipleOperator[10,19]
     CombineNonQuery(10),
+    MergeByKey,
 
     // isGlobalOperator[20,29]
     ShowTimeSeries(20),
@@ -87,7 +88,7 @@ public enum OperatorType {
     }
 
     public static boolean isMultipleOperator(OperatorType op) {
-        return op == CombineNonQuery;
+        return op.value >= 10 && op.value <= 19;
     }
 
     public static boolean isGlobalOperator(OperatorType op) {
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** 单个序列写入统计的累加器，写入时只做分段累加而不加锁，读取时再汇总为 ColumnCalDO */
+class ColumnCalAccumulator {
+
+    private final String column;
+
+    private final LongAccumulator recentKey = new LongAccumulator(Math::max, 0L);
+
+    private final LongAccumulator firstKey = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    private final LongAccumulator lastKey = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalByte = new LongAdder();
+
+    ColumnCalAccumulator(String column) {
+        this.column = column;
+    }
+
+    void merge(long recentKey, long firstKey, long lastKey, long count, long totalByte) {
+        this.recentKey.accumulate(recentKey);
+        this.firstKey.accumulate(firstKey);
+        this.lastKey.accumulate(lastKey);
+        this.count.add(count);
+        this.totalByte.add(totalByte);
+    }
+
+    ColumnCalDO toColumnCalDO() {
+        ColumnCalDO columnCalDO = new ColumnCalDO();
+        columnCalDO.setColumn(column);
+        columnCalDO.setRecentKey(recentKey.get());
+        columnCalDO.setFirstKey(firstKey.get());
+        columnCalDO.setLastKey(lastKey.get());
+        columnCalDO.setCount((int) count.sum());
+        columnCalDO.setTotalByte(totalByte.sum());
+        return columnCalDO;
+    }
+}
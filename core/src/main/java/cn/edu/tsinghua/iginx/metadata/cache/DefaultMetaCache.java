@@ -25,7 +25,7 @@ import cn.edu.tsinghua.iginx.metadata.entity.*;
 import cn.edu.tsinghua.iginx.policy.simple.ColumnCalDO;
 import cn.edu.tsinghua.iginx.sql.statement.InsertStatement;
 import cn.edu.tsinghua.iginx.thrift.DataType;
-import cn.edu.tsinghua.iginx.utils.Pair;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -42,13 +42,16 @@ public class DefaultMetaCache implements IMetaCache {
 
     private static DefaultMetaCache INSTANCE = null;
 
-    // 分片列表的缓存
-    private final List<Pair<ColumnsRange, List<FragmentMeta>>> sortedFragmentMetaLists;
-
+    // 分片列表的缓存，以下三项只在持有 fragmentLock 写锁时修改
     private final Map<ColumnsRange, List<FragmentMeta>> fragmentMetaListMap;
 
+    private final Map<ColumnsRange, FragmentIndex.FragmentGroup> fragmentGroups;
+
     private final List<FragmentMeta> dummyFragments;
 
+    // 每次修改后发布的分片索引快照，读取时无需加锁
+    private volatile FragmentIndex fragmentIndex;
+
     private int fragmentCacheSize;
 
     private final int fragmentCacheMaxSize;
@@ -82,9 +85,8 @@ public class DefaultMetaCache implements IMetaCache {
     // 时序列信息版本号的缓存
     private final Map<Integer, Integer> timeSeriesVersionMap;
 
-    private final ReadWriteLock insertRecordLock = new ReentrantReadWriteLock();
-
-    private final Map<String, ColumnCalDO> timeSeriesCalDOConcurrentHashMap =
+    // 序列写入统计，写入端无锁累加，读取时汇总
+    private final Map<String, ColumnCalAccumulator> timeSeriesCalDOConcurrentHashMap =
             new ConcurrentHashMap<>();
 
     private final Random random = new Random();
@@ -103,9 +105,10 @@ public class DefaultMetaCache implements IMetaCache {
         }
 
         // 分片相关
-        sortedFragmentMetaLists = new ArrayList<>();
         fragmentMetaListMap = new HashMap<>();
+        fragmentGroups = new HashMap<>();
         dummyFragments = new ArrayList<>();
+        fragmentIndex = FragmentIndex.EMPTY;
         fragmentLock = new ReentrantReadWriteLock();
         // 数据单元相关
         storageUnitMetaMap = new HashMap<>();
@@ -146,70 +149,19 @@ public class DefaultMetaCache implements IMetaCache {
         return minTimestamp;
     }
 
-    private static List<Pair<ColumnsRange, List<FragmentMeta>>> searchFragmentSeriesList(
-            List<Pair<ColumnsRange, List<FragmentMeta>>> fragmentSeriesList,
-            ColumnsRange tsInterval) {
-        List<Pair<ColumnsRange, List<FragmentMeta>>> resultList = new ArrayList<>();
-        if (fragmentSeriesList.isEmpty()) {
-            return resultList;
-        }
-        int index = 0;
-        while (index < fragmentSeriesList.size()
-                && !fragmentSeriesList.get(index).k.isCompletelyAfter(tsInterval)) {
-            if (fragmentSeriesList.get(index).k.isIntersect(tsInterval)) {
-                resultList.add(fragmentSeriesList.get(index));
-            }
-            index++;
-        }
-        return resultList;
-    }
-
-    private static List<Pair<ColumnsRange, List<FragmentMeta>>> searchFragmentSeriesList(
-            List<Pair<ColumnsRange, List<FragmentMeta>>> fragmentSeriesList, String tsName) {
-        List<Pair<ColumnsRange, List<FragmentMeta>>> resultList = new ArrayList<>();
-        if (fragmentSeriesList.isEmpty()) {
-            return resultList;
-        }
-        int index = 0;
-        while (index < fragmentSeriesList.size()
-                && !fragmentSeriesList.get(index).k.isAfter(tsName)) {
-            if (fragmentSeriesList.get(index).k.isContain(tsName)) {
-                resultList.add(fragmentSeriesList.get(index));
-            }
-            index++;
-        }
-        return resultList;
-    }
-
-    private static List<FragmentMeta> searchFragmentList(
-            List<FragmentMeta> fragmentMetaList, KeyInterval keyInterval) {
-        List<FragmentMeta> resultList = new ArrayList<>();
-        if (fragmentMetaList.isEmpty()) {
-            return resultList;
-        }
-        int index = 0;
-        while (index < fragmentMetaList.size()
-                && !fragmentMetaList.get(index).getKeyInterval().isAfter(keyInterval)) {
-            if (fragmentMetaList.get(index).getKeyInterval().isIntersect(keyInterval)) {
-                resultList.add(fragmentMetaList.get(index));
-            }
-            index++;
+    private void refreshFragmentGroup(ColumnsRange columnsRange) {
+        List<FragmentMeta> fragmentMetaList = fragmentMetaListMap.get(columnsRange);
+        if (fragmentMetaList == null || fragmentMetaList.isEmpty()) {
+            fragmentGroups.remove(columnsRange);
+        } else {
+            fragmentGroups.put(
+                    columnsRange, new FragmentIndex.FragmentGroup(columnsRange, fragmentMetaList));
         }
-        return resultList;
     }
 
-    private static List<FragmentMeta> searchFragmentList(
-            List<FragmentMeta> fragmentMetaList, String storageUnitId) {
-        List<FragmentMeta> resultList = new ArrayList<>();
-        if (fragmentMetaList.isEmpty()) {
-            return resultList;
-        }
-        for (FragmentMeta meta : fragmentMetaList) {
-            if (meta.getMasterStorageUnitId().equals(storageUnitId)) {
-                resultList.add(meta);
-            }
-        }
-        return resultList;
+    // 需持有 fragmentLock 的写锁
+    private void publishFragmentIndex() {
+        fragmentIndex = new FragmentIndex(fragmentGroups.values(), dummyFragments);
     }
 
     @Override
@@ -226,32 +178,31 @@ public class DefaultMetaCache implements IMetaCache {
                                                                 f.getMasterStorageUnitId()))));
         storageUnitLock.readLock().unlock();
         fragmentLock.writeLock().lock();
-        sortedFragmentMetaLists.addAll(
-                fragmentListMap
-                        .entrySet()
-                        .stream()
-                        .sorted(Map.Entry.comparingByKey())
-                        .map(e -> new Pair<>(e.getKey(), e.getValue()))
-                        .collect(Collectors.toList()));
         fragmentListMap.forEach(fragmentMetaListMap::put);
         if (enableFragmentCacheControl) {
             // 统计分片总数
-            fragmentCacheSize = sortedFragmentMetaLists.stream().mapToInt(e -> e.v.size()).sum();
+            fragmentCacheSize = fragmentMetaListMap.values().stream().mapToInt(List::size).sum();
             while (fragmentCacheSize > fragmentCacheMaxSize) {
                 kickOffHistoryFragment();
             }
         }
+        fragmentMetaListMap.keySet().forEach(this::refreshFragmentGroup);
+        publishFragmentIndex();
         fragmentLock.writeLock().unlock();
     }
 
-    private void kickOffHistoryFragment() {
+    // 返回被淘汰了分片的列区间
+    private Set<ColumnsRange> kickOffHistoryFragment() {
+        Set<ColumnsRange> kickedOffRanges = new HashSet<>();
         long nextMinTimestamp = 0L;
-        for (List<FragmentMeta> fragmentList : fragmentMetaListMap.values()) {
+        for (Map.Entry<ColumnsRange, List<FragmentMeta>> entry : fragmentMetaListMap.entrySet()) {
+            List<FragmentMeta> fragmentList = entry.getValue();
             FragmentMeta fragment = fragmentList.get(0);
             if (fragment.getKeyInterval().getStartKey() == minTimestamp) {
                 fragmentList.remove(0);
                 nextMinTimestamp = fragment.getKeyInterval().getEndKey();
                 fragmentCacheSize--;
+                kickedOffRanges.add(entry.getKey());
             }
         }
         if (nextMinTimestamp == 0L || nextMinTimestamp == Long.MAX_VALUE) {
@@ -259,6 +210,7 @@ public class DefaultMetaCache implements IMetaCache {
             System.exit(-1);
         }
         minTimestamp = nextMinTimestamp;
+        return kickedOffRanges;
     }
 
     @Override
@@ -268,50 +220,23 @@ public class DefaultMetaCache implements IMetaCache {
         List<FragmentMeta> fragmentMetaList =
                 fragmentMetaListMap.computeIfAbsent(
                         fragmentMeta.getColumnsRange(), v -> new ArrayList<>());
-        if (fragmentMetaList.size() == 0) {
-            // 更新 sortedFragmentMetaLists
-            updateSortedFragmentsList(fragmentMeta.getColumnsRange(), fragmentMetaList);
-        }
         fragmentMetaList.add(fragmentMeta);
+        Set<ColumnsRange> changedRanges = new HashSet<>();
+        changedRanges.add(fragmentMeta.getColumnsRange());
         if (enableFragmentCacheControl) {
             if (fragmentMeta.getKeyInterval().getStartKey() < minTimestamp) {
                 minTimestamp = fragmentMeta.getKeyInterval().getStartKey();
             }
             fragmentCacheSize++;
             while (fragmentCacheSize > fragmentCacheMaxSize) {
-                kickOffHistoryFragment();
+                changedRanges.addAll(kickOffHistoryFragment());
             }
         }
-
+        changedRanges.forEach(this::refreshFragmentGroup);
+        publishFragmentIndex();
         fragmentLock.writeLock().unlock();
     }
 
-    private void updateSortedFragmentsList(
-            ColumnsRange tsInterval, List<FragmentMeta> fragmentMetas) {
-        Pair<ColumnsRange, List<FragmentMeta>> pair = new Pair<>(tsInterval, fragmentMetas);
-        if (sortedFragmentMetaLists.size() == 0) {
-            sortedFragmentMetaLists.add(pair);
-            return;
-        }
-        int left = 0, right = sortedFragmentMetaLists.size() - 1;
-        while (left <= right) {
-            int mid = (left + right) / 2;
-            ColumnsRange midTsInterval = sortedFragmentMetaLists.get(mid).k;
-            if (tsInterval.compareTo(midTsInterval) < 0) {
-                right = mid - 1;
-            } else if (tsInterval.compareTo(midTsInterval) > 0) {
-                left = mid + 1;
-            } else {
-                throw new RuntimeException("unexpected fragment");
-            }
-        }
-        if (left == sortedFragmentMetaLists.size()) {
-            sortedFragmentMetaLists.add(pair);
-        } else {
-            sortedFragmentMetaLists.add(left, pair);
-        }
-    }
-
     @Override
     public void updateFragment(FragmentMeta fragmentMeta) {
         fragmentLock.writeLock().lock();
@@ -319,6 +244,8 @@ public class DefaultMetaCache implements IMetaCache {
         List<FragmentMeta> fragmentMetaList =
                 fragmentMetaListMap.get(fragmentMeta.getColumnsRange());
         fragmentMetaList.set(fragmentMetaList.size() - 1, fragmentMeta);
+        refreshFragmentGroup(fragmentMeta.getColumnsRange());
+        publishFragmentIndex();
         fragmentLock.writeLock().unlock();
     }
 
@@ -332,12 +259,9 @@ public class DefaultMetaCache implements IMetaCache {
             fragmentMetaListMap.put(fragmentMeta.getColumnsRange(), fragmentMetaList);
             fragmentMetaListMap.remove(tsInterval);
 
-            for (Pair<ColumnsRange, List<FragmentMeta>> timeSeriesIntervalListPair :
-                    sortedFragmentMetaLists) {
-                if (timeSeriesIntervalListPair.getK().equals(tsInterval)) {
-                    timeSeriesIntervalListPair.k = fragmentMeta.getColumnsRange();
-                }
-            }
+            fragmentGroups.remove(tsInterval);
+            refreshFragmentGroup(fragmentMeta.getColumnsRange());
+            publishFragmentIndex();
         } finally {
             fragmentLock.writeLock().unlock();
         }
@@ -353,15 +277,8 @@ public class DefaultMetaCache implements IMetaCache {
             if (fragmentMetaList.size() == 0) {
                 fragmentMetaListMap.remove(tsInterval);
             }
-            for (int index = 0; index < sortedFragmentMetaLists.size(); index++) {
-                if (sortedFragmentMetaLists.get(index).getK().equals(tsInterval)) {
-                    sortedFragmentMetaLists.get(index).getV().remove(fragmentMeta);
-                    if (sortedFragmentMetaLists.get(index).getV().isEmpty()) {
-                        sortedFragmentMetaLists.remove(index);
-                    }
-                    break;
-                }
-            }
+            refreshFragmentGroup(tsInterval);
+            publishFragmentIndex();
         } finally {
             fragmentLock.writeLock().unlock();
         }
@@ -371,36 +288,27 @@ public class DefaultMetaCache implements IMetaCache {
     public Map<ColumnsRange, List<FragmentMeta>> getFragmentMapByTimeSeriesInterval(
             ColumnsRange tsInterval) {
         Map<ColumnsRange, List<FragmentMeta>> resultMap = new HashMap<>();
-        fragmentLock.readLock().lock();
-        searchFragmentSeriesList(sortedFragmentMetaLists, tsInterval)
-                .forEach(e -> resultMap.put(e.k, e.v));
-        fragmentLock.readLock().unlock();
+        fragmentIndex
+                .searchGroups(tsInterval)
+                .forEach(
+                        e -> resultMap.put(e.getColumnsRange(), new ArrayList<>(e.getFragments())));
         return resultMap;
     }
 
     @Override
     public List<FragmentMeta> getDummyFragmentsByTimeSeriesInterval(ColumnsRange tsInterval) {
-        fragmentLock.readLock().lock();
-        List<FragmentMeta> results = new ArrayList<>();
-        for (FragmentMeta fragmentMeta : dummyFragments) {
-            if (fragmentMeta.isValid() && fragmentMeta.getColumnsRange().isIntersect(tsInterval)) {
-                results.add(fragmentMeta);
-            }
-        }
-        fragmentLock.readLock().unlock();
-        return results;
+        return fragmentIndex.searchDummyFragments(tsInterval, null);
     }
 
     @Override
     public Map<ColumnsRange, FragmentMeta> getLatestFragmentMap() {
         Map<ColumnsRange, FragmentMeta> latestFragmentMap = new HashMap<>();
-        fragmentLock.readLock().lock();
-        sortedFragmentMetaLists
+        fragmentIndex
+                .getGroups()
                 .stream()
-                .map(e -> e.v.get(e.v.size() - 1))
+                .map(FragmentIndex.FragmentGroup::getLatestFragment)
                 .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
                 .forEach(e -> latestFragmentMap.put(e.getColumnsRange(), e));
-        fragmentLock.readLock().unlock();
         return latestFragmentMap;
     }
 
@@ -408,13 +316,12 @@ public class DefaultMetaCache implements IMetaCache {
     public Map<ColumnsRange, FragmentMeta> getLatestFragmentMapByTimeSeriesInterval(
             ColumnsRange tsInterval) {
         Map<ColumnsRange, FragmentMeta> latestFragmentMap = new HashMap<>();
-        fragmentLock.readLock().lock();
-        searchFragmentSeriesList(sortedFragmentMetaLists, tsInterval)
+        fragmentIndex
+                .searchGroups(tsInterval)
                 .stream()
-                .map(e -> e.v.get(e.v.size() - 1))
+                .map(FragmentIndex.FragmentGroup::getLatestFragment)
                 .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
                 .forEach(e -> latestFragmentMap.put(e.getColumnsRange(), e));
-        fragmentLock.readLock().unlock();
         return latestFragmentMap;
     }
 
@@ -422,131 +329,87 @@ public class DefaultMetaCache implements IMetaCache {
     public Map<ColumnsRange, List<FragmentMeta>> getFragmentMapByTimeSeriesIntervalAndTimeInterval(
             ColumnsRange tsInterval, KeyInterval keyInterval) {
         Map<ColumnsRange, List<FragmentMeta>> resultMap = new HashMap<>();
-        fragmentLock.readLock().lock();
-        searchFragmentSeriesList(sortedFragmentMetaLists, tsInterval)
+        fragmentIndex
+                .searchGroups(tsInterval)
                 .forEach(
                         e -> {
-                            List<FragmentMeta> fragmentMetaList =
-                                    searchFragmentList(e.v, keyInterval);
+                            List<FragmentMeta> fragmentMetaList = e.search(keyInterval);
                             if (!fragmentMetaList.isEmpty()) {
-                                resultMap.put(e.k, fragmentMetaList);
+                                resultMap.put(e.getColumnsRange(), fragmentMetaList);
                             }
                         });
-        fragmentLock.readLock().unlock();
         return resultMap;
     }
 
     @Override
     public List<FragmentMeta> getDummyFragmentsByTimeSeriesIntervalAndTimeInterval(
             ColumnsRange tsInterval, KeyInterval keyInterval) {
-        fragmentLock.readLock().lock();
-        List<FragmentMeta> results = new ArrayList<>();
-        for (FragmentMeta fragmentMeta : dummyFragments) {
-            if (fragmentMeta.isValid()
-                    && fragmentMeta.getColumnsRange().isIntersect(tsInterval)
-                    && fragmentMeta.getKeyInterval().isIntersect(keyInterval)) {
-                results.add(fragmentMeta);
-            }
-        }
-        fragmentLock.readLock().unlock();
-        return results;
+        return fragmentIndex.searchDummyFragments(tsInterval, keyInterval);
     }
 
     @Override
     public List<FragmentMeta> getFragmentListByTimeSeriesName(String tsName) {
-        List<FragmentMeta> resultList;
-        fragmentLock.readLock().lock();
-        resultList =
-                searchFragmentSeriesList(sortedFragmentMetaLists, tsName)
-                        .stream()
-                        .map(e -> e.v)
-                        .flatMap(List::stream)
-                        .sorted(
-                                (o1, o2) -> {
-                                    if (o1.getColumnsRange().getStartColumn() == null
-                                            && o2.getColumnsRange().getStartColumn() == null)
-                                        return 0;
-                                    else if (o1.getColumnsRange().getStartColumn() == null)
-                                        return -1;
-                                    else if (o2.getColumnsRange().getStartColumn() == null)
-                                        return 1;
-                                    return o1.getColumnsRange()
-                                            .getStartColumn()
-                                            .compareTo(o2.getColumnsRange().getStartColumn());
-                                })
-                        .collect(Collectors.toList());
-        fragmentLock.readLock().unlock();
-        return resultList;
+        return fragmentIndex
+                .searchGroups(tsName)
+                .stream()
+                .map(FragmentIndex.FragmentGroup::getFragments)
+                .flatMap(List::stream)
+                .sorted(
+                        (o1, o2) -> {
+                            if (o1.getColumnsRange().getStartColumn() == null
+                                    && o2.getColumnsRange().getStartColumn() == null)
+                                return 0;
+                            else if (o1.getColumnsRange().getStartColumn() == null) return -1;
+                            else if (o2.getColumnsRange().getStartColumn() == null) return 1;
+                            return o1.getColumnsRange()
+                                    .getStartColumn()
+                                    .compareTo(o2.getColumnsRange().getStartColumn());
+                        })
+                .collect(Collectors.toList());
     }
 
     @Override
     public FragmentMeta getLatestFragmentByTimeSeriesName(String tsName) {
-        FragmentMeta result;
-        fragmentLock.readLock().lock();
-        result =
-                searchFragmentSeriesList(sortedFragmentMetaLists, tsName)
-                        .stream()
-                        .map(e -> e.v)
-                        .flatMap(List::stream)
-                        .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
-                        .findFirst()
-                        .orElse(null);
-        fragmentLock.readLock().unlock();
-        return result;
+        return fragmentIndex
+                .searchGroups(tsName)
+                .stream()
+                .map(FragmentIndex.FragmentGroup::getFragments)
+                .flatMap(List::stream)
+                .filter(e -> e.getKeyInterval().getEndKey() == Long.MAX_VALUE)
+                .findFirst()
+                .orElse(null);
     }
 
     @Override
     public List<FragmentMeta> getFragmentMapByExactTimeSeriesInterval(ColumnsRange tsInterval) {
-        List<FragmentMeta> res = fragmentMetaListMap.getOrDefault(tsInterval, new ArrayList<>());
-        // 对象不匹配的情况需要手动匹配（?）
-        if (res.size() == 0) {
-            for (Map.Entry<ColumnsRange, List<FragmentMeta>> fragmentMetaListEntry :
-                    fragmentMetaListMap.entrySet()) {
-                if (fragmentMetaListEntry.getKey().toString().equals(tsInterval.toString())) {
-                    return fragmentMetaListEntry.getValue();
-                }
-            }
-        }
-        return res;
+        FragmentIndex.FragmentGroup group = fragmentIndex.getGroup(tsInterval);
+        return group == null ? new ArrayList<>() : new ArrayList<>(group.getFragments());
     }
 
     @Override
     public List<FragmentMeta> getFragmentListByTimeSeriesNameAndTimeInterval(
             String tsName, KeyInterval keyInterval) {
-        List<FragmentMeta> resultList;
-        fragmentLock.readLock().lock();
-        List<FragmentMeta> fragmentMetas =
-                searchFragmentSeriesList(sortedFragmentMetaLists, tsName)
-                        .stream()
-                        .map(e -> e.v)
-                        .flatMap(List::stream)
-                        .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
-                        .collect(Collectors.toList());
-        resultList = searchFragmentList(fragmentMetas, keyInterval);
-        fragmentLock.readLock().unlock();
+        List<FragmentMeta> resultList = new ArrayList<>();
+        fragmentIndex.searchGroups(tsName).forEach(e -> resultList.addAll(e.search(keyInterval)));
+        resultList.sort(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()));
         return resultList;
     }
 
     @Override
     public List<FragmentMeta> getFragmentListByStorageUnitId(String storageUnitId) {
-        List<FragmentMeta> resultList;
-        fragmentLock.readLock().lock();
-        List<FragmentMeta> fragmentMetas =
-                sortedFragmentMetaLists
-                        .stream()
-                        .map(e -> e.v)
-                        .flatMap(List::stream)
-                        .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
-                        .collect(Collectors.toList());
-        resultList = searchFragmentList(fragmentMetas, storageUnitId);
-        fragmentLock.readLock().unlock();
-        return resultList;
+        return fragmentIndex
+                .getGroups()
+                .stream()
+                .map(FragmentIndex.FragmentGroup::getFragments)
+                .flatMap(List::stream)
+                .filter(e -> e.getMasterStorageUnitId().equals(storageUnitId))
+                .sorted(Comparator.comparingLong(o -> o.getKeyInterval().getStartKey()))
+                .collect(Collectors.toList());
     }
 
     @Override
     public boolean hasFragment() {
-        return !sortedFragmentMetaLists.isEmpty()
-                || (enableFragmentCacheControl && minTimestamp != 0L);
+        return !fragmentIndex.isEmpty() || (enableFragmentCacheControl && minTimestamp != 0L);
     }
 
     @Override
@@ -646,6 +509,7 @@ public class DefaultMetaCache implements IMetaCache {
                 dummyFragment.setMasterStorageUnit(dummyStorageUnit);
                 dummyStorageUnitMetaMap.put(dummyStorageUnit.getId(), dummyStorageUnit);
                 dummyFragments.add(dummyFragment);
+                publishFragmentIndex();
             }
         }
         fragmentLock.writeLock().unlock();
@@ -678,6 +542,7 @@ public class DefaultMetaCache implements IMetaCache {
             dummyStorageUnitMetaMap.remove(dummyStorageUnitID);
         }
         storageEngineMetaMap.put(storageEngineMeta.getId(), storageEngineMeta);
+        publishFragmentIndex();
 
         fragmentLock.writeLock().unlock();
         storageUnitLock.writeLock().unlock();
@@ -697,11 +562,9 @@ public class DefaultMetaCache implements IMetaCache {
     @Override
     public List<FragmentMeta> getFragments() {
         List<FragmentMeta> fragments = new ArrayList<>();
-        this.fragmentLock.readLock().lock();
-        for (Pair<ColumnsRange, List<FragmentMeta>> pair : sortedFragmentMetaLists) {
-            fragments.addAll(pair.v);
+        for (FragmentIndex.FragmentGroup group : fragmentIndex.getGroups()) {
+            fragments.addAll(group.getFragments());
         }
-        this.fragmentLock.readLock().unlock();
         return fragments;
     }
 
@@ -781,83 +644,99 @@ public class DefaultMetaCache implements IMetaCache {
 
     @Override
     public void saveTimeSeriesData(InsertStatement statement) {
-        insertRecordLock.writeLock().lock();
         long now = System.currentTimeMillis();
 
         RawData data = statement.getRawData();
         List<String> paths = data.getPaths();
+        List<DataType> types = data.getDataTypeList();
+        List<Bitmap> bitmaps = data.getBitmaps();
+        Object[] valuesList = data.getValuesList();
+        long[] keys = new long[data.getKeys().size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = data.getKeys().get(i);
+        }
+
         if (data.isColumnData()) {
-            DataView view =
-                    new ColumnDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
-            for (int i = 0; i < view.getPathNum(); i++) {
+            for (int i = 0; i < paths.size(); i++) {
                 long minn = Long.MAX_VALUE;
                 long maxx = Long.MIN_VALUE;
-                long totalByte = 0L;
                 int count = 0;
-                BitmapView bitmapView = view.getBitmapView(i);
-                for (int j = 0; j < view.getKeySize(); j++) {
-                    if (bitmapView.get(j)) {
-                        minn = Math.min(minn, view.getKey(j));
-                        maxx = Math.max(maxx, view.getKey(j));
-                        if (view.getDataType(i) == DataType.BINARY) {
-                            totalByte += ((byte[]) view.getValue(i, j)).length;
-                        } else {
-                            totalByte += transDatatypeToByte(view.getDataType(i));
-                        }
+                byte[] bytes = bitmaps.get(i).getBytes();
+                for (int b = 0; b < bytes.length; b++) {
+                    // 按字节跳过空位，只遍历置位的 bit
+                    int bits = bytes[b] & 0xFF;
+                    while (bits != 0) {
+                        long key = keys[b * 8 + Integer.numberOfTrailingZeros(bits)];
+                        bits &= bits - 1;
+                        minn = Math.min(minn, key);
+                        maxx = Math.max(maxx, key);
                         count++;
                     }
                 }
                 if (count > 0) {
+                    long totalByte;
+                    if (types.get(i) == DataType.BINARY) {
+                        totalByte = 0L;
+                        for (Object value : (Object[]) valuesList[i]) {
+                            totalByte += ((byte[]) value).length;
+                        }
+                    } else {
+                        totalByte = count * transDatatypeToByte(types.get(i));
+                    }
                     updateTimeSeriesCalDOConcurrentHashMap(
                             paths.get(i), now, minn, maxx, totalByte, count);
                 }
             }
         } else {
-            DataView view =
-                    new RowDataView(data, 0, data.getPaths().size(), 0, data.getKeys().size());
-            long[] totalByte = new long[view.getPathNum()];
-            int[] count = new int[view.getPathNum()];
-            long[] minn = new long[view.getPathNum()];
-            long[] maxx = new long[view.getPathNum()];
+            int pathNum = paths.size();
+            long[] totalByte = new long[pathNum];
+            int[] count = new int[pathNum];
+            long[] minn = new long[pathNum];
+            long[] maxx = new long[pathNum];
             Arrays.fill(minn, Long.MAX_VALUE);
             Arrays.fill(maxx, Long.MIN_VALUE);
+            boolean[] isBinary = new boolean[pathNum];
+            for (int j = 0; j < pathNum; j++) {
+                isBinary[j] = types.get(j) == DataType.BINARY;
+            }
 
-            for (int i = 0; i < view.getKeySize(); i++) {
-                BitmapView bitmapView = view.getBitmapView(i);
+            for (int i = 0; i < keys.length; i++) {
+                long key = keys[i];
+                Object[] values = (Object[]) valuesList[i];
+                byte[] bytes = bitmaps.get(i).getBytes();
                 int index = 0;
-                for (int j = 0; j < view.getPathNum(); j++) {
-                    if (bitmapView.get(j)) {
-                        minn[j] = Math.min(minn[j], view.getKey(i));
-                        maxx[j] = Math.max(maxx[j], view.getKey(i));
-                        if (view.getDataType(j) == DataType.BINARY) {
-                            totalByte[j] += ((byte[]) view.getValue(i, index)).length;
-                        } else {
-                            totalByte[j] += transDatatypeToByte(view.getDataType(j));
+                for (int b = 0; b < bytes.length; b++) {
+                    int bits = bytes[b] & 0xFF;
+                    while (bits != 0) {
+                        int j = b * 8 + Integer.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        minn[j] = Math.min(minn[j], key);
+                        maxx[j] = Math.max(maxx[j], key);
+                        if (isBinary[j]) {
+                            totalByte[j] += ((byte[]) values[index]).length;
                         }
                         count[j]++;
                         index++;
                     }
                 }
             }
-            for (int i = 0; i < count.length; i++) {
-                if (count[i] > 0) {
+            for (int j = 0; j < pathNum; j++) {
+                if (count[j] > 0) {
+                    if (!isBinary[j]) {
+                        totalByte[j] = count[j] * transDatatypeToByte(types.get(j));
+                    }
                     updateTimeSeriesCalDOConcurrentHashMap(
-                            paths.get(i), now, minn[i], maxx[i], totalByte[i], count[i]);
+                            paths.get(j), now, minn[j], maxx[j], totalByte[j], count[j]);
                 }
             }
         }
-        insertRecordLock.writeLock().unlock();
     }
 
     private void updateTimeSeriesCalDOConcurrentHashMap(
             String path, long now, long minn, long maxx, long totalByte, int count) {
-        ColumnCalDO columnCalDO = new ColumnCalDO();
-        columnCalDO.setColumn(path);
-        if (timeSeriesCalDOConcurrentHashMap.containsKey(path)) {
-            columnCalDO = timeSeriesCalDOConcurrentHashMap.get(path);
-        }
-        columnCalDO.merge(now, minn, maxx, count, totalByte);
-        timeSeriesCalDOConcurrentHashMap.put(path, columnCalDO);
+        timeSeriesCalDOConcurrentHashMap
+                .computeIfAbsent(path, ColumnCalAccumulator::new)
+                .merge(now, minn, maxx, count, totalByte);
     }
 
     private long transDatatypeToByte(DataType dataType) {
@@ -877,28 +756,22 @@ public class DefaultMetaCache implements IMetaCache {
 
     @Override
     public List<ColumnCalDO> getMaxValueFromTimeSeries() {
-        insertRecordLock.readLock().lock();
-        List<ColumnCalDO> ret =
-                timeSeriesCalDOConcurrentHashMap
-                        .values()
-                        .stream()
-                        .filter(e -> random.nextDouble() < config.getCachedTimeseriesProb())
-                        .collect(Collectors.toList());
-        insertRecordLock.readLock().unlock();
-        return ret;
+        return timeSeriesCalDOConcurrentHashMap
+                .values()
+                .stream()
+                .filter(e -> random.nextDouble() < config.getCachedTimeseriesProb())
+                .map(ColumnCalAccumulator::toColumnCalDO)
+                .collect(Collectors.toList());
     }
 
     @Override
     public double getSumFromTimeSeries() {
-        insertRecordLock.readLock().lock();
-        double ret =
-                timeSeriesCalDOConcurrentHashMap
-                        .values()
-                        .stream()
-                        .mapToDouble(ColumnCalDO::getValue)
-                        .sum();
-        insertRecordLock.readLock().unlock();
-        return ret;
+        return timeSeriesCalDOConcurrentHashMap
+                .values()
+                .stream()
+                .map(ColumnCalAccumulator::toColumnCalDO)
+                .mapToDouble(ColumnCalDO::getValue)
+                .sum();
     }
 
     @Override
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsRange;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 分片索引的不可变快照：第一层是列区间上的区间树，每个节点是同一列区间上的分片组，分片组内再按 key 区间建树。
+ * 写入方修改分片后生成新的快照并整体替换，读取方无需加锁。
+ */
+final class FragmentIndex {
+
+    static final FragmentIndex EMPTY =
+            new FragmentIndex(Collections.emptyList(), Collections.emptyList());
+
+    private static final Comparator<String> START_COLUMN_COMPARATOR =
+            Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private static final Comparator<String> END_COLUMN_COMPARATOR =
+            Comparator.nullsLast(Comparator.naturalOrder());
+
+    // 按列区间排序的全部分片组
+    private final List<FragmentGroup> groups;
+
+    private final IntervalTree<String, FragmentGroup> groupTree;
+
+    // 前缀形式的列区间无法放入区间树，查询时逐个判断
+    private final List<FragmentGroup> prefixGroups;
+
+    private final Map<ColumnsRange, FragmentGroup> groupMap;
+
+    private final Map<String, FragmentGroup> groupNameMap;
+
+    private final IntervalTree<String, FragmentMeta> dummyTree;
+
+    private final List<FragmentMeta> prefixDummyFragments;
+
+    FragmentIndex(Collection<FragmentGroup> groups, List<FragmentMeta> dummyFragments) {
+        this.groups = new ArrayList<>(groups);
+        this.groups.sort(Comparator.comparing(FragmentGroup::getColumnsRange));
+        this.groupMap = new HashMap<>();
+        this.groupNameMap = new HashMap<>();
+        List<FragmentGroup> normalGroups = new ArrayList<>();
+        this.prefixGroups = new ArrayList<>();
+        for (FragmentGroup group : this.groups) {
+            groupMap.put(group.getColumnsRange(), group);
+            groupNameMap.putIfAbsent(group.getColumnsRange().toString(), group);
+            if (group.getColumnsRange().isNormal()) {
+                normalGroups.add(group);
+            } else {
+                prefixGroups.add(group);
+            }
+        }
+        this.groupTree =
+                new IntervalTree<>(
+                        normalGroups,
+                        e -> startColumn(e.getColumnsRange()),
+                        e -> endColumn(e.getColumnsRange()),
+                        START_COLUMN_COMPARATOR,
+                        END_COLUMN_COMPARATOR);
+
+        List<FragmentMeta> normalDummyFragments = new ArrayList<>();
+        this.prefixDummyFragments = new ArrayList<>();
+        for (FragmentMeta fragment : dummyFragments) {
+            if (fragment.getColumnsRange().isNormal()) {
+                normalDummyFragments.add(fragment);
+            } else {
+                prefixDummyFragments.add(fragment);
+            }
+        }
+        this.dummyTree =
+                new IntervalTree<>(
+                        normalDummyFragments,
+                        e -> startColumn(e.getColumnsRange()),
+                        e -> endColumn(e.getColumnsRange()),
+                        START_COLUMN_COMPARATOR,
+                        END_COLUMN_COMPARATOR);
+    }
+
+    private static String startColumn(ColumnsRange columnsRange) {
+        return realColumn(columnsRange.getStartColumn(), columnsRange.getSchemaPrefix());
+    }
+
+    private static String endColumn(ColumnsRange columnsRange) {
+        return realColumn(columnsRange.getEndColumn(), columnsRange.getSchemaPrefix());
+    }
+
+    private static String realColumn(String column, String schemaPrefix) {
+        if (column != null && schemaPrefix != null) {
+            return schemaPrefix + "." + column;
+        }
+        return column;
+    }
+
+    /** 终点不大于查询起点的列区间一定不相交，与 StringUtils.compare 的通配符语义保持一致 */
+    private static Predicate<String> isEndBefore(String start) {
+        if (start == null) {
+            return end -> false;
+        }
+        int index = start.indexOf('*');
+        String bound = index < 0 ? start : start.substring(0, index);
+        if (bound.isEmpty()) {
+            return end -> false;
+        }
+        return end -> end != null && end.compareTo(bound) <= 0;
+    }
+
+    /** 起点大于查询终点的列区间一定不相交，查询终点带通配符时以该前缀的所有列为界 */
+    private static Predicate<String> isStartAfter(String end) {
+        if (end == null) {
+            return start -> false;
+        }
+        int index = end.indexOf('*');
+        if (index < 0) {
+            return start -> start != null && start.compareTo(end) > 0;
+        }
+        String prefix = end.substring(0, index);
+        return start -> start != null && start.compareTo(prefix) > 0 && !start.startsWith(prefix);
+    }
+
+    List<FragmentGroup> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
+
+    boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    /** 与列区间相交的分片组 */
+    List<FragmentGroup> searchGroups(ColumnsRange columnsRange) {
+        List<FragmentGroup> resultList = new ArrayList<>();
+        if (columnsRange.isPrefix()) {
+            for (FragmentGroup group : groups) {
+                if (group.getColumnsRange().isIntersect(columnsRange)) {
+                    resultList.add(group);
+                }
+            }
+            return resultList;
+        }
+        groupTree.search(
+                isEndBefore(columnsRange.getStartColumn()),
+                isStartAfter(columnsRange.getEndColumn()),
+                e -> {
+                    if (e.getColumnsRange().isIntersect(columnsRange)) {
+                        resultList.add(e);
+                    }
+                });
+        for (FragmentGroup group : prefixGroups) {
+            if (group.getColumnsRange().isIntersect(columnsRange)) {
+                resultList.add(group);
+            }
+        }
+        return resultList;
+    }
+
+    /** 包含该序列的分片组 */
+    List<FragmentGroup> searchGroups(String tsName) {
+        List<FragmentGroup> resultList = new ArrayList<>();
+        groupTree.search(
+                isEndBefore(tsName),
+                isStartAfter(tsName),
+                e -> {
+                    if (e.getColumnsRange().isContain(tsName)) {
+                        resultList.add(e);
+                    }
+                });
+        for (FragmentGroup group : prefixGroups) {
+            if (group.getColumnsRange().isContain(tsName)) {
+                resultList.add(group);
+            }
+        }
+        return resultList;
+    }
+
+    /** 列区间完全一致的分片组，对象不匹配时退化为按字符串匹配 */
+    FragmentGroup getGroup(ColumnsRange columnsRange) {
+        FragmentGroup group = groupMap.get(columnsRange);
+        if (group == null) {
+            group = groupNameMap.get(columnsRange.toString());
+        }
+        return group;
+    }
+
+    /**
+     * 与列区间相交的有效 dummy 分片
+     *
+     * @param keyInterval 为 null 时不限制 key 区间
+     */
+    List<FragmentMeta> searchDummyFragments(ColumnsRange columnsRange, KeyInterval keyInterval) {
+        List<FragmentMeta> resultList = new ArrayList<>();
+        if (columnsRange.isPrefix()) {
+            dummyTree.values().forEach(e -> addIfMatch(e, columnsRange, keyInterval, resultList));
+        } else {
+            dummyTree.search(
+                    isEndBefore(columnsRange.getStartColumn()),
+                    isStartAfter(columnsRange.getEndColumn()),
+                    e -> addIfMatch(e, columnsRange, keyInterval, resultList));
+        }
+        prefixDummyFragments.forEach(e -> addIfMatch(e, columnsRange, keyInterval, resultList));
+        return resultList;
+    }
+
+    private static void addIfMatch(
+            FragmentMeta fragment,
+            ColumnsRange columnsRange,
+            KeyInterval keyInterval,
+            List<FragmentMeta> resultList) {
+        if (fragment.isValid()
+                && fragment.getColumnsRange().isIntersect(columnsRange)
+                && (keyInterval == null || fragment.getKeyInterval().isIntersect(keyInterval))) {
+            resultList.add(fragment);
+        }
+    }
+
+    /** 同一列区间上的分片，fragments 保持写入顺序，keyTree 按 key 区间索引 */
+    static final class FragmentGroup {
+
+        private final ColumnsRange columnsRange;
+
+        private final List<FragmentMeta> fragments;
+
+        private final IntervalTree<Long, FragmentMeta> keyTree;
+
+        FragmentGroup(ColumnsRange columnsRange, List<FragmentMeta> fragments) {
+            this.columnsRange = columnsRange;
+            this.fragments = Collections.unmodifiableList(new ArrayList<>(fragments));
+            this.keyTree =
+                    new IntervalTree<>(
+                            fragments,
+                            e -> e.getKeyInterval().getStartKey(),
+                            e -> e.getKeyInterval().getEndKey(),
+                            Comparator.<Long>naturalOrder(),
+                            Comparator.<Long>naturalOrder());
+        }
+
+        ColumnsRange getColumnsRange() {
+            return columnsRange;
+        }
+
+        List<FragmentMeta> getFragments() {
+            return fragments;
+        }
+
+        FragmentMeta getLatestFragment() {
+            return fragments.get(fragments.size() - 1);
+        }
+
+        /** 按 key 区间起点排序的、与 keyInterval 相交的分片 */
+        List<FragmentMeta> search(KeyInterval keyInterval) {
+            List<FragmentMeta> resultList = new ArrayList<>();
+            keyTree.search(
+                    end -> end <= keyInterval.getStartKey(),
+                    start -> start > keyInterval.getEndKey(),
+                    e -> {
+                        if (e.getKeyInterval().isIntersect(keyInterval)) {
+                            resultList.add(e);
+                        }
+                    });
+            return resultList;
+        }
+    }
+}
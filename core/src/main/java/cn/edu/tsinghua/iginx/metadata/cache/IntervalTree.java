@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 不可变的静态区间树：区间按起点排序后以数组的中点作为根构成隐式平衡二叉树，每个节点记录所在子树中最大的终点。
+ * 起点与终点是否为开区间、null 的含义均由调用方通过比较器与剪枝条件决定。
+ */
+class IntervalTree<K, V> {
+
+    private final List<V> values;
+
+    private final List<K> starts;
+
+    private final List<K> maxEnds;
+
+    private final Comparator<K> endComparator;
+
+    IntervalTree(
+            Collection<V> values,
+            Function<V, K> startOf,
+            Function<V, K> endOf,
+            Comparator<K> startComparator,
+            Comparator<K> endComparator) {
+        this.values = new ArrayList<>(values);
+        this.values.sort((o1, o2) -> startComparator.compare(startOf.apply(o1), startOf.apply(o2)));
+        this.starts = new ArrayList<>(this.values.size());
+        this.maxEnds = new ArrayList<>(this.values.size());
+        for (V value : this.values) {
+            starts.add(startOf.apply(value));
+            maxEnds.add(endOf.apply(value));
+        }
+        this.endComparator = endComparator;
+        if (!this.values.isEmpty()) {
+            build(0, this.values.size() - 1);
+        }
+    }
+
+    private K build(int low, int high) {
+        int mid = (low + high) >>> 1;
+        K maxEnd = maxEnds.get(mid);
+        if (low < mid) {
+            maxEnd = max(maxEnd, build(low, mid - 1));
+        }
+        if (mid < high) {
+            maxEnd = max(maxEnd, build(mid + 1, high));
+        }
+        maxEnds.set(mid, maxEnd);
+        return maxEnd;
+    }
+
+    private K max(K a, K b) {
+        return endComparator.compare(a, b) >= 0 ? a : b;
+    }
+
+    /**
+     * 按起点顺序访问可能与查询区间相交的元素，结果仍需调用方精确判断
+     *
+     * @param isEndBefore 终点满足该条件的区间一定在查询区间之前，用于剪去整棵子树，须对终点单调
+     * @param isStartAfter 起点满足该条件的区间一定在查询区间之后，用于截断右侧，须对起点单调
+     */
+    void search(Predicate<K> isEndBefore, Predicate<K> isStartAfter, Consumer<V> consumer) {
+        search(0, values.size() - 1, isEndBefore, isStartAfter, consumer);
+    }
+
+    private boolean search(
+            int low,
+            int high,
+            Predicate<K> isEndBefore,
+            Predicate<K> isStartAfter,
+            Consumer<V> consumer) {
+        if (low > high) {
+            return true;
+        }
+        int mid = (low + high) >>> 1;
+        if (isEndBefore.test(maxEnds.get(mid))) {
+            return true;
+        }
+        if (!search(low, mid - 1, isEndBefore, isStartAfter, consumer)) {
+            return false;
+        }
+        if (isStartAfter.test(starts.get(mid))) {
+            return false;
+        }
+        consumer.accept(values.get(mid));
+        return search(mid + 1, high, isEndBefore, isStartAfter, consumer);
+    }
+
+    /** 按起点排序的全部元素 */
+    List<V> values() {
+        return Collections.unmodifiableList(values);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    boolean isEmpty() {
+        return values.isEmpty();
+    }
+}
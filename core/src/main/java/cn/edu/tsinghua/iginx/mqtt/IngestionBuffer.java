@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.mqtt;
+
+import cn.edu.tsinghua.iginx.exceptions.StatusCode;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.thrift.InsertNonAlignedRowRecordsReq;
+import cn.edu.tsinghua.iginx.thrift.Status;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import cn.edu.tsinghua.iginx.utils.ByteUtils;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 跨 publish 合并 MQTT 写入的缓冲区。数据点按序列集合分组缓存，某一组达到批大小或等待超过 linger 时间后作为一次行写入请求提交。
+ * 缓冲区中的数据点总数有上限，超过上限时 broker 的回调线程会被阻塞。
+ */
+public class IngestionBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionBuffer.class);
+
+    /** 数据进入缓冲区后即返回 */
+    public static final String ACK_ON_RECEIVE = "ack_on_receive";
+
+    /** 数据所在的批次写入完成后才返回 */
+    public static final String ACK_AFTER_FLUSH = "ack_after_flush";
+
+    private final Function<InsertNonAlignedRowRecordsReq, Status> writer;
+
+    private final long sessionId;
+
+    private final int batchSize;
+
+    private final long lingerMs;
+
+    private final int capacity;
+
+    private final boolean ackAfterFlush;
+
+    private final Semaphore permits;
+
+    private final Map<List<String>, Batch> batches = new HashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    private boolean closed = false;
+
+    public IngestionBuffer(
+            Function<InsertNonAlignedRowRecordsReq, Status> writer,
+            long sessionId,
+            int batchSize,
+            long lingerMs,
+            int capacity,
+            String durabilityMode) {
+        this.writer = writer;
+        this.sessionId = sessionId;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMs = Math.max(1, lingerMs);
+        this.capacity = Math.max(this.batchSize, capacity);
+        this.permits = new Semaphore(this.capacity);
+        if (!ACK_ON_RECEIVE.equalsIgnoreCase(durabilityMode)
+                && !ACK_AFTER_FLUSH.equalsIgnoreCase(durabilityMode)) {
+            logger.warn(
+                    "unknown mqtt durability mode {}, use {} instead",
+                    durabilityMode,
+                    ACK_ON_RECEIVE);
+        }
+        this.ackAfterFlush = ACK_AFTER_FLUSH.equalsIgnoreCase(durabilityMode);
+        this.flusher =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread thread = new Thread(r, "mqtt-ingestion-flusher");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        long interval = Math.max(1, this.lingerMs / 2);
+        flusher.scheduleWithFixedDelay(
+                this::flushExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 将一次 publish 的数据点加入缓冲区
+     *
+     * @param paths 排好序且去重后的序列
+     * @param dataTypes 与 paths 一一对应的数据类型
+     */
+    public void append(List<String> paths, List<DataType> dataTypes, List<Message> events) {
+        int required = Math.min(events.size(), capacity);
+        // 缓冲区已满时阻塞 broker 的回调线程，形成反压
+        permits.acquireUninterruptibly(required);
+
+        List<Batch> toFlush = new ArrayList<>();
+        Batch batch;
+        synchronized (this) {
+            batch = batches.get(paths);
+            if (batch != null && !batch.dataTypes.equals(dataTypes)) {
+                // 同一组序列的类型发生了变化，先写入已缓存的数据
+                batches.remove(paths);
+                toFlush.add(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(paths, dataTypes, System.currentTimeMillis());
+                batches.put(paths, batch);
+            }
+            batch.events.addAll(events);
+            batch.permits += required;
+            if (closed || batch.events.size() >= batchSize) {
+                batches.remove(paths);
+                toFlush.add(batch);
+            }
+        }
+        toFlush.forEach(this::flush);
+
+        if (ackAfterFlush) {
+            try {
+                batch.flushed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** 停止定时写入，并写入缓冲区中剩余的数据 */
+    public void close() {
+        List<Batch> remaining;
+        synchronized (this) {
+            closed = true;
+            remaining = new ArrayList<>(batches.values());
+            batches.clear();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(lingerMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        remaining.forEach(this::flush);
+    }
+
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        List<Batch> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Batch> iterator = batches.values().iterator();
+            while (iterator.hasNext()) {
+                Batch batch = iterator.next();
+                if (now - batch.createTime >= lingerMs) {
+                    iterator.remove();
+                    expired.add(batch);
+                }
+            }
+        }
+        expired.forEach(this::flush);
+    }
+
+    private void flush(Batch batch) {
+        try {
+            Status status = writer.apply(batch.toRequest(sessionId));
+            if (status.code != StatusCode.SUCCESS_STATUS.getStatusCode()) {
+                logger.error(
+                        "meet error when flush {} mqtt events: {}",
+                        batch.events.size(),
+                        status.message);
+            } else {
+                logger.debug("flush {} mqtt events", batch.events.size());
+            }
+        } catch (Exception e) {
+            logger.error("meet error when flush {} mqtt events: ", batch.events.size(), e);
+        } finally {
+            permits.release(batch.permits);
+            batch.flushed.countDown();
+        }
+    }
+
+    private static class Batch {
+
+        private final List<String> paths;
+
+        private final List<DataType> dataTypes;
+
+        private final long createTime;
+
+        private final List<Message> events = new ArrayList<>();
+
+        private final CountDownLatch flushed = new CountDownLatch(1);
+
+        private int permits = 0;
+
+        private Batch(List<String> paths, List<DataType> dataTypes, long createTime) {
+            this.paths = paths;
+            this.dataTypes = dataTypes;
+            this.createTime = createTime;
+        }
+
+        private InsertNonAlignedRowRecordsReq toRequest(long sessionId) {
+            // 重排序数据，排序是稳定的，同一个 key 上同一序列的数据保留最后到达的一个
+            List<Message> sorted = new ArrayList<>(events);
+            sorted.sort(
+                    (o1, o2) -> {
+                        if (o1.getKey() != o2.getKey()) {
+                            return Long.compare(o1.getKey(), o2.getKey());
+                        }
+                        return o1.getPath().compareTo(o2.getPath());
+                    });
+            List<Message> deduplicated = new ArrayList<>(sorted.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                Message event = sorted.get(i);
+                if (i + 1 < sorted.size()
+                        && sorted.get(i + 1).getKey() == event.getKey()
+                        && sorted.get(i + 1).getPath().equals(event.getPath())) {
+                    continue;
+                }
+                deduplicated.add(event);
+            }
+
+            List<Long> timestamps = new ArrayList<>();
+            List<ByteBuffer> bitmapList = new ArrayList<>();
+            List<ByteBuffer> valuesList = new ArrayList<>();
+            int from = 0;
+            while (from < deduplicated.size()) {
+                long timestamp = deduplicated.get(from).getKey();
+                timestamps.add(timestamp);
+                Bitmap bitmap = new Bitmap(paths.size());
+                Object[] values = new Object[paths.size()];
+                for (int i = 0; i < paths.size() && from < deduplicated.size(); i++) {
+                    Message event = deduplicated.get(from);
+                    if (event.getKey() == timestamp && event.getPath().equals(paths.get(i))) {
+                        bitmap.mark(i);
+                        values[i] = event.getValue();
+                        from++;
+                    }
+                }
+                bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
+                valuesList.add(ByteUtils.getRowByteBuffer(values, dataTypes));
+            }
+
+            InsertNonAlignedRowRecordsReq req = new InsertNonAlignedRowRecordsReq();
+            req.setSessionId(sessionId);
+            req.setTimestamps(ByteUtils.getColumnByteBuffer(timestamps.toArray(), DataType.LONG));
+            req.setPaths(paths);
+            req.setDataTypeList(dataTypes);
+            req.setValuesList(valuesList);
+            req.setBitmapList(bitmapList);
+            return req;
+        }
+    }
+}
@@ -40,6 +40,8 @@ public class MQTTService implements Runnable {
 
     private final Server server = new Server();
 
+    private PublishHandler publishHandler;
+
     protected MQTTService() {}
 
     public static MQTTService getInstance() {
@@ -56,7 +58,8 @@ public class MQTTService implements Runnable {
     public void start() {
         Config iginxConfig = ConfigDescriptor.getInstance().getConfig();
         IConfig config = createBrokerConfig(iginxConfig);
-        List<InterceptHandler> handlers = Lists.newArrayList(new PublishHandler(iginxConfig));
+        publishHandler = new PublishHandler(iginxConfig);
+        List<InterceptHandler> handlers = Lists.newArrayList(publishHandler);
         IAuthenticator authenticator = new BrokerAuthenticator();
 
         server.startServer(config, handlers, null, authenticator, null);
@@ -100,5 +103,8 @@ public class MQTTService implements Runnable {
 
     public void shutdown() {
         server.stopServer();
+        if (publishHandler != null) {
+            publishHandler.close();
+        }
     }
 }
@@ -22,15 +22,10 @@ import cn.edu.tsinghua.iginx.IginxWorker;
 import cn.edu.tsinghua.iginx.auth.SessionManager;
 import cn.edu.tsinghua.iginx.conf.Config;
 import cn.edu.tsinghua.iginx.thrift.DataType;
-import cn.edu.tsinghua.iginx.thrift.InsertNonAlignedRowRecordsReq;
-import cn.edu.tsinghua.iginx.thrift.Status;
-import cn.edu.tsinghua.iginx.utils.Bitmap;
-import cn.edu.tsinghua.iginx.utils.ByteUtils;
 import io.moquette.interception.AbstractInterceptHandler;
 import io.moquette.interception.messages.InterceptPublishMessage;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.mqtt.MqttQoS;
-import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -44,13 +39,21 @@ public class PublishHandler extends AbstractInterceptHandler {
 
     private final IPayloadFormatter payloadFormat;
 
-    private final long sessionId;
+    private final IngestionBuffer buffer;
 
     public PublishHandler(Config config) {
         payloadFormat =
                 PayloadFormatManager.getInstance().getFormatter(config.getMqttPayloadFormatter());
         // open session as root user
-        sessionId = SessionManager.getInstance().openSession(config.getUsername());
+        long sessionId = SessionManager.getInstance().openSession(config.getUsername());
+        buffer =
+                new IngestionBuffer(
+                        worker::insertNonAlignedRowRecords,
+                        sessionId,
+                        config.getMqttBatchSize(),
+                        config.getMqttLingerMs(),
+                        config.getMqttBufferCapacity(),
+                        config.getMqttDurabilityMode());
     }
 
     @Override
@@ -75,22 +78,13 @@ public class PublishHandler extends AbstractInterceptHandler {
                 payload);
 
         List<Message> events = payloadFormat.format(payload);
+        msg.getPayload().release();
         if (events == null) {
             return;
         }
 
-        // 重排序数据，并过滤空事件
-        events =
-                events.stream()
-                        .filter(Objects::nonNull)
-                        .sorted(
-                                (o1, o2) -> {
-                                    if (o1.getKey() != o2.getKey()) {
-                                        return Long.compare(o1.getKey(), o2.getKey());
-                                    }
-                                    return o1.getPath().compareTo(o2.getPath());
-                                })
-                        .collect(Collectors.toList());
+        // 过滤空事件
+        events = events.stream().filter(Objects::nonNull).collect(Collectors.toList());
         if (events.size() == 0) {
             return;
         }
@@ -122,43 +116,11 @@ public class PublishHandler extends AbstractInterceptHandler {
             dataTypeList.add(dataTypeMap.get(path));
         }
 
-        List<Long> timestamps = new ArrayList<>();
-        List<ByteBuffer> bitmapList = new ArrayList<>();
-        List<ByteBuffer> valuesList = new ArrayList<>();
-        int from = 0, to = 0;
-        while (from < events.size()) {
-            long timestamp = events.get(from).getKey();
-            while (to < events.size() && events.get(to).getKey() == timestamp) {
-                to++;
-            }
-            timestamps.add(timestamp);
-            Bitmap bitmap = new Bitmap(paths.size());
-            Object[] values = new Object[paths.size()];
-            for (int i = 0; i < paths.size(); i++) {
-                Message event = events.get(from);
-                if (event.getPath().equals(paths.get(i))) { // 序列正好匹配上
-                    bitmap.mark(i);
-                    values[i] = event.getValue();
-                    from++;
-                } else {
-                    values[i] = null;
-                }
-            }
-            bitmapList.add(ByteBuffer.wrap(bitmap.getBytes()));
-            valuesList.add(ByteUtils.getRowByteBuffer(values, dataTypeList));
-        }
-
-        // 采用行接口写入数据
-        InsertNonAlignedRowRecordsReq req = new InsertNonAlignedRowRecordsReq();
-        req.setSessionId(sessionId);
-        req.setTimestamps(ByteUtils.getColumnByteBuffer(timestamps.toArray(), DataType.LONG));
-        req.setPaths(paths);
-        req.setDataTypeList(dataTypeList);
-        req.setValuesList(valuesList);
-        req.setBitmapList(bitmapList);
+        // 交给缓冲区与其他 publish 合并后再写入
+        buffer.append(paths, dataTypeList, events);
+    }
 
-        Status status = worker.insertNonAlignedRowRecords(req);
-        logger.debug("event process result: {}", status);
-        msg.getPayload().release();
+    public void close() {
+        buffer.close();
     }
 }
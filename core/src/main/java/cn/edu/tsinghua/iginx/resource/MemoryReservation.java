@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.resource;
+
+/**
+ * 单个算子持有的内存预留。按块向 {@link QueryMemoryAccountant} 申请，避免每行都竞争查询级与全局的计数器；非线程安全。
+ */
+public class MemoryReservation implements AutoCloseable {
+
+    private static final long CHUNK_SIZE = 64 * 1024;
+
+    private final QueryMemoryAccountant accountant;
+
+    private long reserved = 0;
+
+    private long used = 0;
+
+    MemoryReservation(QueryMemoryAccountant accountant) {
+        this.accountant = accountant;
+    }
+
+    /**
+     * 为新缓存的数据记账
+     *
+     * @return 预算不足时返回 false，此时不记账，调用方应溢写
+     */
+    public boolean grow(long bytes) {
+        if (used + bytes > reserved) {
+            long request = Math.max(CHUNK_SIZE, used + bytes - reserved);
+            if (!accountant.tryReserve(request)) {
+                return false;
+            }
+            reserved += request;
+        }
+        used += bytes;
+        return true;
+    }
+
+    /** 强制记账，用于无法再溢写时 */
+    public void forceGrow(long bytes) {
+        if (!grow(bytes)) {
+            used += bytes;
+        }
+    }
+
+    public long getUsed() {
+        return used;
+    }
+
+    @Override
+    public void close() {
+        accountant.release(reserved);
+        reserved = 0;
+        used = 0;
+    }
+}
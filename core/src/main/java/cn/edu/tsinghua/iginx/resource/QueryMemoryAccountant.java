@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.resource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录单个查询中哈希连接、分组与排序等算子占用的内存。预留时同时受单查询上限与 {@link QueryResourceManager} 中全局内存池的约束，预留失败时算子应将数据溢写到磁盘。
+ *
+ * <p>内存任务执行期间，当前查询的 accountant 绑定在执行线程上，算子在构造时通过 {@link #current()} 取得并在之后的惰性计算中使用。
+ */
+public class QueryMemoryAccountant {
+
+    private static final ThreadLocal<QueryMemoryAccountant> CURRENT = new ThreadLocal<>();
+
+    private final long queryId;
+
+    private final long limit;
+
+    private final QueryResourceManager pool;
+
+    private final AtomicLong reserved = new AtomicLong(0);
+
+    /** 创建只受给定上限约束、不占用全局内存池的 accountant */
+    public QueryMemoryAccountant(long limit) {
+        this(-1, limit, null);
+    }
+
+    QueryMemoryAccountant(long queryId, long limit, QueryResourceManager pool) {
+        this.queryId = queryId;
+        this.limit = limit;
+        this.pool = pool;
+    }
+
+    /** 返回当前线程绑定的 accountant；未绑定时返回一个只受单查询上限约束、不占用全局内存池的 accountant */
+    public static QueryMemoryAccountant current() {
+        QueryMemoryAccountant accountant = CURRENT.get();
+        if (accountant == null) {
+            return new QueryMemoryAccountant(
+                    QueryResourceManager.getInstance().getQueryMemoryLimit());
+        }
+        return accountant;
+    }
+
+    public static void bind(QueryMemoryAccountant accountant) {
+        CURRENT.set(accountant);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public long getQueryId() {
+        return queryId;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getReserved() {
+        return reserved.get();
+    }
+
+    public boolean tryReserve(long bytes) {
+        while (true) {
+            long current = reserved.get();
+            if (current + bytes > limit) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + bytes)) {
+                break;
+            }
+        }
+        if (pool != null && !pool.tryAcquireMemory(bytes)) {
+            reserved.addAndGet(-bytes);
+            return false;
+        }
+        return true;
+    }
+
+    public void release(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        long released = Math.min(bytes, Math.max(reserved.getAndAdd(-bytes), 0));
+        if (pool != null) {
+            pool.releaseMemory(released);
+        }
+    }
+
+    /** 查询结束时归还所有未释放的内存 */
+    void close() {
+        long left = reserved.getAndSet(0);
+        if (pool != null && left > 0) {
+            pool.releaseMemory(left);
+        }
+    }
+
+    public MemoryReservation newReservation() {
+        return new MemoryReservation(this);
+    }
+}
@@ -18,16 +18,38 @@
  */
 package cn.edu.tsinghua.iginx.resource;
 
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
 import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class QueryResourceManager {
 
     private final ConcurrentMap<Long, RequestContext> queries;
 
+    private final ConcurrentMap<Long, QueryMemoryAccountant> accountants;
+
+    private final long queryMemoryLimit;
+
+    private final long totalMemoryLimit;
+
+    private final AtomicLong usedMemory = new AtomicLong(0);
+
     private QueryResourceManager() {
         this.queries = new ConcurrentHashMap<>();
+        this.accountants = new ConcurrentHashMap<>();
+        Config config = ConfigDescriptor.getInstance().getConfig();
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        this.queryMemoryLimit =
+                config.getQueryMemoryLimit() > 0
+                        ? config.getQueryMemoryLimit() * 1024
+                        : maxMemory / 4;
+        this.totalMemoryLimit =
+                config.getTotalQueryMemoryLimit() > 0
+                        ? config.getTotalQueryMemoryLimit() * 1024
+                        : (long) (maxMemory * 0.6);
     }
 
     public static QueryResourceManager getInstance() {
@@ -44,6 +66,49 @@ public class QueryResourceManager {
 
     public void releaseQuery(long queryId) {
         queries.remove(queryId);
+        releaseMemoryAccountant(queryId);
+    }
+
+    /** 获取查询的内存 accountant，不存在时创建 */
+    public QueryMemoryAccountant getMemoryAccountant(long queryId) {
+        return accountants.computeIfAbsent(
+                queryId, id -> new QueryMemoryAccountant(id, queryMemoryLimit, this));
+    }
+
+    /** 查询的结果不再被读取后调用，归还其占用的全部内存 */
+    public void releaseMemoryAccountant(long queryId) {
+        QueryMemoryAccountant accountant = accountants.remove(queryId);
+        if (accountant != null) {
+            accountant.close();
+        }
+    }
+
+    public long getQueryMemoryLimit() {
+        return queryMemoryLimit;
+    }
+
+    public long getTotalMemoryLimit() {
+        return totalMemoryLimit;
+    }
+
+    public long getUsedMemory() {
+        return usedMemory.get();
+    }
+
+    boolean tryAcquireMemory(long bytes) {
+        while (true) {
+            long current = usedMemory.get();
+            if (current + bytes > totalMemoryLimit) {
+                return false;
+            }
+            if (usedMemory.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseMemory(long bytes) {
+        usedMemory.addAndGet(-bytes);
     }
 
     private static class QueryManagerHolder {
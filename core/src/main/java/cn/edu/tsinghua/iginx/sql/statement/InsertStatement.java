@@ -47,6 +47,10 @@ public class InsertStatement extends DataStatement {
         this.tagsList = tagsList;
     }
 
+    public RawDataType getRawDataType() {
+        return rawDataType;
+    }
+
     public String getPrefixPath() {
         return prefixPath;
     }
@@ -1,7 +1,11 @@
 package cn.edu.tsinghua.iginx.statistics;
 
 import cn.edu.tsinghua.iginx.conf.ConfigDescriptor;
+import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
+import cn.edu.tsinghua.iginx.engine.physical.storage.execute.StoragePhysicalTaskExecutor;
+import cn.edu.tsinghua.iginx.engine.physical.storage.execute.StorageTaskScheduler;
 import cn.edu.tsinghua.iginx.engine.shared.processor.*;
+import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -77,6 +81,7 @@ public class StatisticsCollector implements IStatisticsCollector {
                             logicalStatisticsCollector.broadcastStatistics();
                             physicalStatisticsCollector.broadcastStatistics();
                             executeStatisticsCollector.broadcastStatistics();
+                            broadcastStorageSchedulerStatistics();
                             Thread.sleep(
                                     ConfigDescriptor.getInstance()
                                             .getConfig()
@@ -88,6 +93,37 @@ public class StatisticsCollector implements IStatisticsCollector {
                 });
     }
 
+    private void broadcastStorageSchedulerStatistics() {
+        logger.info("Storage Scheduler Statistics Info: ");
+        for (Pair<IStorage, StorageTaskScheduler> pair :
+                StoragePhysicalTaskExecutor.getInstance()
+                        .getStorageManager()
+                        .getStorageMap()
+                        .values()) {
+            StorageTaskScheduler scheduler = pair.v;
+            logger.info(
+                    "\tstorage: "
+                            + scheduler.getStorageId()
+                            + ", limit: "
+                            + scheduler.getLimit()
+                            + ", in-flight: "
+                            + scheduler.getInFlight()
+                            + ", queued(query/write): "
+                            + scheduler.getQueueSize(StorageTaskScheduler.Lane.QUERY)
+                            + "/"
+                            + scheduler.getQueueSize(StorageTaskScheduler.Lane.WRITE)
+                            + ", completed: "
+                            + scheduler.getCompletedCount()
+                            + ", rejected: "
+                            + scheduler.getRejectedCount()
+                            + ", timeout: "
+                            + scheduler.getTimeoutCount()
+                            + ", average-latency: "
+                            + scheduler.getSmoothedRtt() / 1000
+                            + "μs");
+        }
+    }
+
     @Override
     public void endBroadcasting() {
         broadcast.set(false);
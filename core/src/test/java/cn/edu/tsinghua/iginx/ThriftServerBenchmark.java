@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.exceptions.SessionException;
+import cn.edu.tsinghua.iginx.session.Session;
+import cn.edu.tsinghua.iginx.thrift.IService;
+import cn.edu.tsinghua.iginx.thrift.Status;
+import cn.edu.tsinghua.iginx.utils.RpcUtils;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.thrift.server.TServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 比较两种 thrift 服务端在大量空闲连接下的 RPC 吞吐。服务端的处理逻辑为空，只衡量连接管理与网络开销。thread_pool
+ * 为每个连接占用一个工作线程，threaded_selector 由少量 selector 线程管理所有连接。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ThriftServerBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+
+    @Param({Iginx.THREAD_POOL, Iginx.THREADED_SELECTOR})
+    public String serverType;
+
+    @Param({"binary", "compact"})
+    public String protocol;
+
+    @Param({"0", "1000"})
+    public int idleConnections;
+
+    private int port;
+
+    private TServer server;
+
+    private final List<Session> idleSessions = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Config config = new Config();
+        config.setPort(port);
+        config.setThriftServerType(serverType);
+        config.setThriftProtocol(protocol);
+        // 线程池需要为每个连接保留一个线程，否则新连接会被阻塞
+        config.setMaxThriftWrokerThreadNum(idleConnections + 64);
+        IService.Iface handler =
+                (IService.Iface)
+                        Proxy.newProxyInstance(
+                                IService.Iface.class.getClassLoader(),
+                                new Class<?>[] {IService.Iface.class},
+                                (proxy, method, args) -> emptyResponse(method));
+        server = Iginx.createServer(new IService.Processor<>(handler), config);
+        Thread thread = new Thread(server::serve, "thrift-server-benchmark");
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < idleConnections; i++) {
+            idleSessions.add(openSession());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SessionException {
+        for (Session session : idleSessions) {
+            session.closeSession();
+        }
+        idleSessions.clear();
+        server.stop();
+    }
+
+    private Session openSession() throws SessionException {
+        Session session =
+                new Session(
+                        HOST,
+                        port,
+                        "root",
+                        "root",
+                        Iginx.THREADED_SELECTOR.equals(serverType),
+                        protocol);
+        session.openSession();
+        return session;
+    }
+
+    private static Object emptyResponse(Method method) throws ReflectiveOperationException {
+        Class<?> type = method.getReturnType();
+        if (type == Status.class) {
+            return RpcUtils.SUCCESS;
+        }
+        Object resp = type.newInstance();
+        type.getMethod("setStatus", Status.class).invoke(resp, RpcUtils.SUCCESS);
+        return resp;
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private Session session;
+
+        @Setup(Level.Trial)
+        public void setup(ThriftServerBenchmark benchmark) throws SessionException {
+            session = benchmark.openSession();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SessionException {
+            session.closeSession();
+        }
+    }
+
+    @Benchmark
+    public int rpc(Client client) throws Exception {
+        return client.session.getReplicaNum();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options =
+                new OptionsBuilder().include(ThriftServerBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.conf.Config;
+import cn.edu.tsinghua.iginx.engine.ContextBuilder;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.RequestContext;
+import cn.edu.tsinghua.iginx.engine.shared.Result;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStreamEncoder;
+import cn.edu.tsinghua.iginx.session.Session;
+import cn.edu.tsinghua.iginx.session.SessionQueryDataSet;
+import cn.edu.tsinghua.iginx.sql.statement.InsertStatement;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.thrift.IService;
+import cn.edu.tsinghua.iginx.thrift.InsertColumnRecordsReq;
+import cn.edu.tsinghua.iginx.thrift.InsertRowRecordsReq;
+import cn.edu.tsinghua.iginx.thrift.OpenSessionResp;
+import cn.edu.tsinghua.iginx.thrift.QueryDataResp;
+import cn.edu.tsinghua.iginx.thrift.RawDataType;
+import cn.edu.tsinghua.iginx.thrift.Status;
+import cn.edu.tsinghua.iginx.thrift.TimePrecision;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import cn.edu.tsinghua.iginx.utils.RpcUtils;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.thrift.server.TServer;
+import org.junit.Test;
+
+/**
+ * 通过 threaded_selector 服务端与分帧传输的 Session 完成写入与查询。服务端解码写入请求、编码查询结果的方式与 IginxWorker
+ * 相同，数据保存在内存中。分帧传输下 thrift 反序列化得到的 ByteBuffer 是整个帧上的一段，可以检查解码时是否只读取了自己的那一段。
+ */
+public class ThriftServerTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    private static final List<String> PATHS = Arrays.asList("a.a.a", "a.a.b", "a.a.c");
+
+    private static final List<DataType> TYPES =
+            Arrays.asList(DataType.LONG, DataType.DOUBLE, DataType.BINARY);
+
+    private static final int ROW_COUNT = 100;
+
+    private static Object[] createRow(int i) {
+        return new Object[] {
+            i % 3 == 0 ? null : (long) i,
+            i % 5 == 0 ? null : i * 0.5,
+            i % 4 == 0 ? null : ("v" + i).getBytes()
+        };
+    }
+
+    @Test
+    public void testInsertAndQueryWithBinaryProtocol() throws Exception {
+        testInsertAndQuery("binary");
+    }
+
+    @Test
+    public void testInsertAndQueryWithCompactProtocol() throws Exception {
+        testInsertAndQuery("compact");
+    }
+
+    private void testInsertAndQuery(String protocol) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Config config = new Config();
+        config.setPort(port);
+        config.setThriftServerType(Iginx.THREADED_SELECTOR);
+        config.setThriftProtocol(protocol);
+        MemoryHandler memoryHandler = new MemoryHandler();
+        IService.Iface handler =
+                (IService.Iface)
+                        Proxy.newProxyInstance(
+                                IService.Iface.class.getClassLoader(),
+                                new Class<?>[] {IService.Iface.class},
+                                (proxy, method, args) -> memoryHandler.invoke(method, args));
+        TServer server = Iginx.createServer(new IService.Processor<>(handler), config);
+        Thread thread = new Thread(server::serve, "thrift-server-test");
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+
+        Session session = new Session(HOST, port, "root", "root", true, protocol);
+        try {
+            session.openSession();
+
+            // 前一半按列写入，后一半按行写入
+            int half = ROW_COUNT / 2;
+            long[] columnKeys = new long[half];
+            Object[] columns = new Object[PATHS.size()];
+            for (int j = 0; j < PATHS.size(); j++) {
+                columns[j] = new Object[half];
+            }
+            for (int i = 0; i < half; i++) {
+                columnKeys[i] = i;
+                Object[] row = createRow(i);
+                for (int j = 0; j < PATHS.size(); j++) {
+                    ((Object[]) columns[j])[i] = row[j];
+                }
+            }
+            session.insertColumnRecords(
+                    PATHS, columnKeys, columns, TYPES, null, TimePrecision.NS);
+
+            long[] rowKeys = new long[ROW_COUNT - half];
+            Object[] rows = new Object[ROW_COUNT - half];
+            for (int i = half; i < ROW_COUNT; i++) {
+                rowKeys[i - half] = i;
+                rows[i - half] = createRow(i);
+            }
+            session.insertRowRecords(PATHS, rowKeys, rows, TYPES, null, TimePrecision.NS);
+
+            SessionQueryDataSet dataSet = session.queryData(PATHS, 0, ROW_COUNT);
+            assertEquals(PATHS, dataSet.getPaths());
+            assertEquals(ROW_COUNT, dataSet.getKeys().length);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                assertEquals(i, dataSet.getKeys()[i]);
+                Object[] expected = createRow(i);
+                List<Object> actual = dataSet.getValues().get(i);
+                assertEquals(expected[0], actual.get(0));
+                assertEquals(expected[1], actual.get(1));
+                assertArrayEquals((byte[]) expected[2], (byte[]) actual.get(2));
+            }
+        } finally {
+            session.closeSession();
+            server.stop();
+        }
+    }
+
+    /** 按 key 保存写入的数据，查询时按 IginxWorker 的方式编码返回 */
+    private static class MemoryHandler {
+
+        private final Map<Long, Object[]> data = new TreeMap<>();
+
+        private Object invoke(Method method, Object[] args) throws Exception {
+            switch (method.getName()) {
+                case "openSession":
+                    OpenSessionResp resp = new OpenSessionResp(RpcUtils.SUCCESS);
+                    resp.setSessionId(1L);
+                    return resp;
+                case "insertColumnRecords":
+                    insert(ContextBuilder.getInstance().build((InsertColumnRecordsReq) args[0]));
+                    return RpcUtils.SUCCESS;
+                case "insertRowRecords":
+                    insert(ContextBuilder.getInstance().build((InsertRowRecordsReq) args[0]));
+                    return RpcUtils.SUCCESS;
+                case "queryData":
+                    return query();
+                default:
+                    return emptyResponse(method);
+            }
+        }
+
+        private synchronized void insert(RequestContext context) {
+            InsertStatement statement = (InsertStatement) context.getStatement();
+            List<Long> keys = statement.getKeys();
+            List<Bitmap> bitmaps = statement.getBitmaps();
+            Object[] values = statement.getValues();
+            int columnCount = statement.getPaths().size();
+            if (statement.getRawDataType() == RawDataType.Row) {
+                for (int i = 0; i < keys.size(); i++) {
+                    Object[] rowValues = (Object[]) values[i];
+                    Object[] row = new Object[columnCount];
+                    for (int j = 0, index = 0; j < columnCount; j++) {
+                        if (bitmaps.get(i).get(j)) {
+                            row[j] = rowValues[index++];
+                        }
+                    }
+                    data.put(keys.get(i), row);
+                }
+            } else {
+                for (int j = 0; j < columnCount; j++) {
+                    Object[] columnValues = (Object[]) values[j];
+                    for (int i = 0, index = 0; i < keys.size(); i++) {
+                        Object[] row =
+                                data.computeIfAbsent(keys.get(i), k -> new Object[columnCount]);
+                        if (bitmaps.get(j).get(i)) {
+                            row[j] = columnValues[index++];
+                        }
+                    }
+                }
+            }
+        }
+
+        private synchronized QueryDataResp query() throws Exception {
+            List<Field> fields = new ArrayList<>();
+            List<Map<String, String>> tagsList = new ArrayList<>();
+            for (int i = 0; i < PATHS.size(); i++) {
+                fields.add(new Field(PATHS.get(i), TYPES.get(i)));
+                tagsList.add(new HashMap<>());
+            }
+            Header header = new Header(Field.KEY, fields);
+            List<Row> rows = new ArrayList<>();
+            data.forEach((key, values) -> rows.add(new Row(header, key, values)));
+
+            List<Long> keys = new ArrayList<>();
+            List<ByteBuffer> valuesList = new ArrayList<>();
+            List<ByteBuffer> bitmapList = new ArrayList<>();
+            RowStreamEncoder encoder = new RowStreamEncoder(new Table(header, rows), false);
+            while (encoder.hasNext()) {
+                RowStreamEncoder.Chunk chunk = encoder.next(RowStreamEncoder.DEFAULT_CHUNK_SIZE);
+                valuesList.addAll(chunk.getValuesList());
+                bitmapList.addAll(chunk.getBitmapList());
+                for (long key : chunk.getKeys()) {
+                    keys.add(key);
+                }
+            }
+            Result result = new Result(RpcUtils.SUCCESS);
+            result.setTimestamps(keys.toArray(new Long[0]));
+            result.setValuesList(valuesList);
+            result.setBitmapList(bitmapList);
+            result.setPaths(PATHS);
+            result.setTagsList(tagsList);
+            result.setDataTypes(TYPES);
+            return result.getQueryDataResp();
+        }
+
+        private static Object emptyResponse(Method method) throws ReflectiveOperationException {
+            Class<?> type = method.getReturnType();
+            if (type == Status.class) {
+                return RpcUtils.SUCCESS;
+            }
+            Object resp = type.newInstance();
+            type.getMethod("setStatus", Status.class).invoke(resp, RpcUtils.SUCCESS);
+            return resp;
+        }
+    }
+}
@@ -34,15 +34,22 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
 import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.SetMappingFunction;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.FirstValue;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Last;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.LastValue;
 import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
 import cn.edu.tsinghua.iginx.engine.shared.operator.CrossJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
 import cn.edu.tsinghua.iginx.engine.shared.operator.MappingTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.MarkJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MergeByKey;
 import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Reorder;
@@ -1411,6 +1418,83 @@ public abstract class AbstractOperatorMemoryExecutorTest {
         return new Table(header, rows);
     }
 
+    @Test
+    public void testMergeByKey() throws PhysicalException {
+        Header headerA =
+                new Header(
+                        Field.KEY,
+                        Arrays.asList(
+                                new Field("a.a", DataType.INTEGER),
+                                new Field("a.b", DataType.INTEGER)));
+        Table tableA =
+                new Table(
+                        headerA,
+                        Arrays.asList(
+                                new Row(headerA, 1, new Object[] {1, 1}),
+                                new Row(headerA, 2, new Object[] {2, null}),
+                                new Row(headerA, 3, new Object[] {3, 3})));
+        Header headerB =
+                new Header(Field.KEY, Collections.singletonList(new Field("a.c", DataType.LONG)));
+        Table tableB =
+                new Table(
+                        headerB,
+                        Arrays.asList(
+                                new Row(headerB, 2, new Object[] {20L}),
+                                new Row(headerB, 4, new Object[] {40L})));
+        // 与 A 有重复的列，相同 key 上以靠后的输入为准
+        Header headerC =
+                new Header(
+                        Field.KEY, Collections.singletonList(new Field("a.a", DataType.INTEGER)));
+        Table tableC =
+                new Table(
+                        headerC,
+                        Arrays.asList(
+                                new Row(headerC, 0, new Object[] {0}),
+                                new Row(headerC, 3, new Object[] {30})));
+
+        MergeByKey mergeByKey =
+                new MergeByKey(
+                        Arrays.asList(
+                                EmptySource.EMPTY_SOURCE,
+                                EmptySource.EMPTY_SOURCE,
+                                EmptySource.EMPTY_SOURCE));
+        RowStream stream =
+                getExecutor()
+                        .executeMultipleOperator(
+                                mergeByKey, Arrays.asList(tableA, tableB, tableC));
+
+        Header targetHeader =
+                new Header(
+                        Field.KEY,
+                        Arrays.asList(
+                                new Field("a.a", DataType.INTEGER),
+                                new Field("a.b", DataType.INTEGER),
+                                new Field("a.c", DataType.LONG)));
+        long[] targetKeys = new long[] {0, 1, 2, 3, 4};
+        Table target =
+                new Table(
+                        targetHeader,
+                        Arrays.asList(
+                                new Row(targetHeader, 0, new Object[] {0, null, null}),
+                                new Row(targetHeader, 1, new Object[] {1, 1, null}),
+                                new Row(targetHeader, 2, new Object[] {2, null, 20L}),
+                                new Row(targetHeader, 3, new Object[] {30, 3, null}),
+                                new Row(targetHeader, 4, new Object[] {null, null, 40L})));
+
+        List<Long> keys = new ArrayList<>();
+        List<Row> rows = new ArrayList<>();
+        while (stream.hasNext()) {
+            Row row = stream.next();
+            keys.add(row.getKey());
+            rows.add(row);
+        }
+        assertEquals(targetKeys.length, keys.size());
+        for (int i = 0; i < targetKeys.length; i++) {
+            assertEquals(targetKeys[i], (long) keys.get(i));
+        }
+        assertStreamEqual(new Table(stream.getHeader(), rows), target);
+    }
+
     @Test
     public void testProjectWithPattern() throws PhysicalException {
         Table table = generateTableForUnaryOperator(true);
@@ -1838,4 +1922,53 @@ public abstract class AbstractOperatorMemoryExecutorTest {
 
         assertFalse(stream.hasNext());
     }
+
+    @Test
+    public void testSetTransformWithMultipleFunctions() throws Exception {
+        // 行数超过一次遍历计算多个函数时的分块大小
+        Header header =
+                new Header(
+                        Field.KEY,
+                        Arrays.asList(
+                                new Field("a.a", DataType.LONG),
+                                new Field("a.b", DataType.DOUBLE)));
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            rows.add(new Row(header, i, new Object[] {i % 3 == 0 ? null : (long) i, i * 0.5}));
+        }
+        List<FunctionCall> functionCallList = new ArrayList<>();
+        for (SetMappingFunction function :
+                Arrays.asList(
+                        Avg.getInstance(),
+                        Count.getInstance(),
+                        Sum.getInstance(),
+                        Max.getInstance(),
+                        Min.getInstance(),
+                        FirstValue.getInstance(),
+                        LastValue.getInstance())) {
+            functionCallList.add(
+                    new FunctionCall(
+                            function, new FunctionParams(Collections.singletonList("a.*"))));
+        }
+        SetTransform setTransform = new SetTransform(EmptySource.EMPTY_SOURCE, functionCallList);
+        RowStream stream =
+                getExecutor().executeUnaryOperator(setTransform, new Table(header, rows));
+
+        // 与逐个函数计算的结果相同
+        List<Field> fields = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (FunctionCall functionCall : functionCallList) {
+            Row row =
+                    ((SetMappingFunction) functionCall.getFunction())
+                            .transform(new Table(header, rows), functionCall.getParams());
+            fields.addAll(row.getHeader().getFields());
+            values.addAll(Arrays.asList(row.getValues()));
+        }
+        Header targetHeader = new Header(fields);
+        assertStreamEqual(
+                new Table(
+                        targetHeader,
+                        Collections.singletonList(new Row(targetHeader, values.toArray()))),
+                stream);
+    }
 }
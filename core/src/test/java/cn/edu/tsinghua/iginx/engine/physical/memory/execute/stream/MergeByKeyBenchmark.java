@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Join;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MergeByKey;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Union;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 比较一次多路归并的 MergeByKey 与逐层嵌套的 Join/Union 合并分片结果的耗时。column 表示按列切分的分片（原来用 Join
+ * 拼接），key 表示按 key 切分的分片（原来用 Union 合并）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeByKeyBenchmark {
+
+    private static final Source EMPTY_SOURCE =
+            new Source() {
+                @Override
+                public SourceType getType() {
+                    return null;
+                }
+
+                @Override
+                public Source copy() {
+                    return this;
+                }
+            };
+
+    @Param({"2", "8", "32", "64", "256"})
+    public int inputNum;
+
+    @Param({"column", "key"})
+    public String layout;
+
+    @Param({"10000"})
+    public int rowNum;
+
+    private List<Header> headers;
+
+    private List<List<Row>> rowsList;
+
+    @Setup
+    public void setup() {
+        headers = new ArrayList<>();
+        rowsList = new ArrayList<>();
+        boolean splitByColumn = layout.equals("column");
+        for (int i = 0; i < inputNum; i++) {
+            Field field = new Field("bench.s" + (splitByColumn ? i : 0), DataType.LONG);
+            Header header = new Header(Field.KEY, Collections.singletonList(field));
+            long start = splitByColumn ? 0 : (long) rowNum * i / inputNum;
+            long end = splitByColumn ? rowNum : (long) rowNum * (i + 1) / inputNum;
+            List<Row> rows = new ArrayList<>();
+            for (long key = start; key < end; key++) {
+                rows.add(new Row(header, key, new Object[] {key}));
+            }
+            headers.add(header);
+            rowsList.add(rows);
+        }
+    }
+
+    private List<RowStream> createStreams() {
+        List<RowStream> streams = new ArrayList<>();
+        for (int i = 0; i < inputNum; i++) {
+            streams.add(new Table(headers.get(i), rowsList.get(i)));
+        }
+        return streams;
+    }
+
+    @Benchmark
+    public void mergeByKey(Blackhole blackhole) throws PhysicalException {
+        List<Source> sources = Collections.nCopies(inputNum, EMPTY_SOURCE);
+        consume(new MergeByKeyLazyStream(new MergeByKey(sources), createStreams()), blackhole);
+    }
+
+    @Benchmark
+    public void chained(Blackhole blackhole) throws PhysicalException {
+        List<RowStream> streams = createStreams();
+        RowStream stream = streams.get(0);
+        for (int i = 1; i < streams.size(); i++) {
+            if (layout.equals("column")) {
+                stream =
+                        new JoinLazyStream(
+                                new Join(EMPTY_SOURCE, EMPTY_SOURCE), stream, streams.get(i));
+            } else {
+                stream =
+                        new UnionLazyStream(
+                                new Union(EMPTY_SOURCE, EMPTY_SOURCE), stream, streams.get(i));
+            }
+        }
+        consume(stream, blackhole);
+    }
+
+    private static void consume(RowStream stream, Blackhole blackhole) throws PhysicalException {
+        blackhole.consume(stream.getHeader());
+        while (stream.hasNext()) {
+            blackhole.consume(stream.next());
+        }
+        stream.close();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options =
+                new OptionsBuilder().include(MergeByKeyBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.Constants;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SortLazyStreamTest {
+
+    private static class EmptySource implements Source {
+
+        public static final EmptySource EMPTY_SOURCE = new EmptySource();
+
+        @Override
+        public SourceType getType() {
+            return null;
+        }
+
+        @Override
+        public Source copy() {
+            return null;
+        }
+    }
+
+    private File spillDir;
+
+    private Header header;
+
+    private List<Row> rows;
+
+    @Before
+    public void setUp() throws IOException {
+        spillDir = Files.createTempDirectory("sort-spill-test").toFile();
+        header =
+                new Header(
+                        Field.KEY,
+                        Arrays.asList(
+                                new Field("a.b", DataType.INTEGER),
+                                new Field("a.c", DataType.BINARY),
+                                new Field("a.d", DataType.DOUBLE),
+                                new Field("a.e", DataType.BOOLEAN),
+                                new Field("a.f", DataType.FLOAT)));
+        Random random = new Random(7);
+        rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Object[] values =
+                    new Object[] {
+                        random.nextInt(20),
+                        ("s" + random.nextInt(50)).getBytes(),
+                        random.nextBoolean() ? null : random.nextDouble(),
+                        random.nextBoolean() ? null : random.nextBoolean(),
+                        random.nextBoolean() ? null : random.nextFloat()
+                    };
+            rows.add(new Row(header, random.nextInt(1000), values));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = spillDir.listFiles();
+        assertEquals(0, files == null ? 0 : files.length);
+        spillDir.delete();
+    }
+
+    private List<Row> expected(List<String> sortByCols, boolean asc) throws PhysicalException {
+        List<Row> sorted = new ArrayList<>(rows);
+        RowUtils.sortRows(sorted, asc, sortByCols);
+        return sorted;
+    }
+
+    private List<Row> collect(RowStream stream) throws PhysicalException {
+        List<Row> ret = new ArrayList<>();
+        while (stream.hasNext()) {
+            ret.add(stream.next());
+        }
+        stream.close();
+        return ret;
+    }
+
+    private void assertRowsEquals(List<Row> expected, List<Row> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+            Object[] expectedValues = expected.get(i).getValues();
+            Object[] actualValues = actual.get(i).getValues();
+            assertEquals(expectedValues.length, actualValues.length);
+            for (int j = 0; j < expectedValues.length; j++) {
+                if (expectedValues[j] instanceof byte[]) {
+                    assertArrayEquals((byte[]) expectedValues[j], (byte[]) actualValues[j]);
+                } else {
+                    assertEquals(expectedValues[j], actualValues[j]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSpill() throws PhysicalException {
+        List<String> sortByCols = Arrays.asList("a.b", "a.c");
+        for (Sort.SortType sortType : Sort.SortType.values()) {
+            Sort sort = new Sort(EmptySource.EMPTY_SOURCE, sortByCols, sortType);
+            // 每段约几十行，产生上百个溢写文件
+            SortLazyStream stream =
+                    new SortLazyStream(sort, new Table(header, rows), 4096, spillDir);
+            List<Row> actual = collect(stream);
+            assertRowsEquals(expected(sortByCols, sortType == Sort.SortType.ASC), actual);
+        }
+    }
+
+    @Test
+    public void testInMemory() throws PhysicalException {
+        List<String> sortByCols = Arrays.asList(Constants.KEY, "a.b");
+        Sort sort = new Sort(EmptySource.EMPTY_SOURCE, sortByCols, Sort.SortType.DESC);
+        SortLazyStream stream =
+                new SortLazyStream(sort, new Table(header, rows), Long.MAX_VALUE, spillDir);
+        assertRowsEquals(expected(sortByCols, false), collect(stream));
+    }
+
+    @Test
+    public void testTopN() throws PhysicalException {
+        List<String> sortByCols = Arrays.asList("a.b");
+        Sort sort = new Sort(EmptySource.EMPTY_SOURCE, sortByCols, Sort.SortType.ASC);
+        for (int n : new int[] {0, 1, 100, 4999, 5000, 8000}) {
+            SortLazyStream stream =
+                    new SortLazyStream(sort, new Table(header, rows), 4096, spillDir);
+            stream.setTopN(n);
+            List<Row> expected = expected(sortByCols, true);
+            expected = expected.subList(0, Math.min(n, expected.size()));
+            assertRowsEquals(expected, collect(stream));
+        }
+    }
+
+    @Test
+    public void testTopNAfterRead() throws PhysicalException {
+        Sort sort = new Sort(EmptySource.EMPTY_SOURCE, Arrays.asList("a.b"), Sort.SortType.ASC);
+        SortLazyStream stream = new SortLazyStream(sort, new Table(header, rows), 4096, spillDir);
+        stream.hasNext();
+        assertFalse(stream.setTopN(10));
+        assertEquals(rows.size(), collect(stream).size());
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.GroupBy;
+import cn.edu.tsinghua.iginx.engine.shared.operator.InnerJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MarkJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.OuterJoin;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.PathFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.JoinAlgType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OuterJoinType;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.resource.QueryMemoryAccountant;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpillableHashJoinLazyStreamTest {
+
+    private static class EmptySource implements Source {
+
+        public static final EmptySource EMPTY_SOURCE = new EmptySource();
+
+        @Override
+        public SourceType getType() {
+            return null;
+        }
+
+        @Override
+        public Source copy() {
+            return null;
+        }
+    }
+
+    // 每侧约 300 KB，超出预算后按 16 个分区溢写，每个分区都能放进内存
+    private static final long SMALL_LIMIT = 128 * 1024;
+
+    private Header headerA;
+
+    private Header headerB;
+
+    private List<Row> rowsA;
+
+    private List<Row> rowsB;
+
+    @Before
+    public void setUp() {
+        headerA =
+                new Header(
+                        Arrays.asList(
+                                new Field("a.a", DataType.INTEGER),
+                                new Field("a.b", DataType.DOUBLE)));
+        headerB =
+                new Header(
+                        Arrays.asList(
+                                new Field("b.k", DataType.INTEGER),
+                                new Field("b.c", DataType.BOOLEAN)));
+        Random random = new Random(13);
+        rowsA = new ArrayList<>();
+        rowsB = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            rowsA.add(new Row(headerA, new Object[] {random.nextInt(500), (double) i}));
+            rowsB.add(new Row(headerB, new Object[] {random.nextInt(700), random.nextBoolean()}));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        QueryMemoryAccountant.unbind();
+    }
+
+    private interface StreamBuilder {
+        RowStream build() throws PhysicalException;
+    }
+
+    /** 分别在充足与不足的内存预算下构造算子，比较两者输出的行（忽略顺序） */
+    private void assertSameResult(StreamBuilder builder) throws PhysicalException {
+        QueryMemoryAccountant.bind(new QueryMemoryAccountant(Long.MAX_VALUE));
+        List<String> expected = collect(builder.build());
+        QueryMemoryAccountant small = new QueryMemoryAccountant(SMALL_LIMIT);
+        QueryMemoryAccountant.bind(small);
+        List<String> actual = collect(builder.build());
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+        assertEquals(0, small.getReserved());
+    }
+
+    private List<String> collect(RowStream stream) throws PhysicalException {
+        List<String> ret = new ArrayList<>();
+        Header header = stream.getHeader();
+        while (stream.hasNext()) {
+            Row row = stream.next();
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < header.getFieldSize(); i++) {
+                builder.append(header.getField(i).getName())
+                        .append('=')
+                        .append(row.getValue(i))
+                        .append(',');
+            }
+            ret.add(builder.toString());
+        }
+        stream.close();
+        Collections.sort(ret);
+        return ret;
+    }
+
+    @Test
+    public void testInnerJoin() throws PhysicalException {
+        InnerJoin innerJoin =
+                new InnerJoin(
+                        EmptySource.EMPTY_SOURCE,
+                        EmptySource.EMPTY_SOURCE,
+                        "a",
+                        "b",
+                        new PathFilter("a.a", Op.E, "b.k"),
+                        Collections.emptyList(),
+                        false,
+                        JoinAlgType.HashJoin);
+        assertSameResult(
+                () ->
+                        new SpillableHashJoinLazyStream(
+                                innerJoin,
+                                new Table(headerA, rowsA),
+                                new Table(headerB, rowsB),
+                                (a, b) -> new HashInnerJoinLazyStream(innerJoin, a, b)));
+    }
+
+    @Test
+    public void testOuterJoin() throws PhysicalException {
+        for (OuterJoinType outerJoinType : OuterJoinType.values()) {
+            OuterJoin outerJoin =
+                    new OuterJoin(
+                            EmptySource.EMPTY_SOURCE,
+                            EmptySource.EMPTY_SOURCE,
+                            "a",
+                            "b",
+                            outerJoinType,
+                            new PathFilter("a.a", Op.E, "b.k"),
+                            Collections.emptyList(),
+                            false,
+                            JoinAlgType.HashJoin);
+            assertSameResult(
+                    () ->
+                            new SpillableHashJoinLazyStream(
+                                    outerJoin,
+                                    new Table(headerA, rowsA),
+                                    new Table(headerB, rowsB),
+                                    (a, b) -> new HashOuterJoinLazyStream(outerJoin, a, b)));
+        }
+    }
+
+    @Test
+    public void testMarkJoin() throws PhysicalException {
+        MarkJoin markJoin =
+                new MarkJoin(
+                        EmptySource.EMPTY_SOURCE,
+                        EmptySource.EMPTY_SOURCE,
+                        new PathFilter("a.a", Op.E, "b.k"),
+                        "&mark0",
+                        false,
+                        JoinAlgType.HashJoin);
+        assertSameResult(
+                () ->
+                        new SpillableHashJoinLazyStream(
+                                markJoin,
+                                new Table(headerA, rowsA),
+                                new Table(headerB, rowsB),
+                                (a, b) -> new HashMarkJoinLazyStream(markJoin, a, b)));
+    }
+
+    @Test
+    public void testGroupBy() throws PhysicalException {
+        GroupBy groupBy =
+                new GroupBy(
+                        EmptySource.EMPTY_SOURCE,
+                        Collections.singletonList("a.a"),
+                        Collections.singletonList(
+                                new FunctionCall(
+                                        Sum.getInstance(),
+                                        new FunctionParams(Collections.singletonList("a.b")))));
+        assertSameResult(() -> new GroupByLazyStream(groupBy, new Table(headerA, rowsA)));
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 比较 RowHashTable 与原来基于 Value 和 HashMap&lt;Integer, List&lt;Row&gt;&gt; 的实现在 hash join（建表 + 探测）和
+ * group by 分组上的耗时。boxed* 方法按原实现的方式构造 Value、转换为 double 并按 hashCode 分桶。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowHashTableBenchmark {
+
+    @Param({"LONG", "DOUBLE", "BINARY"})
+    public DataType keyType;
+
+    @Param({"100000"})
+    public int rowNum;
+
+    @Param({"100", "100000"})
+    public int distinctNum;
+
+    private Header header;
+
+    private List<Row> buildRows;
+
+    private List<Row> probeRows;
+
+    @Setup
+    public void setup() {
+        header =
+                new Header(
+                        Arrays.asList(
+                                new Field("bench.k", keyType),
+                                new Field("bench.v", DataType.LONG)));
+        Random random = new Random(0);
+        buildRows = new ArrayList<>(rowNum);
+        probeRows = new ArrayList<>(rowNum);
+        for (int i = 0; i < rowNum; i++) {
+            buildRows.add(createRow(random.nextInt(distinctNum), i));
+            probeRows.add(createRow(random.nextInt(distinctNum * 2), i));
+        }
+    }
+
+    private Row createRow(int key, long value) {
+        Object k;
+        switch (keyType) {
+            case LONG:
+                k = (long) key;
+                break;
+            case DOUBLE:
+                k = key + 0.5;
+                break;
+            default:
+                k = ("key" + key).getBytes();
+        }
+        return new Row(header, new Object[] {k, value});
+    }
+
+    @Benchmark
+    public void boxedJoin(Blackhole blackhole) {
+        boolean needTypeCast = ValueUtils.isNumericType(keyType);
+        Map<Integer, List<Row>> hashMap = new HashMap<>();
+        for (Row row : buildRows) {
+            int hash = boxedHash(row.getAsValue("bench.k"), needTypeCast);
+            hashMap.computeIfAbsent(hash, k -> new ArrayList<>()).add(row);
+        }
+        for (Row row : probeRows) {
+            int hash = boxedHash(row.getAsValue("bench.k"), needTypeCast);
+            List<Row> rows = hashMap.get(hash);
+            if (rows != null) {
+                for (Row matched : rows) {
+                    blackhole.consume(matched);
+                }
+            }
+        }
+    }
+
+    private static int boxedHash(Value value, boolean needTypeCast) {
+        if (needTypeCast) {
+            value = ValueUtils.transformToDouble(value);
+        }
+        if (value.getDataType() == DataType.BINARY) {
+            return Arrays.hashCode(value.getBinaryV());
+        }
+        return value.getValue().hashCode();
+    }
+
+    @Benchmark
+    public void rowHashTableJoin(Blackhole blackhole) {
+        RowHashTable hashTable = new RowHashTable(keyType, keyType);
+        for (Row row : buildRows) {
+            hashTable.put(row, row.getValue(0));
+        }
+        for (Row row : probeRows) {
+            int keyId = hashTable.get(row.getValue(0));
+            if (keyId == -1) {
+                continue;
+            }
+            for (int rowId = hashTable.getRowStart(keyId);
+                    rowId < hashTable.getRowEnd(keyId);
+                    rowId++) {
+                blackhole.consume(hashTable.getRow(rowId));
+            }
+        }
+    }
+
+    @Benchmark
+    public void boxedGroupBy(Blackhole blackhole) {
+        Map<GroupByKey, List<Row>> groups = new HashMap<>();
+        for (Row row : buildRows) {
+            Object value = row.getValue(0);
+            if (value instanceof byte[]) {
+                value = new String((byte[]) value);
+            }
+            List<Object> hashValues = new ArrayList<>();
+            hashValues.add(value);
+            groups.computeIfAbsent(new GroupByKey(hashValues), k -> new ArrayList<>()).add(row);
+        }
+        blackhole.consume(groups);
+    }
+
+    @Benchmark
+    public void rowHashTableGroupBy(Blackhole blackhole) {
+        RowHashTable hashTable = new RowHashTable(keyType, keyType);
+        for (Row row : buildRows) {
+            hashTable.put(row, row.getValue(0));
+        }
+        Map<GroupByKey, List<Row>> groups = new HashMap<>();
+        for (int keyId = 0; keyId < hashTable.getKeyCount(); keyId++) {
+            List<Row> group = hashTable.getRows(keyId);
+            Object value = group.get(0).getValue(0);
+            if (value instanceof byte[]) {
+                value = new String((byte[]) value);
+            }
+            groups.put(new GroupByKey(Collections.singletonList(value)), group);
+        }
+        blackhole.consume(groups);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options =
+                new OptionsBuilder().include(RowHashTableBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class RowHashTableTest {
+
+    private static List<Row> collect(RowHashTable hashTable, int keyId) {
+        List<Row> rows = new ArrayList<>();
+        for (int rowId = hashTable.getRowStart(keyId);
+                rowId < hashTable.getRowEnd(keyId);
+                rowId++) {
+            rows.add(hashTable.getRow(rowId));
+        }
+        return rows;
+    }
+
+    private static Row row(Header header, Object value) {
+        return new Row(header, new Object[] {value});
+    }
+
+    @Test
+    public void testLongKeys() {
+        Header header = new Header(Collections.singletonList(new Field("a.k", DataType.LONG)));
+        RowHashTable hashTable = new RowHashTable(DataType.LONG, DataType.INTEGER);
+        int rowNum = 10000;
+        for (int i = 0; i < rowNum; i++) {
+            long key = i % 1000;
+            assertEquals(key, hashTable.put(row(header, key), key));
+        }
+        assertEquals(1000, hashTable.getKeyCount());
+        assertEquals(rowNum, hashTable.getRowCount());
+
+        for (int i = 0; i < 1000; i++) {
+            int keyId = hashTable.get(i);
+            assertEquals(i, keyId);
+            List<Row> rows = collect(hashTable, keyId);
+            assertEquals(rowNum / 1000, rows.size());
+            for (Row r : rows) {
+                assertEquals((long) i, r.getValue(0));
+            }
+        }
+        assertEquals(-1, hashTable.get(1000));
+        assertEquals(-1, hashTable.get(null));
+        assertEquals(-1, hashTable.put(row(header, null), null));
+    }
+
+    @Test
+    public void testDoubleKeys() {
+        Header header = new Header(Collections.singletonList(new Field("a.k", DataType.DOUBLE)));
+        RowHashTable hashTable = new RowHashTable(DataType.DOUBLE, DataType.LONG);
+        hashTable.put(row(header, 1.0), 1.0);
+        hashTable.put(row(header, 1.5), 1.5);
+        hashTable.put(row(header, -0.0), -0.0);
+
+        assertEquals(0, hashTable.get(1L));
+        assertEquals(2, hashTable.get(0L));
+        assertEquals(-1, hashTable.get(2L));
+        assertEquals(1, hashTable.get(1.5f));
+    }
+
+    @Test
+    public void testBinaryKeys() {
+        Header header = new Header(Collections.singletonList(new Field("a.k", DataType.BINARY)));
+        RowHashTable hashTable = new RowHashTable(DataType.BINARY, DataType.BINARY);
+        for (int i = 0; i < 100; i++) {
+            byte[] value = ("v" + (i % 10)).getBytes();
+            hashTable.put(row(header, value), value);
+        }
+        assertEquals(10, hashTable.getKeyCount());
+        assertEquals(10, collect(hashTable, hashTable.get("v3".getBytes())).size());
+        assertEquals(-1, hashTable.get("v10".getBytes()));
+    }
+
+    @Test
+    public void testIncomparableTypes() {
+        assertTrue(RowHashTable.isSupported(DataType.BOOLEAN, DataType.BOOLEAN));
+        assertFalse(RowHashTable.isSupported(DataType.BINARY, DataType.LONG));
+
+        Header header = new Header(Collections.singletonList(new Field("a.k", DataType.BINARY)));
+        RowHashTable hashTable = new RowHashTable(DataType.BINARY, DataType.LONG);
+        assertEquals(-1, hashTable.put(row(header, "1".getBytes()), "1".getBytes()));
+        assertEquals(-1, hashTable.get(1L));
+        assertEquals(0, hashTable.getKeyCount());
+    }
+}
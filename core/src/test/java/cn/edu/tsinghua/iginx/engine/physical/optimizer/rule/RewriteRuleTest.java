@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.optimizer.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.task.StoragePhysicalTask;
+import cn.edu.tsinghua.iginx.engine.physical.task.UnaryMemoryPhysicalTask;
+import cn.edu.tsinghua.iginx.engine.shared.Constants;
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Join;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Limit;
+import cn.edu.tsinghua.iginx.engine.shared.operator.MergeByKey;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Reorder;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Sort;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
+import cn.edu.tsinghua.iginx.engine.shared.source.FragmentSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.OperatorSource;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class RewriteRuleTest {
+
+    private static final FragmentMeta FRAGMENT = new FragmentMeta("a", "b", 0, 100);
+
+    private static final FragmentMeta OTHER_FRAGMENT = new FragmentMeta("a", "b", 100, 200);
+
+    private static Operator project(FragmentMeta fragment, String... patterns) {
+        return new Project(new FragmentSource(fragment), Arrays.asList(patterns), null);
+    }
+
+    private static Operator project(Operator source, String... patterns) {
+        return new Project(new OperatorSource(source), Arrays.asList(patterns), null);
+    }
+
+    private static Operator child(Source source) {
+        return ((OperatorSource) source).getOperator();
+    }
+
+    @Test
+    public void testPushDownLimitThroughReorder() {
+        Operator scan = project(FRAGMENT, "a.a");
+        Limit limit =
+                new Limit(
+                        new OperatorSource(
+                                new Reorder(
+                                        new OperatorSource(scan),
+                                        Collections.singletonList("a.a"))),
+                        10,
+                        5);
+        Operator result = new PushDownLimitRule().apply(limit);
+        assertEquals(OperatorType.Reorder, result.getType());
+        Limit pushed = (Limit) child(((Reorder) result).getSource());
+        assertEquals(10, pushed.getLimit());
+        assertEquals(5, pushed.getOffset());
+        assertSame(scan, child(pushed.getSource()));
+        assertNull(new PushDownLimitRule().apply(pushed));
+    }
+
+    @Test
+    public void testPushDownLimitIntoMergeByKey() {
+        MergeByKey merge =
+                new MergeByKey(
+                        Arrays.asList(
+                                new OperatorSource(project(FRAGMENT, "a.a")),
+                                new OperatorSource(project(OTHER_FRAGMENT, "a.a"))));
+        PushDownLimitRule rule = new PushDownLimitRule();
+        Limit result = (Limit) rule.apply(new Limit(new OperatorSource(merge), 10, 5));
+        for (Source source : ((MergeByKey) child(result.getSource())).getSources()) {
+            Limit input = (Limit) child(source);
+            assertEquals(15, input.getLimit());
+            assertEquals(0, input.getOffset());
+        }
+        // 输入上已经有 Limit 时不再重复下推
+        assertNull(rule.apply(result));
+        // 只有 offset 时不下推
+        assertNull(rule.apply(new Limit(new OperatorSource(merge), Integer.MAX_VALUE, 5)));
+    }
+
+    @Test
+    public void testPushDownTopNByKey() {
+        MergeByKey merge =
+                new MergeByKey(
+                        Arrays.asList(
+                                new OperatorSource(project(FRAGMENT, "a.a")),
+                                new OperatorSource(project(OTHER_FRAGMENT, "a.a"))));
+        Sort sort =
+                new Sort(
+                        new OperatorSource(merge),
+                        Collections.singletonList(Constants.KEY),
+                        Sort.SortType.DESC);
+        PushDownLimitRule rule = new PushDownLimitRule();
+        Limit limit = new Limit(new OperatorSource(sort), 1, 0);
+        assertSame(limit, rule.apply(limit));
+        for (Source source : ((MergeByKey) child(sort.getSource())).getSources()) {
+            // 每个分片取最后一行，结果仍按 key 升序排列
+            Sort ascending = (Sort) child(source);
+            assertEquals(Sort.SortType.ASC, ascending.getSortType());
+            Limit input = (Limit) child(ascending.getSource());
+            assertEquals(1, input.getLimit());
+            Sort descending = (Sort) child(input.getSource());
+            assertEquals(Sort.SortType.DESC, descending.getSortType());
+            assertEquals(OperatorType.Project, child(descending.getSource()).getType());
+        }
+        assertNull(rule.apply(limit));
+    }
+
+    @Test
+    public void testPushDownLimitThroughProject() {
+        Operator scan =
+                new Select(
+                        new OperatorSource(project(FRAGMENT, "a.a", "a.b")),
+                        new KeyFilter(Op.GE, 10),
+                        null);
+        Operator project = project(scan, "a.b", "a.a");
+        Limit limit = new Limit(new OperatorSource(project), 10, 0);
+        assertSame(limit, new PushDownLimitRule().apply(limit));
+        Limit pushed = (Limit) child(((Project) project).getSource());
+        assertSame(scan, child(pushed.getSource()));
+        assertNull(new PushDownLimitRule().apply(limit));
+
+        // Project 会丢弃所选列全为空的行，不能越过只保留部分列的 Project
+        Operator partial = project(scan.copy(), "a.a");
+        assertNull(new PushDownLimitRule().apply(new Limit(new OperatorSource(partial), 10, 0)));
+    }
+
+    @Test
+    public void testMergeProjectsOverSameFragment() {
+        Operator join =
+                new Join(
+                        new OperatorSource(
+                                new Join(
+                                        new OperatorSource(project(FRAGMENT, "a.a")),
+                                        new OperatorSource(project(OTHER_FRAGMENT, "a.b")))),
+                        new OperatorSource(project(FRAGMENT, "a.c")));
+        Operator result = new RemoveRedundantJoinRule().apply(join);
+        assertEquals(OperatorType.Join, result.getType());
+        Project merged = (Project) child(((Join) result).getSourceA());
+        assertEquals(Arrays.asList("a.a", "a.c"), merged.getPatterns());
+        assertSame(FRAGMENT, ((FragmentSource) merged.getSource()).getFragment());
+        Project other = (Project) child(((Join) result).getSourceB());
+        assertEquals(Collections.singletonList("a.b"), other.getPatterns());
+    }
+
+    @Test
+    public void testMergeProjectsOverSameSubtree() {
+        Operator root = project(FRAGMENT, "a.*");
+        Operator join =
+                new Join(
+                        new OperatorSource(project(root.copy(), "a.a")),
+                        new OperatorSource(project(root.copy(), "a.b")),
+                        Constants.ORDINAL);
+        assertNull(new RemoveRedundantJoinRule().apply(join));
+
+        join =
+                new Join(
+                        new OperatorSource(project(root.copy(), "a.a")),
+                        new OperatorSource(project(root.copy(), "a.b")));
+        Project result = (Project) new RemoveRedundantJoinRule().apply(join);
+        assertEquals(Arrays.asList("a.a", "a.b"), result.getPatterns());
+        assertEquals(OperatorType.Project, child(result.getSource()).getType());
+    }
+
+    @Test
+    public void testKeepJoinOfDifferentData() {
+        RemoveRedundantJoinRule rule = new RemoveRedundantJoinRule();
+        // 模式可能相交
+        assertNull(
+                rule.apply(
+                        new Join(
+                                new OperatorSource(project(FRAGMENT, "a.*")),
+                                new OperatorSource(project(FRAGMENT, "a.b")))));
+        assertNull(
+                rule.apply(
+                        new Join(
+                                new OperatorSource(project(project(FRAGMENT, "a.*"), "a.a")),
+                                new OperatorSource(
+                                        project(project(OTHER_FRAGMENT, "a.*"), "a.b")))));
+    }
+
+    @Test
+    public void testFuseAfterAggregateOverStorage() {
+        Operator scan = project(FRAGMENT, "a.a");
+        StoragePhysicalTask storageTask =
+                new StoragePhysicalTask(new ArrayList<>(Collections.singletonList(scan)));
+        SetTransform aggregate =
+                new SetTransform(
+                        new OperatorSource(scan),
+                        new FunctionCall(
+                                Sum.getInstance(),
+                                new FunctionParams(Collections.singletonList("a.a"))));
+        UnaryMemoryPhysicalTask task =
+                new UnaryMemoryPhysicalTask(
+                        new ArrayList<>(Collections.singletonList(aggregate)), storageTask);
+        Operator follower = new Limit(new OperatorSource(aggregate), 10, 0);
+
+        // 普通聚合的结果可能很大，可以与后续算子合并
+        assertFalse(task.isEagerPartialAggregate());
+        assertTrue(new FuseUnaryOperatorRule().canFuse(task, follower));
+
+        // 聚合下推生成的部分聚合需要在分片的任务中单独算出
+        aggregate.setPartial(true);
+        assertTrue(task.isEagerPartialAggregate());
+        assertFalse(new FuseUnaryOperatorRule().canFuse(task, follower));
+        assertTrue(((SetTransform) aggregate.copy()).isPartial());
+    }
+
+    @Test
+    public void testFuseAfterPartialDownsampleOverStorage() {
+        Operator scan = project(FRAGMENT, "a.a");
+        StoragePhysicalTask storageTask =
+                new StoragePhysicalTask(new ArrayList<>(Collections.singletonList(scan)));
+        Downsample downsample =
+                new Downsample(
+                        new OperatorSource(scan),
+                        10,
+                        10,
+                        new FunctionCall(
+                                Sum.getInstance(),
+                                new FunctionParams(Collections.singletonList("a.a"))),
+                        new KeyRange(0, 100));
+        downsample.setPartial(true);
+        UnaryMemoryPhysicalTask task =
+                new UnaryMemoryPhysicalTask(
+                        new ArrayList<>(Collections.singletonList(downsample)), storageTask);
+        Operator follower = new Limit(new OperatorSource(downsample), 10, 0);
+
+        // 分组的部分聚合每个窗口一行，结果可能与原始数据相当，仍然惰性计算
+        assertFalse(task.isEagerPartialAggregate());
+        assertTrue(new FuseUnaryOperatorRule().canFuse(task, follower));
+        assertTrue(((Downsample) downsample.copy()).isPartial());
+    }
+}
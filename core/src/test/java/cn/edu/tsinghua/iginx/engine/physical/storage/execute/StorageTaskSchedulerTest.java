@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.execute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class StorageTaskSchedulerTest {
+
+    @Test
+    public void testConcurrencyBoundedByLimit() throws InterruptedException {
+        StorageTaskScheduler scheduler =
+                new StorageTaskScheduler(0, new AdaptiveConcurrencyLimit(4, 4, 4), 1000, 60000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        int taskNum = 100;
+        CountDownLatch done = new CountDownLatch(taskNum);
+        for (int i = 0; i < taskNum; i++) {
+            StorageTaskScheduler.Lane lane =
+                    i % 2 == 0 ? StorageTaskScheduler.Lane.QUERY : StorageTaskScheduler.Lane.WRITE;
+            assertTrue(
+                    scheduler.submit(
+                            lane,
+                            () -> {
+                                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                                sleep(2);
+                                running.decrementAndGet();
+                                done.countDown();
+                            },
+                            done::countDown));
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(taskNum, scheduler.getCompletedCount());
+        assertEquals(0, scheduler.getRejectedCount());
+    }
+
+    @Test
+    public void testRejectWhenQueueFull() throws InterruptedException {
+        StorageTaskScheduler scheduler =
+                new StorageTaskScheduler(0, new AdaptiveConcurrencyLimit(1, 1, 1), 2, 60000);
+        CountDownLatch block = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        scheduler.submit(StorageTaskScheduler.Lane.WRITE, () -> await(block), () -> {});
+        // 第一个任务正在执行，其后两个任务占满写入队列
+        scheduler.submit(StorageTaskScheduler.Lane.WRITE, () -> {}, rejected::incrementAndGet);
+        scheduler.submit(StorageTaskScheduler.Lane.WRITE, () -> {}, rejected::incrementAndGet);
+        assertFalse(
+                scheduler.submit(
+                        StorageTaskScheduler.Lane.WRITE, () -> {}, rejected::incrementAndGet));
+        // 查询队列不受写入队列影响
+        assertTrue(
+                scheduler.submit(
+                        StorageTaskScheduler.Lane.QUERY, () -> {}, rejected::incrementAndGet));
+        assertEquals(1, rejected.get());
+        assertEquals(1, scheduler.getRejectedCount());
+        assertEquals(2, scheduler.getQueueSize(StorageTaskScheduler.Lane.WRITE));
+        block.countDown();
+    }
+
+    @Test
+    public void testLanesTakeTurns() throws InterruptedException {
+        StorageTaskScheduler scheduler =
+                new StorageTaskScheduler(0, new AdaptiveConcurrencyLimit(1, 1, 1), 100, 60000);
+        CountDownLatch block = new CountDownLatch(1);
+        scheduler.submit(StorageTaskScheduler.Lane.WRITE, () -> await(block), () -> {});
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 6; i++) {
+            scheduler.submit(
+                    StorageTaskScheduler.Lane.WRITE,
+                    () -> {
+                        order.add("w");
+                        done.countDown();
+                    },
+                    () -> {});
+        }
+        for (int i = 0; i < 2; i++) {
+            scheduler.submit(
+                    StorageTaskScheduler.Lane.QUERY,
+                    () -> {
+                        order.add("q");
+                        done.countDown();
+                    },
+                    () -> {});
+        }
+        block.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // 写入任务虽然先入队，查询任务也不需要等所有写入完成
+        assertEquals("q", order.get(0));
+        assertEquals("q", order.get(2));
+    }
+
+    @Test
+    public void testRejectAfterTimeout() throws InterruptedException {
+        StorageTaskScheduler scheduler =
+                new StorageTaskScheduler(0, new AdaptiveConcurrencyLimit(1, 1, 1), 100, 50);
+        CountDownLatch block = new CountDownLatch(1);
+        CountDownLatch rejected = new CountDownLatch(1);
+        AtomicInteger executed = new AtomicInteger();
+        scheduler.submit(StorageTaskScheduler.Lane.QUERY, () -> await(block), () -> {});
+        scheduler.submit(
+                StorageTaskScheduler.Lane.QUERY, executed::incrementAndGet, rejected::countDown);
+        assertTrue(rejected.await(10, TimeUnit.SECONDS));
+        block.countDown();
+        sleep(50);
+        assertEquals(0, executed.get());
+        assertEquals(1, scheduler.getTimeoutCount());
+    }
+
+    @Test
+    public void testAdaptiveLimit() {
+        StorageTaskScheduler.Lane lane = StorageTaskScheduler.Lane.QUERY;
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 20);
+        long time = 0;
+        for (int i = 0; i < 1000; i++) {
+            limit.onSample(lane, time, 1000, limit.getLimit(), false);
+            time += 1000;
+        }
+        assertEquals(20, limit.getLimit());
+
+        // 延迟远超基准时逐步降低并发上限，但不低于最小值
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(lane, time, 10000, limit.getLimit(), false);
+            time += 10000;
+        }
+        assertEquals(2, limit.getLimit());
+
+        // 同一批开始的慢任务只触发一次下降
+        limit = new AdaptiveConcurrencyLimit(10, 2, 20);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(lane, 0, 1000, 0, false);
+        }
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(lane, 1000, 10000, 0, false);
+        }
+        assertEquals((int) (10 * AdaptiveConcurrencyLimit.BACKOFF_RATIO), limit.getLimit());
+    }
+
+    @Test
+    public void testAdaptiveLimitWithMixedLatency() {
+        // 同一类任务中混有少量耗时很长的任务时，上限不应持续下降
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 20);
+        Random random = new Random(0);
+        long time = 0;
+        for (int i = 0; i < 20000; i++) {
+            long rtt = random.nextInt(10) == 0 ? 100000 : 1000;
+            limit.onSample(StorageTaskScheduler.Lane.QUERY, time, rtt, limit.getLimit(), false);
+            time += 1000;
+        }
+        assertEquals(20, limit.getLimit());
+
+        // 交替完成的短写入与长查询各自统计延迟，上限不应下降
+        limit = new AdaptiveConcurrencyLimit(10, 2, 20);
+        time = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (i % 2 == 0) {
+                limit.onSample(
+                        StorageTaskScheduler.Lane.WRITE, time, 1000, limit.getLimit(), false);
+            } else {
+                limit.onSample(
+                        StorageTaskScheduler.Lane.QUERY, time, 50000, limit.getLimit(), false);
+            }
+            time += 1000;
+        }
+        assertEquals(20, limit.getLimit());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
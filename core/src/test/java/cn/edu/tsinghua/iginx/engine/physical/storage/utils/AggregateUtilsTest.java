@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.physical.storage.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.stream.DownsampleLazyStream;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.RowUtils;
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Avg;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.Test;
+
+public class AggregateUtilsTest {
+
+    private static class EmptySource implements Source {
+
+        public static final EmptySource EMPTY_SOURCE = new EmptySource();
+
+        @Override
+        public SourceType getType() {
+            return null;
+        }
+
+        @Override
+        public Source copy() {
+            return null;
+        }
+    }
+
+    private static final Header HEADER =
+            new Header(
+                    Field.KEY,
+                    Arrays.asList(
+                            new Field("a.a", DataType.LONG),
+                            new Field("a.b", DataType.DOUBLE),
+                            new Field(
+                                    "a.c",
+                                    DataType.INTEGER,
+                                    Collections.singletonMap("t", "v"))));
+
+    private static final List<FunctionCall> FUNCTION_CALLS =
+            Arrays.asList(
+                    new FunctionCall(Count.getInstance(), params("a.*")),
+                    new FunctionCall(Sum.getInstance(), params("a.a")),
+                    new FunctionCall(Sum.getInstance(), params("a.b")),
+                    new FunctionCall(Max.getInstance(), params("a.*")),
+                    new FunctionCall(Min.getInstance(), params("a.c")));
+
+    private static FunctionParams params(String path) {
+        return new FunctionParams(Collections.singletonList(path));
+    }
+
+    /** 与查询结果相同，不包含在所有列上都为空的行；key 在 [10, 20) 中的行 a.a 为空 */
+    private static Table createTable() {
+        List<Row> rows = new ArrayList<>();
+        for (long key = 3; key < 40; key++) {
+            Object[] values =
+                    new Object[] {
+                        key % 3 == 0 || (key >= 10 && key < 20) ? null : key * 100,
+                        key % 4 == 0 ? null : key * 0.25,
+                        key % 5 == 0 ? null : (int) -key
+                    };
+            if (key >= 24 && key < 31) {
+                continue; // 空窗口
+            }
+            rows.add(new Row(HEADER, key, values));
+        }
+        return new Table(HEADER, rows);
+    }
+
+    /**
+     * 模拟存储的计算方式：每个函数计算所有列，只返回有数据的窗口，数值类型与数据库返回的相同（例如 PostgreSQL 中 bigint 的 sum 为
+     * numeric），空值上 count 为 0，sum、max、min 为空。
+     */
+    private static Table aggregateLikeStorage(
+            Table table,
+            Downsample downsample,
+            List<FunctionCall> functionCallList,
+            List<String> columnFunctions) {
+        Set<String> functions = new LinkedHashSet<>();
+        for (FunctionCall functionCall : functionCallList) {
+            functions.add(functionCall.getFunction().getIdentifier());
+        }
+        Header header = table.getHeader();
+        List<Field> fields = new ArrayList<>();
+        for (String function : functions) {
+            for (Field field : header.getFields()) {
+                fields.add(field);
+                columnFunctions.add(function);
+            }
+        }
+        Header targetHeader =
+                downsample == null ? new Header(fields) : new Header(Field.KEY, fields);
+
+        Map<Long, List<Row>> windows = new TreeMap<>();
+        for (Row row : table.getRows()) {
+            long key =
+                    downsample == null
+                            ? 0L
+                            : AggregateUtils.getWindowKey(row.getKey(), downsample);
+            windows.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+        }
+        if (downsample == null && windows.isEmpty()) {
+            windows.put(0L, Collections.emptyList());
+        }
+        List<Row> targetRows = new ArrayList<>();
+        for (Map.Entry<Long, List<Row>> window : windows.entrySet()) {
+            Object[] values = new Object[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                int index = i % header.getFieldSize();
+                values[i] =
+                        aggregate(
+                                columnFunctions.get(i),
+                                header.getField(index).getType(),
+                                window.getValue(),
+                                index);
+            }
+            targetRows.add(
+                    downsample == null
+                            ? new Row(targetHeader, values)
+                            : new Row(targetHeader, window.getKey(), values));
+        }
+        return new Table(targetHeader, targetRows);
+    }
+
+    private static Object aggregate(String function, DataType type, List<Row> rows, int index) {
+        long count = 0;
+        BigDecimal sum = null;
+        Comparable<Object> max = null;
+        Comparable<Object> min = null;
+        for (Row row : rows) {
+            Object value = row.getValue(index);
+            if (value == null) {
+                continue;
+            }
+            count++;
+            BigDecimal decimal = new BigDecimal(value.toString());
+            sum = sum == null ? decimal : sum.add(decimal);
+            @SuppressWarnings("unchecked")
+            Comparable<Object> comparable = (Comparable<Object>) value;
+            max = max == null || comparable.compareTo(max) > 0 ? comparable : max;
+            min = min == null || comparable.compareTo(min) < 0 ? comparable : min;
+        }
+        switch (function) {
+            case Count.COUNT:
+                return count;
+            case Sum.SUM:
+                if (sum == null) {
+                    return null;
+                }
+                switch (type) {
+                    case INTEGER:
+                        return sum.longValue();
+                    case LONG:
+                        return sum;
+                    default:
+                        return sum.doubleValue();
+                }
+            case Max.MAX:
+                return max;
+            default:
+                return min;
+        }
+    }
+
+    private static void assertSameResult(RowStream expected, RowStream actual)
+            throws PhysicalException {
+        Header expectedHeader = expected.getHeader();
+        Header actualHeader = actual.getHeader();
+        assertEquals(expectedHeader.hasKey(), actualHeader.hasKey());
+        assertEquals(expectedHeader.getFieldSize(), actualHeader.getFieldSize());
+        for (int i = 0; i < expectedHeader.getFieldSize(); i++) {
+            assertEquals(
+                    expectedHeader.getField(i).getFullName(),
+                    actualHeader.getField(i).getFullName());
+            assertEquals(expectedHeader.getField(i).getName(), actualHeader.getField(i).getName());
+            assertEquals(expectedHeader.getField(i).getType(), actualHeader.getField(i).getType());
+        }
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            Row expectedRow = expected.next();
+            Row actualRow = actual.next();
+            if (expectedHeader.hasKey()) {
+                assertEquals(expectedRow.getKey(), actualRow.getKey());
+            }
+            for (int i = 0; i < expectedHeader.getFieldSize(); i++) {
+                assertEquals(expectedRow.getValue(i), actualRow.getValue(i));
+            }
+        }
+        assertFalse(actual.hasNext());
+    }
+
+    @Test
+    public void testDownsampleResult() throws PhysicalException {
+        Downsample downsample =
+                new Downsample(
+                        EmptySource.EMPTY_SOURCE, 7, 7, FUNCTION_CALLS, new KeyRange(3, 40));
+        List<String> columnFunctions = new ArrayList<>();
+        Table stored =
+                aggregateLikeStorage(createTable(), downsample, FUNCTION_CALLS, columnFunctions);
+
+        assertSameResult(
+                new DownsampleLazyStream(downsample, createTable()),
+                AggregateUtils.toDownsampleResult(stored, columnFunctions, downsample));
+    }
+
+    @Test
+    public void testDownsampleResultWithoutData() throws PhysicalException {
+        Downsample downsample =
+                new Downsample(
+                        EmptySource.EMPTY_SOURCE, 7, 7, FUNCTION_CALLS, new KeyRange(3, 40));
+        Table empty = new Table(HEADER, Collections.emptyList());
+        List<String> columnFunctions = new ArrayList<>();
+        Table stored = aggregateLikeStorage(empty, downsample, FUNCTION_CALLS, columnFunctions);
+
+        assertSameResult(
+                new DownsampleLazyStream(downsample, new Table(HEADER, Collections.emptyList())),
+                AggregateUtils.toDownsampleResult(stored, columnFunctions, downsample));
+    }
+
+    @Test
+    public void testSetTransformResult() throws PhysicalException {
+        for (Table table : Arrays.asList(createTable(), new Table(HEADER, new ArrayList<>()))) {
+            SetTransform setTransform = new SetTransform(EmptySource.EMPTY_SOURCE, FUNCTION_CALLS);
+            List<String> columnFunctions = new ArrayList<>();
+            Table stored = aggregateLikeStorage(table, null, FUNCTION_CALLS, columnFunctions);
+
+            table.reset();
+            Row row = RowUtils.calculateSetMappingFunctions(table, FUNCTION_CALLS);
+            assertSameResult(
+                    new Table(row.getHeader(), Collections.singletonList(row)),
+                    AggregateUtils.toSetTransformResult(stored, columnFunctions, setTransform));
+        }
+    }
+
+    @Test
+    public void testIsSupportedAggregate() {
+        Set<String> functions = new LinkedHashSet<>(Arrays.asList(Count.COUNT, Sum.SUM));
+        SetTransform supported =
+                new SetTransform(
+                        EmptySource.EMPTY_SOURCE,
+                        new FunctionCall(Count.getInstance(), params("a.*")));
+        assertTrue(AggregateUtils.isSupportedAggregate(supported, functions));
+
+        Downsample unsupported =
+                new Downsample(
+                        EmptySource.EMPTY_SOURCE,
+                        10,
+                        10,
+                        new FunctionCall(Avg.getInstance(), params("a.*")),
+                        new KeyRange(0, 100));
+        assertFalse(AggregateUtils.isSupportedAggregate(unsupported, functions));
+
+        FunctionParams levels =
+                new FunctionParams(Collections.singletonList("a.*"), Collections.singletonList(0));
+        SetTransform groupByLevel =
+                new SetTransform(
+                        EmptySource.EMPTY_SOURCE, new FunctionCall(Count.getInstance(), levels));
+        assertFalse(AggregateUtils.isSupportedAggregate(groupByLevel, functions));
+    }
+
+    @Test
+    public void testGetWindowKey() {
+        Downsample downsample =
+                new Downsample(
+                        EmptySource.EMPTY_SOURCE,
+                        10,
+                        10,
+                        new FunctionCall(Count.getInstance(), params("a.*")),
+                        new KeyRange(3, 100));
+        assertEquals(3, AggregateUtils.getWindowKey(3, downsample));
+        assertEquals(3, AggregateUtils.getWindowKey(12, downsample));
+        assertEquals(13, AggregateUtils.getWindowKey(13, downsample));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawData;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawDataType;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class LastValueCacheTest {
+
+    private static LastValueCache.LastValue lastValue(long key, String path, long value) {
+        return new LastValueCache.LastValue(
+                key, path, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static RawData columnData(String path, Map<String, String> tags, long... keyValues) {
+        List<Long> keys = new ArrayList<>();
+        Object[] values = new Object[keyValues.length / 2];
+        Bitmap bitmap = new Bitmap(values.length);
+        for (int i = 0; i < values.length; i++) {
+            keys.add(keyValues[2 * i]);
+            values[i] = keyValues[2 * i + 1];
+            bitmap.mark(i);
+        }
+        return new RawData(
+                Collections.singletonList(path),
+                Collections.singletonList(tags),
+                keys,
+                new Object[] {values},
+                Collections.singletonList(DataType.LONG),
+                Collections.singletonList(bitmap),
+                RawDataType.NonAlignedColumn);
+    }
+
+    private static String toString(List<LastValueCache.LastValue> values) {
+        StringBuilder builder = new StringBuilder();
+        for (LastValueCache.LastValue value : values) {
+            builder.append(value.getKey())
+                    .append(' ')
+                    .append(value.getPath())
+                    .append('=')
+                    .append(new String(value.getValue(), StandardCharsets.UTF_8))
+                    .append(';');
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testFillAndLookup() {
+        LastValueCache cache = new LastValueCache(100);
+        List<String> paths = Collections.singletonList("a.b");
+        assertNull(cache.lookup(paths, 0));
+
+        LastValueCache.Seed seed = cache.prepare(paths);
+        assertNull(cache.lookup(paths, 0));
+        cache.fill(seed, 10, Arrays.asList(lastValue(20, "a.b", 1), lastValue(5, "a.c", 2)));
+
+        assertEquals("20 a.b=1;", toString(cache.lookup(paths, 10).get(0)));
+        assertEquals("", toString(cache.lookup(paths, 30).get(0)));
+        // 缓存项不能回答起始 key 更小的查询
+        assertNull(cache.lookup(paths, 0));
+    }
+
+    @Test
+    public void testUpdateOnInsert() {
+        LastValueCache cache = new LastValueCache(100);
+        List<String> paths = Collections.singletonList("a.b");
+        cache.fill(cache.prepare(paths), 0, Collections.singletonList(lastValue(20, "a.b", 1)));
+
+        cache.update(columnData("a.b", null, 10, 100));
+        assertEquals("20 a.b=1;", toString(cache.lookup(paths, 0).get(0)));
+        cache.update(columnData("a.b", null, 30, 3, 25, 2));
+        assertEquals("30 a.b=3;", toString(cache.lookup(paths, 0).get(0)));
+
+        Map<String, String> tags = new HashMap<>();
+        tags.put("t", "1");
+        cache.update(columnData("a.b", tags, 40, 4));
+        cache.update(columnData("a.bc", null, 50, 5));
+        assertEquals("30 a.b=3;40 a.b{t=1}=4;", toString(cache.lookup(paths, 0).get(0)));
+    }
+
+    @Test
+    public void testInsertDuringQuery() {
+        LastValueCache cache = new LastValueCache(100);
+        List<String> paths = Collections.singletonList("a.*");
+        LastValueCache.Seed seed = cache.prepare(paths);
+        cache.update(columnData("a.c", null, 30, 3));
+        cache.fill(seed, 0, Arrays.asList(lastValue(20, "a.b", 1), lastValue(10, "a.c", 2)));
+        assertEquals("20 a.b=1;30 a.c=3;", toString(cache.lookup(paths, 0).get(0)));
+    }
+
+    @Test
+    public void testInvalidate() {
+        LastValueCache cache = new LastValueCache(100);
+        List<String> paths = Arrays.asList("a.b", "a.*");
+        cache.fill(cache.prepare(paths), 0, Collections.singletonList(lastValue(20, "a.b", 1)));
+        cache.invalidate(Collections.singletonList("a.b"));
+        assertNull(cache.lookup(Collections.singletonList("a.b"), 0));
+        assertNull(cache.lookup(Collections.singletonList("a.*"), 0));
+
+        // 查询期间发生删除时丢弃查询结果
+        LastValueCache.Seed seed = cache.prepare(paths);
+        cache.invalidate(Collections.singletonList("*"));
+        cache.fill(seed, 0, Collections.singletonList(lastValue(20, "a.b", 1)));
+        assertNull(cache.lookup(Collections.singletonList("a.b"), 0));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        LastValueCache cache = new LastValueCache(4);
+        List<String> first = Collections.singletonList("a.b");
+        List<String> second = Collections.singletonList("a.c");
+        cache.fill(cache.prepare(first), 0, Collections.singletonList(lastValue(1, "a.b", 1)));
+        cache.fill(cache.prepare(second), 0, Collections.singletonList(lastValue(1, "a.c", 1)));
+        cache.lookup(first, 0);
+
+        List<String> third = Collections.singletonList("a.d");
+        cache.fill(cache.prepare(third), 0, Collections.singletonList(lastValue(1, "a.d", 1)));
+        assertNull(cache.lookup(second, 0));
+        assertEquals(1, cache.lookup(first, 0).get(0).size());
+        assertEquals(1, cache.lookup(third, 0).get(0).size());
+    }
+}
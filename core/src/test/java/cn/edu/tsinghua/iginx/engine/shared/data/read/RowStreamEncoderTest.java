@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.data.read;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import cn.edu.tsinghua.iginx.utils.ByteUtils;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class RowStreamEncoderTest {
+
+    private static final Header HEADER =
+            new Header(
+                    Field.KEY,
+                    Arrays.asList(
+                            new Field("a.a", DataType.BOOLEAN),
+                            new Field("a.b", DataType.INTEGER),
+                            new Field("a.c", DataType.LONG),
+                            new Field("a.d", DataType.FLOAT),
+                            new Field("a.e", DataType.DOUBLE),
+                            new Field("a.f", DataType.BINARY),
+                            new Field("a.g", DataType.INTEGER),
+                            new Field("a.h", DataType.INTEGER),
+                            new Field("a.i", DataType.LONG)));
+
+    private static List<Row> createRows(int size) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            rows.add(
+                    new Row(
+                            HEADER,
+                            i * 10L,
+                            new Object[] {
+                                i % 2 == 0,
+                                i % 3 == 0 ? null : i,
+                                (long) -i,
+                                i % 5 == 0 ? null : i * 0.5f,
+                                i * 1.5,
+                                i % 4 == 0 ? null : ("v" + i).getBytes(),
+                                null,
+                                i,
+                                i % 7 == 0 ? null : (long) i
+                            }));
+        }
+        return rows;
+    }
+
+    /** 与逐行编码的结果逐字节比较 */
+    private static void assertRowEncoded(
+            Object[] values, List<DataType> types, ByteBuffer buffer, ByteBuffer bitmapBuffer) {
+        ByteBuffer expected = ByteUtils.getRowByteBuffer(values, types);
+        byte[] actual = new byte[buffer.remaining()];
+        buffer.duplicate().get(actual);
+        assertArrayEquals(Arrays.copyOf(expected.array(), expected.limit()), actual);
+
+        Bitmap bitmap = new Bitmap(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                bitmap.mark(i);
+            }
+        }
+        byte[] actualBitmap = new byte[bitmapBuffer.remaining()];
+        bitmapBuffer.duplicate().get(actualBitmap);
+        assertArrayEquals(bitmap.getBytes(), actualBitmap);
+    }
+
+    @Test
+    public void testEncodeWithSeparateKey() throws Exception {
+        List<Row> rows = createRows(10);
+        RowStreamEncoder encoder = new RowStreamEncoder(new Table(HEADER, rows), false);
+        List<DataType> types = encoder.getDataTypes();
+        assertEquals(HEADER.getFieldSize(), types.size());
+
+        int index = 0;
+        while (encoder.hasNext()) {
+            RowStreamEncoder.Chunk chunk = encoder.next(4);
+            for (int i = 0; i < chunk.getSize(); i++, index++) {
+                Row row = rows.get(index);
+                assertEquals(row.getKey(), chunk.getKeys()[i]);
+                assertRowEncoded(
+                        row.getValues(),
+                        types,
+                        chunk.getValuesList().get(i),
+                        chunk.getBitmapList().get(i));
+            }
+        }
+        assertEquals(rows.size(), index);
+    }
+
+    @Test
+    public void testDecodeMultipleRows() throws Exception {
+        // 每一行的缓冲区都是整块缓冲区上的切片，解码时不能从底层数组的开头读取
+        List<Row> rows = createRows(10);
+        RowStreamEncoder encoder = new RowStreamEncoder(new Table(HEADER, rows), false);
+        List<DataType> types = encoder.getDataTypes();
+        List<ByteBuffer> valuesList = new ArrayList<>();
+        List<ByteBuffer> bitmapList = new ArrayList<>();
+        while (encoder.hasNext()) {
+            RowStreamEncoder.Chunk chunk = encoder.next(4);
+            valuesList.addAll(chunk.getValuesList());
+            bitmapList.addAll(chunk.getBitmapList());
+        }
+
+        List<List<Object>> values =
+                ByteUtils.getValuesFromBufferAndBitmaps(types, valuesList, bitmapList);
+        assertEquals(rows.size(), values.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] expected = rows.get(i).getValues();
+            List<Object> actual = values.get(i);
+            for (int j = 0; j < expected.length; j++) {
+                if (types.get(j) == DataType.BINARY && expected[j] != null) {
+                    assertArrayEquals((byte[]) expected[j], (byte[]) actual.get(j));
+                } else {
+                    assertEquals(expected[j], actual.get(j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeWithKeyColumn() throws Exception {
+        List<Row> rows = createRows(5);
+        RowStreamEncoder encoder = new RowStreamEncoder(new Table(HEADER, rows), true);
+        List<DataType> types = encoder.getDataTypes();
+        assertEquals(DataType.LONG, types.get(0));
+
+        RowStreamEncoder.Chunk chunk = encoder.next(100);
+        assertEquals(rows.size(), chunk.getSize());
+        assertFalse(encoder.hasNext());
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] values = new Object[types.size()];
+            values[0] = rows.get(i).getKey();
+            System.arraycopy(rows.get(i).getValues(), 0, values, 1, types.size() - 1);
+            assertRowEncoded(
+                    values, types, chunk.getValuesList().get(i), chunk.getBitmapList().get(i));
+        }
+    }
+
+    @Test
+    public void testEncodeWithoutKey() throws Exception {
+        Header header = new Header(Arrays.asList(new Field("count(a.a)", DataType.LONG)));
+        Table table = new Table(header, Arrays.asList(new Row(header, new Object[] {3L})));
+        RowStreamEncoder.Chunk chunk = new RowStreamEncoder(table, true).next(10);
+        assertEquals(1, chunk.getSize());
+        assertNull(chunk.getKeys());
+        assertEquals(3L, chunk.getValuesList().get(0).getLong());
+    }
+}
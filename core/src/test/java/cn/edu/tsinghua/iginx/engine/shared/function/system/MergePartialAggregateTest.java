@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.engine.shared.function.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class MergePartialAggregateTest {
+
+    private static final FunctionParams PARAMS =
+            new FunctionParams(Collections.singletonList("a.*"));
+
+    @Test
+    public void testMergeAvg() throws Exception {
+        Header sumHeader =
+                new Header(
+                        Arrays.asList(
+                                new Field("sum(a.a)", "sum(a.a)", DataType.LONG),
+                                new Field("sum(a.b)", "sum(a.b)", DataType.DOUBLE)));
+        Header countHeader =
+                new Header(
+                        Arrays.asList(
+                                new Field("count(a.a)", "count(a.a)", DataType.LONG),
+                                new Field("count(a.b)", "count(a.b)", DataType.LONG)));
+        Header header =
+                new Header(
+                        Arrays.asList(
+                                sumHeader.getField(0),
+                                sumHeader.getField(1),
+                                countHeader.getField(0),
+                                countHeader.getField(1)));
+        // 不带 key 的 union 保留每一行原有的表头
+        Table table =
+                new Table(
+                        header,
+                        Arrays.asList(
+                                new Row(sumHeader, new Object[] {6L, 1.5}),
+                                new Row(countHeader, new Object[] {3L, 1L}),
+                                new Row(sumHeader, new Object[] {4L, 0.0}),
+                                new Row(countHeader, new Object[] {1L, 0L})));
+
+        Row row = new MergePartialAggregate(Avg.AVG).transform(table, PARAMS);
+        assertEquals(2, row.getHeader().getFieldSize());
+        assertEquals("avg(a.a)", row.getHeader().getField(0).getFullName());
+        assertEquals(DataType.DOUBLE, row.getHeader().getField(0).getType());
+        assertEquals(2.5, (double) row.getValue(0), 1e-9);
+        assertEquals(1.5, (double) row.getValue(1), 1e-9);
+    }
+
+    @Test
+    public void testMergeCountAndMax() throws Exception {
+        Header headerA =
+                new Header(
+                        Arrays.asList(
+                                new Field("count(a.a)", "count(a.a)", DataType.LONG),
+                                new Field("count(a.b)", "count(a.b)", DataType.LONG)));
+        Header headerB =
+                new Header(
+                        Collections.singletonList(
+                                new Field("count(a.a)", "count(a.a)", DataType.LONG)));
+        Table table =
+                new Table(
+                        headerA,
+                        Arrays.asList(
+                                new Row(headerA, new Object[] {2L, 5L}),
+                                new Row(headerB, new Object[] {7L})));
+        Row row = new MergePartialAggregate(Count.COUNT).transform(table, PARAMS);
+        assertEquals(9L, row.getValue(0));
+        assertEquals(5L, row.getValue(1));
+
+        Header maxHeader =
+                new Header(
+                        Arrays.asList(
+                                new Field("max(a.a)", "max(a.a)", DataType.INTEGER),
+                                new Field("max(a.b)", "max(a.b)", DataType.INTEGER)));
+        table =
+                new Table(
+                        maxHeader,
+                        Arrays.asList(
+                                new Row(maxHeader, new Object[] {3, null}),
+                                new Row(maxHeader, new Object[] {8, null}),
+                                new Row(maxHeader, new Object[] {-1, null})));
+        row = new MergePartialAggregate(Max.MAX).transform(table, PARAMS);
+        assertEquals(DataType.INTEGER, row.getHeader().getField(0).getType());
+        assertEquals(8, row.getValue(0));
+        assertNull(row.getValue(1));
+    }
+
+    @Test
+    public void testMergeFirstAndLastValue() throws Exception {
+        Header header =
+                new Header(
+                        Arrays.asList(
+                                new Field("first_value(a.a)", "first_value(a.a)", DataType.LONG),
+                                new Field("first_key(a.a)", "first_key(a.a)", DataType.LONG),
+                                new Field("last_value(a.a)", "last_value(a.a)", DataType.LONG),
+                                new Field("last_key(a.a)", "last_key(a.a)", DataType.LONG)));
+        // 分片的顺序与 key 的顺序无关，以辅助列中的 key 为准
+        Table table =
+                new Table(
+                        header,
+                        Arrays.asList(
+                                new Row(header, new Object[] {30L, 300L, 35L, 350L}),
+                                new Row(header, new Object[] {null, null, null, null}),
+                                new Row(header, new Object[] {10L, 100L, 15L, 150L})));
+        Row row = new MergePartialAggregate(FirstValue.FIRST_VALUE).transform(table, PARAMS);
+        assertEquals(1, row.getHeader().getFieldSize());
+        assertEquals("first_value(a.a)", row.getHeader().getField(0).getFullName());
+        assertEquals(10L, row.getValue(0));
+
+        table.reset();
+        row = new MergePartialAggregate(LastValue.LAST_VALUE).transform(table, PARAMS);
+        assertEquals(35L, row.getValue(0));
+    }
+}
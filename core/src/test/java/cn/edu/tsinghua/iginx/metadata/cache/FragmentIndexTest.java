@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
+import cn.edu.tsinghua.iginx.metadata.entity.ColumnsRange;
+import cn.edu.tsinghua.iginx.metadata.entity.FragmentMeta;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class FragmentIndexTest {
+
+    private static final String[] COLUMNS = new String[36];
+
+    static {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            COLUMNS[i] = "a." + (char) ('a' + i / 6) + "." + (i % 6);
+        }
+        Arrays.sort(COLUMNS);
+    }
+
+    private final Random random = new Random(2023);
+
+    @Test
+    public void testSearchMatchesScan() {
+        for (int round = 0; round < 200; round++) {
+            Map<ColumnsRange, List<FragmentMeta>> fragmentListMap = randomFragments();
+            List<FragmentIndex.FragmentGroup> groups = new ArrayList<>();
+            fragmentListMap.forEach((k, v) -> groups.add(new FragmentIndex.FragmentGroup(k, v)));
+            FragmentIndex index = new FragmentIndex(groups, Collections.emptyList());
+
+            for (int i = 0; i < 50; i++) {
+                ColumnsRange query =
+                        new ColumnsInterval(randomQueryColumn(true), randomQueryColumn(true));
+                Set<ColumnsRange> expected = new HashSet<>();
+                fragmentListMap
+                        .keySet()
+                        .stream()
+                        .filter(e -> e.isIntersect(query))
+                        .forEach(expected::add);
+                Set<ColumnsRange> actual = new HashSet<>();
+                index.searchGroups(query).forEach(e -> actual.add(e.getColumnsRange()));
+                assertEquals(query.toString(), expected, actual);
+
+                String tsName = randomQueryColumn(false);
+                expected.clear();
+                actual.clear();
+                fragmentListMap
+                        .keySet()
+                        .stream()
+                        .filter(e -> e.isContain(tsName))
+                        .forEach(expected::add);
+                index.searchGroups(tsName).forEach(e -> actual.add(e.getColumnsRange()));
+                assertEquals(tsName, expected, actual);
+
+                KeyInterval keyInterval =
+                        new KeyInterval(random.nextInt(300), 300 + random.nextInt(100));
+                for (FragmentIndex.FragmentGroup group : index.searchGroups(query)) {
+                    List<FragmentMeta> expectedFragments = new ArrayList<>();
+                    for (FragmentMeta fragment : group.getFragments()) {
+                        if (fragment.getKeyInterval().isIntersect(keyInterval)) {
+                            expectedFragments.add(fragment);
+                        }
+                    }
+                    expectedFragments.sort(
+                            Comparator.comparingLong(e -> e.getKeyInterval().getStartKey()));
+                    assertEquals(expectedFragments, group.search(keyInterval));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSearchDummyFragments() {
+        FragmentMeta valid = new FragmentMeta("a.b", "a.d", 0, Long.MAX_VALUE);
+        FragmentMeta invalid = new FragmentMeta("a.c", "a.e", 0, Long.MAX_VALUE);
+        invalid.setIfValid(false);
+        FragmentMeta other = new FragmentMeta("b.a", null, 100, 200);
+        FragmentIndex index =
+                new FragmentIndex(Collections.emptyList(), Arrays.asList(valid, invalid, other));
+
+        assertEquals(
+                Collections.singletonList(valid),
+                index.searchDummyFragments(new ColumnsInterval("a.c", "a.z"), null));
+        assertEquals(
+                Arrays.asList(valid, other),
+                index.searchDummyFragments(new ColumnsInterval(null, null), null));
+        assertEquals(
+                Collections.singletonList(valid),
+                index.searchDummyFragments(
+                        new ColumnsInterval(null, null), new KeyInterval(300, 400)));
+    }
+
+    private Map<ColumnsRange, List<FragmentMeta>> randomFragments() {
+        Map<ColumnsRange, List<FragmentMeta>> fragmentListMap = new LinkedHashMap<>();
+        int count = random.nextInt(30);
+        for (int i = 0; i < count; i++) {
+            String start = random.nextInt(5) == 0 ? null : randomColumn();
+            String end = random.nextInt(5) == 0 ? null : randomColumn();
+            if (start != null && end != null && start.compareTo(end) >= 0) {
+                continue;
+            }
+            List<FragmentMeta> fragments =
+                    fragmentListMap.computeIfAbsent(
+                            new ColumnsInterval(start, end), k -> new ArrayList<>());
+            long key = 0;
+            int size = 1 + random.nextInt(5);
+            for (int j = 0; j < size; j++) {
+                long nextKey =
+                        j == size - 1 && random.nextBoolean()
+                                ? Long.MAX_VALUE
+                                : key + 1 + random.nextInt(100);
+                fragments.add(new FragmentMeta(start, end, key, nextKey));
+                key = nextKey;
+            }
+        }
+        return fragmentListMap;
+    }
+
+    private String randomColumn() {
+        return COLUMNS[random.nextInt(COLUMNS.length)];
+    }
+
+    private String randomQueryColumn(boolean nullable) {
+        String column = randomColumn();
+        switch (random.nextInt(nullable ? 5 : 4)) {
+            case 0:
+                return column.substring(0, 2) + "*";
+            case 1:
+                return column.substring(0, 4) + "*";
+            case 2:
+                return "*";
+            case 3:
+                return column;
+            default:
+                return null;
+        }
+    }
+}
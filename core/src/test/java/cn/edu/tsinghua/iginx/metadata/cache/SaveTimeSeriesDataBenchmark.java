@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.metadata.cache;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawDataType;
+import cn.edu.tsinghua.iginx.sql.statement.InsertStatement;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.utils.Bitmap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** 多个写入线程并发调用 saveTimeSeriesData 的吞吐，按线程数运行以观察扩展性 */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveTimeSeriesDataBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Data {
+
+        @Param({"100"})
+        public int pathNum;
+
+        @Param({"1000"})
+        public int keyNum;
+
+        public InsertStatement columnStatement;
+
+        public InsertStatement rowStatement;
+
+        @Setup
+        public void setup() {
+            columnStatement = createStatement(RawDataType.Column, pathNum, keyNum);
+            rowStatement = createStatement(RawDataType.Row, pathNum, keyNum);
+        }
+    }
+
+    @Benchmark
+    public void saveColumnData(Data data) {
+        DefaultMetaCache.getInstance().saveTimeSeriesData(data.columnStatement);
+    }
+
+    @Benchmark
+    public void saveRowData(Data data) {
+        DefaultMetaCache.getInstance().saveTimeSeriesData(data.rowStatement);
+    }
+
+    private static InsertStatement createStatement(RawDataType type, int pathNum, int keyNum) {
+        List<String> paths = new ArrayList<>();
+        List<DataType> types = new ArrayList<>();
+        for (int i = 0; i < pathNum; i++) {
+            paths.add("bench.s" + i);
+            types.add(i % 2 == 0 ? DataType.LONG : DataType.BINARY);
+        }
+        List<Long> keys = new ArrayList<>();
+        for (long i = 0; i < keyNum; i++) {
+            keys.add(i);
+        }
+
+        // 每隔一个点置空，模拟稀疏数据
+        boolean isColumn = type == RawDataType.Column;
+        int outer = isColumn ? pathNum : keyNum;
+        int inner = isColumn ? keyNum : pathNum;
+        Object[] values = new Object[outer];
+        List<Bitmap> bitmaps = new ArrayList<>();
+        for (int i = 0; i < outer; i++) {
+            Bitmap bitmap = new Bitmap(inner);
+            List<Object> nonNull = new ArrayList<>();
+            for (int j = 0; j < inner; j++) {
+                if ((i + j) % 2 == 0) {
+                    bitmap.mark(j);
+                    int pathIndex = isColumn ? i : j;
+                    nonNull.add(
+                            types.get(pathIndex) == DataType.LONG
+                                    ? (Object) (long) j
+                                    : ("v" + j).getBytes());
+                }
+            }
+            values[i] = nonNull.toArray();
+            bitmaps.add(bitmap);
+        }
+        return new InsertStatement(type, paths, keys, values, types, bitmaps, new ArrayList<>());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            Options options =
+                    new OptionsBuilder()
+                            .include(SaveTimeSeriesDataBenchmark.class.getSimpleName())
+                            .threads(threads)
+                            .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.mqtt;
+
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import cn.edu.tsinghua.iginx.thrift.InsertNonAlignedRowRecordsReq;
+import cn.edu.tsinghua.iginx.utils.ByteUtils;
+import cn.edu.tsinghua.iginx.utils.RpcUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class IngestionBufferTest {
+
+    private final List<InsertNonAlignedRowRecordsReq> requests =
+            Collections.synchronizedList(new ArrayList<>());
+
+    private IngestionBuffer createBuffer(int batchSize, long lingerMs, String durabilityMode) {
+        return new IngestionBuffer(
+                req -> {
+                    requests.add(req);
+                    return RpcUtils.SUCCESS;
+                },
+                0,
+                batchSize,
+                lingerMs,
+                100,
+                durabilityMode);
+    }
+
+    private static Message message(String path, long key, long value) {
+        Message message = new Message();
+        message.setPath(path);
+        message.setKey(key);
+        message.setDataType(DataType.LONG);
+        message.setValue(value);
+        return message;
+    }
+
+    private static List<Long> timestamps(InsertNonAlignedRowRecordsReq req) {
+        return ByteUtils.getLongListFromByteBuffer(req.timestamps);
+    }
+
+    @Test
+    public void testCoalesceUntilBatchSize() {
+        IngestionBuffer buffer = createBuffer(4, 60000, IngestionBuffer.ACK_ON_RECEIVE);
+        List<String> paths = Arrays.asList("a.b", "a.c");
+        List<DataType> dataTypes = Arrays.asList(DataType.LONG, DataType.LONG);
+        buffer.append(paths, dataTypes, Arrays.asList(message("a.c", 2, 1), message("a.b", 1, 2)));
+        assertEquals(0, requests.size());
+        buffer.append(paths, dataTypes, Arrays.asList(message("a.b", 2, 3), message("a.c", 3, 4)));
+        assertEquals(1, requests.size());
+
+        InsertNonAlignedRowRecordsReq req = requests.get(0);
+        assertEquals(paths, req.getPaths());
+        assertEquals(Arrays.asList(1L, 2L, 3L), timestamps(req));
+        List<List<Object>> values =
+                ByteUtils.getValuesFromBufferAndBitmaps(
+                        req.getDataTypeList(), req.getValuesList(), req.getBitmapList());
+        assertEquals(Arrays.asList(2L, null), values.get(0));
+        assertEquals(Arrays.asList(3L, 1L), values.get(1));
+        assertEquals(Arrays.asList(null, 4L), values.get(2));
+        buffer.close();
+    }
+
+    @Test
+    public void testGroupByPathsAndFlushOnClose() {
+        IngestionBuffer buffer = createBuffer(100, 60000, IngestionBuffer.ACK_ON_RECEIVE);
+        List<DataType> dataTypes = Collections.singletonList(DataType.LONG);
+        buffer.append(
+                Collections.singletonList("a.b"),
+                dataTypes,
+                Collections.singletonList(message("a.b", 1, 1)));
+        buffer.append(
+                Collections.singletonList("a.c"),
+                dataTypes,
+                Collections.singletonList(message("a.c", 1, 1)));
+        assertEquals(0, requests.size());
+        buffer.close();
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void testLatestValueWinsOnSameKey() {
+        IngestionBuffer buffer = createBuffer(100, 60000, IngestionBuffer.ACK_ON_RECEIVE);
+        List<String> paths = Collections.singletonList("a.b");
+        List<DataType> dataTypes = Collections.singletonList(DataType.LONG);
+        buffer.append(paths, dataTypes, Collections.singletonList(message("a.b", 1, 1)));
+        buffer.append(paths, dataTypes, Collections.singletonList(message("a.b", 1, 2)));
+        buffer.close();
+
+        assertEquals(1, requests.size());
+        InsertNonAlignedRowRecordsReq req = requests.get(0);
+        assertEquals(Collections.singletonList(1L), timestamps(req));
+        List<List<Object>> values =
+                ByteUtils.getValuesFromBufferAndBitmaps(
+                        req.getDataTypeList(), req.getValuesList(), req.getBitmapList());
+        assertEquals(Collections.singletonList(2L), values.get(0));
+    }
+
+    @Test
+    public void testAckAfterFlushWaitsForLinger() {
+        IngestionBuffer buffer = createBuffer(100, 10, IngestionBuffer.ACK_AFTER_FLUSH);
+        buffer.append(
+                Collections.singletonList("a.b"),
+                Collections.singletonList(DataType.LONG),
+                Collections.singletonList(message("a.b", 1, 1)));
+        assertEquals(1, requests.size());
+        buffer.close();
+    }
+}
@@ -21,27 +21,47 @@ package cn.edu.tsinghua.iginx.influxdb;
 import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
 import static com.influxdb.client.domain.WritePrecision.NS;
 
+import cn.edu.tsinghua.iginx.engine.physical.exception.NonExecutablePhysicalTaskException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.AggregateUtils;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilterType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBHistoryQueryRowStream;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBQueryRowStream;
 import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBSchema;
+import cn.edu.tsinghua.iginx.influxdb.tools.FilterTransformer;
+import cn.edu.tsinghua.iginx.influxdb.tools.LineProtocolUtils;
 import cn.edu.tsinghua.iginx.influxdb.tools.SchemaTransformer;
 import cn.edu.tsinghua.iginx.influxdb.tools.TagFilterUtils;
 import cn.edu.tsinghua.iginx.metadata.entity.*;
@@ -54,7 +74,6 @@ import com.influxdb.client.InfluxDBClientOptions;
 import com.influxdb.client.domain.Bucket;
 import com.influxdb.client.domain.Organization;
 import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.client.write.Point;
 import com.influxdb.query.FluxColumn;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
@@ -63,6 +82,10 @@ import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
@@ -86,8 +109,50 @@ public class InfluxDBStorage implements IStorage {
     private static final String QUERY_DATA_ALL =
             "from(bucket:\"%s\") |> range(start: time(v: %s), stop: time(v: %s)) |> filter(fn: (r) => (r._measurement =%s and r._field =%s))";
 
+    // 只保留时间列，减少边界探测时返回的数据量
+    private static final String QUERY_FIRST_TIME = " |> first() |> keep(columns: [\"_time\"])";
+
+    private static final String QUERY_LAST_TIME = " |> last() |> keep(columns: [\"_time\"])";
+
     private static final String DELETE_DATA = "_measurement=\"%s\" AND _field=\"%s\"";
 
+    // 每页中每条序列至多读取的记录数
+    private static final String QUERY_PAGE = " |> limit(n: %d)";
+
+    private static final String QUERY_FILTER = " |> filter(fn: (r) => %s)";
+
+    // 每条序列只保留最后若干条记录
+    private static final String QUERY_TAIL = " |> tail(n: %d)";
+
+    private static final String QUERY_AGGREGATE = " |> %s()";
+
+    // 窗口从 offset 开始每隔 every 一个，与内存中执行 Downsample 的窗口相同
+    private static final String QUERY_AGGREGATE_WINDOW =
+            " |> aggregateWindow(every: %dns, offset: %dns, fn: %s,"
+                    + " timeSrc: \"_start\", createEmpty: false)";
+
+    // 可以下推的部分聚合函数 -> Flux 中的聚合函数
+    private static final Map<String, String> AGGREGATE_FUNCTIONS = new HashMap<>();
+
+    static {
+        AGGREGATE_FUNCTIONS.put(Count.COUNT, "count");
+        AGGREGATE_FUNCTIONS.put(Sum.SUM, "sum");
+        AGGREGATE_FUNCTIONS.put(Max.MAX, "max");
+        AGGREGATE_FUNCTIONS.put(Min.MIN, "min");
+    }
+
+    private static final String QUERY_FETCH_SIZE = "query_fetch_size";
+
+    private static final String WRITE_BATCH_SIZE = "write_batch_size";
+
+    private static final String WRITE_PARALLELISM = "write_parallelism";
+
+    private static final int DEFAULT_QUERY_FETCH_SIZE = 5000;
+
+    private static final int DEFAULT_WRITE_BATCH_SIZE = 5000;
+
+    private static final int DEFAULT_WRITE_PARALLELISM = 4;
+
     private static final String SHOW_TIME_SERIES =
             "from(bucket:\"%s\") |> range(start: time(v: 0), stop: time(v: 9223372036854775807)) |> filter(fn: (r) => (r._measurement =~ /.*/ and r._field =~ /.+/)) |> first()";
 
@@ -103,6 +168,12 @@ public class InfluxDBStorage implements IStorage {
 
     private final Map<String, Bucket> historyBucketMap = new ConcurrentHashMap<>();
 
+    private final int queryFetchSize;
+
+    private final int writeBatchSize;
+
+    private final ExecutorService writeExecutor;
+
     public InfluxDBStorage(StorageEngineMeta meta) throws StorageInitializationException {
         this.meta = meta;
         if (!meta.getStorageEngine().equals(STORAGE_ENGINE)) {
@@ -130,6 +201,19 @@ public class InfluxDBStorage implements IStorage {
                         .filter(o -> o.getName().equals(this.organizationName))
                         .findFirst()
                         .orElseThrow(IllegalStateException::new);
+        queryFetchSize =
+                Integer.parseInt(
+                        extraParams.getOrDefault(
+                                QUERY_FETCH_SIZE, String.valueOf(DEFAULT_QUERY_FETCH_SIZE)));
+        writeBatchSize =
+                Integer.parseInt(
+                        extraParams.getOrDefault(
+                                WRITE_BATCH_SIZE, String.valueOf(DEFAULT_WRITE_BATCH_SIZE)));
+        int writeParallelism =
+                Integer.parseInt(
+                        extraParams.getOrDefault(
+                                WRITE_PARALLELISM, String.valueOf(DEFAULT_WRITE_PARALLELISM)));
+        writeExecutor = Executors.newFixedThreadPool(Math.max(1, writeParallelism));
         if (meta.isHasData()) {
             reloadHistoryData();
         }
@@ -166,6 +250,12 @@ public class InfluxDBStorage implements IStorage {
     @Override
     public Pair<ColumnsRange, KeyInterval> getBoundaryOfStorage(String dataPrefix)
             throws PhysicalException {
+        return getBoundaryOfStorage(dataPrefix, null);
+    }
+
+    @Override
+    public Pair<ColumnsRange, KeyInterval> getBoundaryOfStorage(
+            String dataPrefix, KeyInterval knownKeyInterval) throws PhysicalException {
         List<String> bucketNames = new ArrayList<>(historyBucketMap.keySet());
         bucketNames.sort(String::compareTo);
         if (bucketNames.size() == 0) {
@@ -190,40 +280,50 @@ public class InfluxDBStorage implements IStorage {
             measurementPrefix = dataPrefix;
         }
 
+        String measurementFilter =
+                measurementPrefix.equals(MEASUREMENTALL)
+                        ? MEASUREMENTALL
+                        : "= \"" + measurementPrefix + "\"";
+        String fieldFilter = fieldPrefix.equals(FIELDALL) ? FIELDALL : "~ /" + fieldPrefix + ".*/";
+        // 已知边界时 first 只需探测边界之前的数据，last 只需探测边界之后的数据
+        long firstStop = knownKeyInterval == null ? Long.MAX_VALUE : knownKeyInterval.getStartKey();
+        long lastStart = knownKeyInterval == null ? 0L : knownKeyInterval.getEndKey();
         for (Bucket bucket : historyBucketMap.values()) {
-            String statement =
-                    String.format(
-                            QUERY_DATA_ALL,
-                            bucket.getName(),
-                            0L,
-                            Long.MAX_VALUE,
-                            measurementPrefix.equals(MEASUREMENTALL)
-                                    ? MEASUREMENTALL
-                                    : "= \"" + measurementPrefix + "\"",
-                            fieldPrefix.equals(FIELDALL) ? FIELDALL : "~ /" + fieldPrefix + ".*/");
-            logger.debug("execute statement: " + statement);
             // 查询 first
-            List<FluxTable> tables =
-                    client.getQueryApi().query(statement + " |> first()", organization.getId());
-            for (FluxTable table : tables) {
-                for (FluxRecord record : table.getRecords()) {
-                    long time = instantToNs(record.getTime());
+            if (firstStop > 0) {
+                String statement =
+                        String.format(
+                                QUERY_DATA_ALL,
+                                bucket.getName(),
+                                0L,
+                                firstStop,
+                                measurementFilter,
+                                fieldFilter);
+                for (long time : queryBoundaryTimes(statement + QUERY_FIRST_TIME)) {
                     minTime = Math.min(time, minTime);
                     maxTime = Math.max(time, maxTime);
-                    logger.debug("record: " + InfluxDBStorage.toString(table, record));
                 }
             }
             // 查询 last
-            tables = client.getQueryApi().query(statement + " |> last()", organization.getId());
-            for (FluxTable table : tables) {
-                for (FluxRecord record : table.getRecords()) {
-                    long time = instantToNs(record.getTime());
+            if (lastStart < Long.MAX_VALUE) {
+                String statement =
+                        String.format(
+                                QUERY_DATA_ALL,
+                                bucket.getName(),
+                                lastStart,
+                                Long.MAX_VALUE,
+                                measurementFilter,
+                                fieldFilter);
+                for (long time : queryBoundaryTimes(statement + QUERY_LAST_TIME)) {
                     minTime = Math.min(time, minTime);
                     maxTime = Math.max(time, maxTime);
-                    logger.debug("record: " + InfluxDBStorage.toString(table, record));
                 }
             }
         }
+        if (knownKeyInterval != null) {
+            minTime = Math.min(minTime, knownKeyInterval.getStartKey());
+            maxTime = Math.max(maxTime, knownKeyInterval.getEndKey() - 1);
+        }
         if (minTime == Long.MAX_VALUE) {
             minTime = 0;
         }
@@ -234,6 +334,19 @@ public class InfluxDBStorage implements IStorage {
         return new Pair<>(tsInterval, keyInterval);
     }
 
+    /** 执行 first 或 last 查询，返回每条序列的边界时间 */
+    private List<Long> queryBoundaryTimes(String statement) {
+        logger.debug("execute statement: " + statement);
+        List<Long> times = new ArrayList<>();
+        List<FluxTable> tables = client.getQueryApi().query(statement, organization.getId());
+        for (FluxTable table : tables) {
+            for (FluxRecord record : table.getRecords()) {
+                times.add(instantToNs(record.getTime()));
+            }
+        }
+        return times;
+    }
+
     @Override
     public List<Column> getColumns() {
         List<Column> timeseries = new ArrayList<>();
@@ -297,52 +410,337 @@ public class InfluxDBStorage implements IStorage {
 
     @Override
     public void release() throws PhysicalException {
+        writeExecutor.shutdown();
         client.close();
     }
 
     @Override
     public boolean isSupportProjectWithSelect() {
-        return false;
+        return true;
     }
 
     @Override
     public TaskExecuteResult executeProjectWithSelect(
             Project project, Select select, DataArea dataArea) {
-        return null;
+        return executeProjectWithFilter(project, select.getFilter(), dataArea);
+    }
+
+    @Override
+    public boolean isSupportProjectWithLimit(Select select) {
+        return select == null || LimitUtils.isKeyFilter(select.getFilter());
+    }
+
+    @Override
+    public TaskExecuteResult executeProjectWithLimit(
+            Project project, Select select, int limit, boolean ascending, DataArea dataArea) {
+        return executeProjectWithFilter(
+                project, select == null ? null : select.getFilter(), dataArea, limit, ascending);
+    }
+
+    @Override
+    public boolean isSupportProjectWithAggregate(Operator aggregate) {
+        return AggregateUtils.isSupportedAggregate(aggregate, AGGREGATE_FUNCTIONS.keySet());
+    }
+
+    /** 每个函数执行一次查询，Downsample 使用 aggregateWindow 按窗口聚合，结果按序列与窗口合并 */
+    @Override
+    public TaskExecuteResult executeProjectWithAggregate(
+            Project project, Select select, Operator aggregate, DataArea dataArea) {
+        Filter filter = select == null ? null : select.getFilter();
+        if (filter != null && !LimitUtils.isKeyFilter(filter)) {
+            // 值过滤需要在合并后的行上校验，无法在聚合前由 InfluxDB 完成
+            return new TaskExecuteResult(
+                    new NonExecutablePhysicalTaskException(
+                            "value filter can't be fully pushed down to influxdb"));
+        }
+        Downsample downsample =
+                aggregate.getType() == OperatorType.Downsample ? (Downsample) aggregate : null;
+        List<FunctionCall> functionCallList =
+                downsample != null
+                        ? downsample.getFunctionCallList()
+                        : ((SetTransform) aggregate).getFunctionCallList();
+        Set<String> functions = new LinkedHashSet<>();
+        for (FunctionCall functionCall : functionCallList) {
+            functions.add(functionCall.getFunction().getIdentifier());
+        }
+
+        String storageUnit = dataArea.getStorageUnit();
+        KeyInterval keyInterval = dataArea.getKeyInterval();
+        String pushedFilter = "";
+        if (filter != null) {
+            keyInterval = FilterTransformer.narrowKeyInterval(filter, keyInterval);
+            String predicate = FilterTransformer.toFlux(filter, null, null);
+            if (!predicate.equals("true")) {
+                pushedFilter = String.format(QUERY_FILTER, predicate);
+            }
+        }
+        long startKey = keyInterval.getStartKey();
+        long endKey = keyInterval.getEndKey();
+        boolean isEmpty = startKey >= endKey;
+        if (!isEmpty && client.getBucketsApi().findBucketByName(storageUnit) == null) {
+            logger.warn("storage engine {} doesn't exist", storageUnit);
+            isEmpty = true;
+        }
+
+        List<Field> fields = new ArrayList<>();
+        List<String> columnFunctions = new ArrayList<>();
+        // 函数与序列 -> 列的位置
+        Map<String, Integer> columnIndices = new HashMap<>();
+        // 窗口起点 -> 列的位置 -> 聚合结果，SetTransform 只有一行
+        Map<Long, Map<Integer, Object>> windows = new TreeMap<>();
+        try {
+            for (String function : isEmpty ? Collections.<String>emptySet() : functions) {
+                String statement =
+                        generateQueryStatement(
+                                        storageUnit,
+                                        project.getPatterns(),
+                                        project.getTagFilter(),
+                                        startKey,
+                                        endKey)
+                                + pushedFilter
+                                + getAggregateClause(AGGREGATE_FUNCTIONS.get(function), downsample);
+                logger.info("execute aggregate query: " + statement);
+                for (FluxTable table :
+                        client.getQueryApi().query(statement, organization.getId())) {
+                    if (table.getRecords().isEmpty()) {
+                        continue;
+                    }
+                    Map<String, String> tags = getAggregateTags(table);
+                    if (project.getTagFilter() != null
+                            && !TagFilterUtils.match(tags, project.getTagFilter())) {
+                        continue;
+                    }
+                    FluxRecord first = table.getRecords().get(0);
+                    String columnId =
+                            function
+                                    + "\0"
+                                    + first.getMeasurement()
+                                    + "\0"
+                                    + first.getField()
+                                    + "\0"
+                                    + new TreeMap<>(tags);
+                    Integer index = columnIndices.get(columnId);
+                    if (index == null) {
+                        index = fields.size();
+                        columnIndices.put(columnId, index);
+                        fields.add(
+                                new Field(
+                                        SchemaTransformer.toPath(first),
+                                        SchemaTransformer.toDataType(table),
+                                        tags));
+                        columnFunctions.add(function);
+                    }
+                    for (FluxRecord record : table.getRecords()) {
+                        long key =
+                                downsample == null
+                                        ? 0L
+                                        : AggregateUtils.getWindowKey(
+                                                instantToNs(record.getTime()), downsample);
+                        windows.computeIfAbsent(key, k -> new HashMap<>())
+                                .put(index, record.getValue());
+                    }
+                }
+            }
+
+            List<Row> rows = new ArrayList<>();
+            Header header =
+                    downsample == null ? new Header(fields) : new Header(Field.KEY, fields);
+            windows.forEach(
+                    (key, values) -> {
+                        Object[] rowValues = new Object[fields.size()];
+                        values.forEach((index, value) -> rowValues[index] = value);
+                        rows.add(
+                                downsample == null
+                                        ? new Row(header, rowValues)
+                                        : new Row(header, key, rowValues));
+                    });
+            RowStream rowStream =
+                    downsample == null
+                            ? AggregateUtils.toSetTransformResult(
+                                    new Table(header, rows),
+                                    columnFunctions,
+                                    (SetTransform) aggregate)
+                            : AggregateUtils.toDownsampleResult(
+                                    new Table(header, rows), columnFunctions, downsample);
+            return new TaskExecuteResult(rowStream);
+        } catch (RuntimeException | PhysicalException e) {
+            logger.error(e.getMessage());
+            return new TaskExecuteResult(
+                    new PhysicalTaskExecuteFailureException(
+                            "execute project with aggregate task in influxdb failure", e));
+        }
+    }
+
+    /** 对每条序列聚合，Downsample 的窗口从 bias 开始，每个窗口的长度为 precision */
+    static String getAggregateClause(String function, Downsample downsample) {
+        if (downsample == null) {
+            return String.format(QUERY_AGGREGATE, function);
+        }
+        long precision = downsample.getPrecision();
+        long offset = Math.floorMod(downsample.getKeyRange().getActualBeginKey(), precision);
+        return String.format(QUERY_AGGREGATE_WINDOW, precision, offset, function);
+    }
+
+    /** 聚合后的表中列的顺序会改变，tag 从分组列中读取 */
+    static Map<String, String> getAggregateTags(FluxTable table) {
+        Map<String, String> tags = new HashMap<>();
+        FluxRecord record = table.getRecords().get(0);
+        for (FluxColumn column : table.getGroupKey()) {
+            String key = column.getLabel();
+            if (!key.startsWith("_")) {
+                tags.put(key, (String) record.getValueByKey(key));
+            }
+        }
+        return tags;
     }
 
     @Override
     public TaskExecuteResult executeProjectDummyWithSelect(
             Project project, Select select, DataArea dataArea) {
-        return null;
+        return executeProjectDummyWithFilter(project, select.getFilter(), dataArea);
     }
 
     @Override
     public TaskExecuteResult executeProject(Project project, DataArea dataArea) {
+        return executeProjectWithFilter(project, null, dataArea);
+    }
+
+    private TaskExecuteResult executeProjectWithFilter(
+            Project project, Filter filter, DataArea dataArea) {
+        return executeProjectWithFilter(project, filter, dataArea, -1, true);
+    }
+
+    /**
+     * 合并后按 key 排序的前（后）limit 行只可能来自每条序列的前（后）limit 条记录。
+     *
+     * @param limit 所需的行数，为负数时读取所有数据。此时 filter 只含 key 条件
+     * @param ascending 为 false 时只需读取最后 limit 行
+     */
+    private TaskExecuteResult executeProjectWithFilter(
+            Project project, Filter filter, DataArea dataArea, int limit, boolean ascending) {
         String storageUnit = dataArea.getStorageUnit();
         KeyInterval keyInterval = dataArea.getKeyInterval();
+        if (filter != null) {
+            keyInterval = FilterTransformer.narrowKeyInterval(filter, keyInterval);
+        }
+        long startKey = keyInterval.getStartKey();
+        long endKey = keyInterval.getEndKey();
 
-        if (client.getBucketsApi().findBucketByName(storageUnit) == null) {
+        boolean isEmpty = startKey >= endKey;
+        if (!isEmpty && client.getBucketsApi().findBucketByName(storageUnit) == null) {
             logger.warn("storage engine {} doesn't exist", storageUnit);
+            isEmpty = true;
+        }
+        if (isEmpty) {
             return new TaskExecuteResult(
-                    new InfluxDBQueryRowStream(Collections.emptyList(), project));
+                    new InfluxDBQueryRowStream(
+                            null,
+                            start -> Collections.emptyList(),
+                            queryFetchSize,
+                            startKey,
+                            endKey,
+                            project,
+                            null));
         }
 
-        String statement =
-                generateQueryStatement(
-                        storageUnit,
-                        project.getPatterns(),
-                        project.getTagFilter(),
-                        keyInterval.getStartKey(),
-                        keyInterval.getEndKey());
-        List<FluxTable> tables = client.getQueryApi().query(statement, organization.getId());
-        InfluxDBQueryRowStream rowStream = new InfluxDBQueryRowStream(tables, project);
+        List<FluxTable> schemaTables = null;
+        String pushedFilter = "";
+        if (filter != null) {
+            Map<String, String> seriesConditions = null;
+            DataType valueType = null;
+            if (FilterTransformer.hasValueFilter(filter)) {
+                // 先获取每条序列的一条记录，得到序列的类型
+                String statement =
+                        generateQueryStatement(
+                                        storageUnit,
+                                        project.getPatterns(),
+                                        project.getTagFilter(),
+                                        startKey,
+                                        endKey)
+                                + String.format(QUERY_PAGE, 1);
+                schemaTables = client.getQueryApi().query(statement, organization.getId());
+                seriesConditions = new HashMap<>();
+                Set<DataType> dataTypes = new HashSet<>();
+                for (FluxTable table : schemaTables) {
+                    if (table.getRecords().isEmpty()) {
+                        continue;
+                    }
+                    dataTypes.add(SchemaTransformer.toDataType(table));
+                    FluxRecord record = table.getRecords().get(0);
+                    seriesConditions.merge(
+                            SchemaTransformer.toPath(record),
+                            toSeriesCondition(record),
+                            (c1, c2) -> c1 + " or " + c2);
+                }
+                valueType = dataTypes.size() == 1 ? dataTypes.iterator().next() : null;
+            }
+            String predicate = FilterTransformer.toFlux(filter, seriesConditions, valueType);
+            if (!predicate.equals("true")) {
+                pushedFilter = String.format(QUERY_FILTER, predicate);
+            }
+        }
+
+        int fetchSize = queryFetchSize;
+        if (limit >= 0 && ascending) {
+            // 第一页中的数据已经包含所需的行
+            fetchSize = Math.max(1, Math.min(fetchSize, limit));
+        } else if (limit >= 0) {
+            // 从任意位置开始读取时，每条序列的最后 limit 条记录都保持不变，因此仍可以分页
+            pushedFilter += String.format(QUERY_TAIL, limit);
+        }
+        String suffix = pushedFilter + String.format(QUERY_PAGE, fetchSize);
+        InfluxDBQueryRowStream rowStream =
+                new InfluxDBQueryRowStream(
+                        schemaTables,
+                        start ->
+                                client.getQueryApi()
+                                        .query(
+                                                generateQueryStatement(
+                                                                storageUnit,
+                                                                project.getPatterns(),
+                                                                project.getTagFilter(),
+                                                                start,
+                                                                endKey)
+                                                        + suffix,
+                                                organization.getId()),
+                        fetchSize,
+                        startKey,
+                        endKey,
+                        project,
+                        filter);
         return new TaskExecuteResult(rowStream);
     }
 
+    /** 与某条序列的记录精确匹配的 Flux 条件 */
+    private static String toSeriesCondition(FluxRecord record) {
+        Object tag = record.getValueByKey(InfluxDBSchema.TAG);
+        String tagCondition =
+                tag == null
+                        ? "not exists r." + InfluxDBSchema.TAG
+                        : "r."
+                                + InfluxDBSchema.TAG
+                                + " == "
+                                + FilterTransformer.toStringLiteral((String) tag);
+        return "(r._measurement == "
+                + FilterTransformer.toStringLiteral(record.getMeasurement())
+                + " and r._field == "
+                + FilterTransformer.toStringLiteral(record.getField())
+                + " and "
+                + tagCondition
+                + ")";
+    }
+
     @Override
     public TaskExecuteResult executeProjectDummy(Project project, DataArea dataArea) {
+        return executeProjectDummyWithFilter(project, null, dataArea);
+    }
+
+    private TaskExecuteResult executeProjectDummyWithFilter(
+            Project project, Filter filter, DataArea dataArea) {
         KeyInterval keyInterval = dataArea.getKeyInterval();
+        if (filter != null) {
+            keyInterval = FilterTransformer.narrowKeyInterval(filter, keyInterval);
+        }
         Map<String, String> bucketQueries = new HashMap<>();
         TagFilter tagFilter = project.getTagFilter();
         for (String pattern : project.getPatterns()) {
@@ -367,6 +765,18 @@ public class InfluxDBStorage implements IStorage {
 
         long startTime = keyInterval.getStartKey();
         long endTime = keyInterval.getEndKey();
+        // 历史数据的类型未知，只下推 key 条件
+        String pushedFilter = "";
+        if (filter != null) {
+            String predicate = FilterTransformer.toFlux(filter, null, null);
+            if (!predicate.equals("true")) {
+                pushedFilter = String.format(QUERY_FILTER, predicate);
+            }
+        }
+
+        if (startTime >= endTime) {
+            bucketQueries.clear();
+        }
 
         Map<String, List<FluxTable>> bucketQueryResults = new HashMap<>();
         for (String bucket : bucketQueries.keySet()) {
@@ -377,13 +787,15 @@ public class InfluxDBStorage implements IStorage {
             if (!bucketQueries.get(bucket).equals("()")) {
                 statement += String.format(" |> filter(fn: (r) => %s)", bucketQueries.get(bucket));
             }
+            statement += pushedFilter;
             logger.info("execute query: " + statement);
             bucketQueryResults.put(
                     bucket, client.getQueryApi().query(statement, organization.getId()));
         }
 
         InfluxDBHistoryQueryRowStream rowStream =
-                new InfluxDBHistoryQueryRowStream(bucketQueryResults, project.getPatterns());
+                new InfluxDBHistoryQueryRowStream(
+                        bucketQueryResults, project.getPatterns(), filter);
         return new TaskExecuteResult(rowStream);
     }
 
@@ -505,88 +917,29 @@ public class InfluxDBStorage implements IStorage {
             return new PhysicalTaskExecuteFailureException("create bucket failure!");
         }
 
-        List<InfluxDBSchema> schemas = new ArrayList<>();
+        List<String> series = new ArrayList<>();
         for (int i = 0; i < data.getPathNum(); i++) {
-            schemas.add(new InfluxDBSchema(data.getPath(i), data.getTags(i)));
+            series.add(
+                    LineProtocolUtils.encodeSeries(
+                            new InfluxDBSchema(data.getPath(i), data.getTags(i))));
         }
 
-        List<Point> points = new ArrayList<>();
+        LineBatchWriter writer = new LineBatchWriter(bucket);
         for (int i = 0; i < data.getKeySize(); i++) {
             BitmapView bitmapView = data.getBitmapView(i);
             int index = 0;
             for (int j = 0; j < data.getPathNum(); j++) {
                 if (bitmapView.get(j)) {
-                    InfluxDBSchema schema = schemas.get(j);
-                    switch (data.getDataType(j)) {
-                        case BOOLEAN:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (boolean) data.getValue(i, index))
-                                            .time(data.getKey(i), WRITE_PRECISION));
-                            break;
-                        case INTEGER:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (int) data.getValue(i, index))
-                                            .time(data.getKey(i), WRITE_PRECISION));
-                            break;
-                        case LONG:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (long) data.getValue(i, index))
-                                            .time(data.getKey(i), WRITE_PRECISION));
-                            break;
-                        case FLOAT:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (float) data.getValue(i, index))
-                                            .time(data.getKey(i), WRITE_PRECISION));
-                            break;
-                        case DOUBLE:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (double) data.getValue(i, index))
-                                            .time(data.getKey(i), WRITE_PRECISION));
-                            break;
-                        case BINARY:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    new String((byte[]) data.getValue(i, index)))
-                                            .time(data.getKey(i), WRITE_PRECISION));
-                            break;
-                    }
-
+                    writer.append(
+                            series.get(j),
+                            data.getDataType(j),
+                            data.getValue(i, index),
+                            data.getKey(i));
                     index++;
                 }
             }
         }
-        try {
-            logger.info("开始数据写入");
-            client.getWriteApiBlocking().writePoints(bucket.getId(), organization.getId(), points);
-        } catch (Exception e) {
-            logger.error("encounter error when write points to influxdb: ", e);
-        } finally {
-            logger.info("数据写入完毕！");
-        }
-        return null;
+        return writer.finish();
     }
 
     private Exception insertColumnRecords(ColumnDataView data, String storageUnit) {
@@ -614,84 +967,88 @@ public class InfluxDBStorage implements IStorage {
             return new PhysicalTaskExecuteFailureException("create bucket failure!");
         }
 
-        List<Point> points = new ArrayList<>();
+        LineBatchWriter writer = new LineBatchWriter(bucket);
         for (int i = 0; i < data.getPathNum(); i++) {
-            InfluxDBSchema schema = new InfluxDBSchema(data.getPath(i), data.getTags(i));
+            String series =
+                    LineProtocolUtils.encodeSeries(
+                            new InfluxDBSchema(data.getPath(i), data.getTags(i)));
             BitmapView bitmapView = data.getBitmapView(i);
             int index = 0;
             for (int j = 0; j < data.getKeySize(); j++) {
                 if (bitmapView.get(j)) {
-                    switch (data.getDataType(i)) {
-                        case BOOLEAN:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (boolean) data.getValue(i, index))
-                                            .time(data.getKey(j), WRITE_PRECISION));
-                            break;
-                        case INTEGER:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (int) data.getValue(i, index))
-                                            .time(data.getKey(j), WRITE_PRECISION));
-                            break;
-                        case LONG:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (long) data.getValue(i, index))
-                                            .time(data.getKey(j), WRITE_PRECISION));
-                            break;
-                        case FLOAT:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (float) data.getValue(i, index))
-                                            .time(data.getKey(j), WRITE_PRECISION));
-                            break;
-                        case DOUBLE:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    (Number) (double) data.getValue(i, index))
-                                            .time(data.getKey(j), WRITE_PRECISION));
-                            break;
-                        case BINARY:
-                            points.add(
-                                    Point.measurement(schema.getMeasurement())
-                                            .addTags(schema.getTags())
-                                            .addField(
-                                                    schema.getField(),
-                                                    new String((byte[]) data.getValue(i, index)))
-                                            .time(data.getKey(j), WRITE_PRECISION));
-                            break;
-                    }
+                    writer.append(
+                            series, data.getDataType(i), data.getValue(i, index), data.getKey(j));
                     index++;
                 }
             }
         }
+        return writer.finish();
+    }
 
-        try {
-            logger.info("开始数据写入");
-            client.getWriteApiBlocking().writePoints(bucket.getId(), organization.getId(), points);
-        } catch (Exception e) {
-            logger.error("encounter error when write points to influxdb: ", e);
-        } finally {
-            logger.info("数据写入完毕！");
+    /** 将行协议数据按 write_batch_size 分批，并由 writeExecutor 并行写入 */
+    private class LineBatchWriter {
+
+        private final Bucket bucket;
+
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        private StringBuilder builder = new StringBuilder();
+
+        private int lineCount = 0;
+
+        private LineBatchWriter(Bucket bucket) {
+            this.bucket = bucket;
+        }
+
+        private void append(String series, DataType dataType, Object value, long key) {
+            if (!LineProtocolUtils.appendLine(builder, series, dataType, value, key)) {
+                logger.warn(
+                        "skip value {} of {} which can't be written to influxdb",
+                        value,
+                        series);
+                return;
+            }
+            lineCount++;
+            if (lineCount >= writeBatchSize) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            if (lineCount == 0) {
+                return;
+            }
+            String records = builder.toString();
+            futures.add(
+                    writeExecutor.submit(
+                            () ->
+                                    client.getWriteApiBlocking()
+                                            .writeRecord(
+                                                    bucket.getId(),
+                                                    organization.getId(),
+                                                    WRITE_PRECISION,
+                                                    records)));
+            builder = new StringBuilder();
+            lineCount = 0;
         }
 
-        return null;
+        /** 等待所有批次写入完成，返回遇到的第一个异常 */
+        private Exception finish() {
+            submit();
+            Exception exception = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exception = exception == null ? e : exception;
+                } catch (ExecutionException e) {
+                    logger.error("encounter error when write points to influxdb: ", e.getCause());
+                    exception = exception == null ? e : exception;
+                }
+            }
+            return exception;
+        }
     }
 
     @Override
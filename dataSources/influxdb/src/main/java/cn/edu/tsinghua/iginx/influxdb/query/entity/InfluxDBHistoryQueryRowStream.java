@@ -18,6 +18,7 @@
  */
 package cn.edu.tsinghua.iginx.influxdb.query.entity;
 
+import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils.validate;
 import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
@@ -25,6 +26,7 @@ import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.influxdb.tools.SchemaTransformer;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.influxdb.query.FluxRecord;
@@ -45,8 +47,21 @@ public class InfluxDBHistoryQueryRowStream implements RowStream {
 
     private int size;
 
+    private final Filter filter;
+
+    private Row cachedRow;
+
+    private boolean hasCachedRow;
+
     public InfluxDBHistoryQueryRowStream(
             Map<String, List<FluxTable>> bucketQueryResults, List<String> patterns) {
+        this(bucketQueryResults, patterns, null);
+    }
+
+    /** @param filter 需要在内存中校验的过滤条件，可以为 null */
+    public InfluxDBHistoryQueryRowStream(
+            Map<String, List<FluxTable>> bucketQueryResults, List<String> patterns, Filter filter) {
+        this.filter = filter;
         this.bucketQueryResults = new ArrayList<>(bucketQueryResults.entrySet());
         this.indexList = new ArrayList<>();
         List<Field> fields = new ArrayList<>();
@@ -76,11 +91,37 @@ public class InfluxDBHistoryQueryRowStream implements RowStream {
 
     @Override
     public boolean hasNext() throws PhysicalException {
-        return this.hasMoreRecords != 0;
+        if (filter == null) {
+            return this.hasMoreRecords != 0;
+        }
+        if (!hasCachedRow) {
+            cacheOneRow();
+        }
+        return cachedRow != null;
     }
 
     @Override
     public Row next() throws PhysicalException {
+        if (filter == null) {
+            return fetchOneRow();
+        }
+        if (!hasCachedRow) {
+            cacheOneRow();
+        }
+        Row row = cachedRow;
+        hasCachedRow = false;
+        cachedRow = null;
+        return row;
+    }
+
+    private void cacheOneRow() throws PhysicalException {
+        do {
+            cachedRow = fetchOneRow();
+        } while (cachedRow != null && !validate(filter, cachedRow));
+        hasCachedRow = true;
+    }
+
+    private Row fetchOneRow() {
         long timestamp = Long.MAX_VALUE;
         for (int i = 0; i < this.bucketQueryResults.size(); i++) {
             int[] indices = indexList.get(i);
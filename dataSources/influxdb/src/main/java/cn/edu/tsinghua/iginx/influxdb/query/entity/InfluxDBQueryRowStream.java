@@ -18,89 +18,134 @@
  */
 package cn.edu.tsinghua.iginx.influxdb.query.entity;
 
-import static cn.edu.tsinghua.iginx.influxdb.tools.DataTypeTransformer.fromInfluxDB;
+import static cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils.validate;
 import static cn.edu.tsinghua.iginx.influxdb.tools.TimeUtils.instantToNs;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.exception.RowFetchException;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.influxdb.tools.SchemaTransformer;
 import cn.edu.tsinghua.iginx.influxdb.tools.TagFilterUtils;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.function.LongFunction;
 
+/**
+ * 分页读取查询结果：每页中每条序列至多包含 fetchSize 条记录，因此内存占用与查询的数据总量无关。
+ *
+ * <p>每页中 key 小于所有取满的序列最后一条记录的数据是完整的，这部分数据按 key 合并输出后，再从该位置开始读取下一页。
+ */
 public class InfluxDBQueryRowStream implements RowStream {
 
     private final Header header;
 
-    private final List<FluxTable> tables;
+    private final LongFunction<List<FluxTable>> pageFetcher;
+
+    private final int fetchSize;
+
+    private final long endKey;
+
+    private final Filter filter;
+
+    private final Map<String, Integer> seriesIndices = new HashMap<>();
+
+    private final List<List<FluxRecord>> pageRecords = new ArrayList<>();
 
     private final int[] indices;
 
-    private int hasMoreRecords = 0;
+    private long horizon; // 当前页中 key 小于 horizon 的数据是完整的
+
+    private boolean isLastPage;
 
-    private List<Boolean> filterMap;
+    private Row cachedRow;
 
-    private final boolean filterByTags;
+    private boolean hasCachedRow;
 
-    public InfluxDBQueryRowStream(List<FluxTable> tables, Project project) {
-        List<Boolean> filterList = new ArrayList<>();
-        this.filterByTags = project.getTagFilter() != null;
-        this.tables =
-                tables.stream()
-                        .filter(e -> e.getRecords().size() > 0)
-                        .collect(Collectors.toList()); // 只保留还有数据的二维表
+    /**
+     * @param schemaTables 用于构造 header 的表，为 null 时使用第一页的结果
+     * @param pageFetcher 返回 key 从给定起点开始、每条序列至多 fetchSize 条记录的查询结果
+     * @param filter 需要在内存中校验的过滤条件，可以为 null
+     */
+    public InfluxDBQueryRowStream(
+            List<FluxTable> schemaTables,
+            LongFunction<List<FluxTable>> pageFetcher,
+            int fetchSize,
+            long startKey,
+            long endKey,
+            Project project,
+            Filter filter) {
+        this.pageFetcher = pageFetcher;
+        this.fetchSize = fetchSize;
+        this.endKey = endKey;
+        this.filter = filter;
 
+        List<FluxTable> firstPage = pageFetcher.apply(startKey);
+        if (schemaTables == null) {
+            schemaTables = firstPage;
+        }
         List<Field> fields = new ArrayList<>();
-        for (FluxTable table : this.tables) {
-            Map<String, String> tags = new HashMap<>();
-            String path;
-            if (table.getRecords().get(0).getValueByKey("t") == null) {
-                path =
-                        table.getRecords().get(0).getMeasurement()
-                                + "."
-                                + table.getRecords().get(0).getField();
-            } else {
-                path =
-                        table.getRecords().get(0).getMeasurement()
-                                + "."
-                                + table.getRecords().get(0).getValueByKey(InfluxDBSchema.TAG)
-                                + "."
-                                + table.getRecords().get(0).getField();
+        for (FluxTable table : schemaTables) {
+            if (table.getRecords().isEmpty()) {
+                continue;
             }
-            for (int i = 8; i < table.getColumns().size(); i++) {
-                String key = table.getColumns().get(i).getLabel();
-                String val = (String) table.getRecords().get(0).getValueByKey(key);
-                tags.put(key, val);
+            Map<String, String> tags = SchemaTransformer.toTags(table);
+            if (project.getTagFilter() != null
+                    && !TagFilterUtils.match(tags, project.getTagFilter())) {
+                continue;
             }
-            if (this.filterByTags && !TagFilterUtils.match(tags, project.getTagFilter())) {
-                filterList.add(true);
+            String path = SchemaTransformer.toPath(table.getRecords().get(0));
+            String seriesId = toSeriesId(table);
+            if (seriesIndices.containsKey(seriesId)) {
                 continue;
-            } else {
-                this.hasMoreRecords++;
-                filterList.add(false);
             }
-            DataType dataType =
-                    fromInfluxDB(
-                            table.getColumns()
-                                    .stream()
-                                    .filter(x -> x.getLabel().equals("_value"))
-                                    .collect(Collectors.toList())
-                                    .get(0)
-                                    .getDataType());
-            fields.add(new Field(path, dataType, tags));
+            seriesIndices.put(seriesId, fields.size());
+            fields.add(new Field(path, SchemaTransformer.toDataType(table), tags));
         }
-        filterMap = filterList;
         this.header = new Header(Field.KEY, fields);
-        this.indices = new int[this.tables.size()];
+        this.indices = new int[fields.size()];
+        loadPage(firstPage);
+    }
+
+    private static String toSeriesId(FluxTable table) {
+        FluxRecord record = table.getRecords().get(0);
+        return record.getMeasurement()
+                + "\0"
+                + record.getField()
+                + "\0"
+                + new TreeMap<>(SchemaTransformer.toTags(table));
+    }
+
+    private void loadPage(List<FluxTable> tables) {
+        horizon = endKey;
+        isLastPage = true;
+        pageRecords.clear();
+        for (int i = 0; i < header.getFieldSize(); i++) {
+            pageRecords.add(Collections.emptyList());
+        }
+        Arrays.fill(indices, 0);
+        for (FluxTable table : tables) {
+            List<FluxRecord> records = table.getRecords();
+            if (records.isEmpty()) {
+                continue;
+            }
+            if (records.size() >= fetchSize) {
+                // 该序列可能还有更多数据，只有 key 不超过其最后一条记录的数据是完整的
+                long lastKey = instantToNs(records.get(records.size() - 1).getTime());
+                horizon = Math.min(horizon, lastKey + 1);
+                isLastPage = false;
+            }
+            Integer index = seriesIndices.get(toSeriesId(table));
+            if (index != null) {
+                pageRecords.set(index, records);
+            }
+        }
     }
 
     @Override
@@ -115,51 +160,72 @@ public class InfluxDBQueryRowStream implements RowStream {
 
     @Override
     public boolean hasNext() throws PhysicalException {
-        return this.hasMoreRecords != 0;
+        if (!hasCachedRow) {
+            cacheOneRow();
+        }
+        return cachedRow != null;
     }
 
     @Override
     public Row next() throws PhysicalException {
-        long timestamp = Long.MAX_VALUE;
-        for (int i = 0; i < this.tables.size(); i++) {
-            if (filterMap.get(i)) {
-                continue;
-            }
-            int index = indices[i];
-            FluxTable table = this.tables.get(i);
-            List<FluxRecord> records = table.getRecords();
-            if (index == records.size()) { // 数据已经消费完毕了
-                continue;
-            }
-            FluxRecord record = records.get(index);
-            timestamp = Math.min(instantToNs(record.getTime()), timestamp);
+        if (!hasCachedRow) {
+            cacheOneRow();
         }
-        if (timestamp == Long.MAX_VALUE) {
-            return null;
+        Row row = cachedRow;
+        hasCachedRow = false;
+        cachedRow = null;
+        return row;
+    }
+
+    private void cacheOneRow() throws PhysicalException {
+        try {
+            do {
+                cachedRow = fetchOneRow();
+            } while (cachedRow != null && filter != null && !validate(filter, cachedRow));
+        } catch (RuntimeException e) {
+            throw new RowFetchException(e);
         }
-        Object[] values = new Object[this.tables.size()];
-        for (int i = 0; i < this.tables.size(); i++) {
-            if (filterMap.get(i)) {
-                continue;
+        hasCachedRow = true;
+    }
+
+    private Row fetchOneRow() {
+        while (true) {
+            long timestamp = Long.MAX_VALUE;
+            for (int i = 0; i < pageRecords.size(); i++) {
+                List<FluxRecord> records = pageRecords.get(i);
+                if (indices[i] == records.size()) { // 数据已经消费完毕了
+                    continue;
+                }
+                long key = instantToNs(records.get(indices[i]).getTime());
+                if (key < horizon) {
+                    timestamp = Math.min(key, timestamp);
+                }
             }
-            int index = indices[i];
-            FluxTable table = this.tables.get(i);
-            List<FluxRecord> records = table.getRecords();
-            if (index == records.size()) { // 数据已经消费完毕了
+            if (timestamp != Long.MAX_VALUE) {
+                return buildRow(timestamp);
+            }
+            if (isLastPage) {
+                return null;
+            }
+            loadPage(pageFetcher.apply(horizon));
+        }
+    }
+
+    private Row buildRow(long timestamp) {
+        Object[] values = new Object[pageRecords.size()];
+        for (int i = 0; i < pageRecords.size(); i++) {
+            List<FluxRecord> records = pageRecords.get(i);
+            if (indices[i] == records.size()) {
                 continue;
             }
-            FluxRecord record = records.get(index);
+            FluxRecord record = records.get(indices[i]);
             if (instantToNs(record.getTime()) == timestamp) {
-                DataType dataType = header.getField(i).getType();
                 Object value = record.getValue();
-                if (dataType == DataType.BINARY) {
+                if (header.getField(i).getType() == DataType.BINARY) {
                     value = ((String) value).getBytes();
                 }
                 values[i] = value;
                 indices[i]++;
-                if (indices[i] == records.size()) {
-                    hasMoreRecords--;
-                }
             }
         }
         return new Row(header, timestamp, values);
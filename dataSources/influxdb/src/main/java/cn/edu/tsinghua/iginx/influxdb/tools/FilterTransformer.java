@@ -0,0 +1,203 @@
+package cn.edu.tsinghua.iginx.influxdb.tools;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
+import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** 将 IGinX 的过滤条件翻译为 Flux filter() 中的谓词 */
+public class FilterTransformer {
+
+    private static final String TRUE = "true";
+
+    /**
+     * 将 filter 翻译为作用在单条记录 r 上的 Flux 谓词。无法翻译的部分放宽为 true，因此结果是原条件的必要条件，调用方仍需用原条件校验合并后的行。
+     *
+     * <p>Flux 按表的 schema 对整个谓词做类型检查，因此只有在所有序列的类型与常量一致时才下推值过滤条件。
+     *
+     * @param seriesConditions 每条路径对应的 Flux 序列匹配条件，为 null 时只下推 key 条件
+     * @param valueType 所有序列共同的数据类型，为 null 表示类型不一致
+     */
+    public static String toFlux(
+            Filter filter, Map<String, String> seriesConditions, DataType valueType) {
+        switch (filter.getType()) {
+            case And:
+                List<String> andParts = new ArrayList<>();
+                for (Filter child : ((AndFilter) filter).getChildren()) {
+                    String part = toFlux(child, seriesConditions, valueType);
+                    if (!part.equals(TRUE)) {
+                        andParts.add("(" + part + ")");
+                    }
+                }
+                return andParts.isEmpty() ? TRUE : String.join(" and ", andParts);
+            case Or:
+                List<String> orParts = new ArrayList<>();
+                for (Filter child : ((OrFilter) filter).getChildren()) {
+                    String part = toFlux(child, seriesConditions, valueType);
+                    if (part.equals(TRUE)) {
+                        return TRUE;
+                    }
+                    orParts.add("(" + part + ")");
+                }
+                return orParts.isEmpty() ? "false" : String.join(" or ", orParts);
+            case Bool:
+                return ((BoolFilter) filter).isTrue() ? TRUE : "false";
+            case Key:
+                KeyFilter keyFilter = (KeyFilter) filter;
+                return String.format(
+                        "r._time %s time(v: %d)",
+                        Op.op2Str(keyFilter.getOp()),
+                        keyFilter.getValue());
+            case Value:
+                return toFlux((ValueFilter) filter, seriesConditions, valueType);
+            case Not: // Flux 中 not 对缺失值的处理与 IGinX 不同
+            case Path:
+            default:
+                return TRUE;
+        }
+    }
+
+    private static String toFlux(
+            ValueFilter filter, Map<String, String> seriesConditions, DataType valueType) {
+        if (seriesConditions == null || valueType == null) {
+            return TRUE;
+        }
+        String condition = seriesConditions.get(filter.getPath());
+        if (condition == null) {
+            return TRUE;
+        }
+        String predicate = toValuePredicate(filter.getValue(), filter.getOp(), valueType);
+        if (predicate == null) {
+            return TRUE;
+        }
+        // 只约束该路径上的记录，其他序列的记录不受影响
+        return "(not (" + condition + ")) or " + predicate;
+    }
+
+    /** 返回与 IGinX 比较语义一致的 Flux 谓词，无法保证一致时返回 null */
+    private static String toValuePredicate(Value value, Op op, DataType valueType) {
+        if (value == null || value.isNull() || op == Op.LIKE) {
+            return null;
+        }
+        boolean isEquality = op == Op.E || op == Op.NE;
+        String op2Str = Op.op2Str(op);
+        switch (valueType) {
+            case INTEGER:
+            case LONG:
+                switch (value.getDataType()) {
+                    case INTEGER:
+                    case LONG:
+                        return "r._value " + op2Str + " " + value.getValue();
+                    case FLOAT:
+                    case DOUBLE:
+                        String literal = toFloatLiteral(value);
+                        return literal == null
+                                ? null
+                                : "float(v: r._value) " + op2Str + " " + literal;
+                    default:
+                        return null;
+                }
+            case FLOAT:
+            case DOUBLE:
+                switch (value.getDataType()) {
+                    case INTEGER:
+                    case LONG:
+                    case FLOAT:
+                    case DOUBLE:
+                        String literal = toFloatLiteral(value);
+                        return literal == null ? null : "r._value " + op2Str + " " + literal;
+                    default:
+                        return null;
+                }
+            case BOOLEAN:
+                if (!isEquality || value.getDataType() != DataType.BOOLEAN) {
+                    return null;
+                }
+                return "r._value " + op2Str + " " + value.getBoolV();
+            case BINARY:
+                // 字符串只下推相等比较
+                if (!isEquality || value.getDataType() != DataType.BINARY) {
+                    return null;
+                }
+                return "r._value " + op2Str + " " + toStringLiteral(value.getBinaryVAsString());
+            default:
+                return null;
+        }
+    }
+
+    private static String toFloatLiteral(Value value) {
+        double v = ((Number) value.getValue()).doubleValue();
+        if (!Double.isFinite(v)) {
+            return null;
+        }
+        String literal = BigDecimal.valueOf(v).toPlainString();
+        return literal.contains(".") ? literal : literal + ".0";
+    }
+
+    public static String toStringLiteral(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /** 判断 filter 中是否有值过滤条件，只有此时才需要先获取序列的类型 */
+    public static boolean hasValueFilter(Filter filter) {
+        switch (filter.getType()) {
+            case And:
+                return ((AndFilter) filter)
+                        .getChildren()
+                        .stream()
+                        .anyMatch(FilterTransformer::hasValueFilter);
+            case Or:
+                return ((OrFilter) filter)
+                        .getChildren()
+                        .stream()
+                        .anyMatch(FilterTransformer::hasValueFilter);
+            case Value:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** 用 filter 顶层合取式中的 key 条件收紧查询区间 */
+    public static KeyInterval narrowKeyInterval(Filter filter, KeyInterval keyInterval) {
+        long start = keyInterval.getStartKey();
+        long end = keyInterval.getEndKey();
+        List<Filter> conjuncts = new ArrayList<>();
+        if (filter.getType() == FilterType.And) {
+            conjuncts.addAll(((AndFilter) filter).getChildren());
+        } else {
+            conjuncts.add(filter);
+        }
+        for (Filter conjunct : conjuncts) {
+            if (conjunct.getType() != FilterType.Key) {
+                continue;
+            }
+            long key = ((KeyFilter) conjunct).getValue();
+            switch (((KeyFilter) conjunct).getOp()) {
+                case GE:
+                    start = Math.max(start, key);
+                    break;
+                case G:
+                    start = key == Long.MAX_VALUE ? end : Math.max(start, key + 1);
+                    break;
+                case LE:
+                    end = key == Long.MAX_VALUE ? end : Math.min(end, key + 1);
+                    break;
+                case L:
+                    end = Math.min(end, key);
+                    break;
+                case E:
+                    start = Math.max(start, key);
+                    end = key == Long.MAX_VALUE ? end : Math.min(end, key + 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new KeyInterval(start, Math.max(start, end));
+    }
+}
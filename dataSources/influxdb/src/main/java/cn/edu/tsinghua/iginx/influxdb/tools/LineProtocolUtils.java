@@ -0,0 +1,86 @@
+package cn.edu.tsinghua.iginx.influxdb.tools;
+
+import cn.edu.tsinghua.iginx.influxdb.query.entity.InfluxDBSchema;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** 直接编码 InfluxDB 行协议，避免为每个数据点构造 Point 对象 */
+public class LineProtocolUtils {
+
+    /** 序列的行协议前缀，即 measurement 与按 key 排序的 tag，同一序列的所有数据点共用 */
+    public static String encodeSeries(InfluxDBSchema schema) {
+        StringBuilder builder = new StringBuilder();
+        escape(builder, schema.getMeasurement(), false);
+        for (Map.Entry<String, String> tag : new TreeMap<>(schema.getTags()).entrySet()) {
+            if (tag.getKey().isEmpty() || tag.getValue() == null || tag.getValue().isEmpty()) {
+                continue;
+            }
+            builder.append(',');
+            escape(builder, tag.getKey(), true);
+            builder.append('=');
+            escape(builder, tag.getValue(), true);
+        }
+        builder.append(' ');
+        escape(builder, schema.getField(), true);
+        builder.append('=');
+        return builder.toString();
+    }
+
+    /**
+     * 追加一行数据，值无法用行协议表示（如 NaN）时跳过
+     *
+     * @param series encodeSeries 的结果
+     * @return 是否追加了数据
+     */
+    public static boolean appendLine(
+            StringBuilder builder, String series, DataType dataType, Object value, long key) {
+        int length = builder.length();
+        if (length != 0) {
+            builder.append('\n');
+        }
+        builder.append(series);
+        switch (dataType) {
+            case BOOLEAN:
+                builder.append((boolean) value);
+                break;
+            case INTEGER:
+            case LONG:
+                builder.append(((Number) value).longValue()).append('i');
+                break;
+            case FLOAT:
+            case DOUBLE:
+                double doubleV = ((Number) value).doubleValue();
+                if (!Double.isFinite(doubleV)) {
+                    builder.setLength(length);
+                    return false;
+                }
+                builder.append(value);
+                break;
+            case BINARY:
+                builder.append('"')
+                        .append(
+                                new String((byte[]) value, StandardCharsets.UTF_8)
+                                        .replace("\\", "\\\\")
+                                        .replace("\"", "\\\""))
+                        .append('"');
+                break;
+            default:
+                builder.setLength(length);
+                return false;
+        }
+        builder.append(' ').append(key);
+        return true;
+    }
+
+    private static void escape(StringBuilder builder, String s, boolean escapeEquals) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == ' ' || (escapeEquals && c == '=')) {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+    }
+}
@@ -15,6 +15,39 @@ import java.util.stream.Collectors;
 
 public class SchemaTransformer {
 
+    /** 非历史数据中序列的路径，带有 tag t 的序列会将其值作为路径的一部分 */
+    public static String toPath(FluxRecord record) {
+        if (record.getValueByKey(InfluxDBSchema.TAG) == null) {
+            return record.getMeasurement() + "." + record.getField();
+        }
+        return record.getMeasurement()
+                + "."
+                + record.getValueByKey(InfluxDBSchema.TAG)
+                + "."
+                + record.getField();
+    }
+
+    /** 第 8 列之后都是 tag 列 */
+    public static Map<String, String> toTags(FluxTable table) {
+        Map<String, String> tags = new HashMap<>();
+        FluxRecord record = table.getRecords().get(0);
+        for (int i = 8; i < table.getColumns().size(); i++) {
+            String key = table.getColumns().get(i).getLabel();
+            tags.put(key, (String) record.getValueByKey(key));
+        }
+        return tags;
+    }
+
+    public static DataType toDataType(FluxTable table) {
+        return fromInfluxDB(
+                table.getColumns()
+                        .stream()
+                        .filter(x -> x.getLabel().equals("_value"))
+                        .collect(Collectors.toList())
+                        .get(0)
+                        .getDataType());
+    }
+
     public static Field toField(String bucket, FluxTable table) {
         FluxRecord record = table.getRecords().get(0);
         String measurement = record.getMeasurement();
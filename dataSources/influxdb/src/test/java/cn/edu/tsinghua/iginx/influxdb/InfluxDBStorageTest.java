@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.influxdb;
+
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import com.influxdb.query.FluxColumn;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class InfluxDBStorageTest {
+
+    private static class EmptySource implements Source {
+
+        public static final EmptySource EMPTY_SOURCE = new EmptySource();
+
+        @Override
+        public SourceType getType() {
+            return null;
+        }
+
+        @Override
+        public Source copy() {
+            return null;
+        }
+    }
+
+    private static Downsample createDownsample(long precision, long startKey) {
+        return new Downsample(
+                EmptySource.EMPTY_SOURCE,
+                precision,
+                precision,
+                new FunctionCall(
+                        Sum.getInstance(), new FunctionParams(Collections.singletonList("a.*"))),
+                new KeyRange(startKey, startKey + 100 * precision));
+    }
+
+    @Test
+    public void testAggregateClause() {
+        assertEquals(" |> count()", InfluxDBStorage.getAggregateClause("count", null));
+        assertEquals(
+                " |> aggregateWindow(every: 10ns, offset: 3ns, fn: sum,"
+                        + " timeSrc: \"_start\", createEmpty: false)",
+                InfluxDBStorage.getAggregateClause("sum", createDownsample(10, 23)));
+        // 窗口的起点与 bias 对齐，bias 为负数时 offset 仍在 [0, precision) 中
+        assertEquals(
+                " |> aggregateWindow(every: 10ns, offset: 7ns, fn: max,"
+                        + " timeSrc: \"_start\", createEmpty: false)",
+                InfluxDBStorage.getAggregateClause("max", createDownsample(10, -13)));
+    }
+
+    @Test
+    public void testAggregateTags() {
+        // 聚合后的表中 tag 列不一定在第 8 列之后
+        FluxTable table = new FluxTable();
+        String[] labels = {"result", "table", "_start", "_stop", "_field", "_measurement", "t"};
+        for (String label : labels) {
+            FluxColumn column = new FluxColumn();
+            column.setLabel(label);
+            column.setGroup(!label.equals("result") && !label.equals("table"));
+            table.getColumns().add(column);
+        }
+        FluxColumn value = new FluxColumn();
+        value.setLabel("_value");
+        table.getColumns().add(value);
+
+        FluxRecord record = new FluxRecord(0);
+        record.getValues().put("_field", "b");
+        record.getValues().put("_measurement", "a");
+        record.getValues().put("t", "v");
+        record.getValues().put("_value", 3L);
+        table.getRecords().add(record);
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("t", "v");
+        assertEquals(expected, InfluxDBStorage.getAggregateTags(table));
+    }
+}
@@ -27,6 +27,8 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationExce
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.AggregateUtils;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.ClearEmptyRowStreamWrapper;
@@ -35,15 +37,23 @@ import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionType;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Operator;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.SetTransform;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.iotdb.query.entity.IoTDBQueryRowStream;
 import cn.edu.tsinghua.iginx.iotdb.tools.DataViewWrapper;
 import cn.edu.tsinghua.iginx.iotdb.tools.FilterTransformer;
@@ -56,6 +66,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -65,6 +76,7 @@ import org.apache.iotdb.rpc.StatementExecutionException;
 import org.apache.iotdb.session.Session;
 import org.apache.iotdb.session.pool.SessionDataSetWrapper;
 import org.apache.iotdb.session.pool.SessionPool;
+import org.apache.iotdb.tsfile.read.common.Field;
 import org.apache.iotdb.tsfile.read.common.RowRecord;
 import org.apache.iotdb.tsfile.utils.Binary;
 import org.apache.iotdb.tsfile.write.record.Tablet;
@@ -96,6 +108,15 @@ public class IoTDBStorage implements IStorage {
 
     private static final String QUERY_HISTORY_DATA = "SELECT %s FROM root WHERE %s";
 
+    /** IginX 聚合函数与 IoTDB 中结果类型一致的聚合函数 */
+    private static final Map<String, String> AGGREGATE_FUNCTIONS = new HashMap<>();
+
+    static {
+        AGGREGATE_FUNCTIONS.put(Count.COUNT, "count");
+        AGGREGATE_FUNCTIONS.put(Max.MAX, "max_value");
+        AGGREGATE_FUNCTIONS.put(Min.MIN, "min_value");
+    }
+
     private static final String DELETE_STORAGE_GROUP_CLAUSE =
             "DELETE STORAGE GROUP " + PREFIX + "%s";
 
@@ -103,6 +124,11 @@ public class IoTDBStorage implements IStorage {
 
     private static final String SHOW_TIMESERIES = "SHOW TIMESERIES";
 
+    // 借助 IoTDB 的元数据统计信息获取 key 的边界，避免全表扫描
+    private static final String QUERY_MIN_TIME = "SELECT min_time(%s) FROM root";
+
+    private static final String QUERY_MAX_TIME = "SELECT max_time(%s) FROM root";
+
     private static final String DOES_NOT_EXISTED = "does not exist";
 
     private static final String HAS_NOT_EXECUTED_QUERY = "Has not executed query";
@@ -154,6 +180,12 @@ public class IoTDBStorage implements IStorage {
     @Override
     public Pair<ColumnsRange, KeyInterval> getBoundaryOfStorage(String dataPrefix)
             throws PhysicalException {
+        return getBoundaryOfStorage(dataPrefix, null);
+    }
+
+    @Override
+    public Pair<ColumnsRange, KeyInterval> getBoundaryOfStorage(
+            String dataPrefix, KeyInterval knownKeyInterval) throws PhysicalException {
         SessionDataSetWrapper dataSet;
         RowRecord record;
 
@@ -188,43 +220,63 @@ public class IoTDBStorage implements IStorage {
             throw new PhysicalTaskExecuteFailureException("get time series failure: ", e);
         }
 
-        // 获取 key 范围
-        long minTime = 0, maxTime = Long.MAX_VALUE;
+        // 获取 key 范围，已知边界时只需探测边界之外的数据
+        String path = dataPrefix == null || dataPrefix.isEmpty() ? "*" : dataPrefix;
+        String minStatement = String.format(QUERY_MIN_TIME, path);
+        String maxStatement = String.format(QUERY_MAX_TIME, path);
+        if (knownKeyInterval != null) {
+            minStatement += " WHERE time < " + knownKeyInterval.getStartKey();
+            maxStatement += " WHERE time >= " + knownKeyInterval.getEndKey();
+        }
+        long minTime, maxTime;
         try {
-            // 获取 key 的最小值
-            if (dataPrefix == null || dataPrefix.isEmpty()) {
-                dataSet = sessionPool.executeQueryStatement("select * from root");
-            } else {
-                dataSet = sessionPool.executeQueryStatement("select " + dataPrefix + " from root");
-            }
-            if (dataSet.hasNext()) {
-                record = dataSet.next();
-                minTime = record.getTimestamp();
-            }
-            dataSet.close();
-
-            // 获取 key 的最大值
-            if (dataPrefix == null || dataPrefix.isEmpty())
-                dataSet =
-                        sessionPool.executeQueryStatement("select * from root order by time desc");
-            else {
-                dataSet =
-                        sessionPool.executeQueryStatement(
-                                "select " + dataPrefix + " from root order by time desc");
-            }
-            if (dataSet.hasNext()) {
-                record = dataSet.next();
-                maxTime = record.getTimestamp();
-            }
-            dataSet.close();
+            minTime = queryBoundaryTime(minStatement, true);
+            maxTime = queryBoundaryTime(maxStatement, false);
         } catch (IoTDBConnectionException | StatementExecutionException e) {
             throw new PhysicalTaskExecuteFailureException("get time series failure: ", e);
         }
+        if (knownKeyInterval != null) {
+            if (minTime == Long.MAX_VALUE) {
+                minTime = knownKeyInterval.getStartKey();
+            }
+            if (maxTime == Long.MIN_VALUE) {
+                maxTime = knownKeyInterval.getEndKey() - 1;
+            }
+        } else if (minTime == Long.MAX_VALUE) { // 没有数据
+            minTime = 0;
+            maxTime = Long.MAX_VALUE - 1;
+        }
         KeyInterval keyInterval = new KeyInterval(minTime, maxTime + 1);
 
         return new Pair<>(tsInterval, keyInterval);
     }
 
+    /**
+     * 执行 min_time 或 max_time 聚合查询，返回各序列结果中的最小值或最大值，没有数据时返回 Long.MAX_VALUE 或
+     * Long.MIN_VALUE
+     */
+    private long queryBoundaryTime(String statement, boolean isMin)
+            throws IoTDBConnectionException, StatementExecutionException {
+        long boundary = isMin ? Long.MAX_VALUE : Long.MIN_VALUE;
+        SessionDataSetWrapper dataSet = sessionPool.executeQueryStatement(statement);
+        try {
+            while (dataSet.hasNext()) {
+                RowRecord record = dataSet.next();
+                for (Field field : record.getFields()) {
+                    // 该序列在范围内没有数据
+                    if (field == null || field.getDataType() == null) {
+                        continue;
+                    }
+                    long time = field.getLongV();
+                    boundary = isMin ? Math.min(boundary, time) : Math.max(boundary, time);
+                }
+            }
+        } finally {
+            dataSet.close();
+        }
+        return boundary;
+    }
+
     @Override
     public void release() throws PhysicalException {
         sessionPool.close();
@@ -280,14 +332,16 @@ public class IoTDBStorage implements IStorage {
 
     @Override
     public TaskExecuteResult executeProject(Project project, DataArea dataArea) {
-        String storageUnit = dataArea.getStorageUnit();
+        return executeProjectWithFilter(
+                project, getKeyIntervalFilter(dataArea), dataArea.getStorageUnit());
+    }
+
+    private Filter getKeyIntervalFilter(DataArea dataArea) {
         KeyInterval keyInterval = dataArea.getKeyInterval();
-        Filter filter =
-                new AndFilter(
-                        Arrays.asList(
-                                new KeyFilter(Op.GE, keyInterval.getStartKey()),
-                                new KeyFilter(Op.L, keyInterval.getEndKey())));
-        return executeProjectWithFilter(project, filter, storageUnit);
+        return new AndFilter(
+                Arrays.asList(
+                        new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                        new KeyFilter(Op.L, keyInterval.getEndKey())));
     }
 
     @Override
@@ -303,8 +357,39 @@ public class IoTDBStorage implements IStorage {
         return executeProjectWithFilter(project, filter, storageUnit);
     }
 
+    @Override
+    public boolean isSupportProjectWithLimit(Select select) {
+        return true;
+    }
+
+    @Override
+    public TaskExecuteResult executeProjectWithLimit(
+            Project project, Select select, int limit, boolean ascending, DataArea dataArea) {
+        Filter filter = select != null ? select.getFilter() : getKeyIntervalFilter(dataArea);
+        // 倒序取出最后 limit 行后再翻转为按 key 升序
+        String clause = (ascending ? "" : " ORDER BY TIME DESC") + " LIMIT " + limit;
+        TaskExecuteResult result =
+                executeProjectWithFilter(project, filter, dataArea.getStorageUnit(), clause);
+        if (ascending || result.getException() != null) {
+            return result;
+        }
+        try {
+            return new TaskExecuteResult(LimitUtils.reverse(result.getRowStream()));
+        } catch (PhysicalException e) {
+            logger.error(e.getMessage());
+            return new TaskExecuteResult(
+                    new PhysicalTaskExecuteFailureException(
+                            "execute project with limit task in iotdb12 failure", e));
+        }
+    }
+
     private TaskExecuteResult executeProjectWithFilter(
             Project project, Filter filter, String storageUnit) {
+        return executeProjectWithFilter(project, filter, storageUnit, "");
+    }
+
+    private TaskExecuteResult executeProjectWithFilter(
+            Project project, Filter filter, String storageUnit, String clause) {
         try {
             StringBuilder builder = new StringBuilder();
             for (String path : project.getPatterns()) {
@@ -316,7 +401,8 @@ public class IoTDBStorage implements IStorage {
                             QUERY_DATA,
                             builder.deleteCharAt(builder.length() - 1).toString(),
                             storageUnit,
-                            FilterTransformer.toString(filter));
+                            FilterTransformer.toString(filter))
+                            + clause;
             logger.info("[Query] execute query: " + statement);
             RowStream rowStream =
                     new ClearEmptyRowStreamWrapper(
@@ -331,6 +417,78 @@ public class IoTDBStorage implements IStorage {
         }
     }
 
+    @Override
+    public boolean isSupportProjectWithAggregate(Operator aggregate) {
+        if (aggregate.getType() != OperatorType.SetTransform) {
+            return false;
+        }
+        for (FunctionCall functionCall : ((SetTransform) aggregate).getFunctionCallList()) {
+            if (functionCall.getFunction().getFunctionType() != FunctionType.System
+                    || functionCall.getParams().getLevels() != null
+                    || !AGGREGATE_FUNCTIONS.containsKey(
+                            functionCall.getFunction().getIdentifier())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public TaskExecuteResult executeProjectWithAggregate(
+            Project project, Select select, Operator aggregate, DataArea dataArea) {
+        String storageUnit = dataArea.getStorageUnit();
+        Filter filter;
+        if (select != null) {
+            filter = select.getFilter();
+        } else {
+            KeyInterval keyInterval = dataArea.getKeyInterval();
+            filter =
+                    new AndFilter(
+                            Arrays.asList(
+                                    new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                                    new KeyFilter(Op.L, keyInterval.getEndKey())));
+        }
+        SetTransform setTransform = (SetTransform) aggregate;
+        // 多个函数合并为一条查询语句，由 IoTDB 在一次扫描中完成
+        Map<String, String> functions = new LinkedHashMap<>();
+        for (FunctionCall functionCall : setTransform.getFunctionCallList()) {
+            String identifier = functionCall.getFunction().getIdentifier();
+            functions.put(AGGREGATE_FUNCTIONS.get(identifier), identifier);
+        }
+        try {
+            StringBuilder builder = new StringBuilder();
+            for (String function : functions.keySet()) {
+                for (String path : project.getPatterns()) {
+                    builder.append(function).append('(').append(path).append(')');
+                    builder.append(',');
+                }
+            }
+            String statement =
+                    String.format(
+                            QUERY_DATA,
+                            builder.deleteCharAt(builder.length() - 1).toString(),
+                            storageUnit,
+                            FilterTransformer.toString(filter));
+            logger.info("[Query] execute aggregate query: " + statement);
+            SessionDataSetWrapper dataset = sessionPool.executeQueryStatement(statement);
+            List<String> columnFunctions = new ArrayList<>();
+            for (String columnName : dataset.getColumnNames()) {
+                if (columnName.indexOf('(') != -1) {
+                    columnFunctions.add(
+                            functions.get(columnName.substring(0, columnName.indexOf('('))));
+                }
+            }
+            RowStream rowStream = new IoTDBQueryRowStream(dataset, true, project);
+            return new TaskExecuteResult(
+                    AggregateUtils.toSetTransformResult(rowStream, columnFunctions, setTransform));
+        } catch (IoTDBConnectionException | StatementExecutionException | PhysicalException e) {
+            logger.error(e.getMessage());
+            return new TaskExecuteResult(
+                    new PhysicalTaskExecuteFailureException(
+                            "execute project with aggregate task in iotdb12 failure", e));
+        }
+    }
+
     @Override
     public TaskExecuteResult executeProjectDummy(Project project, DataArea dataArea) {
         KeyInterval keyInterval = dataArea.getKeyInterval();
@@ -7,6 +7,7 @@ import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationExce
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
@@ -21,7 +22,6 @@ import cn.edu.tsinghua.iginx.parquet.exec.Executor;
 import cn.edu.tsinghua.iginx.parquet.exec.NewExecutor;
 import cn.edu.tsinghua.iginx.parquet.exec.RemoteExecutor;
 import cn.edu.tsinghua.iginx.parquet.server.ParquetServer;
-import cn.edu.tsinghua.iginx.parquet.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -115,7 +115,7 @@ public class ParquetStorage implements IStorage {
         return executor.executeProjectTask(
                 project.getPatterns(),
                 project.getTagFilter(),
-                FilterTransformer.toString(filter),
+                filter,
                 dataArea.getStorageUnit(),
                 false);
     }
@@ -131,7 +131,7 @@ public class ParquetStorage implements IStorage {
         return executor.executeProjectTask(
                 project.getPatterns(),
                 project.getTagFilter(),
-                FilterTransformer.toString(filter),
+                filter,
                 dataArea.getStorageUnit(),
                 true);
     }
@@ -147,18 +147,43 @@ public class ParquetStorage implements IStorage {
         return executor.executeProjectTask(
                 project.getPatterns(),
                 project.getTagFilter(),
-                FilterTransformer.toString(select.getFilter()),
+                select.getFilter(),
                 dataArea.getStorageUnit(),
                 false);
     }
 
+    @Override
+    public boolean isSupportProjectWithLimit(Select select) {
+        return select == null || LimitUtils.isKeyFilter(select.getFilter());
+    }
+
+    @Override
+    public TaskExecuteResult executeProjectWithLimit(
+            Project project, Select select, int limit, boolean ascending, DataArea dataArea) {
+        KeyInterval keyInterval = dataArea.getKeyInterval();
+        Filter filter =
+                select != null
+                        ? select.getFilter()
+                        : new AndFilter(
+                                Arrays.asList(
+                                        new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                                        new KeyFilter(Op.L, keyInterval.getEndKey())));
+        return executor.executeProjectTask(
+                project.getPatterns(),
+                project.getTagFilter(),
+                filter,
+                limit,
+                ascending,
+                dataArea.getStorageUnit());
+    }
+
     @Override
     public TaskExecuteResult executeProjectDummyWithSelect(
             Project project, Select select, DataArea dataArea) {
         return executor.executeProjectTask(
                 project.getPatterns(),
                 project.getTagFilter(),
-                FilterTransformer.toString(select.getFilter()),
+                select.getFilter(),
                 dataArea.getStorageUnit(),
                 true);
     }
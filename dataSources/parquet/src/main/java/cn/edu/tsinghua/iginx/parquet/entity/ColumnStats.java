@@ -0,0 +1,77 @@
+package cn.edu.tsinghua.iginx.parquet.entity;
+
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.thrift.DataType;
+
+/** 单个 parquet 文件中某一列的统计信息，min/max 仅对数值列有效 */
+public class ColumnStats {
+
+    private static final String NULL_VALUE = "null";
+
+    private final long count;
+
+    private final Value min;
+
+    private final Value max;
+
+    public ColumnStats(long count, Value min, Value max) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Value getMin() {
+        return min;
+    }
+
+    public Value getMax() {
+        return max;
+    }
+
+    public boolean hasMinMax() {
+        return min != null && max != null;
+    }
+
+    /** 序列化为 count,min,max，用于写入 .extra 文件 */
+    public String serialize() {
+        return count
+                + ","
+                + (min == null ? NULL_VALUE : min.getValue().toString())
+                + ","
+                + (max == null ? NULL_VALUE : max.getValue().toString());
+    }
+
+    public static ColumnStats deserialize(DataType type, String count, String min, String max) {
+        return new ColumnStats(Long.parseLong(count), parseValue(type, min), parseValue(type, max));
+    }
+
+    public static Value toValue(DataType type, Object value) {
+        if (value == null || !ValueUtils.isNumericType(type)) {
+            return null;
+        }
+        return parseValue(type, value.toString());
+    }
+
+    private static Value parseValue(DataType type, String value) {
+        if (type == null || value.equals(NULL_VALUE) || !ValueUtils.isNumericType(type)) {
+            return null;
+        }
+        switch (type) {
+            case INTEGER:
+                return new Value(Integer.parseInt(value));
+            case LONG:
+                return new Value(Long.parseLong(value));
+            case FLOAT:
+                return new Value(Float.parseFloat(value));
+            case DOUBLE:
+                return new Value(Double.parseDouble(value));
+            default:
+                return null;
+        }
+    }
+}
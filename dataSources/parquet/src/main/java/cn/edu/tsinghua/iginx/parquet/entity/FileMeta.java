@@ -9,7 +9,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,13 +25,17 @@ public class FileMeta {
 
     private final Map<String, DataType> pathMap;
 
-    private final Map<String, List<KeyRange>> deleteRanges;
+    // 删除时整体替换，查询持有的旧引用不受并发删除影响
+    private volatile Map<String, Tombstone> deleteRanges;
+
+    private Map<String, ColumnStats> statsMap;
 
     public FileMeta(long startTime, long endTime, Map<String, DataType> pathMap) {
         this.startTime = startTime;
         this.endTime = endTime;
         this.pathMap = pathMap;
         this.deleteRanges = new HashMap<>();
+        this.statsMap = new HashMap<>();
     }
 
     public FileMeta(
@@ -41,30 +44,36 @@ public class FileMeta {
             long startTime,
             long endTime,
             Map<String, DataType> pathMap,
-            Map<String, List<KeyRange>> deleteRanges) {
+            Map<String, Tombstone> deleteRanges,
+            Map<String, ColumnStats> statsMap) {
         this.extraPath = extraPath;
         this.dataPath = dataPath;
         this.startTime = startTime;
         this.endTime = endTime;
         this.pathMap = pathMap;
         this.deleteRanges = deleteRanges;
+        this.statsMap = statsMap;
     }
 
-    public void deleteData(List<String> paths, List<KeyRange> keyRanges) throws IOException {
+    public synchronized void deleteData(List<String> paths, List<KeyRange> keyRanges)
+            throws IOException {
+        Map<String, Tombstone> newDeleteRanges = new HashMap<>(deleteRanges);
         if (keyRanges == null || keyRanges.size() == 0) {
             for (String path : paths) {
                 pathMap.remove(path);
-                deleteRanges.remove(path);
+                newDeleteRanges.remove(path);
             }
         } else {
             for (String path : paths) {
-                if (deleteRanges.containsKey(path)) {
-                    deleteRanges.get(path).addAll(keyRanges);
-                } else {
-                    deleteRanges.put(path, new ArrayList<>(keyRanges));
-                }
+                Tombstone tombstone =
+                        newDeleteRanges.containsKey(path)
+                                ? newDeleteRanges.get(path).copy()
+                                : new Tombstone();
+                tombstone.addAll(keyRanges);
+                newDeleteRanges.put(path, tombstone);
             }
         }
+        deleteRanges = newDeleteRanges;
 
         StringBuilder builder = new StringBuilder();
         builder.append(CMD_DELETE).append(" ");
@@ -102,6 +111,14 @@ public class FileMeta {
         this.dataPath = dataPath;
     }
 
+    public void setDeleteRanges(Map<String, Tombstone> deleteRanges) {
+        this.deleteRanges = deleteRanges;
+    }
+
+    public void setStatsMap(Map<String, ColumnStats> statsMap) {
+        this.statsMap = statsMap;
+    }
+
     public String getExtraPath() {
         return extraPath;
     }
@@ -122,7 +139,11 @@ public class FileMeta {
         return pathMap;
     }
 
-    public Map<String, List<KeyRange>> getDeleteRanges() {
+    public Map<String, Tombstone> getDeleteRanges() {
         return deleteRanges;
     }
+
+    public Map<String, ColumnStats> getStatsMap() {
+        return statsMap;
+    }
 }
@@ -0,0 +1,79 @@
+package cn.edu.tsinghua.iginx.parquet.entity;
+
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** 某一列上被删除的 key 区间，按起点有序保存互不相交的闭区间 */
+public class Tombstone {
+
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+    public Tombstone() {}
+
+    public Tombstone(List<KeyRange> keyRanges) {
+        addAll(keyRanges);
+    }
+
+    public void addAll(List<KeyRange> keyRanges) {
+        for (KeyRange keyRange : keyRanges) {
+            add(keyRange.getActualBeginKey(), keyRange.getActualEndKey());
+        }
+    }
+
+    public void add(long begin, long end) {
+        if (begin > end) {
+            return;
+        }
+        Map.Entry<Long, Long> floor = ranges.floorEntry(begin);
+        if (floor != null && floor.getValue() >= begin - 1) {
+            begin = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        // 合并所有与 [begin, end] 重叠或相邻的区间
+        Map.Entry<Long, Long> next = ranges.ceilingEntry(begin);
+        while (next != null && (end == Long.MAX_VALUE || next.getKey() <= end + 1)) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(begin);
+        }
+        ranges.put(begin, end);
+    }
+
+    public boolean contains(long key) {
+        Map.Entry<Long, Long> floor = ranges.floorEntry(key);
+        return floor != null && floor.getValue() >= key;
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /** 返回 [start, end] 中被删除的 key 的个数 */
+    public long coveredCount(long start, long end) {
+        long count = 0;
+        for (Map.Entry<Long, Long> entry : ranges.entrySet()) {
+            long begin = Math.max(entry.getKey(), start);
+            long last = Math.min(entry.getValue(), end);
+            if (begin <= last) {
+                count += last - begin + 1;
+            }
+        }
+        return count;
+    }
+
+    /** 以闭区间 [begin, end] 的形式返回所有删除区间 */
+    public List<long[]> getRanges() {
+        List<long[]> ret = new ArrayList<>();
+        ranges.forEach((k, v) -> ret.add(new long[] {k, v}));
+        return ret;
+    }
+
+    public Tombstone copy() {
+        Tombstone tombstone = new Tombstone();
+        tombstone.ranges.putAll(ranges);
+        return tombstone;
+    }
+}
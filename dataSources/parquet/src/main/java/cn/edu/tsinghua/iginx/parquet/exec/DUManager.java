@@ -3,6 +3,7 @@ package cn.edu.tsinghua.iginx.parquet.exec;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.ADD_COLUMNS_STMT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.CMD_DELETE;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.CMD_PATHS;
+import static cn.edu.tsinghua.iginx.parquet.tools.Constant.CMD_STATS;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.CMD_TIME;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.COLUMN_TIME;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.CREATE_TABLE_STMT;
@@ -10,31 +11,40 @@ import static cn.edu.tsinghua.iginx.parquet.tools.Constant.DATATYPE_BIGINT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.DELETE_DATA_STMT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.DROP_COLUMN_STMT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.DROP_TABLE_STMT;
+import static cn.edu.tsinghua.iginx.parquet.tools.Constant.DUCKDB_DEFAULT_SCHEMA;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.DUCKDB_SCHEMA;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.IGINX_SEPARATOR;
-import static cn.edu.tsinghua.iginx.parquet.tools.Constant.INSERT_STMT_PREFIX;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.MAX_MEM_SIZE;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.NAME;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.PARQUET_SEPARATOR;
+import static cn.edu.tsinghua.iginx.parquet.tools.Constant.REWRITE_PARQUET_STMT;
+import static cn.edu.tsinghua.iginx.parquet.tools.Constant.REWRITE_THRESHOLD;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SAVE_TO_PARQUET_STMT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SELECT_MEM_STMT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SELECT_PARQUET_SCHEMA;
+import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SELECT_STATS_STMT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SELECT_STMT;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SUFFIX_EXTRA_FILE;
 import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SUFFIX_PARQUET_FILE;
+import static cn.edu.tsinghua.iginx.parquet.tools.Constant.SUFFIX_TMP_FILE;
 import static cn.edu.tsinghua.iginx.parquet.tools.DataTypeTransformer.fromParquetDataType;
 import static cn.edu.tsinghua.iginx.parquet.tools.DataTypeTransformer.toParquetDataType;
 
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
+import cn.edu.tsinghua.iginx.engine.shared.data.write.RawDataType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
 import cn.edu.tsinghua.iginx.parquet.entity.Column;
+import cn.edu.tsinghua.iginx.parquet.entity.ColumnStats;
 import cn.edu.tsinghua.iginx.parquet.entity.FileMeta;
+import cn.edu.tsinghua.iginx.parquet.entity.Tombstone;
 import cn.edu.tsinghua.iginx.parquet.tools.DataTypeTransformer;
 import cn.edu.tsinghua.iginx.parquet.tools.DataViewWrapper;
 import cn.edu.tsinghua.iginx.parquet.tools.FileUtils;
+import cn.edu.tsinghua.iginx.parquet.tools.FilterPruneUtils;
 import cn.edu.tsinghua.iginx.parquet.tools.TagKVUtils;
 import cn.edu.tsinghua.iginx.thrift.DataType;
 import cn.edu.tsinghua.iginx.utils.Pair;
@@ -49,6 +59,7 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -57,6 +68,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -64,6 +76,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
+import org.duckdb.DuckDBAppender;
 import org.duckdb.DuckDBConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,7 +97,7 @@ public class DUManager {
 
     private String curMemTable = "";
 
-    private Map<String, DataType> curMemTablePathMap = new HashMap<>();
+    private Map<String, DataType> curMemTablePathMap = new LinkedHashMap<>();
 
     private int curMemSize = 0;
 
@@ -132,7 +145,8 @@ public class DUManager {
 
                 long startTime = 0, endTime = Long.MAX_VALUE;
                 Map<String, DataType> pathMap = new HashMap<>();
-                Map<String, List<KeyRange>> deleteRanges = new HashMap<>();
+                Map<String, Tombstone> deleteRanges = new HashMap<>();
+                Map<String, ColumnStats> statsMap = new HashMap<>();
 
                 String str = null;
                 while ((str = br.readLine()) != null) {
@@ -152,6 +166,18 @@ public class DUManager {
                         }
                         startTime = Long.parseLong(times[0]);
                         endTime = Long.parseLong(times[1]);
+                    } else if (str.startsWith(CMD_STATS)) {
+                        String[] stats = details.split(",");
+                        for (int i = 0; i + 3 < stats.length; i += 4) {
+                            String path = stats[i];
+                            statsMap.put(
+                                    path,
+                                    ColumnStats.deserialize(
+                                            pathMap.get(path),
+                                            stats[i + 1],
+                                            stats[i + 2],
+                                            stats[i + 3]));
+                        }
                     } else if (str.startsWith(CMD_DELETE)) {
                         String[] deleteInfo = details.split("#");
                         if (deleteInfo.length == 1) {
@@ -167,10 +193,12 @@ public class DUManager {
                                 for (int i = 0; i < times.length; i += 2) {
                                     long start = Long.parseLong(times[i]);
                                     long end = Long.parseLong(times[i + 1]);
-                                    if (!deleteRanges.containsKey(path)) {
-                                        deleteRanges.put(path, new ArrayList<>());
-                                    }
-                                    deleteRanges.get(path).add(new KeyRange(start, end));
+                                    KeyRange keyRange = new KeyRange(start, end);
+                                    deleteRanges
+                                            .computeIfAbsent(path, k -> new Tombstone())
+                                            .add(
+                                                    keyRange.getActualBeginKey(),
+                                                    keyRange.getActualEndKey());
                                 }
                             }
                         }
@@ -181,7 +209,13 @@ public class DUManager {
 
                 FileMeta meta =
                         new FileMeta(
-                                extraPath, dataPath, startTime, endTime, pathMap, deleteRanges);
+                                extraPath,
+                                dataPath,
+                                startTime,
+                                endTime,
+                                pathMap,
+                                deleteRanges,
+                                statsMap);
                 fileMetaMap.put(fileId, meta);
             }
         }
@@ -189,6 +223,31 @@ public class DUManager {
 
     public List<Column> project(List<String> paths, TagFilter tagFilter, String filter)
             throws SQLException {
+        return project(paths, tagFilter, filter, null);
+    }
+
+    /**
+     * @param filter 下推到 duckdb 的过滤条件
+     * @param pruneFilter 与 filter 对应的过滤条件，用于根据 key 区间和列统计信息跳过文件，可以为 null
+     */
+    public List<Column> project(
+            List<String> paths, TagFilter tagFilter, String filter, Filter pruneFilter)
+            throws SQLException {
+        return project(paths, tagFilter, filter, pruneFilter, -1, true);
+    }
+
+    /**
+     * @param limit 每个文件和内存表只需读取的行数，为负数时读取所有行。此时 filter 只含 key 条件
+     * @param ascending 为 false 时读取按 key 排序的最后 limit 行
+     */
+    public List<Column> project(
+            List<String> paths,
+            TagFilter tagFilter,
+            String filter,
+            Filter pruneFilter,
+            int limit,
+            boolean ascending)
+            throws SQLException {
         if (isDummyStorageUnit) {
             return projectDummy(paths, tagFilter, filter);
         }
@@ -196,6 +255,13 @@ public class DUManager {
         Map<String, Column> dataMap = new HashMap<>();
         for (Map.Entry<String, FileMeta> entry : fileMetaMap.entrySet()) {
             FileMeta fileMeta = entry.getValue();
+            if (!FilterPruneUtils.mayMatch(
+                    pruneFilter,
+                    fileMeta.getStartTime(),
+                    fileMeta.getEndTime(),
+                    fileMeta.getStatsMap())) {
+                continue;
+            }
             List<String> filePaths =
                     determinePathList(fileMeta.getPathMap().keySet(), paths, tagFilter);
             if (!filePaths.isEmpty()) {
@@ -205,15 +271,19 @@ public class DUManager {
                                 filter,
                                 fileMeta.getDataPath(),
                                 fileMeta.getDeleteRanges(),
-                                fileMeta.getEndTime());
+                                limit,
+                                ascending);
                 mergeData(dataMap, columns);
             }
         }
 
-        List<String> memPaths = determinePathList(curMemTablePathMap.keySet(), paths, tagFilter);
-        if (!memPaths.isEmpty()) {
-            List<Column> columns = projectInMemTable(memPaths, filter);
-            mergeData(dataMap, columns);
+        if (FilterPruneUtils.mayMatch(pruneFilter, curStartTime, curEndTime, null)) {
+            List<String> memPaths =
+                    determinePathList(curMemTablePathMap.keySet(), paths, tagFilter);
+            if (!memPaths.isEmpty()) {
+                List<Column> columns = projectInMemTable(memPaths, filter, limit, ascending);
+                mergeData(dataMap, columns);
+            }
         }
         return new ArrayList<>(dataMap.values());
     }
@@ -234,7 +304,7 @@ public class DUManager {
                 if (!filePaths.isEmpty()) {
                     List<Column> columns =
                             projectInParquet(
-                                    filePaths, filter, dataFile.getPath(), null, Long.MAX_VALUE);
+                                    filePaths, filter, dataFile.getPath(), null, -1, true);
                     mergeData(dataMap, columns);
                 }
             }
@@ -242,7 +312,8 @@ public class DUManager {
         return new ArrayList<>(dataMap.values());
     }
 
-    private List<Column> projectInMemTable(List<String> paths, String filter) throws SQLException {
+    private List<Column> projectInMemTable(
+            List<String> paths, String filter, int limit, boolean ascending) throws SQLException {
         try {
             memTableLock.readLock().lock();
 
@@ -254,10 +325,20 @@ public class DUManager {
                     path ->
                             builder.append(path.replaceAll(IGINX_SEPARATOR, PARQUET_SEPARATOR))
                                     .append(", "));
-            ResultSet rs =
-                    stmt.executeQuery(
-                            String.format(
-                                    SELECT_MEM_STMT, builder.toString(), curMemTable, filter));
+            String statement;
+            if (limit < 0) {
+                statement =
+                        String.format(SELECT_MEM_STMT, builder.toString(), curMemTable, filter);
+            } else {
+                statement =
+                        String.format(
+                                        SELECT_MEM_STMT,
+                                        builder.toString(),
+                                        curMemTable,
+                                        getLimitFilter(filter, paths))
+                                + getLimitClause(limit, ascending);
+            }
+            ResultSet rs = stmt.executeQuery(statement);
             stmt.close();
             conn.close();
 
@@ -273,8 +354,9 @@ public class DUManager {
             List<String> paths,
             String filter,
             String dataPath,
-            Map<String, List<KeyRange>> deleteRanges,
-            long endTime)
+            Map<String, Tombstone> deleteRanges,
+            int limit,
+            boolean ascending)
             throws SQLException {
         Connection conn = ((DuckDBConnection) connection).duplicate();
         Statement stmt = conn.createStatement();
@@ -284,8 +366,20 @@ public class DUManager {
                 path ->
                         builder.append(path.replaceAll(IGINX_SEPARATOR, PARQUET_SEPARATOR))
                                 .append(", "));
-        ResultSet rs =
-                stmt.executeQuery(String.format(SELECT_STMT, builder.toString(), dataPath, filter));
+        String statement;
+        // 已删除的数据在读出后才被移除，此时不能在 SQL 中限制行数
+        if (limit < 0 || (deleteRanges != null && !deleteRanges.isEmpty())) {
+            statement = String.format(SELECT_STMT, builder.toString(), dataPath, filter);
+        } else {
+            statement =
+                    String.format(
+                                    SELECT_STMT,
+                                    builder.toString(),
+                                    dataPath,
+                                    getLimitFilter(filter, paths))
+                            + getLimitClause(limit, ascending);
+        }
+        ResultSet rs = stmt.executeQuery(statement);
         stmt.close();
         conn.close();
 
@@ -295,29 +389,31 @@ public class DUManager {
         // deal with deleted data
         if (deleteRanges != null && !deleteRanges.isEmpty()) {
             for (Column column : data) {
-                if (!deleteRanges.containsKey(column.getPathName())) {
-                    continue;
-                }
-
-                List<KeyRange> ranges = deleteRanges.get(column.getPathName());
-                if (ranges != null) {
-                    ranges.forEach(
-                            timeRange -> {
-                                long start = timeRange.getActualBeginKey();
-                                long end =
-                                        Math.min(
-                                                timeRange.getActualEndKey(),
-                                                endTime); // optimize time > xxx case
-                                for (long i = start; i <= end; i++) {
-                                    column.removeData(i);
-                                }
-                            });
+                Tombstone tombstone = deleteRanges.get(column.getPathName());
+                if (tombstone != null && !tombstone.isEmpty()) {
+                    column.getData().keySet().removeIf(tombstone::contains);
                 }
             }
         }
         return data;
     }
 
+    /**
+     * 只统计在所查询的列上不全为空的行。合并结果中按 key 排序的前 limit 行在每个数据源中也都位于前 limit 行之内，
+     * 因此各数据源分别限制行数后合并的结果仍然正确
+     */
+    private static String getLimitFilter(String filter, List<String> paths) {
+        List<String> notNulls = new ArrayList<>();
+        for (String path : paths) {
+            notNulls.add(path.replaceAll(IGINX_SEPARATOR, PARQUET_SEPARATOR) + " IS NOT NULL");
+        }
+        return filter + " AND (" + String.join(" OR ", notNulls) + ")";
+    }
+
+    private static String getLimitClause(int limit, boolean ascending) {
+        return (ascending ? "" : " DESC") + " LIMIT " + limit;
+    }
+
     private List<Column> initColumns(ResultSet rs) throws SQLException {
         ResultSetMetaData rsMetaData = rs.getMetaData();
         List<Column> columns = new ArrayList<>();
@@ -402,20 +498,7 @@ public class DUManager {
             }
 
             // write data
-            String insertPrefix = generateInsertStmtPrefix(data, curMemTable);
-            String insertBody;
-            switch (data.getRawDataType()) {
-                case Column:
-                case NonAlignedColumn:
-                    insertBody = generateColInsertStmtBody(data);
-                    break;
-                case Row:
-                case NonAlignedRow:
-                default:
-                    insertBody = generateRowInsertStmtBody(data);
-                    break;
-            }
-            stmt.execute(insertPrefix + insertBody);
+            appendData((DuckDBConnection) conn, data);
 
             if (data.getMaxTime() > curEndTime) {
                 curEndTime = data.getMaxTime();
@@ -435,84 +518,89 @@ public class DUManager {
         }
     }
 
-    private String generateInsertStmtPrefix(DataViewWrapper data, String tableName) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("time, ");
+    /** 通过 appender 将数据按行批量写入内存表，表中存在而本批数据中没有的列写入 NULL */
+    private void appendData(DuckDBConnection conn, DataViewWrapper data) throws SQLException {
+        Map<String, Integer> pathIndexMap = new HashMap<>();
         for (int i = 0; i < data.getPathNum(); i++) {
-            String path = data.getPath(i);
-            builder.append(path.replaceAll(IGINX_SEPARATOR, PARQUET_SEPARATOR)).append(", ");
-        }
-        builder.deleteCharAt(builder.length() - 2);
-        String columns = builder.toString();
-        String insertStmtPrefix = String.format(INSERT_STMT_PREFIX, tableName, columns);
-        logger.info("InsertStmtPrefix: {}", insertStmtPrefix);
-        return insertStmtPrefix;
-    }
+            pathIndexMap.put(data.getPath(i), i);
+        }
+        // 内存表各列（与建表顺序一致）在 data 中的下标，-1 表示本批数据不包含该列
+        int[] columnIndexes = new int[curMemTablePathMap.size()];
+        int k = 0;
+        for (String path : curMemTablePathMap.keySet()) {
+            columnIndexes[k++] = pathIndexMap.getOrDefault(path, -1);
+        }
 
-    private String generateRowInsertStmtBody(DataViewWrapper data) {
-        StringBuilder builder = new StringBuilder();
+        boolean isRowData =
+                data.getRawDataType() == RawDataType.Row
+                        || data.getRawDataType() == RawDataType.NonAlignedRow;
+        int[] valueIndexes = new int[data.getPathNum()];
+        Object[] rowValues = new Object[data.getPathNum()];
 
-        for (int i = 0; i < data.getTimeSize(); i++) {
-            BitmapView bitmapView = data.getBitmapView(i);
-            builder.append("(").append(data.getTimestamp(i)).append(", ");
-
-            int index = 0;
-            for (int j = 0; j < data.getPathNum(); j++) {
-                if (bitmapView.get(j)) {
-                    DataType type = data.getDataType(j);
-                    if (type == DataType.BINARY) {
-                        byte[] bytes = (byte[]) data.getValue(i, index);
-                        builder.append("'").append(new String(bytes)).append("', ");
-                        curMemSize += bytes.length;
-                    } else {
-                        builder.append(data.getValue(i, index)).append(", ");
-                        curMemSize += DataTypeTransformer.getDataSize(type);
+        DuckDBAppender appender = new DuckDBAppender(conn, DUCKDB_DEFAULT_SCHEMA, curMemTable);
+        try {
+            for (int i = 0; i < data.getTimeSize(); i++) {
+                if (isRowData) {
+                    BitmapView bitmapView = data.getBitmapView(i);
+                    int index = 0;
+                    for (int j = 0; j < data.getPathNum(); j++) {
+                        rowValues[j] = bitmapView.get(j) ? data.getValue(i, index++) : null;
                     }
-                    index++;
                 } else {
-                    builder.append("NULL, ");
+                    for (int j = 0; j < data.getPathNum(); j++) {
+                        rowValues[j] =
+                                data.getBitmapView(j).get(i)
+                                        ? data.getValue(j, valueIndexes[j]++)
+                                        : null;
+                    }
                 }
-            }
-            builder.append("), ");
-        }
-        return builder.toString();
-    }
 
-    private String generateColInsertStmtBody(DataViewWrapper data) {
-        String[] rowValueArray = new String[data.getTimeSize()];
-        for (int i = 0; i < data.getTimeSize(); i++) {
-            rowValueArray[i] = "(" + data.getTimestamp(i) + ", ";
-        }
-        for (int i = 0; i < data.getPathNum(); i++) {
-            BitmapView bitmapView = data.getBitmapView(i);
-
-            int index = 0;
-            for (int j = 0; j < data.getTimeSize(); j++) {
-                if (bitmapView.get(j)) {
-                    DataType type = data.getDataType(i);
-                    if (type == DataType.BINARY) {
-                        byte[] bytes = (byte[]) data.getValue(i, index);
-                        rowValueArray[j] += "'" + new String(bytes) + "', ";
-                        curMemSize += bytes.length;
+                appender.beginRow();
+                appender.append(data.getTimestamp(i));
+                for (int index : columnIndexes) {
+                    if (index == -1) {
+                        appender.append((String) null);
                     } else {
-                        rowValueArray[j] += data.getValue(i, index) + ", ";
-                        curMemSize += DataTypeTransformer.getDataSize(type);
+                        appendValue(appender, data.getDataType(index), rowValues[index]);
                     }
-                    index++;
-                } else {
-                    rowValueArray[j] += "NULL, ";
                 }
+                appender.endRow();
             }
+        } finally {
+            appender.close();
         }
-        for (int i = 0; i < data.getTimeSize(); i++) {
-            rowValueArray[i] += "), ";
-        }
+    }
 
-        StringBuilder builder = new StringBuilder();
-        for (String row : rowValueArray) {
-            builder.append(row);
+    private void appendValue(DuckDBAppender appender, DataType type, Object value)
+            throws SQLException {
+        if (value == null) {
+            appender.append((String) null);
+            return;
+        }
+        switch (type) {
+            case BOOLEAN:
+                appender.append((boolean) value);
+                break;
+            case INTEGER:
+                appender.append((int) value);
+                break;
+            case LONG:
+                appender.append((long) value);
+                break;
+            case FLOAT:
+                appender.append((float) value);
+                break;
+            case DOUBLE:
+                appender.append((double) value);
+                break;
+            case BINARY:
+            default:
+                byte[] bytes = (byte[]) value;
+                appender.append(new String(bytes));
+                curMemSize += bytes.length;
+                return;
         }
-        return builder.toString();
+        curMemSize += DataTypeTransformer.getDataSize(type);
     }
 
     private void flush() {
@@ -536,7 +624,7 @@ public class DUManager {
                     }
                 });
 
-        curMemTablePathMap = new HashMap<>();
+        curMemTablePathMap = new LinkedHashMap<>();
         curMemTable = "";
         curMemSize = 0;
         curStartTime = Long.MAX_VALUE;
@@ -562,6 +650,9 @@ public class DUManager {
         Connection conn = ((DuckDBConnection) connection).duplicate();
         Statement stmt = conn.createStatement();
 
+        // collect statistics
+        fileMeta.setStatsMap(collectStats(stmt, table, paths));
+
         // flush data
         Path dataPath = Paths.get(dataDir, id, String.format("%s.parquet", table));
         stmt.execute(String.format(SAVE_TO_PARQUET_STMT, table, dataPath.toString()));
@@ -570,6 +661,23 @@ public class DUManager {
 
         // flush meta
         Path extraPath = Paths.get(dataDir, id, String.format("%s.extra", table));
+        writeExtraFile(extraPath, paths, startTime, endTime, fileMeta.getStatsMap());
+
+        fileMeta.setExtraPath(extraPath.toString());
+        fileMetaMap.put(table, fileMeta);
+
+        stmt.close();
+        conn.close();
+        isFlushing = false;
+    }
+
+    private void writeExtraFile(
+            Path extraPath,
+            Map<String, DataType> paths,
+            long startTime,
+            long endTime,
+            Map<String, ColumnStats> statsMap)
+            throws IOException {
         StringBuilder builder = new StringBuilder();
         builder.append(CMD_PATHS).append(" ");
         paths.forEach((k, v) -> builder.append(k).append(",").append(v.toString()).append(","));
@@ -580,6 +688,12 @@ public class DUManager {
                 .append(",")
                 .append(endTime)
                 .append("\n");
+        if (!statsMap.isEmpty()) {
+            builder.append(CMD_STATS).append(" ");
+            statsMap.forEach(
+                    (k, v) -> builder.append(k).append(",").append(v.serialize()).append(","));
+            builder.deleteCharAt(builder.length() - 1).append("\n");
+        }
 
         FileWriter fw = new FileWriter(extraPath.toString());
         BufferedWriter bw = new BufferedWriter(fw);
@@ -588,13 +702,40 @@ public class DUManager {
         bw.flush();
         bw.close();
         fw.close();
+    }
 
-        fileMeta.setExtraPath(extraPath.toString());
-        fileMetaMap.put(table, fileMeta);
-
-        stmt.close();
-        conn.close();
-        isFlushing = false;
+    private Map<String, ColumnStats> collectStats(
+            Statement stmt, String table, Map<String, DataType> paths) throws SQLException {
+        Map<String, ColumnStats> statsMap = new HashMap<>();
+        if (paths.isEmpty()) {
+            return statsMap;
+        }
+        List<String> pathList = new ArrayList<>(paths.keySet());
+        StringBuilder builder = new StringBuilder();
+        for (String path : pathList) {
+            String column = path.replaceAll(IGINX_SEPARATOR, PARQUET_SEPARATOR);
+            builder.append("count(").append(column).append("), ");
+            builder.append("min(").append(column).append("), ");
+            builder.append("max(").append(column).append("), ");
+        }
+        builder.delete(builder.length() - 2, builder.length());
+
+        ResultSet rs = stmt.executeQuery(String.format(SELECT_STATS_STMT, builder, table));
+        if (rs.next()) {
+            for (int i = 0; i < pathList.size(); i++) {
+                String path = pathList.get(i);
+                DataType type = paths.get(path);
+                long count = ((Number) rs.getObject(i * 3 + 1)).longValue();
+                statsMap.put(
+                        path,
+                        new ColumnStats(
+                                count,
+                                ColumnStats.toValue(type, rs.getObject(i * 3 + 2)),
+                                ColumnStats.toValue(type, rs.getObject(i * 3 + 3))));
+            }
+        }
+        rs.close();
+        return statsMap;
     }
 
     public void delete(List<String> paths, List<KeyRange> keyRanges, TagFilter tagFilter)
@@ -661,6 +802,105 @@ public class DUManager {
             throws IOException {
         FileMeta meta = fileMetaMap.get(fileName);
         meta.deleteData(paths, keyRanges);
+        if (needRewrite(meta)) {
+            flushPool.submit(
+                    () -> {
+                        try {
+                            rewriteFile(meta);
+                        } catch (Exception e) {
+                            logger.error("rewrite parquet file {} failure", fileName, e);
+                        }
+                    });
+        }
+    }
+
+    /** 某一列被删除的 key 占文件 key 区间的比例超过阈值时，需要重写文件 */
+    private boolean needRewrite(FileMeta meta) {
+        if (meta.getPathMap().isEmpty()) {
+            return false;
+        }
+        double span = (double) meta.getEndTime() - meta.getStartTime() + 1;
+        for (Tombstone tombstone : meta.getDeleteRanges().values()) {
+            long covered = tombstone.coveredCount(meta.getStartTime(), meta.getEndTime());
+            if (covered >= span * REWRITE_THRESHOLD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 重写 parquet 文件，物理删除已被删除的数据，并清空对应的删除记录 */
+    private void rewriteFile(FileMeta meta) throws SQLException, IOException {
+        synchronized (meta) {
+            if (!needRewrite(meta)) {
+                return;
+            }
+            Map<String, Tombstone> deleteRanges = meta.getDeleteRanges();
+
+            StringBuilder columns = new StringBuilder();
+            StringBuilder notNull = new StringBuilder();
+            for (String path : meta.getPathMap().keySet()) {
+                String column = path.replaceAll(IGINX_SEPARATOR, PARQUET_SEPARATOR);
+                Tombstone tombstone = deleteRanges.get(path);
+                if (tombstone == null || tombstone.isEmpty()) {
+                    columns.append(column);
+                } else {
+                    StringBuilder condition = new StringBuilder();
+                    for (long[] range : tombstone.getRanges()) {
+                        condition
+                                .append("(time >= ")
+                                .append(range[0])
+                                .append(" AND time <= ")
+                                .append(range[1])
+                                .append(") OR ");
+                    }
+                    condition.delete(condition.length() - 4, condition.length());
+                    columns.append(
+                            String.format(
+                                    "CASE WHEN %s THEN NULL ELSE %s END AS %s",
+                                    condition, column, column));
+                }
+                columns.append(", ");
+                notNull.append(column).append(" IS NOT NULL OR ");
+            }
+            columns.delete(columns.length() - 2, columns.length());
+            notNull.delete(notNull.length() - 4, notNull.length());
+
+            Path dataPath = Paths.get(meta.getDataPath());
+            Path extraPath = Paths.get(meta.getExtraPath());
+            Path tmpDataPath = Paths.get(meta.getDataPath() + SUFFIX_TMP_FILE);
+            Path tmpExtraPath = Paths.get(meta.getExtraPath() + SUFFIX_TMP_FILE);
+
+            Connection conn = ((DuckDBConnection) connection).duplicate();
+            Statement stmt = conn.createStatement();
+            // 删除后全为空的行不再写入
+            stmt.execute(
+                    String.format(
+                            REWRITE_PARQUET_STMT, columns, dataPath, notNull, tmpDataPath));
+            stmt.close();
+            conn.close();
+
+            writeExtraFile(
+                    tmpExtraPath,
+                    meta.getPathMap(),
+                    meta.getStartTime(),
+                    meta.getEndTime(),
+                    meta.getStatsMap());
+
+            // 先替换数据文件：若在两次替换之间宕机，旧的删除记录作用于新文件也是幂等的
+            Files.move(
+                    tmpDataPath,
+                    dataPath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(
+                    tmpExtraPath,
+                    extraPath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            meta.setDeleteRanges(new HashMap<>());
+            logger.info("rewrite parquet file {} to drop deleted data", dataPath);
+        }
     }
 
     private void clearData() throws SQLException {
@@ -673,7 +913,7 @@ public class DUManager {
 
                 stmt.execute(String.format(DROP_TABLE_STMT, curMemTable));
 
-                curMemTablePathMap = new HashMap<>();
+                curMemTablePathMap = new LinkedHashMap<>();
                 curMemTable = "";
                 curMemSize = 0;
                 curStartTime = Long.MAX_VALUE;
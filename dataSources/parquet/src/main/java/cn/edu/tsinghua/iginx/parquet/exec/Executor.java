@@ -5,9 +5,11 @@ import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsRange;
 import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
+import cn.edu.tsinghua.iginx.parquet.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import java.util.List;
 
@@ -20,6 +22,35 @@ public interface Executor {
             String storageUnit,
             boolean isDummyStorageUnit);
 
+    /** 携带原始过滤条件，本地执行时可据此跳过无关文件 */
+    default TaskExecuteResult executeProjectTask(
+            List<String> paths,
+            TagFilter tagFilter,
+            Filter filter,
+            String storageUnit,
+            boolean isDummyStorageUnit) {
+        return executeProjectTask(
+                paths,
+                tagFilter,
+                FilterTransformer.toString(filter),
+                storageUnit,
+                isDummyStorageUnit);
+    }
+
+    /**
+     * 只需返回按 key 排序的前 limit 行（ascending 为 false 时为最后 limit 行），filter 只含 key 条件。默认返回所有行，
+     * 调用方仍会在内存中执行 limit
+     */
+    default TaskExecuteResult executeProjectTask(
+            List<String> paths,
+            TagFilter tagFilter,
+            Filter filter,
+            int limit,
+            boolean ascending,
+            String storageUnit) {
+        return executeProjectTask(paths, tagFilter, filter, storageUnit, false);
+    }
+
     TaskExecuteResult executeInsertTask(DataView dataView, String storageUnit);
 
     TaskExecuteResult executeDeleteTask(
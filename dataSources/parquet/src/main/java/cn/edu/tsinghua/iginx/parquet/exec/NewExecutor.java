@@ -8,11 +8,13 @@ import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.ClearEmptyRowStreamWrapper;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsRange;
 import cn.edu.tsinghua.iginx.metadata.entity.KeyInterval;
 import cn.edu.tsinghua.iginx.parquet.entity.NewQueryRowStream;
+import cn.edu.tsinghua.iginx.parquet.tools.FilterTransformer;
 import cn.edu.tsinghua.iginx.parquet.tools.TagKVUtils;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import cn.edu.tsinghua.iginx.utils.StringUtils;
@@ -100,6 +102,56 @@ public class NewExecutor implements Executor {
             String filter,
             String storageUnit,
             boolean isDummyStorageUnit) {
+        return executeProjectTask(
+                paths, tagFilter, filter, null, -1, true, storageUnit, isDummyStorageUnit);
+    }
+
+    @Override
+    public TaskExecuteResult executeProjectTask(
+            List<String> paths,
+            TagFilter tagFilter,
+            Filter filter,
+            String storageUnit,
+            boolean isDummyStorageUnit) {
+        return executeProjectTask(
+                paths,
+                tagFilter,
+                FilterTransformer.toString(filter),
+                filter,
+                -1,
+                true,
+                storageUnit,
+                isDummyStorageUnit);
+    }
+
+    @Override
+    public TaskExecuteResult executeProjectTask(
+            List<String> paths,
+            TagFilter tagFilter,
+            Filter filter,
+            int limit,
+            boolean ascending,
+            String storageUnit) {
+        return executeProjectTask(
+                paths,
+                tagFilter,
+                FilterTransformer.toString(filter),
+                filter,
+                limit,
+                ascending,
+                storageUnit,
+                false);
+    }
+
+    private TaskExecuteResult executeProjectTask(
+            List<String> paths,
+            TagFilter tagFilter,
+            String filter,
+            Filter pruneFilter,
+            int limit,
+            boolean ascending,
+            String storageUnit,
+            boolean isDummyStorageUnit) {
         DUManager duManager;
         try {
             duManager = getDUManager(storageUnit, isDummyStorageUnit);
@@ -109,7 +161,7 @@ public class NewExecutor implements Executor {
 
         try {
             List<cn.edu.tsinghua.iginx.parquet.entity.Column> columns =
-                    duManager.project(paths, tagFilter, filter);
+                    duManager.project(paths, tagFilter, filter, pruneFilter, limit, ascending);
             RowStream rowStream = new ClearEmptyRowStreamWrapper(new NewQueryRowStream(columns));
             return new TaskExecuteResult(rowStream, null);
         } catch (SQLException e) {
@@ -173,14 +173,14 @@ public class ParquetWorker implements ParquetService.Iface {
                     parquetRawData
                             .getBitmapList()
                             .stream()
-                            .map(x -> new Bitmap(paths.size(), x.array()))
+                            .map(x -> new Bitmap(paths.size(), ByteUtils.getBytesFromByteBuffer(x)))
                             .collect(Collectors.toList());
             values = ByteUtils.getRowValuesByDataType(valueList, types, bitmapList);
         } else {
             bitmaps =
                     bitmapList
                             .stream()
-                            .map(x -> new Bitmap(times.size(), x.array()))
+                            .map(x -> new Bitmap(times.size(), ByteUtils.getBytesFromByteBuffer(x)))
                             .collect(Collectors.toList());
             values =
                     ByteUtils.getColumnValuesByDataType(valueList, types, bitmapList, times.size());
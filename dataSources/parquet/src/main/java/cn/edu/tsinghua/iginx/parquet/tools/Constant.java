@@ -14,6 +14,8 @@ public class Constant {
 
     public static final String DUCKDB_SCHEMA = "duckdb_schema";
 
+    public static final String DUCKDB_DEFAULT_SCHEMA = "main";
+
     public static final String IGINX_SEPARATOR = "\\.";
 
     public static final String PARQUET_SEPARATOR = "\\$";
@@ -22,14 +24,21 @@ public class Constant {
 
     public static final String SUFFIX_EXTRA_FILE = ".extra";
 
+    public static final String SUFFIX_TMP_FILE = ".tmp";
+
     public static final String CMD_PATHS = "PATHS";
 
     public static final String CMD_TIME = "TIME";
 
     public static final String CMD_DELETE = "DELETE";
 
+    public static final String CMD_STATS = "STATS";
+
     public static final int MAX_MEM_SIZE = 1000 * 1024 * 1024 /* BYTE */;
 
+    // 删除的 key 占文件 key 区间的比例达到该值时重写文件
+    public static final double REWRITE_THRESHOLD = 0.5;
+
     public static final String CREATE_TABLE_STMT = "CREATE TABLE %s (%s)";
 
     public static final String INSERT_STMT_PREFIX = "INSERT INTO %s(%s) VALUES ";
@@ -57,6 +66,11 @@ public class Constant {
     public static final String SELECT_LAST_TIME_STMT =
             "SELECT time FROM '%s' order by time desc limit 1";
 
+    public static final String REWRITE_PARQUET_STMT =
+            "COPY (SELECT time, %s FROM '%s' WHERE %s ORDER BY time) TO '%s' (FORMAT 'parquet')";
+
+    public static final String SELECT_STATS_STMT = "SELECT %s FROM %s";
+
     public static final String SELECT_PARQUET_SCHEMA = "SELECT * FROM parquet_schema('%s')";
 
     public static final String DELETE_DATA_STMT =
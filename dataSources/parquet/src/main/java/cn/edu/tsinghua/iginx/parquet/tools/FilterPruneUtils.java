@@ -0,0 +1,120 @@
+package cn.edu.tsinghua.iginx.parquet.tools;
+
+import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.utils.ValueUtils;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.BoolFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.ValueFilter;
+import cn.edu.tsinghua.iginx.parquet.entity.ColumnStats;
+import java.util.Map;
+
+/** 根据文件的 key 区间与列统计信息判断文件是否可能包含满足过滤条件的数据 */
+public class FilterPruneUtils {
+
+    /**
+     * 返回 false 表示文件中一定没有满足 filter 的行，可以跳过；无法判断时保守地返回 true。
+     *
+     * @param statsMap 列统计信息，可以为 null
+     */
+    public static boolean mayMatch(
+            Filter filter, long startKey, long endKey, Map<String, ColumnStats> statsMap) {
+        if (filter == null) {
+            return true;
+        }
+        switch (filter.getType()) {
+            case And:
+                for (Filter child : ((AndFilter) filter).getChildren()) {
+                    if (!mayMatch(child, startKey, endKey, statsMap)) {
+                        return false;
+                    }
+                }
+                return true;
+            case Or:
+                for (Filter child : ((OrFilter) filter).getChildren()) {
+                    if (mayMatch(child, startKey, endKey, statsMap)) {
+                        return true;
+                    }
+                }
+                return ((OrFilter) filter).getChildren().isEmpty();
+            case Bool:
+                return ((BoolFilter) filter).isTrue();
+            case Key:
+                return mayMatch((KeyFilter) filter, startKey, endKey);
+            case Value:
+                return mayMatch((ValueFilter) filter, statsMap);
+            case Not:
+            default:
+                return true;
+        }
+    }
+
+    private static boolean mayMatch(KeyFilter filter, long startKey, long endKey) {
+        long key = filter.getValue();
+        switch (filter.getOp()) {
+            case GE:
+                return endKey >= key;
+            case G:
+                return endKey > key;
+            case LE:
+                return startKey <= key;
+            case L:
+                return startKey < key;
+            case E:
+                return startKey <= key && key <= endKey;
+            case NE:
+                return startKey != key || endKey != key;
+            default:
+                return true;
+        }
+    }
+
+    private static boolean mayMatch(ValueFilter filter, Map<String, ColumnStats> statsMap) {
+        if (statsMap == null) {
+            return true;
+        }
+        ColumnStats stats = statsMap.get(filter.getPath());
+        if (stats == null) {
+            return true;
+        }
+        if (stats.getCount() == 0) {
+            return false;
+        }
+        Value value = filter.getValue();
+        if (!stats.hasMinMax() || value == null || !ValueUtils.isNumericType(value)) {
+            return true;
+        }
+        Value min = stats.getMin();
+        Value max = stats.getMax();
+        if (min.getDataType() != value.getDataType()) {
+            min = ValueUtils.transformToDouble(min);
+            max = ValueUtils.transformToDouble(max);
+            value = ValueUtils.transformToDouble(value);
+        }
+        try {
+            int cmpMin = ValueUtils.compare(min, value);
+            int cmpMax = ValueUtils.compare(max, value);
+            switch (filter.getOp()) {
+                case GE:
+                    return cmpMax >= 0;
+                case G:
+                    return cmpMax > 0;
+                case LE:
+                    return cmpMin <= 0;
+                case L:
+                    return cmpMin < 0;
+                case E:
+                    return cmpMin <= 0 && cmpMax >= 0;
+                case NE:
+                    return cmpMin != 0 || cmpMax != 0;
+                default:
+                    return true;
+            }
+        } catch (PhysicalException e) {
+            return true;
+        }
+    }
+}
@@ -20,31 +20,43 @@ package cn.edu.tsinghua.iginx.postgresql;
 
 import static cn.edu.tsinghua.iginx.postgresql.tools.Constants.*;
 import static cn.edu.tsinghua.iginx.postgresql.tools.DataTypeTransformer.fromPostgreSQL;
-import static cn.edu.tsinghua.iginx.postgresql.tools.HashUtils.toHash;
 import static cn.edu.tsinghua.iginx.postgresql.tools.TagKVUtils.splitFullName;
 import static cn.edu.tsinghua.iginx.postgresql.tools.TagKVUtils.toFullName;
 
+import cn.edu.tsinghua.iginx.engine.physical.exception.NonExecutablePhysicalTaskException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.Table;
 import cn.edu.tsinghua.iginx.engine.physical.storage.IStorage;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.Column;
 import cn.edu.tsinghua.iginx.engine.physical.storage.domain.DataArea;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.AggregateUtils;
+import cn.edu.tsinghua.iginx.engine.physical.storage.utils.LimitUtils;
 import cn.edu.tsinghua.iginx.engine.physical.storage.utils.TagKVUtils;
 import cn.edu.tsinghua.iginx.engine.physical.task.TaskExecuteResult;
 import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.ClearEmptyRowStreamWrapper;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
+import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.BitmapView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.ColumnDataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.DataView;
 import cn.edu.tsinghua.iginx.engine.shared.data.write.RowDataView;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
 import cn.edu.tsinghua.iginx.engine.shared.operator.*;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.KeyFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Op;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.type.OperatorType;
 import cn.edu.tsinghua.iginx.metadata.entity.*;
 import cn.edu.tsinghua.iginx.postgresql.query.entity.PostgreSQLQueryRowStream;
 import cn.edu.tsinghua.iginx.postgresql.tools.DataTypeTransformer;
@@ -57,6 +69,9 @@ import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 import org.postgresql.ds.PGConnectionPoolDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +80,16 @@ public class PostgreSQLStorage implements IStorage {
 
     private static final Logger logger = LoggerFactory.getLogger(PostgreSQLStorage.class);
 
+    // 可以下推的部分聚合函数 -> PostgreSQL 中的聚合函数
+    private static final Map<String, String> AGGREGATE_FUNCTIONS = new HashMap<>();
+
+    static {
+        AGGREGATE_FUNCTIONS.put(Count.COUNT, "COUNT");
+        AGGREGATE_FUNCTIONS.put(Sum.SUM, "SUM");
+        AGGREGATE_FUNCTIONS.put(Max.MAX, "MAX");
+        AGGREGATE_FUNCTIONS.put(Min.MIN, "MIN");
+    }
+
     private final StorageEngineMeta meta;
 
     private final Map<String, PGConnectionPoolDataSource> connectionPoolMap =
@@ -72,6 +97,9 @@ public class PostgreSQLStorage implements IStorage {
 
     private final Connection connection;
 
+    // storage unit -> 表名 -> 列名，记录已确认存在的表和列
+    private final Map<String, Map<String, Set<String>>> schemaCache = new ConcurrentHashMap<>();
+
     public PostgreSQLStorage(StorageEngineMeta meta) throws StorageInitializationException {
         this.meta = meta;
         if (!testConnection()) {
@@ -229,6 +257,24 @@ public class PostgreSQLStorage implements IStorage {
 
     @Override
     public TaskExecuteResult executeProject(Project project, DataArea dataArea) {
+        return executeProjectWithFilter(project, null, dataArea);
+    }
+
+    private TaskExecuteResult executeProjectWithFilter(
+            Project project, Filter selectFilter, DataArea dataArea) {
+        return executeProjectWithFilter(project, selectFilter, dataArea, -1, true);
+    }
+
+    /**
+     * @param limit 每张表只需返回的行数，为负数时返回所有行。此时 selectFilter 只含 key 条件，可以在 SQL 中完整执行
+     * @param ascending 为 false 时返回每张表按 key 排序的最后 limit 行
+     */
+    private TaskExecuteResult executeProjectWithFilter(
+            Project project,
+            Filter selectFilter,
+            DataArea dataArea,
+            int limit,
+            boolean ascending) {
         try {
             String databaseName = dataArea.getStorageUnit();
             Connection conn = getConnection(databaseName);
@@ -247,7 +293,6 @@ public class PostgreSQLStorage implements IStorage {
             List<String> databaseNameList = new ArrayList<>();
             List<ResultSet> resultSets = new ArrayList<>();
             ResultSet rs;
-            Statement stmt;
 
             Map<String, String> tableNameToColumnNames =
                     splitAndMergeQueryPatterns(databaseName, conn, project.getPatterns());
@@ -260,13 +305,32 @@ public class PostgreSQLStorage implements IStorage {
                                 fullColumnNames,
                                 getFullName(tableName),
                                 FilterTransformer.toString(filter));
-                try {
-                    stmt = conn.createStatement();
-                    rs = stmt.executeQuery(statement);
-                    logger.info("[Query] execute query: {}", statement);
-                } catch (SQLException e) {
-                    logger.error(
-                            "meet error when executing query {}: {}", statement, e.getMessage());
+                String pushedStatement = null;
+                if (limit >= 0) {
+                    String predicate =
+                            getLimitPredicate(filter, selectFilter, tableName, entry.getValue());
+                    statement =
+                            getLimitStatement(
+                                    conn, fullColumnNames, tableName, predicate, limit, ascending);
+                } else if (selectFilter != null) {
+                    String predicate =
+                            FilterTransformer.toString(
+                                    selectFilter,
+                                    tableName.replace(POSTGRESQL_SEPARATOR, IGINX_SEPARATOR),
+                                    getPushableColumns(entry.getValue()),
+                                    true);
+                    pushedStatement =
+                            String.format(
+                                    QUERY_STATEMENT,
+                                    fullColumnNames,
+                                    getFullName(tableName),
+                                    FilterTransformer.toString(filter)
+                                            + " and ("
+                                            + predicate
+                                            + ")");
+                }
+                rs = executeQuery(conn, pushedStatement, statement);
+                if (rs == null) {
                     continue;
                 }
                 databaseNameList.add(databaseName);
@@ -279,7 +343,7 @@ public class PostgreSQLStorage implements IStorage {
                                     databaseNameList,
                                     resultSets,
                                     false,
-                                    filter,
+                                    selectFilter,
                                     project.getTagFilter()));
             conn.close();
             return new TaskExecuteResult(rowStream);
@@ -293,6 +357,11 @@ public class PostgreSQLStorage implements IStorage {
 
     @Override
     public TaskExecuteResult executeProjectDummy(Project project, DataArea dataArea) {
+        return executeProjectDummyWithFilter(project, null, dataArea);
+    }
+
+    private TaskExecuteResult executeProjectDummyWithFilter(
+            Project project, Filter selectFilter, DataArea dataArea) {
         try {
             KeyInterval keyInterval = dataArea.getKeyInterval();
             Filter filter =
@@ -305,7 +374,6 @@ public class PostgreSQLStorage implements IStorage {
             List<ResultSet> resultSets = new ArrayList<>();
             ResultSet rs;
             Connection conn = null;
-            Statement stmt;
 
             Map<String, Map<String, String>> splitResults =
                     splitAndMergeHistoryQueryPatterns(project.getPatterns());
@@ -324,16 +392,28 @@ public class PostgreSQLStorage implements IStorage {
                                     fullColumnNames,
                                     fullColumnNames,
                                     getFullName(tableName));
-
-                    try {
-                        stmt = conn.createStatement();
-                        rs = stmt.executeQuery(statement);
-                        logger.info("[Query] execute query: {}", statement);
-                    } catch (SQLException e) {
-                        logger.error(
-                                "meet error when executing query {}: {}",
-                                statement,
-                                e.getMessage());
+                    String pushedStatement = null;
+                    if (selectFilter != null) {
+                        // 叠加分片的 key 是整行的哈希值，只能下推值过滤条件
+                        String predicate =
+                                FilterTransformer.toString(
+                                        selectFilter,
+                                        databaseName
+                                                + IGINX_SEPARATOR
+                                                + tableName.replace(
+                                                        POSTGRESQL_SEPARATOR, IGINX_SEPARATOR),
+                                        getPushableColumns(entry.getValue()),
+                                        false);
+                        pushedStatement =
+                                String.format(
+                                        CONCAT_QUERY_STATEMENT_WITH_WHERE_CLAUSE,
+                                        fullColumnNames,
+                                        fullColumnNames,
+                                        getFullName(tableName),
+                                        predicate);
+                    }
+                    rs = executeQuery(conn, pushedStatement, statement);
+                    if (rs == null) {
                         continue;
                     }
                     databaseNameList.add(databaseName);
@@ -341,6 +421,9 @@ public class PostgreSQLStorage implements IStorage {
                 }
             }
 
+            if (selectFilter != null) {
+                filter = new AndFilter(Arrays.asList(filter, selectFilter));
+            }
             RowStream rowStream =
                     new ClearEmptyRowStreamWrapper(
                             new PostgreSQLQueryRowStream(
@@ -361,21 +444,320 @@ public class PostgreSQLStorage implements IStorage {
         }
     }
 
+    /** 要求行在所查询的列上不全为空，这样 SQL 返回的行数与合并并清除空行后的行数一致 */
+    private String getLimitPredicate(
+            Filter filter, Filter selectFilter, String tableName, String columnNames) {
+        StringBuilder predicate = new StringBuilder(FilterTransformer.toString(filter));
+        if (selectFilter != null) {
+            predicate
+                    .append(" and (")
+                    .append(
+                            FilterTransformer.toString(
+                                    selectFilter,
+                                    tableName.replace(POSTGRESQL_SEPARATOR, IGINX_SEPARATOR),
+                                    Collections.emptySet(),
+                                    true))
+                    .append(")");
+        }
+        List<String> notNulls = new ArrayList<>();
+        for (String column : columnNames.split(", ")) {
+            notNulls.add(getFullName(column) + " IS NOT NULL");
+        }
+        predicate.append(" and (").append(String.join(" or ", notNulls)).append(")");
+        return predicate.toString();
+    }
+
+    /** 倒序时先查出倒数第 limit 行的 key，再按 key 升序返回不小于它的行，以便与其他表按 key 归并 */
+    private String getLimitStatement(
+            Connection conn,
+            String fullColumnNames,
+            String tableName,
+            String predicate,
+            int limit,
+            boolean ascending)
+            throws SQLException {
+        if (ascending) {
+            return String.format(
+                    QUERY_WITH_LIMIT_STATEMENT,
+                    fullColumnNames,
+                    getFullName(tableName),
+                    predicate,
+                    limit);
+        }
+        if (limit == 0) {
+            predicate += " and false";
+        } else {
+            String statement =
+                    String.format(
+                            QUERY_LAST_KEY_STATEMENT,
+                            getFullName(tableName),
+                            predicate,
+                            limit - 1);
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery(statement)) {
+                if (rs.next()) {
+                    predicate += " and " + KEY_NAME + " >= " + rs.getLong(1);
+                }
+            }
+        }
+        return String.format(QUERY_STATEMENT, fullColumnNames, getFullName(tableName), predicate);
+    }
+
+    /** 优先执行带下推谓词的查询，谓词无法执行时（如类型不匹配）退回到不带谓词的查询，失败时返回 null */
+    private ResultSet executeQuery(Connection conn, String pushedStatement, String statement) {
+        if (pushedStatement != null) {
+            try {
+                ResultSet rs = conn.createStatement().executeQuery(pushedStatement);
+                logger.info("[Query] execute query: {}", pushedStatement);
+                return rs;
+            } catch (SQLException e) {
+                logger.warn(
+                        "meet error when executing query {}, retry without pushed filter: {}",
+                        pushedStatement,
+                        e.getMessage());
+            }
+        }
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(statement);
+            logger.info("[Query] execute query: {}", statement);
+            return rs;
+        } catch (SQLException e) {
+            logger.error("meet error when executing query {}: {}", statement, e.getMessage());
+            return null;
+        }
+    }
+
+    /** 不带 tag 且列名唯一的列可以在 SQL 中直接按列名过滤 */
+    private Set<String> getPushableColumns(String columnNames) {
+        Map<String, Integer> nameCounts = new HashMap<>();
+        for (String column : columnNames.split(", ")) {
+            nameCounts.merge(splitFullName(column).k, 1, Integer::sum);
+        }
+        Set<String> columns = new HashSet<>();
+        for (String column : columnNames.split(", ")) {
+            if (column.indexOf(POSTGRESQL_SEPARATOR) == -1 && nameCounts.get(column) == 1) {
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
     @Override
     public boolean isSupportProjectWithSelect() {
-        return false;
+        return true;
     }
 
     @Override
     public TaskExecuteResult executeProjectWithSelect(
             Project project, Select select, DataArea dataArea) {
-        return null;
+        return executeProjectWithFilter(project, select.getFilter(), dataArea);
+    }
+
+    @Override
+    public boolean isSupportProjectWithLimit(Select select) {
+        return select == null || LimitUtils.isKeyFilter(select.getFilter());
+    }
+
+    @Override
+    public TaskExecuteResult executeProjectWithLimit(
+            Project project, Select select, int limit, boolean ascending, DataArea dataArea) {
+        return executeProjectWithFilter(
+                project, select == null ? null : select.getFilter(), dataArea, limit, ascending);
+    }
+
+    @Override
+    public boolean isSupportProjectWithAggregate(Operator aggregate) {
+        return AggregateUtils.isSupportedAggregate(aggregate, AGGREGATE_FUNCTIONS.keySet());
+    }
+
+    /** 每张表执行一条聚合语句，Downsample 按窗口起点 GROUP BY，各表的结果再按窗口合并 */
+    @Override
+    public TaskExecuteResult executeProjectWithAggregate(
+            Project project, Select select, Operator aggregate, DataArea dataArea) {
+        Filter selectFilter = select == null ? null : select.getFilter();
+        if (selectFilter != null && !LimitUtils.isKeyFilter(selectFilter)) {
+            // 值过滤只能部分下推，剩余的条件需要在聚合前在内存中校验
+            return new TaskExecuteResult(
+                    new NonExecutablePhysicalTaskException(
+                            "value filter can't be fully pushed down to postgresql"));
+        }
+        Downsample downsample =
+                aggregate.getType() == OperatorType.Downsample ? (Downsample) aggregate : null;
+        List<FunctionCall> functionCallList =
+                downsample != null
+                        ? downsample.getFunctionCallList()
+                        : ((SetTransform) aggregate).getFunctionCallList();
+        Set<String> functions = new LinkedHashSet<>();
+        for (FunctionCall functionCall : functionCallList) {
+            functions.add(functionCall.getFunction().getIdentifier());
+        }
+        try {
+            String databaseName = dataArea.getStorageUnit();
+            Connection conn = getConnection(databaseName);
+            if (conn == null) {
+                return new TaskExecuteResult(
+                        new PhysicalTaskExecuteFailureException(
+                                String.format("cannot connect to database %s", databaseName)));
+            }
+            KeyInterval keyInterval = dataArea.getKeyInterval();
+            Filter filter =
+                    new AndFilter(
+                            Arrays.asList(
+                                    new KeyFilter(Op.GE, keyInterval.getStartKey()),
+                                    new KeyFilter(Op.L, keyInterval.getEndKey())));
+
+            List<Field> fields = new ArrayList<>();
+            List<String> columnFunctions = new ArrayList<>();
+            // 每张表的结果在 fields 中的起始位置，以及窗口起点 -> 该表的聚合结果，SetTransform 只有一行
+            List<Integer> startIndices = new ArrayList<>();
+            List<Map<Long, Object[]>> tableResults = new ArrayList<>();
+            Map<String, String> tableNameToColumnNames =
+                    splitAndMergeQueryPatterns(databaseName, conn, project.getPatterns());
+            for (Map.Entry<String, String> entry : tableNameToColumnNames.entrySet()) {
+                String tableName = entry.getKey();
+                List<String> columns = new ArrayList<>();
+                for (String column : entry.getValue().split(", ")) {
+                    if (project.getTagFilter() == null
+                            || TagKVUtils.match(splitFullName(column).v, project.getTagFilter())) {
+                        columns.add(column);
+                    }
+                }
+                if (columns.isEmpty()) {
+                    continue;
+                }
+                Map<String, String> columnTypes = loadColumnTypes(conn, databaseName, tableName);
+                startIndices.add(fields.size());
+                for (String function : functions) {
+                    for (String column : columns) {
+                        Pair<String, Map<String, String>> namesAndTags = splitFullName(column);
+                        fields.add(
+                                new Field(
+                                        tableName.replace(POSTGRESQL_SEPARATOR, IGINX_SEPARATOR)
+                                                + IGINX_SEPARATOR
+                                                + namesAndTags.k.replace(
+                                                        POSTGRESQL_SEPARATOR, IGINX_SEPARATOR),
+                                        fromPostgreSQL(columnTypes.get(column)),
+                                        namesAndTags.v));
+                        columnFunctions.add(function);
+                    }
+                }
+                String predicate =
+                        getLimitPredicate(
+                                filter, selectFilter, tableName, String.join(", ", columns));
+                String statement =
+                        getAggregateStatement(
+                                tableName, columns, columnTypes, functions, predicate, downsample);
+                logger.info("[Query] execute aggregate query: {}", statement);
+                Map<Long, Object[]> results = new LinkedHashMap<>();
+                try (Statement stmt = conn.createStatement();
+                        ResultSet rs = stmt.executeQuery(statement)) {
+                    int offset = downsample == null ? 1 : 2;
+                    while (rs.next()) {
+                        Object[] values = new Object[functions.size() * columns.size()];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = rs.getObject(i + offset);
+                        }
+                        results.put(downsample == null ? 0L : rs.getLong(1), values);
+                    }
+                }
+                tableResults.add(results);
+            }
+            conn.close();
+
+            Map<Long, Object[]> windows = new TreeMap<>();
+            for (int i = 0; i < tableResults.size(); i++) {
+                int startIndex = startIndices.get(i);
+                for (Map.Entry<Long, Object[]> result : tableResults.get(i).entrySet()) {
+                    Object[] values =
+                            windows.computeIfAbsent(
+                                    result.getKey(), k -> new Object[fields.size()]);
+                    Object[] tableValues = result.getValue();
+                    System.arraycopy(tableValues, 0, values, startIndex, tableValues.length);
+                }
+            }
+
+            RowStream rowStream;
+            if (downsample == null) {
+                Header header = new Header(fields);
+                Row row = new Row(header, windows.getOrDefault(0L, new Object[fields.size()]));
+                rowStream =
+                        AggregateUtils.toSetTransformResult(
+                                new Table(header, Collections.singletonList(row)),
+                                columnFunctions,
+                                (SetTransform) aggregate);
+            } else {
+                Header header = new Header(Field.KEY, fields);
+                List<Row> rows = new ArrayList<>();
+                windows.forEach((key, values) -> rows.add(new Row(header, key, values)));
+                rowStream =
+                        AggregateUtils.toDownsampleResult(
+                                new Table(header, rows), columnFunctions, downsample);
+            }
+            return new TaskExecuteResult(rowStream);
+        } catch (SQLException | PhysicalException e) {
+            logger.error(e.getMessage());
+            return new TaskExecuteResult(
+                    new PhysicalTaskExecuteFailureException(
+                            "execute project with aggregate task in postgresql failure", e));
+        }
+    }
+
+    /** 对一张表中的各列计算所有函数，结果按函数、列的顺序排列。Downsample 的第一列为窗口的起点 */
+    static String getAggregateStatement(
+            String tableName,
+            List<String> columns,
+            Map<String, String> columnTypes,
+            Collection<String> functions,
+            String predicate,
+            Downsample downsample) {
+        List<String> aggregates = new ArrayList<>();
+        for (String function : functions) {
+            for (String column : columns) {
+                String columnName = getFullName(column);
+                if (function.equals(Sum.SUM)
+                        && fromPostgreSQL(columnTypes.get(column)) == DataType.FLOAT) {
+                    // 与内存中一致，float 按 double 累加
+                    columnName += "::DOUBLE PRECISION";
+                }
+                aggregates.add(AGGREGATE_FUNCTIONS.get(function) + "(" + columnName + ")");
+            }
+        }
+        if (downsample == null) {
+            return String.format(
+                    QUERY_AGGREGATE_STATEMENT,
+                    String.join(", ", aggregates),
+                    getFullName(tableName),
+                    predicate);
+        }
+        return String.format(
+                QUERY_DOWNSAMPLE_STATEMENT,
+                downsample.getKeyRange().getActualBeginKey(),
+                downsample.getPrecision(),
+                String.join(", ", aggregates),
+                getFullName(tableName),
+                predicate);
+    }
+
+    /** 从元数据中读取表中每一列的类型名 */
+    private Map<String, String> loadColumnTypes(
+            Connection conn, String databaseName, String tableName) throws SQLException {
+        Map<String, String> columnTypes = new HashMap<>();
+        try (ResultSet rs =
+                conn.getMetaData().getColumns(databaseName, "public", tableName, "%")) {
+            while (rs.next()) {
+                // 表名中的 _ 会被当作通配符，需要精确匹配
+                if (tableName.equals(rs.getString("TABLE_NAME"))) {
+                    columnTypes.put(rs.getString("COLUMN_NAME"), rs.getString("TYPE_NAME"));
+                }
+            }
+        }
+        return columnTypes;
     }
 
     @Override
     public TaskExecuteResult executeProjectDummyWithSelect(
             Project project, Select select, DataArea dataArea) {
-        return null;
+        return executeProjectDummyWithFilter(project, select.getFilter(), dataArea);
     }
 
     @Override
@@ -411,6 +793,7 @@ public class PostgreSQLStorage implements IStorage {
                         statement = String.format(DROP_DATABASE_STATEMENT, databaseName);
                         logger.info("[Delete] execute delete: {}", statement);
                         stmt.execute(statement); // 删除数据库
+                        schemaCache.remove(databaseName);
                         stmt.close();
                         postgresConn.close();
                         return new TaskExecuteResult(null, null);
@@ -435,6 +818,10 @@ public class PostgreSQLStorage implements IStorage {
                                             getFullName(columnName));
                             logger.info("[Delete] execute delete: {}", statement);
                             stmt.execute(statement); // 删除列
+                            schemaCache
+                                    .getOrDefault(databaseName, Collections.emptyMap())
+                                    .getOrDefault(tableName, Collections.emptySet())
+                                    .remove(columnName);
                         }
                     }
                 }
@@ -529,7 +916,7 @@ public class PostgreSQLStorage implements IStorage {
                     String tableName = tableSet.getString("TABLE_NAME"); // 获取表名称
                     ResultSet columnSet =
                             databaseMetaData.getColumns(databaseName, "public", tableName, "%");
-                    StringBuilder columnNames = new StringBuilder();
+                    boolean hasKey = false;
                     while (columnSet.next()) {
                         String columnName = columnSet.getString("COLUMN_NAME"); // 获取列名称
                         paths.add(
@@ -538,28 +925,35 @@ public class PostgreSQLStorage implements IStorage {
                                         + tableName.replace(POSTGRESQL_SEPARATOR, IGINX_SEPARATOR)
                                         + IGINX_SEPARATOR
                                         + columnName);
-                        columnNames.append(columnName);
-                        columnNames.append(", "); // c1, c2, c3,
+                        hasKey |= columnName.equals(KEY_NAME);
                     }
-                    columnNames =
-                            new StringBuilder(
-                                    columnNames.substring(
-                                            0, columnNames.length() - 2)); // c1, c2, c3
 
                     // 获取 key 的范围
-                    String statement =
-                            String.format(
-                                    CONCAT_QUERY_STATEMENT,
-                                    getFullColumnNames(columnNames.toString()),
-                                    getFullName(tableName));
-                    Statement concatStmt = conn.createStatement();
-                    ResultSet concatSet = concatStmt.executeQuery(statement);
-                    while (concatSet.next()) {
-                        String concatValue = concatSet.getString("concat");
-                        long key = toHash(concatValue);
-                        minKey = Math.min(key, minKey);
-                        maxKey = Math.max(key, maxKey);
+                    Statement boundaryStmt = conn.createStatement();
+                    if (hasKey) {
+                        // 带有 key 列的表直接通过主键索引获取 key 的最值
+                        ResultSet boundarySet =
+                                boundaryStmt.executeQuery(
+                                        String.format(
+                                                QUERY_KEY_BOUNDARY_STATEMENT,
+                                                getFullName(tableName)));
+                        if (boundarySet.next() && boundarySet.getObject(1) != null) {
+                            minKey = Math.min(boundarySet.getLong(1), minKey);
+                            maxKey = Math.max(boundarySet.getLong(2), maxKey);
+                        }
+                    } else {
+                        // 没有 key 列的表以整行的哈希值作为 key，其分布在整个非负整数范围内且无序，
+                        // 逐行计算最值没有意义，只需判断表是否为空
+                        ResultSet boundarySet =
+                                boundaryStmt.executeQuery(
+                                        String.format(
+                                                QUERY_NOT_EMPTY_STATEMENT, getFullName(tableName)));
+                        if (boundarySet.next() && boundarySet.getBoolean(1)) {
+                            minKey = 0;
+                            maxKey = Long.MAX_VALUE - 1;
+                        }
                     }
+                    boundaryStmt.close();
                 }
             }
             stmt.close();
@@ -740,22 +1134,34 @@ public class PostgreSQLStorage implements IStorage {
             if (tagsList != null && !tagsList.isEmpty()) {
                 tags = tagsList.get(i);
             }
-            DataType dataType = dataTypeList.get(i);
             String tableName =
                     path.substring(0, path.lastIndexOf(IGINX_SEPARATOR))
                             .replace(IGINX_SEPARATOR, POSTGRESQL_SEPARATOR);
             String columnName =
-                    path.substring(path.lastIndexOf(IGINX_SEPARATOR) + 1)
-                            .replace(IGINX_SEPARATOR, POSTGRESQL_SEPARATOR);
+                    toFullName(path.substring(path.lastIndexOf(IGINX_SEPARATOR) + 1), tags);
+            createOrAlterTable(conn, storageUnit, tableName, columnName, dataTypeList.get(i));
+        }
+    }
 
-            try {
-                Statement stmt = conn.createStatement();
-                DatabaseMetaData databaseMetaData = conn.getMetaData();
-                ResultSet tableSet =
-                        databaseMetaData.getTables(
-                                storageUnit, "public", tableName, new String[] {"TABLE"});
-                columnName = toFullName(columnName, tags);
-                if (!tableSet.next()) {
+    /** 确保表和列存在，已确认存在的表和列会被缓存，避免每次写入都查询元数据 */
+    private void createOrAlterTable(
+            Connection conn,
+            String storageUnit,
+            String tableName,
+            String columnName,
+            DataType dataType) {
+        Map<String, Set<String>> tables =
+                schemaCache.computeIfAbsent(storageUnit, k -> new ConcurrentHashMap<>());
+        Set<String> columns = tables.get(tableName);
+        if (columns != null && columns.contains(columnName)) {
+            return;
+        }
+
+        try {
+            Statement stmt = conn.createStatement();
+            if (columns == null) {
+                columns = loadColumns(conn, storageUnit, tableName);
+                if (columns == null) {
                     String statement =
                             String.format(
                                     CREATE_TABLE_STATEMENT,
@@ -764,329 +1170,331 @@ public class PostgreSQLStorage implements IStorage {
                                     DataTypeTransformer.toPostgreSQL(dataType));
                     logger.info("[Create] execute create: {}", statement);
                     stmt.execute(statement);
-                } else {
-                    ResultSet columnSet =
-                            databaseMetaData.getColumns(
-                                    storageUnit, "public", tableName, columnName);
-                    if (!columnSet.next()) {
-                        String statement =
-                                String.format(
-                                        ADD_COLUMN_STATEMENT,
-                                        getFullName(tableName),
-                                        getFullName(columnName),
-                                        DataTypeTransformer.toPostgreSQL(dataType));
-                        logger.info("[Create] execute create: {}", statement);
-                        stmt.execute(statement);
-                    }
-                    columnSet.close();
+                    columns = ConcurrentHashMap.newKeySet();
+                    columns.add(KEY_NAME);
                 }
-                tableSet.close();
-                stmt.close();
-            } catch (SQLException e) {
-                logger.error(
-                        "create or alter table {} field {} error: {}",
-                        tableName,
-                        columnName,
-                        e.getMessage());
+                tables.put(tableName, columns);
+            }
+            if (!columns.contains(columnName)) {
+                String statement =
+                        String.format(
+                                ADD_COLUMN_STATEMENT,
+                                getFullName(tableName),
+                                getFullName(columnName),
+                                DataTypeTransformer.toPostgreSQL(dataType));
+                logger.info("[Create] execute create: {}", statement);
+                stmt.execute(statement);
+                columns.add(columnName);
             }
+            stmt.close();
+        } catch (SQLException e) {
+            logger.error(
+                    "create or alter table {} field {} error: {}",
+                    tableName,
+                    columnName,
+                    e.getMessage());
         }
     }
 
+    /** 从元数据中读取表的所有列，表不存在时返回 null */
+    private Set<String> loadColumns(Connection conn, String storageUnit, String tableName)
+            throws SQLException {
+        Set<String> columns = ConcurrentHashMap.newKeySet();
+        ResultSet columnSet = conn.getMetaData().getColumns(storageUnit, "public", tableName, "%");
+        while (columnSet.next()) {
+            // 表名中的 _ 会被当作通配符，需要精确匹配
+            if (tableName.equals(columnSet.getString("TABLE_NAME"))) {
+                columns.add(columnSet.getString("COLUMN_NAME"));
+            }
+        }
+        columnSet.close();
+        return columns.isEmpty() ? null : columns;
+    }
+
     private Exception insertNonAlignedRowRecords(
             Connection conn, String databaseName, RowDataView data) {
-        int batchSize = Math.min(data.getKeySize(), BATCH_SIZE);
-        try {
-            Statement stmt = conn.createStatement();
-
-            // 创建表
-            createOrAlterTables(
-                    conn,
-                    databaseName,
-                    data.getPaths(),
-                    data.getTagsList(),
-                    data.getDataTypeList());
-
-            // 插入数据
-            Map<String, Pair<String, List<String>>> tableToColumnEntries =
-                    new HashMap<>(); // <表名, <列名，值列表>>
-            int cnt = 0;
-            boolean firstRound = true;
-            while (cnt < data.getKeySize()) {
-                int size = Math.min(data.getKeySize() - cnt, batchSize);
-                Map<String, boolean[]> tableHasData = new HashMap<>(); // 记录每一张表的每一行是否有数据点
-                for (int i = cnt; i < cnt + size; i++) {
-                    BitmapView bitmapView = data.getBitmapView(i);
-                    int index = 0;
-                    for (int j = 0; j < data.getPathNum(); j++) {
-                        String path = data.getPath(j);
-                        DataType dataType = data.getDataType(j);
-                        String tableName =
-                                path.substring(0, path.lastIndexOf(IGINX_SEPARATOR))
-                                        .replace(IGINX_SEPARATOR, POSTGRESQL_SEPARATOR);
-                        String columnName = path.substring(path.lastIndexOf(IGINX_SEPARATOR) + 1);
-                        Map<String, String> tags = data.getTags(j);
-
-                        StringBuilder columnKeys = new StringBuilder();
-                        List<String> columnValues = new ArrayList<>();
-                        if (tableToColumnEntries.containsKey(tableName)) {
-                            columnKeys = new StringBuilder(tableToColumnEntries.get(tableName).k);
-                            columnValues = tableToColumnEntries.get(tableName).v;
-                        }
-
-                        String value = "null";
-                        if (bitmapView.get(j)) {
-                            if (dataType == DataType.BINARY) {
-                                value =
-                                        "'"
-                                                + new String(
-                                                        (byte[]) data.getValue(i, index),
-                                                        StandardCharsets.UTF_8)
-                                                + "'";
-                            } else {
-                                value = data.getValue(i, index).toString();
-                            }
-                            index++;
-                            if (tableHasData.containsKey(tableName)) {
-                                tableHasData.get(tableName)[i - cnt] = true;
-                            } else {
-                                boolean[] hasData = new boolean[size];
-                                hasData[i - cnt] = true;
-                                tableHasData.put(tableName, hasData);
-                            }
-                        }
-
-                        if (firstRound) {
-                            columnKeys.append(toFullName(columnName, tags)).append(", ");
-                        }
+        // 创建表
+        createOrAlterTables(
+                conn, databaseName, data.getPaths(), data.getTagsList(), data.getDataTypeList());
+
+        // 按表整理数据
+        Map<String, TableBatch> tableBatches = new LinkedHashMap<>();
+        TableBatch[] pathBatches = new TableBatch[data.getPathNum()];
+        int[] pathColumns = new int[data.getPathNum()];
+        for (int j = 0; j < data.getPathNum(); j++) {
+            addColumn(tableBatches, data, j, pathBatches, pathColumns);
+        }
+        for (int i = 0; i < data.getKeySize(); i++) {
+            BitmapView bitmapView = data.getBitmapView(i);
+            int index = 0;
+            for (int j = 0; j < data.getPathNum(); j++) {
+                if (bitmapView.get(j)) {
+                    pathBatches[j].set(data.getKey(i), pathColumns[j], data.getValue(i, index));
+                    index++;
+                }
+            }
+        }
+        return executeBatchInsert(conn, databaseName, tableBatches.values());
+    }
 
-                        if (i - cnt < columnValues.size()) {
-                            columnValues.set(i - cnt, columnValues.get(i - cnt) + value + ", ");
-                        } else {
-                            columnValues.add(data.getKey(i) + ", " + value + ", "); // 添加 key 列
-                        }
+    private Exception insertNonAlignedColumnRecords(
+            Connection conn, String databaseName, ColumnDataView data) {
+        // 创建表
+        createOrAlterTables(
+                conn, databaseName, data.getPaths(), data.getTagsList(), data.getDataTypeList());
+
+        // 按表整理数据
+        Map<String, TableBatch> tableBatches = new LinkedHashMap<>();
+        TableBatch[] pathBatches = new TableBatch[data.getPathNum()];
+        int[] pathColumns = new int[data.getPathNum()];
+        for (int i = 0; i < data.getPathNum(); i++) {
+            addColumn(tableBatches, data, i, pathBatches, pathColumns);
+        }
+        for (int i = 0; i < data.getPathNum(); i++) {
+            BitmapView bitmapView = data.getBitmapView(i);
+            int index = 0;
+            for (int j = 0; j < data.getKeySize(); j++) {
+                if (bitmapView.get(j)) {
+                    pathBatches[i].set(data.getKey(j), pathColumns[i], data.getValue(i, index));
+                    index++;
+                }
+            }
+        }
+        return executeBatchInsert(conn, databaseName, tableBatches.values());
+    }
 
-                        tableToColumnEntries.put(
-                                tableName, new Pair<>(columnKeys.toString(), columnValues));
-                    }
+    private void addColumn(
+            Map<String, TableBatch> tableBatches,
+            DataView data,
+            int pathIndex,
+            TableBatch[] pathBatches,
+            int[] pathColumns) {
+        String path = data.getPath(pathIndex);
+        String tableName =
+                path.substring(0, path.lastIndexOf(IGINX_SEPARATOR))
+                        .replace(IGINX_SEPARATOR, POSTGRESQL_SEPARATOR);
+        String columnName =
+                toFullName(
+                        path.substring(path.lastIndexOf(IGINX_SEPARATOR) + 1),
+                        data.getTags(pathIndex));
+        TableBatch batch = tableBatches.computeIfAbsent(tableName, TableBatch::new);
+        pathBatches[pathIndex] = batch;
+        pathColumns[pathIndex] = batch.addColumn(columnName, data.getDataType(pathIndex));
+    }
 
-                    firstRound = false;
+    /**
+     * 写入各表的数据，同一个 key 已存在时只覆盖本次写入的非空列。行数较多的表通过 COPY 写入临时表后再合并，其余的表使用预编译的 upsert
+     * 语句批量写入。缓存的表结构过期时（如被其他节点删除）会刷新缓存后重试一次。
+     */
+    private Exception executeBatchInsert(
+            Connection conn, String storageUnit, Collection<TableBatch> tableBatches) {
+        try {
+            try {
+                writeTableBatches(conn, tableBatches);
+            } catch (SQLException e) {
+                if (!UNDEFINED_TABLE.equals(e.getSQLState())
+                        && !UNDEFINED_COLUMN.equals(e.getSQLState())) {
+                    throw e;
                 }
-
-                for (Map.Entry<String, boolean[]> entry : tableHasData.entrySet()) {
-                    String tableName = entry.getKey();
-                    boolean[] hasData = entry.getValue();
-                    String columnKeys = tableToColumnEntries.get(tableName).k;
-                    List<String> columnValues = tableToColumnEntries.get(tableName).v;
-                    boolean needToInsert = false;
-                    for (int i = hasData.length - 1; i >= 0; i--) {
-                        if (!hasData[i]) {
-                            columnValues.remove(i);
-                        } else {
-                            needToInsert = true;
-                        }
-                    }
-                    if (needToInsert) {
-                        tableToColumnEntries.put(tableName, new Pair<>(columnKeys, columnValues));
+                logger.warn("schema cache of {} is out of date: {}", storageUnit, e.getMessage());
+                schemaCache.remove(storageUnit);
+                for (TableBatch batch : tableBatches) {
+                    for (int i = 0; i < batch.columns.size(); i++) {
+                        createOrAlterTable(
+                                conn,
+                                storageUnit,
+                                batch.tableName,
+                                batch.columns.get(i),
+                                batch.dataTypes.get(i));
                     }
                 }
-
-                executeBatchInsert(stmt, tableToColumnEntries);
-                for (Pair<String, List<String>> columnEntries : tableToColumnEntries.values()) {
-                    columnEntries.v.clear();
-                }
-
-                cnt += size;
+                writeTableBatches(conn, tableBatches);
             }
-            stmt.close();
             conn.close();
         } catch (SQLException e) {
             logger.error(e.getMessage());
             return e;
         }
-
         return null;
     }
 
-    private Exception insertNonAlignedColumnRecords(
-            Connection conn, String databaseName, ColumnDataView data) {
-        int batchSize = Math.min(data.getKeySize(), BATCH_SIZE);
+    private void writeTableBatches(Connection conn, Collection<TableBatch> tableBatches)
+            throws SQLException {
+        conn.setAutoCommit(false);
         try {
-            Statement stmt = conn.createStatement();
-
-            // 创建表
-            createOrAlterTables(
-                    conn,
-                    databaseName,
-                    data.getPaths(),
-                    data.getTagsList(),
-                    data.getDataTypeList());
-
-            // 插入数据
-            Map<String, Pair<String, List<String>>> tableToColumnEntries =
-                    new HashMap<>(); // <表名, <列名，值列表>>
-            Map<Integer, Integer> pathIndexToBitmapIndex = new HashMap<>();
-            int cnt = 0;
-            boolean firstRound = true;
-            while (cnt < data.getKeySize()) {
-                int size = Math.min(data.getKeySize() - cnt, batchSize);
-                Map<String, boolean[]> tableHasData = new HashMap<>(); // 记录每一张表的每一行是否有数据点
-                for (int i = 0; i < data.getPathNum(); i++) {
-                    String path = data.getPath(i);
-                    DataType dataType = data.getDataType(i);
-                    String tableName =
-                            path.substring(0, path.lastIndexOf(IGINX_SEPARATOR))
-                                    .replace(IGINX_SEPARATOR, POSTGRESQL_SEPARATOR);
-                    String columnName = path.substring(path.lastIndexOf(IGINX_SEPARATOR) + 1);
-                    Map<String, String> tags = data.getTags(i);
-                    BitmapView bitmapView = data.getBitmapView(i);
-
-                    StringBuilder columnKeys = new StringBuilder();
-                    List<String> columnValues = new ArrayList<>();
-                    if (tableToColumnEntries.containsKey(tableName)) {
-                        columnKeys = new StringBuilder(tableToColumnEntries.get(tableName).k);
-                        columnValues = tableToColumnEntries.get(tableName).v;
-                    }
-
-                    int index = 0;
-                    if (pathIndexToBitmapIndex.containsKey(i)) {
-                        index = pathIndexToBitmapIndex.get(i);
-                    }
-                    for (int j = cnt; j < cnt + size; j++) {
-                        String value = "null";
-                        if (bitmapView.get(j)) {
-                            if (dataType == DataType.BINARY) {
-                                value =
-                                        "'"
-                                                + new String(
-                                                        (byte[]) data.getValue(i, index),
-                                                        StandardCharsets.UTF_8)
-                                                + "'";
-                            } else {
-                                value = data.getValue(i, index).toString();
-                            }
-                            index++;
-                            if (tableHasData.containsKey(tableName)) {
-                                tableHasData.get(tableName)[j - cnt] = true;
-                            } else {
-                                boolean[] hasData = new boolean[size];
-                                hasData[j - cnt] = true;
-                                tableHasData.put(tableName, hasData);
-                            }
-                        }
-
-                        if (j - cnt < columnValues.size()) {
-                            columnValues.set(j - cnt, columnValues.get(j - cnt) + value + ", ");
-                        } else {
-                            columnValues.add(data.getKey(j) + ", " + value + ", "); // 添加 key 列
-                        }
-                    }
-                    pathIndexToBitmapIndex.put(i, index);
-
-                    if (firstRound) {
-                        columnKeys.append(toFullName(columnName, tags)).append(", ");
-                    }
-
-                    tableToColumnEntries.put(
-                            tableName, new Pair<>(columnKeys.toString(), columnValues));
-                }
-
-                for (Map.Entry<String, boolean[]> entry : tableHasData.entrySet()) {
-                    String tableName = entry.getKey();
-                    boolean[] hasData = entry.getValue();
-                    String columnKeys = tableToColumnEntries.get(tableName).k;
-                    List<String> columnValues = tableToColumnEntries.get(tableName).v;
-                    boolean needToInsert = false;
-                    for (int i = hasData.length - 1; i >= 0; i--) {
-                        if (!hasData[i]) {
-                            columnValues.remove(i);
-                        } else {
-                            needToInsert = true;
-                        }
-                    }
-                    if (needToInsert) {
-                        tableToColumnEntries.put(tableName, new Pair<>(columnKeys, columnValues));
-                    }
+            int stageIndex = 0;
+            for (TableBatch batch : tableBatches) {
+                if (batch.getRowCount() == 0) {
+                    continue;
                 }
-
-                executeBatchInsert(stmt, tableToColumnEntries);
-                for (Map.Entry<String, Pair<String, List<String>>> entry :
-                        tableToColumnEntries.entrySet()) {
-                    entry.getValue().v.clear();
+                if (batch.getRowCount() >= COPY_THRESHOLD) {
+                    copyAndMerge(conn, batch, STAGE_TABLE_PREFIX + stageIndex++);
+                } else {
+                    upsert(conn, batch);
                 }
-
-                firstRound = false;
-                cnt += size;
             }
-            stmt.close();
-            conn.close();
+            conn.commit();
         } catch (SQLException e) {
-            logger.error(e.getMessage());
-            return e;
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
+    }
 
-        return null;
+    private void upsert(Connection conn, TableBatch batch) throws SQLException {
+        // INSERT INTO t (key, c1, c2) VALUES (?, ?, ?) ON CONFLICT (key) DO UPDATE SET ...
+        StringBuilder statement = new StringBuilder();
+        statement.append("INSERT INTO ").append(getFullName(batch.tableName));
+        statement.append(" (").append(getInsertColumnNames(batch)).append(") VALUES (?");
+        for (int i = 0; i < batch.columns.size(); i++) {
+            statement.append(", ?");
+        }
+        statement.append(")").append(getConflictClause(batch));
+
+        PreparedStatement stmt = conn.prepareStatement(statement.toString());
+        int cnt = 0;
+        for (Map.Entry<Long, Object[]> row : batch.rows.entrySet()) {
+            stmt.setLong(1, row.getKey());
+            Object[] values = row.getValue();
+            for (int i = 0; i < values.length; i++) {
+                DataType dataType = batch.dataTypes.get(i);
+                if (values[i] == null) {
+                    stmt.setNull(i + 2, DataTypeTransformer.toJdbcType(dataType));
+                } else if (dataType == DataType.BINARY) {
+                    stmt.setString(i + 2, new String((byte[]) values[i], StandardCharsets.UTF_8));
+                } else {
+                    stmt.setObject(i + 2, values[i]);
+                }
+            }
+            stmt.addBatch();
+            if (++cnt % BATCH_SIZE == 0) {
+                stmt.executeBatch();
+            }
+        }
+        stmt.executeBatch();
+        stmt.close();
     }
 
-    private void executeBatchInsert(
-            Statement stmt, Map<String, Pair<String, List<String>>> tableToColumnEntries)
+    private void copyAndMerge(Connection conn, TableBatch batch, String stageTable)
             throws SQLException {
-        for (Map.Entry<String, Pair<String, List<String>>> entry :
-                tableToColumnEntries.entrySet()) {
-            String tableName = entry.getKey();
-            String columnNames = entry.getValue().k.substring(0, entry.getValue().k.length() - 2);
-            List<String> values = entry.getValue().v;
-            String[] parts = columnNames.split(", ");
-            boolean hasMultipleRows = parts.length != 1;
-
-            // INSERT INTO XXX ("\u2E85", XXX, ...) VALUES (XXX, XXX, ...), (XXX, XXX, ...), ...,
-            // (XXX,
-            // XXX, ...) ON CONFLICT ("\u2E85") DO UPDATE SET (XXX, ...) = (excluded.XXX, ...);
-            StringBuilder statement = new StringBuilder();
-            statement.append("INSERT INTO ");
-            statement.append(getFullName(tableName));
-            statement.append(" (");
-            statement.append(KEY_NAME);
-            statement.append(", ");
-            String fullColumnNames = getFullColumnNames(columnNames);
-            statement.append(fullColumnNames);
-
-            statement.append(") VALUES ");
-            for (String value : values) {
-                statement.append("(");
-                statement.append(value, 0, value.length() - 2);
-                statement.append("), ");
-            }
-            statement = new StringBuilder(statement.substring(0, statement.length() - 2));
+        String fullStageTable = getFullName(stageTable);
+        String insertColumnNames = getInsertColumnNames(batch);
+        Statement stmt = conn.createStatement();
+        stmt.execute(
+                String.format(
+                        CREATE_STAGE_TABLE_STATEMENT,
+                        fullStageTable,
+                        getFullName(batch.tableName)));
 
-            statement.append(" ON CONFLICT (");
-            statement.append(KEY_NAME);
-            statement.append(") DO UPDATE SET ");
-            if (hasMultipleRows) {
-                statement.append("("); // 只有一列不加括号
-            }
-            statement.append(fullColumnNames);
-            if (hasMultipleRows) {
-                statement.append(")"); // 只有一列不加括号
+        CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+        String copyStatement = String.format(COPY_STATEMENT, fullStageTable, insertColumnNames);
+        CopyIn copyIn = copyManager.copyIn(copyStatement);
+        try {
+            StringBuilder buffer = new StringBuilder();
+            int cnt = 0;
+            for (Map.Entry<Long, Object[]> row : batch.rows.entrySet()) {
+                buffer.append(row.getKey());
+                for (Object value : row.getValue()) {
+                    buffer.append(',');
+                    appendCsvValue(buffer, value);
+                }
+                buffer.append('\n');
+                if (++cnt % BATCH_SIZE == 0) {
+                    byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+                    copyIn.writeToCopy(bytes, 0, bytes.length);
+                    buffer.setLength(0);
+                }
             }
-            statement.append(" = ");
-            if (hasMultipleRows) {
-                statement.append("("); // 只有一列不加括号
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
             }
-            for (String part : parts) {
-                statement.append("excluded.");
-                statement.append(getFullName(part));
-                statement.append(", ");
+        }
+
+        stmt.execute(
+                String.format(
+                        MERGE_STAGE_TABLE_STATEMENT,
+                        getFullName(batch.tableName),
+                        insertColumnNames,
+                        insertColumnNames,
+                        fullStageTable,
+                        getConflictClause(batch)));
+        stmt.execute(String.format(DROP_STAGE_TABLE_STATEMENT, fullStageTable));
+        stmt.close();
+    }
+
+    private static void appendCsvValue(StringBuilder buffer, Object value) {
+        if (value == null) { // CSV 中不带引号的空值表示 NULL
+            return;
+        }
+        if (value instanceof byte[]) {
+            String str = new String((byte[]) value, StandardCharsets.UTF_8);
+            buffer.append('"').append(str.replace("\"", "\"\"")).append('"');
+        } else {
+            buffer.append(value);
+        }
+    }
+
+    private String getInsertColumnNames(TableBatch batch) {
+        StringBuilder columnNames = new StringBuilder(KEY_NAME);
+        for (String column : batch.columns) {
+            columnNames.append(", ").append(getFullName(column));
+        }
+        return columnNames.toString();
+    }
+
+    /** 已存在的行只覆盖本次写入的非空列 */
+    private String getConflictClause(TableBatch batch) {
+        String fullTableName = getFullName(batch.tableName);
+        StringBuilder clause = new StringBuilder(" ON CONFLICT (");
+        clause.append(KEY_NAME).append(") DO UPDATE SET ");
+        for (int i = 0; i < batch.columns.size(); i++) {
+            String column = getFullName(batch.columns.get(i));
+            if (i != 0) {
+                clause.append(", ");
             }
-            statement = new StringBuilder(statement.substring(0, statement.length() - 2));
-            if (hasMultipleRows) {
-                statement.append(")"); // 只有一列不加括号
+            clause.append(column).append(" = COALESCE(excluded.").append(column);
+            clause.append(", ").append(fullTableName).append(".").append(column).append(")");
+        }
+        return clause.toString();
+    }
+
+    /** 一次写入中某张表的数据，同一 key 的各列合并为一行 */
+    private static class TableBatch {
+
+        private final String tableName;
+
+        private final List<String> columns = new ArrayList<>();
+
+        private final List<DataType> dataTypes = new ArrayList<>();
+
+        private final Map<Long, Object[]> rows = new LinkedHashMap<>();
+
+        TableBatch(String tableName) {
+            this.tableName = tableName;
+        }
+
+        int addColumn(String column, DataType dataType) {
+            int index = columns.indexOf(column);
+            if (index == -1) {
+                columns.add(column);
+                dataTypes.add(dataType);
+                index = columns.size() - 1;
             }
-            statement.append(";");
+            return index;
+        }
 
-//            logger.info("[Insert] execute insert: {}", statement);
-            stmt.addBatch(statement.toString());
+        void set(long key, int column, Object value) {
+            rows.computeIfAbsent(key, k -> new Object[columns.size()])[column] = value;
+        }
+
+        int getRowCount() {
+            return rows.size();
         }
-        stmt.executeBatch();
     }
 
     private List<Pair<String, String>> determineDeletedPaths(
@@ -1117,7 +1525,7 @@ public class PostgreSQLStorage implements IStorage {
         return deletedPaths;
     }
 
-    private String getFullName(String name) {
+    private static String getFullName(String name) {
         return "\"" + name + "\"";
         //        return Character.isDigit(name.charAt(0)) ? "\"" + name + "\"" : name;
     }
@@ -183,6 +183,14 @@ public class PostgreSQLQueryRowStream implements RowStream {
     }
 
     private void cacheOneRow() throws SQLException, PhysicalException {
+        // 下推到 PostgreSQL 的谓词只是必要条件，仍需在内存中校验完整的过滤条件
+        do {
+            fetchOneRow();
+        } while (cachedRow != null && filter != null && !validate(filter, cachedRow));
+        hasCachedRow = true;
+    }
+
+    private void fetchOneRow() throws SQLException, PhysicalException {
         boolean hasNext = false;
         long key;
         Object[] values = new Object[header.getFieldSize()];
@@ -255,12 +263,8 @@ public class PostgreSQLQueryRowStream implements RowStream {
                 startIndex = endIndex;
             }
             cachedRow = new Row(header, key, values);
-            if (isDummy && !validate(filter, cachedRow)) {
-                cacheOneRow();
-            }
         } else {
             cachedRow = null;
         }
-        hasCachedRow = true;
     }
 }
@@ -8,6 +8,15 @@ public class Constants {
 
     public static final int BATCH_SIZE = 10000;
 
+    // 单表行数达到该值时改用 COPY 写入
+    public static final int COPY_THRESHOLD = 1000;
+
+    public static final String STAGE_TABLE_PREFIX = "iginx_stage_";
+
+    public static final String UNDEFINED_TABLE = "42P01";
+
+    public static final String UNDEFINED_COLUMN = "42703";
+
     public static final String USERNAME = "username";
 
     public static final String PASSWORD = "password";
@@ -27,25 +36,68 @@ public class Constants {
     public static final String QUERY_KEY_STATEMENT =
             "SELECT " + KEY_NAME + " FROM %s ORDER BY " + KEY_NAME + ";";
 
-    public static final String CONCAT_QUERY_STATEMENT = "SELECT concat(%s) FROM %s;";
+    public static final String QUERY_KEY_BOUNDARY_STATEMENT =
+            "SELECT min(" + KEY_NAME + "), max(" + KEY_NAME + ") FROM %s;";
+
+    public static final String QUERY_NOT_EMPTY_STATEMENT = "SELECT EXISTS (SELECT 1 FROM %s);";
 
     public static final String QUERY_STATEMENT =
             "SELECT " + KEY_NAME + ", %s FROM %s WHERE %s ORDER BY " + KEY_NAME + ";";
 
+    public static final String QUERY_WITH_LIMIT_STATEMENT =
+            "SELECT " + KEY_NAME + ", %s FROM %s WHERE %s ORDER BY " + KEY_NAME + " LIMIT %d;";
+
+    public static final String QUERY_AGGREGATE_STATEMENT = "SELECT %s FROM %s WHERE %s;";
+
+    // 按 key 所在窗口的起点分组，与内存中执行 Downsample 的分组方式相同
+    public static final String QUERY_DOWNSAMPLE_STATEMENT =
+            "SELECT "
+                    + KEY_NAME
+                    + " - ("
+                    + KEY_NAME
+                    + " - (%d)) %% %d AS "
+                    + KEY_NAME
+                    + ", %s FROM %s WHERE %s GROUP BY 1 ORDER BY 1;";
+
+    public static final String QUERY_LAST_KEY_STATEMENT =
+            "SELECT "
+                    + KEY_NAME
+                    + " FROM %s WHERE %s ORDER BY "
+                    + KEY_NAME
+                    + " DESC LIMIT 1 OFFSET %d;";
+
     public static final String QUERY_KEY_STATEMENT_WITHOUT_WHERE_CLAUSE =
             "SELECT %s FROM %s ORDER BY " + KEY_NAME + ";";
 
     public static final String CONCAT_QUERY_STATEMENT_WITHOUT_WHERE_CLAUSE =
             "SELECT concat(%s) AS " + KEY_NAME + ", %s FROM %s ORDER BY " + KEY_NAME + ";";
 
+    public static final String CONCAT_QUERY_STATEMENT_WITH_WHERE_CLAUSE =
+            "SELECT concat(%s) AS "
+                    + KEY_NAME
+                    + ", %s FROM %s WHERE %s ORDER BY "
+                    + KEY_NAME
+                    + ";";
+
     public static final String CREATE_TABLE_STATEMENT =
-            "CREATE TABLE %s ("
+            "CREATE TABLE IF NOT EXISTS %s ("
                     + KEY_NAME
                     + " BIGINT NOT NULL, %s %s, PRIMARY KEY("
                     + KEY_NAME
                     + "));";
 
-    public static final String ADD_COLUMN_STATEMENT = "ALTER TABLE %s ADD COLUMN %s %s;";
+    public static final String ADD_COLUMN_STATEMENT =
+            "ALTER TABLE %s ADD COLUMN IF NOT EXISTS %s %s;";
+
+    public static final String CREATE_STAGE_TABLE_STATEMENT =
+            "CREATE TEMP TABLE %s (LIKE %s INCLUDING DEFAULTS) ON COMMIT DROP;";
+
+    public static final String COPY_STATEMENT = "COPY %s (%s) FROM STDIN WITH (FORMAT csv)";
+
+    public static final String MERGE_STAGE_TABLE_STATEMENT =
+            "INSERT INTO %s (%s) SELECT %s FROM %s%s;";
+
+    public static final String DROP_STAGE_TABLE_STATEMENT = "DROP TABLE %s;";
 
     public static final String DROP_DATABASE_STATEMENT = "DROP DATABASE %s;";
 
@@ -3,6 +3,7 @@ package cn.edu.tsinghua.iginx.postgresql.tools;
 import static cn.edu.tsinghua.iginx.thrift.DataType.*;
 
 import cn.edu.tsinghua.iginx.thrift.DataType;
+import java.sql.Types;
 
 public class DataTypeTransformer {
 
@@ -43,4 +44,22 @@ public class DataTypeTransformer {
                 return "TEXT";
         }
     }
+
+    public static int toJdbcType(DataType dataType) {
+        switch (dataType) {
+            case BOOLEAN:
+                return Types.BOOLEAN;
+            case INTEGER:
+                return Types.INTEGER;
+            case LONG:
+                return Types.BIGINT;
+            case FLOAT:
+                return Types.REAL;
+            case DOUBLE:
+                return Types.DOUBLE;
+            case BINARY:
+            default:
+                return Types.VARCHAR;
+        }
+    }
 }
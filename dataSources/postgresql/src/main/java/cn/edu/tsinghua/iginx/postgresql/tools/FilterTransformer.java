@@ -18,13 +18,20 @@
  */
 package cn.edu.tsinghua.iginx.postgresql.tools;
 
+import static cn.edu.tsinghua.iginx.postgresql.tools.Constants.IGINX_SEPARATOR;
 import static cn.edu.tsinghua.iginx.postgresql.tools.Constants.KEY_NAME;
 
+import cn.edu.tsinghua.iginx.engine.shared.data.Value;
 import cn.edu.tsinghua.iginx.engine.shared.operator.filter.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class FilterTransformer {
 
+    private static final String TRUE = "true";
+
     public static String toString(Filter filter) {
         if (filter == null) {
             return "";
@@ -57,7 +64,7 @@ public class FilterTransformer {
     }
 
     private static String toString(KeyFilter filter) {
-        return KEY_NAME + " " + Op.op2Str(filter.getOp()) + " " + filter.getValue();
+        return KEY_NAME + " " + op2Str(filter.getOp()) + " " + filter.getValue();
     }
 
     private static String toString(ValueFilter filter) {
@@ -74,4 +81,101 @@ public class FilterTransformer {
                 .map(FilterTransformer::toString)
                 .collect(Collectors.joining(" or ", "(", ")"));
     }
+
+    /**
+     * 将 filter 翻译为某张表上的 SQL 谓词。只翻译 key 条件、该表 columns 中的列与常量的比较以及布尔常量，其余部分放宽为 true，
+     * 因此结果是原条件的必要条件，调用方仍需用原条件校验合并后的行。
+     *
+     * @param pathPrefix 该表的列在 IGinX 中的路径前缀
+     * @param columns 可以直接按列名比较的列
+     * @param pushKey 是否翻译 key 条件，叠加分片的 key 由整行哈希得到，无法下推
+     */
+    public static String toString(
+            Filter filter, String pathPrefix, Set<String> columns, boolean pushKey) {
+        switch (filter.getType()) {
+            case And:
+                List<String> andParts = new ArrayList<>();
+                for (Filter child : ((AndFilter) filter).getChildren()) {
+                    String part = toString(child, pathPrefix, columns, pushKey);
+                    if (!part.equals(TRUE)) {
+                        andParts.add(part);
+                    }
+                }
+                return andParts.isEmpty() ? TRUE : String.join(" and ", andParts);
+            case Or:
+                List<String> orParts = new ArrayList<>();
+                for (Filter child : ((OrFilter) filter).getChildren()) {
+                    String part = toString(child, pathPrefix, columns, pushKey);
+                    if (part.equals(TRUE)) {
+                        return TRUE;
+                    }
+                    orParts.add("(" + part + ")");
+                }
+                return orParts.isEmpty() ? "false" : String.join(" or ", orParts);
+            case Bool:
+                return ((BoolFilter) filter).isTrue() ? TRUE : "false";
+            case Key:
+                return pushKey ? toString((KeyFilter) filter) : TRUE;
+            case Value:
+                return toString((ValueFilter) filter, pathPrefix, columns);
+            case Not: // SQL 中 not 对空值的处理与 IGinX 不同
+            case Path:
+            default:
+                return TRUE;
+        }
+    }
+
+    private static String toString(ValueFilter filter, String pathPrefix, Set<String> columns) {
+        String path = filter.getPath();
+        if (!path.startsWith(pathPrefix + IGINX_SEPARATOR)) {
+            return TRUE;
+        }
+        String column = path.substring(pathPrefix.length() + 1);
+        if (!columns.contains(column)) {
+            return TRUE;
+        }
+        String value = toLiteral(filter.getValue(), filter.getOp());
+        if (value == null) {
+            return TRUE;
+        }
+        return "\"" + column + "\" " + op2Str(filter.getOp()) + " " + value;
+    }
+
+    /** 返回与 IGinX 比较语义一致的 SQL 常量，无法保证一致时返回 null */
+    private static String toLiteral(Value value, Op op) {
+        if (value == null || value.isNull() || op == Op.LIKE) {
+            return null;
+        }
+        boolean isEquality = op == Op.E || op == Op.NE;
+        switch (value.getDataType()) {
+            case INTEGER:
+            case LONG:
+                return value.getValue().toString();
+            case FLOAT:
+            case DOUBLE:
+                double doubleV = ((Number) value.getValue()).doubleValue();
+                return Double.isFinite(doubleV) ? value.getValue().toString() : null;
+            case BOOLEAN:
+                return isEquality ? value.getBoolV().toString() : null;
+            case BINARY:
+                // 字符串的大小关系依赖数据库的排序规则，只下推相等比较
+                if (!isEquality) {
+                    return null;
+                }
+                return "'" + value.getBinaryVAsString().replace("'", "''") + "'";
+            default:
+                return null;
+        }
+    }
+
+    private static String op2Str(Op op) {
+        switch (op) {
+            case E:
+                return "=";
+            case NE:
+                return "<>";
+            default:
+                return Op.op2Str(op);
+        }
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.postgresql;
+
+import static cn.edu.tsinghua.iginx.postgresql.tools.Constants.KEY_NAME;
+import static org.junit.Assert.assertEquals;
+
+import cn.edu.tsinghua.iginx.engine.shared.KeyRange;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionCall;
+import cn.edu.tsinghua.iginx.engine.shared.function.FunctionParams;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Count;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Max;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Min;
+import cn.edu.tsinghua.iginx.engine.shared.function.system.Sum;
+import cn.edu.tsinghua.iginx.engine.shared.operator.Downsample;
+import cn.edu.tsinghua.iginx.engine.shared.source.Source;
+import cn.edu.tsinghua.iginx.engine.shared.source.SourceType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class PostgreSQLStorageTest {
+
+    private static class EmptySource implements Source {
+
+        public static final EmptySource EMPTY_SOURCE = new EmptySource();
+
+        @Override
+        public SourceType getType() {
+            return null;
+        }
+
+        @Override
+        public Source copy() {
+            return null;
+        }
+    }
+
+    private static final Map<String, String> COLUMN_TYPES = new HashMap<>();
+
+    static {
+        COLUMN_TYPES.put("b", "int8");
+        COLUMN_TYPES.put("c", "float4");
+    }
+
+    @Test
+    public void testSetTransformStatement() {
+        String statement =
+                PostgreSQLStorage.getAggregateStatement(
+                        "a",
+                        Arrays.asList("b", "c"),
+                        COLUMN_TYPES,
+                        Arrays.asList(Count.COUNT, Sum.SUM),
+                        "p",
+                        null);
+        assertEquals(
+                "SELECT COUNT(\"b\"), COUNT(\"c\"), SUM(\"b\"), SUM(\"c\"::DOUBLE PRECISION)"
+                        + " FROM \"a\" WHERE p;",
+                statement);
+    }
+
+    @Test
+    public void testDownsampleStatement() {
+        Downsample downsample =
+                new Downsample(
+                        EmptySource.EMPTY_SOURCE,
+                        10,
+                        10,
+                        new FunctionCall(
+                                Max.getInstance(),
+                                new FunctionParams(Collections.singletonList("a.*"))),
+                        new KeyRange(-5, 100));
+        String statement =
+                PostgreSQLStorage.getAggregateStatement(
+                        "a",
+                        Collections.singletonList("b"),
+                        COLUMN_TYPES,
+                        Arrays.asList(Max.MAX, Min.MIN),
+                        "p",
+                        downsample);
+        assertEquals(
+                "SELECT "
+                        + KEY_NAME
+                        + " - ("
+                        + KEY_NAME
+                        + " - (-5)) % 10 AS "
+                        + KEY_NAME
+                        + ", MAX(\"b\"), MIN(\"b\") FROM \"a\" WHERE p GROUP BY 1 ORDER BY 1;",
+                statement);
+    }
+}
@@ -1,5 +1,6 @@
 package cn.edu.tsinghua.iginx.redis;
 
+import cn.edu.tsinghua.iginx.engine.logical.utils.ExprUtils;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalTaskExecuteFailureException;
 import cn.edu.tsinghua.iginx.engine.physical.exception.StorageInitializationException;
@@ -12,6 +13,10 @@ import cn.edu.tsinghua.iginx.engine.shared.operator.Delete;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Insert;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Project;
 import cn.edu.tsinghua.iginx.engine.shared.operator.Select;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.AndFilter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.FilterType;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.OrFilter;
 import cn.edu.tsinghua.iginx.engine.shared.operator.tag.TagFilter;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsInterval;
 import cn.edu.tsinghua.iginx.metadata.entity.ColumnsRange;
@@ -26,6 +31,7 @@ import cn.edu.tsinghua.iginx.utils.Pair;
 import cn.edu.tsinghua.iginx.utils.StringUtils;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +40,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 public class RedisStorage implements IStorage {
 
@@ -76,23 +85,28 @@ public class RedisStorage implements IStorage {
 
     @Override
     public boolean isSupportProjectWithSelect() {
-        return false;
+        return true;
     }
 
     @Override
     public TaskExecuteResult executeProjectWithSelect(
             Project project, Select select, DataArea dataArea) {
-        return null;
+        return executeProjectWithFilter(project, select.getFilter(), dataArea);
     }
 
     @Override
     public TaskExecuteResult executeProjectDummyWithSelect(
             Project project, Select select, DataArea dataArea) {
-        return null;
+        return executeProjectDummyWithFilter(project, select.getFilter());
     }
 
     @Override
     public TaskExecuteResult executeProject(Project project, DataArea dataArea) {
+        return executeProjectWithFilter(project, null, dataArea);
+    }
+
+    private TaskExecuteResult executeProjectWithFilter(
+            Project project, Filter filter, DataArea dataArea) {
         String storageUnit = dataArea.getStorageUnit();
         List<String> queryPaths;
         try {
@@ -106,69 +120,254 @@ public class RedisStorage implements IStorage {
         }
 
         List<cn.edu.tsinghua.iginx.redis.entity.Column> columns = new ArrayList<>();
+        if (queryPaths.isEmpty()) {
+            return new TaskExecuteResult(new RedisQueryRowStream(columns, filter), null);
+        }
+        List<KeyRange> keyRanges = getKeyRanges(filter, dataArea.getKeyInterval());
         try (Jedis jedis = jedisPool.getResource()) {
-            for (String queryPath : queryPaths) {
-                DataType type =
-                        DataTransformer.fromStringDataType(jedis.hget(KEY_DATA_TYPE, queryPath));
+            List<String> types = jedis.hmget(KEY_DATA_TYPE, queryPaths.toArray(new String[0]));
+            List<String> paths = new ArrayList<>();
+            List<DataType> dataTypes = new ArrayList<>();
+            for (int i = 0; i < queryPaths.size(); i++) {
+                DataType type = DataTransformer.fromStringDataType(types.get(i));
                 if (type != null) {
-                    Map<String, String> colData =
-                            jedis.hgetAll(
-                                    String.format(KEY_FORMAT_HASH_VALUES, storageUnit, queryPath));
-                    cn.edu.tsinghua.iginx.redis.entity.Column column =
-                            new cn.edu.tsinghua.iginx.redis.entity.Column(queryPath, type, colData);
-                    columns.add(column);
+                    paths.add(queryPaths.get(i));
+                    dataTypes.add(type);
                 }
             }
+
+            List<Map<String, String>> pathData;
+            if (keyRanges == null) {
+                pathData = queryAllData(jedis, storageUnit, paths);
+            } else {
+                pathData = queryDataByKeyRanges(jedis, storageUnit, paths, keyRanges);
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                columns.add(
+                        new cn.edu.tsinghua.iginx.redis.entity.Column(
+                                paths.get(i), dataTypes.get(i), pathData.get(i)));
+            }
         } catch (Exception e) {
             return new TaskExecuteResult(
                     new PhysicalTaskExecuteFailureException(
                             "execute query path task in redis failure", e));
         }
-        return new TaskExecuteResult(new RedisQueryRowStream(columns), null);
+        return new TaskExecuteResult(new RedisQueryRowStream(columns, filter), null);
+    }
+
+    /** 计算需要读取的 key 区间，与分片区间取交集；返回 null 表示需要读取全部数据 */
+    private List<KeyRange> getKeyRanges(Filter filter, KeyInterval keyInterval) {
+        long begin = keyInterval == null ? 0 : keyInterval.getStartKey();
+        long end = keyInterval == null ? Long.MAX_VALUE : keyInterval.getEndKey();
+        List<KeyRange> filterRanges = null;
+        if (filter != null) {
+            try {
+                if (isKeyBounded(ExprUtils.toDNF(filter.copy()))) {
+                    filterRanges = ExprUtils.getKeyRangesFromFilter(filter.copy());
+                }
+            } catch (Exception e) {
+                logger.debug("can not extract key ranges from filter {}", filter);
+            }
+        }
+        if (filterRanges == null) {
+            if (begin <= 0 && end == Long.MAX_VALUE) {
+                return null;
+            }
+            return Collections.singletonList(new KeyRange(begin, end));
+        }
+        List<KeyRange> keyRanges = new ArrayList<>();
+        for (KeyRange range : filterRanges) {
+            long rangeBegin = Math.max(range.getActualBeginKey(), begin);
+            long rangeEnd = Math.min(range.getActualEndKey(), end - 1);
+            if (rangeBegin <= rangeEnd) {
+                keyRanges.add(new KeyRange(rangeBegin, rangeEnd + 1));
+            }
+        }
+        return keyRanges;
+    }
+
+    /** 析取范式中的每个分支都带有 key 条件时，提取出的 key 区间才能覆盖所有满足条件的行 */
+    private boolean isKeyBounded(Filter filter) {
+        switch (filter.getType()) {
+            case Key:
+                return true;
+            case And:
+                for (Filter child : ((AndFilter) filter).getChildren()) {
+                    if (child.getType() == FilterType.Key) {
+                        return true;
+                    }
+                }
+                return false;
+            case Or:
+                for (Filter child : ((OrFilter) filter).getChildren()) {
+                    if (!isKeyBounded(child)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** 一次往返读取所有列的全部数据 */
+    private List<Map<String, String>> queryAllData(
+            Jedis jedis, String storageUnit, List<String> paths) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Map<String, String>>> responses = new ArrayList<>();
+        for (String path : paths) {
+            responses.add(
+                    pipeline.hgetAll(String.format(KEY_FORMAT_HASH_VALUES, storageUnit, path)));
+        }
+        syncAndCheck(pipeline);
+        List<Map<String, String>> ret = new ArrayList<>();
+        for (Response<Map<String, String>> response : responses) {
+            ret.add(response.get());
+        }
+        return ret;
+    }
+
+    /** 先通过有序集合找出区间内的 key，再批量读取对应的值，每一步所有列共用一次往返 */
+    private List<Map<String, String>> queryDataByKeyRanges(
+            Jedis jedis, String storageUnit, List<String> paths, List<KeyRange> keyRanges) {
+        Pipeline pipeline = jedis.pipelined();
+        List<List<Response<List<String>>>> keyResponses = new ArrayList<>();
+        for (String path : paths) {
+            String zSetKey = String.format(KEY_FORMAT_ZSET_KEYS, storageUnit, path);
+            List<Response<List<String>>> responses = new ArrayList<>();
+            for (KeyRange keyRange : keyRanges) {
+                responses.add(
+                        pipeline.zrangeByScore(
+                                zSetKey, keyRange.getActualBeginKey(), keyRange.getActualEndKey()));
+            }
+            keyResponses.add(responses);
+        }
+        syncAndCheck(pipeline);
+
+        List<String[]> pathKeys = new ArrayList<>();
+        List<Response<List<String>>> valueResponses = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            List<String> keys = new ArrayList<>();
+            for (int j = 0; j < keyRanges.size(); j++) {
+                // score 为 double，超过 2^53 的 key 可能因精度损失落在区间外，需要再精确判断一次
+                long begin = keyRanges.get(j).getActualBeginKey();
+                long end = keyRanges.get(j).getActualEndKey();
+                for (String key : keyResponses.get(i).get(j).get()) {
+                    long k = Long.parseLong(key);
+                    if (begin <= k && k <= end) {
+                        keys.add(key);
+                    }
+                }
+            }
+            String[] keyArray = keys.toArray(new String[0]);
+            pathKeys.add(keyArray);
+            String hashKey = String.format(KEY_FORMAT_HASH_VALUES, storageUnit, paths.get(i));
+            valueResponses.add(keyArray.length == 0 ? null : pipeline.hmget(hashKey, keyArray));
+        }
+        syncAndCheck(pipeline);
+
+        List<Map<String, String>> ret = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Map<String, String> data = new HashMap<>();
+            if (valueResponses.get(i) != null) {
+                String[] keys = pathKeys.get(i);
+                List<String> values = valueResponses.get(i).get();
+                for (int j = 0; j < keys.length; j++) {
+                    if (values.get(j) != null) {
+                        data.put(keys[j], values.get(j));
+                    }
+                }
+            }
+            ret.add(data);
+        }
+        return ret;
+    }
+
+    /** 执行管道中的命令并检查回复，Pipeline.sync() 不会因错误回复抛出异常，写入失败会被忽略 */
+    private static void syncAndCheck(Pipeline pipeline) {
+        for (Object reply : pipeline.syncAndReturnAll()) {
+            if (reply instanceof JedisDataException) {
+                throw (JedisDataException) reply;
+            }
+        }
     }
 
     @Override
     public TaskExecuteResult executeProjectDummy(Project project, DataArea dataArea) {
+        return executeProjectDummyWithFilter(project, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TaskExecuteResult executeProjectDummyWithFilter(Project project, Filter filter) {
         List<String> patterns = project.getPatterns();
-        Set<String> queryPaths = new HashSet<>();
+        Set<String> pathSet = new HashSet<>();
         for (String pattern : patterns) {
             if (pattern.contains(STAR)) {
-                queryPaths.addAll(getKeysByPattern(pattern));
+                pathSet.addAll(getKeysByPattern(pattern));
             } else {
-                queryPaths.add(pattern);
+                pathSet.add(pattern);
             }
         }
+        List<String> queryPaths = new ArrayList<>(pathSet);
 
         List<cn.edu.tsinghua.iginx.redis.entity.Column> columns = new ArrayList<>();
         try (Jedis jedis = jedisPool.getResource()) {
-            for (String queryPath : queryPaths) {
-                String type = jedis.type(queryPath);
+            List<String> types = queryTypes(jedis, queryPaths);
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<?>> responses = new ArrayList<>();
+            for (int i = 0; i < queryPaths.size(); i++) {
+                String queryPath = queryPaths.get(i);
+                String type = types.get(i);
                 switch (type) {
                     case "string":
-                        String value = jedis.get(queryPath);
-                        columns.add(
-                                new cn.edu.tsinghua.iginx.redis.entity.Column(queryPath, value));
+                        responses.add(pipeline.get(queryPath));
                         break;
                     case "list":
-                        List<String> listValues = jedis.lrange(queryPath, 0, -1);
-                        columns.add(
-                                new cn.edu.tsinghua.iginx.redis.entity.Column(
-                                        queryPath, listValues));
+                        responses.add(pipeline.lrange(queryPath, 0, -1));
                         break;
                     case "set":
-                        Set<String> setValues = jedis.smembers(queryPath);
+                        responses.add(pipeline.smembers(queryPath));
+                        break;
+                    case "zset":
+                        responses.add(pipeline.zrange(queryPath, 0, -1));
+                        break;
+                    case "hash":
+                        responses.add(pipeline.hgetAll(queryPath));
+                        break;
+                    case "none":
+                        logger.warn("key {} not exists", queryPath);
+                    default:
+                        logger.warn("unknown key type, type={}", type);
+                        responses.add(null);
+                }
+            }
+            syncAndCheck(pipeline);
+
+            for (int i = 0; i < queryPaths.size(); i++) {
+                String queryPath = queryPaths.get(i);
+                Response<?> response = responses.get(i);
+                if (response == null) {
+                    continue;
+                }
+                switch (types.get(i)) {
+                    case "string":
                         columns.add(
                                 new cn.edu.tsinghua.iginx.redis.entity.Column(
-                                        queryPath, setValues));
+                                        queryPath, (String) response.get()));
                         break;
+                    case "list":
                     case "zset":
-                        List<String> zSetValues = jedis.zrange(queryPath, 0, -1);
                         columns.add(
                                 new cn.edu.tsinghua.iginx.redis.entity.Column(
-                                        queryPath, zSetValues));
+                                        queryPath, (List<String>) response.get()));
+                        break;
+                    case "set":
+                        columns.add(
+                                new cn.edu.tsinghua.iginx.redis.entity.Column(
+                                        queryPath, (Set<String>) response.get()));
                         break;
                     case "hash":
-                        Map<String, String> hashValues = jedis.hgetAll(queryPath);
+                        Map<String, String> hashValues = (Map<String, String>) response.get();
                         columns.add(
                                 new cn.edu.tsinghua.iginx.redis.entity.Column(
                                         queryPath + SUFFIX_KEY, hashValues.keySet()));
@@ -177,10 +376,6 @@ public class RedisStorage implements IStorage {
                                         queryPath + SUFFIX_VALUE,
                                         new ArrayList<>(hashValues.values())));
                         break;
-                    case "none":
-                        logger.warn("key {} not exists", queryPath);
-                    default:
-                        logger.warn("unknown key type, type={}", type);
                 }
             }
         } catch (Exception e) {
@@ -188,7 +383,22 @@ public class RedisStorage implements IStorage {
                     new PhysicalTaskExecuteFailureException(
                             "execute query history task in redis failure", e));
         }
-        return new TaskExecuteResult(new RedisQueryRowStream(columns), null);
+        return new TaskExecuteResult(new RedisQueryRowStream(columns, filter), null);
+    }
+
+    /** 批量获取 key 的类型 */
+    private List<String> queryTypes(Jedis jedis, List<String> keys) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<String>> responses = new ArrayList<>();
+        for (String key : keys) {
+            responses.add(pipeline.type(key));
+        }
+        syncAndCheck(pipeline);
+        List<String> types = new ArrayList<>();
+        for (Response<String> response : responses) {
+            types.add(response.get());
+        }
+        return types;
     }
 
     @Override
@@ -230,24 +440,37 @@ public class RedisStorage implements IStorage {
         } else {
             // 删除指定部分数据
             try (Jedis jedis = jedisPool.getResource()) {
+                List<KeyRange> keyRanges = delete.getKeyRanges();
+                Pipeline pipeline = jedis.pipelined();
+                List<Response<List<String>>> responses = new ArrayList<>();
                 for (String path : deletedPaths) {
-                    for (KeyRange keyRange : delete.getKeyRanges()) {
-                        List<String> keys =
-                                jedis.zrangeByScore(
-                                        String.format(KEY_FORMAT_ZSET_KEYS, storageUnit, path),
+                    String zSetKey = String.format(KEY_FORMAT_ZSET_KEYS, storageUnit, path);
+                    for (KeyRange keyRange : keyRanges) {
+                        responses.add(
+                                pipeline.zrangeByScore(
+                                        zSetKey,
                                         keyRange.getActualBeginKey(),
-                                        keyRange.getActualEndKey());
+                                        keyRange.getActualEndKey()));
+                    }
+                }
+                syncAndCheck(pipeline);
+
+                int index = 0;
+                for (String path : deletedPaths) {
+                    for (KeyRange keyRange : keyRanges) {
+                        List<String> keys = responses.get(index++).get();
                         if (!keys.isEmpty()) {
-                            jedis.hdel(
+                            pipeline.hdel(
                                     String.format(KEY_FORMAT_HASH_VALUES, storageUnit, path),
                                     keys.toArray(new String[0]));
-                            jedis.zremrangeByScore(
+                            pipeline.zremrangeByScore(
                                     String.format(KEY_FORMAT_ZSET_KEYS, storageUnit, path),
                                     keyRange.getActualBeginKey(),
                                     keyRange.getActualEndKey());
                         }
                     }
                 }
+                syncAndCheck(pipeline);
             } catch (Exception e) {
                 logger.warn("encounter error when delete path: " + e.getMessage());
                 return new TaskExecuteResult(
@@ -297,27 +520,33 @@ public class RedisStorage implements IStorage {
     public TaskExecuteResult executeInsert(Insert insert, DataArea dataArea) {
         String storageUnit = dataArea.getStorageUnit();
         DataViewWrapper data = new DataViewWrapper(insert.getData());
-        for (int i = 0; i < data.getPathNum(); i++) {
-            String path = data.getPath(i);
-            String type = DataTransformer.toStringDataType(data.getDataType(i));
-
-            Pair<Map<String, String>, Map<String, Double>> pair = data.getPathData(i);
-
-            Map<String, String> values = pair.getK();
-            Map<String, Double> scores = pair.getV();
+        try (Jedis jedis = jedisPool.getResource()) {
+            // 所有列的写入合并到一次往返中
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, String> types = new HashMap<>();
+            for (int i = 0; i < data.getPathNum(); i++) {
+                String path = data.getPath(i);
+                Pair<Map<String, String>, Map<String, Double>> pair = data.getPathData(i);
+                Map<String, String> values = pair.getK();
+                Map<String, Double> scores = pair.getV();
+                if (values.isEmpty()) {
+                    // 这一批中该列全为空值，空的 HSET/ZADD 会被 redis 拒绝
+                    continue;
+                }
+                types.put(path, DataTransformer.toStringDataType(data.getDataType(i)));
 
-            try (Jedis jedis = jedisPool.getResource()) {
                 String hashKey = String.format(KEY_FORMAT_HASH_VALUES, storageUnit, path);
-                jedis.hset(hashKey, values);
+                pipeline.hset(hashKey, values);
 
                 String zSetKey = String.format(KEY_FORMAT_ZSET_KEYS, storageUnit, path);
-                jedis.zadd(zSetKey, scores);
-
-                jedis.hset(KEY_DATA_TYPE, path, type);
-            } catch (Exception e) {
-                return new TaskExecuteResult(
-                        new PhysicalException("execute insert in redis error", e));
+                pipeline.zadd(zSetKey, scores);
+            }
+            if (!types.isEmpty()) {
+                pipeline.hset(KEY_DATA_TYPE, types);
             }
+            syncAndCheck(pipeline);
+        } catch (Exception e) {
+            return new TaskExecuteResult(new PhysicalException("execute insert in redis error", e));
         }
         return new TaskExecuteResult(null, null);
     }
@@ -360,21 +589,27 @@ public class RedisStorage implements IStorage {
         }
         long minTime = 0, maxTime = Long.MIN_VALUE;
         try (Jedis jedis = jedisPool.getResource()) {
-            for (String path : paths) {
-                String type = jedis.type(path);
+            List<String> types = queryTypes(jedis, paths);
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<Long>> responses = new ArrayList<>();
+            for (int i = 0; i < paths.size(); i++) {
+                String path = paths.get(i);
+                String type = types.get(i);
                 switch (type) {
                     case "string":
                         maxTime = Math.max(maxTime, 1);
                         break;
                     case "list":
-                        maxTime = Math.max(maxTime, jedis.llen(path));
+                        responses.add(pipeline.llen(path));
                         break;
                     case "set":
+                        responses.add(pipeline.scard(path));
+                        break;
                     case "zset":
-                        maxTime = Math.max(maxTime, jedis.zcard(path));
+                        responses.add(pipeline.zcard(path));
                         break;
                     case "hash":
-                        maxTime = Math.max(maxTime, jedis.hlen(path));
+                        responses.add(pipeline.hlen(path));
                         break;
                     case "none":
                         logger.warn("key {} not exists", path);
@@ -382,6 +617,10 @@ public class RedisStorage implements IStorage {
                         logger.warn("unknown key type, type={}", type);
                 }
             }
+            syncAndCheck(pipeline);
+            for (Response<Long> response : responses) {
+                maxTime = Math.max(maxTime, response.get());
+            }
         } catch (Exception e) {
             logger.error("get keys' length error, cause by: ", e);
         }
@@ -1,10 +1,12 @@
 package cn.edu.tsinghua.iginx.redis.entity;
 
 import cn.edu.tsinghua.iginx.engine.physical.exception.PhysicalException;
+import cn.edu.tsinghua.iginx.engine.physical.memory.execute.utils.FilterUtils;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Field;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Header;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.Row;
 import cn.edu.tsinghua.iginx.engine.shared.data.read.RowStream;
+import cn.edu.tsinghua.iginx.engine.shared.operator.filter.Filter;
 import cn.edu.tsinghua.iginx.redis.tools.DataTransformer;
 import cn.edu.tsinghua.iginx.redis.tools.TagKVUtils;
 import cn.edu.tsinghua.iginx.thrift.DataType;
@@ -25,10 +27,15 @@ public class RedisQueryRowStream implements RowStream {
 
     private final Header header;
 
+    private final Filter filter;
+
     private int cur = 0;
 
-    public RedisQueryRowStream(List<Column> columns) {
+    private Row nextRow = null;
+
+    public RedisQueryRowStream(List<Column> columns, Filter filter) {
         this.columns = columns;
+        this.filter = filter;
 
         Set<String> timeSet = new TreeSet<>();
         List<Field> fields = new ArrayList<>();
@@ -62,24 +69,38 @@ public class RedisQueryRowStream implements RowStream {
 
     @Override
     public boolean hasNext() throws PhysicalException {
-        return cur < times.size();
+        if (nextRow == null) {
+            nextRow = calculateNext();
+        }
+        return nextRow != null;
     }
 
     @Override
     public Row next() throws PhysicalException {
-        if (cur >= times.size()) {
+        if (!hasNext()) {
             throw new PhysicalException("no more data");
         }
+        Row row = nextRow;
+        nextRow = null;
+        return row;
+    }
 
-        String time = String.valueOf(times.get(cur));
-        cur++;
+    private Row calculateNext() throws PhysicalException {
+        while (cur < times.size()) {
+            String time = String.valueOf(times.get(cur));
+            cur++;
 
-        Object[] values = new Object[columns.size()];
-        for (int i = 0; i < columns.size(); i++) {
-            String strVal = columns.get(i).getData().get(time);
-            DataType type = columns.get(i).getType();
-            values[i] = DataTransformer.strValueToDeterminedType(strVal, type);
+            Object[] values = new Object[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                String strVal = columns.get(i).getData().get(time);
+                DataType type = columns.get(i).getType();
+                values[i] = DataTransformer.strValueToDeterminedType(strVal, type);
+            }
+            Row row = new Row(header, Long.parseLong(time), values);
+            if (filter == null || FilterUtils.validate(filter, row)) {
+                return row;
+            }
         }
-        return new Row(header, Long.parseLong(time), values);
+        return null;
     }
 }
@@ -1,5 +1,7 @@
 package cn.edu.tsinghua.iginx.pool;
 
+import cn.edu.tsinghua.iginx.utils.ThriftUtils;
+
 public class IginxInfo {
     /** iginx 的 host */
     private final String host;
@@ -13,11 +15,29 @@ public class IginxInfo {
     /** iginx 的密码 */
     private final String password;
 
+    /** 是否使用分帧传输，iginx 为 threaded_selector 模式时需要开启 */
+    private final boolean enableFramedTransport;
+
+    /** 与 iginx 一致的 thrift 协议 */
+    private final String protocol;
+
     IginxInfo(String host, int port, String user, String password) {
+        this(host, port, user, password, false, ThriftUtils.BINARY_PROTOCOL);
+    }
+
+    IginxInfo(
+            String host,
+            int port,
+            String user,
+            String password,
+            boolean enableFramedTransport,
+            String protocol) {
         this.host = host;
         this.port = port;
         this.user = user;
         this.password = password;
+        this.enableFramedTransport = enableFramedTransport;
+        this.protocol = protocol;
     }
 
     public String getHost() {
@@ -36,11 +56,21 @@ public class IginxInfo {
         return password;
     }
 
+    public boolean isEnableFramedTransport() {
+        return enableFramedTransport;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
     public static class Builder {
         private String host;
         private int port;
         private String user;
         private String password;
+        private boolean enableFramedTransport = false;
+        private String protocol = ThriftUtils.BINARY_PROTOCOL;
 
         public IginxInfo.Builder host(String host) {
             this.host = host;
@@ -62,8 +92,18 @@ public class IginxInfo {
             return this;
         }
 
+        public IginxInfo.Builder enableFramedTransport(boolean enableFramedTransport) {
+            this.enableFramedTransport = enableFramedTransport;
+            return this;
+        }
+
+        public IginxInfo.Builder protocol(String protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+
         public IginxInfo build() {
-            return new IginxInfo(host, port, user, password);
+            return new IginxInfo(host, port, user, password, enableFramedTransport, protocol);
         }
     }
 }
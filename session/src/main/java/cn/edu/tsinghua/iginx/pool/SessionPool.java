@@ -167,7 +167,9 @@ public class SessionPool {
                 iginxInfo.getHost(),
                 iginxInfo.getPort(),
                 iginxInfo.getUser(),
-                iginxInfo.getPassword());
+                iginxInfo.getPassword(),
+                iginxInfo.isEnableFramedTransport(),
+                iginxInfo.getProtocol());
     }
 
     private int getIndexOfIginx(int currentSize) {
@@ -198,7 +200,9 @@ public class SessionPool {
                 oldSession.getHost(),
                 oldSession.getPort(),
                 oldSession.getUsername(),
-                oldSession.getPassword());
+                oldSession.getPassword(),
+                oldSession.isEnableFramedTransport(),
+                oldSession.getProtocol());
     }
 
     private Session getSessionFromQueue(int index) {
@@ -18,6 +18,7 @@
  */
 package cn.edu.tsinghua.iginx.session;
 
+import static cn.edu.tsinghua.iginx.utils.ByteUtils.getBytesFromByteBuffer;
 import static cn.edu.tsinghua.iginx.utils.ByteUtils.getValueFromByteBufferByDataType;
 
 import cn.edu.tsinghua.iginx.exceptions.ExecutionException;
@@ -115,7 +116,7 @@ public class QueryDataSet {
         ByteBuffer valuesBuffer = valuesList.get(index);
         ByteBuffer bitmapBuffer = bitmapList.get(index);
         index++;
-        Bitmap bitmap = new Bitmap(dataTypeList.size(), bitmapBuffer.array());
+        Bitmap bitmap = new Bitmap(dataTypeList.size(), getBytesFromByteBuffer(bitmapBuffer));
         Object[] values = new Object[dataTypeList.size()];
         for (int i = 0; i < dataTypeList.size(); i++) {
             if (bitmap.get(i)) {
@@ -27,6 +27,7 @@ import cn.edu.tsinghua.iginx.utils.Bitmap;
 import cn.edu.tsinghua.iginx.utils.ByteUtils;
 import cn.edu.tsinghua.iginx.utils.Pair;
 import cn.edu.tsinghua.iginx.utils.RpcUtils;
+import cn.edu.tsinghua.iginx.utils.ThriftUtils;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,8 +41,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
@@ -59,6 +58,8 @@ public class Session {
 
     private final String username;
     private final String password;
+    private final boolean enableFramedTransport;
+    private final String protocol;
     private final ReadWriteLock lock;
     private String host;
     private int port;
@@ -83,10 +84,26 @@ public class Session {
     }
 
     public Session(String host, int port, String username, String password) {
+        this(host, port, username, password, false, ThriftUtils.BINARY_PROTOCOL);
+    }
+
+    /**
+     * @param enableFramedTransport 服务端为 threaded_selector 模式时需要开启
+     * @param protocol 与服务端一致的 thrift 协议，binary 或 compact
+     */
+    public Session(
+            String host,
+            int port,
+            String username,
+            String password,
+            boolean enableFramedTransport,
+            String protocol) {
         this.host = host;
         this.port = port;
         this.username = username;
         this.password = password;
+        this.enableFramedTransport = enableFramedTransport;
+        this.protocol = protocol;
         this.isClosed = true;
         this.redirectTimes = 0;
         this.lock = new ReentrantReadWriteLock();
@@ -146,16 +163,15 @@ public class Session {
     }
 
     private OpenSessionResp tryOpenSession() throws SessionException, TException {
-        transport = new TSocket(host, port);
-        if (!transport.isOpen()) {
-            try {
-                transport.open();
-            } catch (TTransportException e) {
-                throw new SessionException(e);
-            }
+        try {
+            transport = ThriftUtils.openTransport(host, port, enableFramedTransport);
+        } catch (TTransportException e) {
+            throw new SessionException(e);
         }
 
-        client = new IService.Client(new TBinaryProtocol(transport));
+        client =
+                new IService.Client(
+                        ThriftUtils.getProtocolFactory(protocol).getProtocol(transport));
 
         OpenSessionReq req = new OpenSessionReq();
         req.setUsername(username);
@@ -1152,4 +1168,12 @@ public class Session {
     public int getPort() {
         return port;
     }
+
+    public boolean isEnableFramedTransport() {
+        return enableFramedTransport;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
 }
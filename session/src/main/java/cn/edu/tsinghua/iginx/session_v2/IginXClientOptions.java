@@ -18,6 +18,8 @@
  */
 package cn.edu.tsinghua.iginx.session_v2;
 
+import cn.edu.tsinghua.iginx.utils.ThriftUtils;
+
 public final class IginXClientOptions {
 
     private static final String DEFAULT_USERNAME = "root";
@@ -32,11 +34,17 @@ public final class IginXClientOptions {
 
     private final String password;
 
+    private final boolean enableFramedTransport;
+
+    private final String protocol;
+
     private IginXClientOptions(IginXClientOptions.Builder builder) {
         this.host = builder.host;
         this.port = builder.port;
         this.username = builder.username;
         this.password = builder.password;
+        this.enableFramedTransport = builder.enableFramedTransport;
+        this.protocol = builder.protocol;
     }
 
     public static IginXClientOptions.Builder builder() {
@@ -59,6 +67,14 @@ public final class IginXClientOptions {
         return password;
     }
 
+    public boolean isEnableFramedTransport() {
+        return enableFramedTransport;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
     public static class Builder {
 
         private String host;
@@ -69,6 +85,10 @@ public final class IginXClientOptions {
 
         private String password;
 
+        private boolean enableFramedTransport = false;
+
+        private String protocol = ThriftUtils.BINARY_PROTOCOL;
+
         private Builder() {}
 
         public IginXClientOptions.Builder url(String url) {
@@ -108,6 +128,18 @@ public final class IginXClientOptions {
             return this;
         }
 
+        /** 服务端为 threaded_selector 模式时需要开启 */
+        public IginXClientOptions.Builder enableFramedTransport(boolean enableFramedTransport) {
+            this.enableFramedTransport = enableFramedTransport;
+            return this;
+        }
+
+        public IginXClientOptions.Builder protocol(String protocol) {
+            Arguments.checkNonEmpty(protocol, "protocol");
+            this.protocol = protocol;
+            return this;
+        }
+
         public IginXClientOptions build() {
             if (this.host == null || this.port == 0) {
                 throw new IllegalStateException(
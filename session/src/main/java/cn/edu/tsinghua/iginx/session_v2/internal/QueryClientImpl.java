@@ -18,6 +18,7 @@
  */
 package cn.edu.tsinghua.iginx.session_v2.internal;
 
+import static cn.edu.tsinghua.iginx.utils.ByteUtils.getBytesFromByteBuffer;
 import static cn.edu.tsinghua.iginx.utils.ByteUtils.getLongArrayFromByteBuffer;
 import static cn.edu.tsinghua.iginx.utils.ByteUtils.getValueFromByteBufferByDataType;
 
@@ -305,7 +306,7 @@ public class QueryClientImpl extends AbstractFunctionClient implements QueryClie
         for (int i = 0; i < dataSet.valuesList.size(); i++) {
             ByteBuffer valuesBuffer = dataSet.valuesList.get(i);
             ByteBuffer bitmapBuffer = dataSet.bitmapList.get(i);
-            Bitmap bitmap = new Bitmap(dataTypes.size(), bitmapBuffer.array());
+            Bitmap bitmap = new Bitmap(dataTypes.size(), getBytesFromByteBuffer(bitmapBuffer));
             Map<String, Object> values = new HashMap<>();
             for (int j = 0; j < dataTypes.size(); j++) {
                 if (bitmap.get(j)) {
@@ -41,7 +41,7 @@ public class ByteUtils {
             List<Object> tempValues = new ArrayList<>();
             ByteBuffer valuesBuffer = valuesList.get(i);
             ByteBuffer bitmapBuffer = bitmapList.get(i);
-            Bitmap bitmap = new Bitmap(dataTypeList.size(), bitmapBuffer.array());
+            Bitmap bitmap = new Bitmap(dataTypeList.size(), getBytesFromByteBuffer(bitmapBuffer));
             for (int j = 0; j < dataTypeList.size(); j++) {
                 if (bitmap.get(j)) {
                     tempValues.add(
@@ -94,7 +94,7 @@ public class ByteUtils {
             int timestampsSize) {
         Object[] tempValues = new Object[valuesList.size()];
         for (int i = 0; i < valuesList.size(); i++) {
-            Bitmap bitmap = new Bitmap(timestampsSize, bitmapList.get(i).array());
+            Bitmap bitmap = new Bitmap(timestampsSize, getBytesFromByteBuffer(bitmapList.get(i)));
             int cnt = 0;
             for (int j = 0; j < timestampsSize; j++) {
                 if (bitmap.get(j)) {
@@ -149,7 +149,8 @@ public class ByteUtils {
             List<ByteBuffer> valuesList, List<DataType> dataTypeList, List<ByteBuffer> bitmapList) {
         Object[] tempValues = new Object[valuesList.size()];
         for (int i = 0; i < valuesList.size(); i++) {
-            Bitmap bitmap = new Bitmap(dataTypeList.size(), bitmapList.get(i).array());
+            Bitmap bitmap =
+                    new Bitmap(dataTypeList.size(), getBytesFromByteBuffer(bitmapList.get(i)));
             List<Integer> indexes = new ArrayList<>();
             for (int j = 0; j < dataTypeList.size(); j++) {
                 if (bitmap.get(j)) {
@@ -195,10 +196,27 @@ public class ByteUtils {
         return buffer.array();
     }
 
+    /**
+     * 读取 buffer 中剩余的字节，不改变 buffer 的位置。thrift 反序列化得到的 buffer 可能只是整个帧上的一段，不能直接使用
+     * array()
+     */
+    public static byte[] getBytesFromByteBuffer(ByteBuffer buffer) {
+        if (buffer.hasArray()
+                && buffer.arrayOffset() == 0
+                && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
     public static long[] getLongArrayFromByteBuffer(ByteBuffer buffer) {
-        long[] array = new long[buffer.array().length / 8];
+        ByteBuffer source = buffer.duplicate();
+        long[] array = new long[source.remaining() / 8];
         for (int i = 0; i < array.length; i++) {
-            array[i] = buffer.getLong();
+            array[i] = source.getLong();
         }
         return array;
     }
@@ -208,10 +226,11 @@ public class ByteUtils {
     }
 
     public static List<Long> getLongListFromByteBuffer(ByteBuffer buffer) {
-        int size = buffer.array().length / 8;
+        ByteBuffer source = buffer.duplicate();
+        int size = source.remaining() / 8;
         List<Long> list = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
-            list.add(buffer.getLong());
+            list.add(source.getLong());
         }
         return list;
     }
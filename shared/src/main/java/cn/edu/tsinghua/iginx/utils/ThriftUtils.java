@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package cn.edu.tsinghua.iginx.utils;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.apache.thrift.transport.layered.TFramedTransport;
+
+/** 客户端与服务端共用的 thrift 传输层与协议选项 */
+public class ThriftUtils {
+
+    public static final String BINARY_PROTOCOL = "binary";
+
+    public static final String COMPACT_PROTOCOL = "compact";
+
+    public static TProtocolFactory getProtocolFactory(String protocol) {
+        if (BINARY_PROTOCOL.equalsIgnoreCase(protocol)) {
+            return new TBinaryProtocol.Factory();
+        }
+        if (COMPACT_PROTOCOL.equalsIgnoreCase(protocol)) {
+            return new TCompactProtocol.Factory();
+        }
+        throw new IllegalArgumentException("unknown thrift protocol: " + protocol);
+    }
+
+    /**
+     * 打开到 host:port 的连接
+     *
+     * @param framed 是否使用分帧传输，连接 threaded_selector 模式的服务端时需要开启
+     */
+    public static TTransport openTransport(String host, int port, boolean framed)
+            throws TTransportException {
+        TTransport transport = new TSocket(host, port);
+        if (framed) {
+            // 查询结果可能很大，客户端不限制服务端返回的帧大小
+            transport = new TFramedTransport(transport, Integer.MAX_VALUE);
+        }
+        transport.open();
+        return transport;
+    }
+}